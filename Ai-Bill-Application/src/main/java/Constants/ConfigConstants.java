@@ -15,6 +15,30 @@ public final class ConfigConstants {
     public static final String SUMMARY_CSV_PATH; // Example main path (for admin global stats?)
     public static final String USER_DATA_BASE_DIR; // NEW: Base directory for user data files
 
+    // AI constants (optional keys; defaults apply when missing)
+    public static final int AI_PROMPT_TOKEN_BUDGET; // Estimated token limit for the billing data in an analysis prompt
+    private static final int DEFAULT_AI_PROMPT_TOKEN_BUDGET = 3000;
+    public static final String AI_CLIENT; // AI backend: "ark" (VolcEngine Ark) or "stub" (in-process, for offline runs and load tests)
+    // HTTP tuning of the Ark client (defaults in Service.AIservice.AiHttpSettings)
+    public static final int AI_HTTP_MAX_IDLE_CONNECTIONS; // Idle connections kept in the pool
+    public static final int AI_HTTP_KEEP_ALIVE_SECONDS; // How long an idle connection stays in the pool
+    public static final int AI_HTTP_MAX_REQUESTS; // Concurrent requests overall
+    public static final int AI_HTTP_MAX_REQUESTS_PER_HOST; // Concurrent requests to the Ark host
+    public static final int AI_HTTP_CONNECT_TIMEOUT_SECONDS;
+    public static final int AI_HTTP_TIMEOUT_SECONDS; // Read/write/call timeout; reasoning models answer slowly
+    public static final boolean AI_HTTP_WARMUP; // Open a connection to the AI endpoint in the background at login
+    public static final boolean AI_HEDGING_ENABLED; // Send a second copy of short AI requests that are slower than their p95
+    public static final boolean AI_INCREMENTAL_ANALYSIS; // Follow-up analyses send the previous result plus the changed months only
+    public static final boolean AI_SPECULATIVE_ENABLED; // Precompute the common AI analyses in the background after login and imports
+    public static final int AI_SPECULATIVE_SETTLE_SECONDS; // Quiet time after the last ledger change before precomputing
+    private static final int DEFAULT_AI_SPECULATIVE_SETTLE_SECONDS = 20;
+    private static final int DEFAULT_AI_HTTP_MAX_IDLE_CONNECTIONS = 5;
+    private static final int DEFAULT_AI_HTTP_KEEP_ALIVE_SECONDS = 300; // Outlasts the pause between AI clicks
+    private static final int DEFAULT_AI_HTTP_MAX_REQUESTS = 64;
+    private static final int DEFAULT_AI_HTTP_MAX_REQUESTS_PER_HOST = 8; // Above the AI dispatcher's worker count
+    private static final int DEFAULT_AI_HTTP_CONNECT_TIMEOUT_SECONDS = 20;
+    private static final int DEFAULT_AI_HTTP_TIMEOUT_SECONDS = 1800;
+
 
     // Static initialization block (executed when class is loaded)
     static {
@@ -34,6 +58,19 @@ public final class ConfigConstants {
             USERS_CSV_PATH = prop.getProperty("csv.users_path");
             SUMMARY_CSV_PATH = prop.getProperty("csv.summary_path");
             USER_DATA_BASE_DIR = prop.getProperty("user.data.base.dir"); // Load new config
+            AI_PROMPT_TOKEN_BUDGET = parsePositiveInt(prop, "ai.prompt.token_budget", DEFAULT_AI_PROMPT_TOKEN_BUDGET);
+            AI_CLIENT = prop.getProperty("ai.client", "ark").trim();
+            AI_HTTP_MAX_IDLE_CONNECTIONS = parsePositiveInt(prop, "ai.http.max_idle_connections", DEFAULT_AI_HTTP_MAX_IDLE_CONNECTIONS);
+            AI_HTTP_KEEP_ALIVE_SECONDS = parsePositiveInt(prop, "ai.http.keep_alive_seconds", DEFAULT_AI_HTTP_KEEP_ALIVE_SECONDS);
+            AI_HTTP_MAX_REQUESTS = parsePositiveInt(prop, "ai.http.max_requests", DEFAULT_AI_HTTP_MAX_REQUESTS);
+            AI_HTTP_MAX_REQUESTS_PER_HOST = parsePositiveInt(prop, "ai.http.max_requests_per_host", DEFAULT_AI_HTTP_MAX_REQUESTS_PER_HOST);
+            AI_HTTP_CONNECT_TIMEOUT_SECONDS = parsePositiveInt(prop, "ai.http.connect_timeout_seconds", DEFAULT_AI_HTTP_CONNECT_TIMEOUT_SECONDS);
+            AI_HTTP_TIMEOUT_SECONDS = parsePositiveInt(prop, "ai.http.timeout_seconds", DEFAULT_AI_HTTP_TIMEOUT_SECONDS);
+            AI_HTTP_WARMUP = Boolean.parseBoolean(prop.getProperty("ai.http.warmup", "true").trim());
+            AI_HEDGING_ENABLED = Boolean.parseBoolean(prop.getProperty("ai.hedging.enabled", "false").trim());
+            AI_INCREMENTAL_ANALYSIS = Boolean.parseBoolean(prop.getProperty("ai.analysis.incremental", "true").trim());
+            AI_SPECULATIVE_ENABLED = Boolean.parseBoolean(prop.getProperty("ai.speculative.enabled", "false").trim());
+            AI_SPECULATIVE_SETTLE_SECONDS = parsePositiveInt(prop, "ai.speculative.settle_seconds", DEFAULT_AI_SPECULATIVE_SETTLE_SECONDS);
 
 
             // Basic validation for critical paths
@@ -52,5 +89,34 @@ public final class ConfigConstants {
         System.out.println("Loaded SUMMARY_CSV_PATH: " + SUMMARY_CSV_PATH);
         System.out.println("Loaded USER_DATA_BASE_DIR: " + USER_DATA_BASE_DIR);
         if (CSV_PATH != null) System.out.println("Loaded CSV_PATH: " + CSV_PATH);
+        System.out.println("Loaded AI_PROMPT_TOKEN_BUDGET: " + AI_PROMPT_TOKEN_BUDGET);
+        System.out.println("Loaded AI_CLIENT: " + AI_CLIENT);
+        System.out.println("Loaded AI_HTTP: pool " + AI_HTTP_MAX_IDLE_CONNECTIONS + "/" + AI_HTTP_KEEP_ALIVE_SECONDS + "s, max requests "
+                + AI_HTTP_MAX_REQUESTS + " (" + AI_HTTP_MAX_REQUESTS_PER_HOST + " per host), timeouts "
+                + AI_HTTP_CONNECT_TIMEOUT_SECONDS + "s/" + AI_HTTP_TIMEOUT_SECONDS + "s, warm-up " + AI_HTTP_WARMUP);
+        System.out.println("Loaded AI_HEDGING_ENABLED: " + AI_HEDGING_ENABLED);
+        System.out.println("Loaded AI_INCREMENTAL_ANALYSIS: " + AI_INCREMENTAL_ANALYSIS);
+        System.out.println("Loaded AI_SPECULATIVE: " + AI_SPECULATIVE_ENABLED + " (settle " + AI_SPECULATIVE_SETTLE_SECONDS + " s)");
+    }
+
+    /**
+     * Reads an optional positive integer property.
+     * @return The property's value, or the default if it is missing or not a positive integer.
+     */
+    private static int parsePositiveInt(Properties prop, String key, int defaultValue) {
+        String value = prop.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // Fall through to the warning below
+        }
+        System.err.println("Invalid value for '" + key + "' in config.properties: " + value + ". Using default " + defaultValue + ".");
+        return defaultValue;
     }
 }
\ No newline at end of file
@@ -4,15 +4,19 @@ import Constants.StandardCategories; // Import StandardCategories if needed in U
 import Service.AIservice.AITransactionService; // Import AI services
 import Service.AIservice.CollegeStudentNeeds;
 import Service.Impl.SummaryStatisticService; // Import SummaryStatisticService
+import Service.Impl.StatisticsScheduler;
 import Service.TransactionService;
 import Service.User.UserService;
 import model.SummaryStatistic; // Import SummaryStatistic
+import model.WeeklySketch;
 import model.Transaction;
 import model.User;
 // import Constants.StandardCategories; // Already imported above
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.io.BufferedWriter; // Added for Export
 import java.io.IOException;
@@ -20,10 +24,16 @@ import java.nio.file.Files; // Added for Export
 import java.nio.file.Paths; // Added for Export
 import java.util.ArrayList; // Added for Export
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 import java.util.Comparator; // For sorting stats display
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService; // Import ExecutorService
-import java.util.stream.Collectors; // Added for loadCSVDataForCurrentUser
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.awt.Dimension;
 
 // Added for Export (Apache Commons CSV)
@@ -32,6 +42,7 @@ import org.apache.commons.csv.CSVPrinter;
 
 // Added for Batch AI (pre-existing in pre)
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (optional but common)
@@ -39,12 +50,21 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
     private final User currentUser;
     private final TransactionService transactionService;
     private final SummaryStatisticService summaryStatisticService;
+    private final StatisticsScheduler statisticsScheduler; // Background stats generation; admin panel reads its latest result
     private final AITransactionService aiTransactionService;
     private final CollegeStudentNeeds collegeStudentNeeds;
     private final ExecutorService executorService;
     private final UserService userService; // Added UserService for user management
 
-    private DefaultTableModel tableModel;
+    private TransactionTableModel tableModel; // Views the transaction snapshot directly
+    private TransactionTableLoader tableLoader; // The latest table load or search; EDT only
+    private JProgressBar tableLoadProgress; // Shown while the table loads
+    // Search-as-you-type: field edits restart the timer, and the search runs once typing pauses
+    private static final int SEARCH_DEBOUNCE_MILLIS = 300;
+    private Timer searchDebounceTimer;
+    private boolean searchFieldsUpdating; // Set while the fields are changed programmatically; EDT only
+    private final AtomicLong searchGeneration = new AtomicLong(); // Bumped per query; older queries are stale
+    private volatile SearchResult lastSearch; // Latest completed query; a refined query narrows its results
 
     // Fields for search input components
     private JTextField searchTransactionTimeField;
@@ -73,6 +93,10 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
     private JButton aiPersonalSavingTipsButton;
     private JButton runBatchAiButton; // Existing in pre
     private JButton aiSeasonalAnalysisButton; // NEW: Added seasonal analysis button from post
+    private JCheckBox aiRefreshCheckBox; // When checked, AI answers are regenerated instead of served from the response cache
+    private JButton aiCancelButton; // Cancels the running AI tasks (aborts their AI requests)
+    // AI panel tasks that have not finished yet; EDT only
+    private final List<CompletableFuture<?>> runningAiTasks = new ArrayList<>();
 
 
     // UI components for Admin Stats panel (existing)
@@ -87,12 +111,13 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
     private UserManagerPanel userManagerPanel; // Add instance field
 
     /**
-     * Constructor to initialize the main UI panel and its components.
-     * This constructor is from MenuUI-pre.txt and accepts all necessary services.
+     * Constructor to initialize the main UI panel with a shared statistics scheduler.
+     * The caller starts and stops the scheduler.
      *
      * @param authenticatedUser The currently logged-in user.
      * @param transactionService User-specific transaction service.
      * @param summaryStatisticService Summary statistics service (for admin).
+     * @param statisticsScheduler Background scheduler that materializes the summary statistics.
      * @param aiTransactionService AI transaction service.
      * @param collegeStudentNeeds College student specific AI service.
      * @param executorService Executor service for background tasks.
@@ -100,22 +125,23 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
      */
     public MenuUI(User authenticatedUser, TransactionService transactionService,
                   SummaryStatisticService summaryStatisticService,
+                  StatisticsScheduler statisticsScheduler,
                   AITransactionService aiTransactionService,
                   CollegeStudentNeeds collegeStudentNeeds,
                   ExecutorService executorService,
-                  UserService userService) { // Accept ExecutorService
+                  UserService userService) {
 
         this.currentUser = authenticatedUser;
         this.transactionService = transactionService;
         this.summaryStatisticService = summaryStatisticService;
+        this.statisticsScheduler = statisticsScheduler;
         this.aiTransactionService = aiTransactionService;
         this.collegeStudentNeeds = collegeStudentNeeds;
         this.executorService = executorService;
         this.userService = userService; // Assign UserServic
 
-        // Initialize table model (same as before)
-        String[] columnNames = {"Transaction Time", "Transaction Type", "Counterparty", "Commodity", "In/Out", "Amount(CNY)", "Payment Method", "Current Status", "Order Number", "Merchant Number", "Remarks", "Modify", "Delete"};
-        this.tableModel = new DefaultTableModel(columnNames, 0);
+        // Initialize table model; it formats only the cells that are painted
+        this.tableModel = new TransactionTableModel();
         this.table = new JTable(this.tableModel);
 
         // Set the layout manager for this JPanel (MenuUI) (same as before)
@@ -154,38 +180,54 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
 
 
     // Method to load CSV data for the current user with optional initial filter
-    // Same logic as before
+    // Loading runs in the background (the CSV may have to be parsed); rows appear chunk by chunk
     public void loadCSVDataForCurrentUser(String initialInOutFilter) {
-        this.tableModel.setRowCount(0); // Clear the table model
-
-        try {
-            List<Transaction> transactions = transactionService.getAllTransactions();
-            System.out.println("Loaded total " + transactions.size() + " transactions from service for user " + currentUser.getUsername());
+        cancelPendingSearch(); // The reload supersedes a query typed before it
+        // The table views the cached list itself; a filter only selects row indices
+        String filter = initialInOutFilter == null ? "" : initialInOutFilter.trim();
+        startTableLoad(() -> {
+                    List<Transaction> transactions = transactionService.getAllTransactions();
+                    System.out.println("Loaded total " + transactions.size() + " transactions from service for user " + currentUser.getUsername());
+                    return transactions;
+                },
+                filter.isEmpty() ? null : t -> matchesInOutFilter(t, filter),
+                e -> JOptionPane.showMessageDialog(this, "Failed to load user transaction data!", "Error", JOptionPane.ERROR_MESSAGE),
+                false);
+    }
 
-            List<Transaction> filteredTransactions = new ArrayList<>();
-            if (initialInOutFilter == null || initialInOutFilter.trim().isEmpty()) {
-                filteredTransactions.addAll(transactions);
-            } else {
-                String filter = initialInOutFilter.trim();
-                // Assuming "Income" maps to "收" and "Expense" maps to "支" or their English equivalents if data uses that.
-                // This filter needs to be robust to these variations.
-                filteredTransactions = transactions.stream()
-                        .filter(t -> t.getInOut() != null && (t.getInOut().equalsIgnoreCase(filter) ||
-                                (filter.equalsIgnoreCase("Income") && (t.getInOut().equalsIgnoreCase("收") || t.getInOut().equalsIgnoreCase("In"))) ||
-                                (filter.equalsIgnoreCase("Expense") && (t.getInOut().equalsIgnoreCase("支") || t.getInOut().equalsIgnoreCase("Out"))) ))
-                        .collect(Collectors.toList());
+    // Starts a background table load, cancelling the previous one (its rows would be stale)
+    // diffIntoModel: apply the finished result as a diff of the current rows instead of streaming it in
+    private void startTableLoad(Callable<List<Transaction>> source, Predicate<Transaction> filter, Consumer<Exception> onError,
+                                boolean diffIntoModel) {
+        if (tableLoader != null) {
+            tableLoader.cancel(false); // It stops at its next chunk and never touches the table again
+        }
+        TransactionTableLoader loader = new TransactionTableLoader(this.tableModel, source, filter, onError, diffIntoModel);
+        tableLoader = loader;
+        if (tableLoadProgress != null) {
+            tableLoadProgress.setIndeterminate(true); // Until the transactions are read
+            tableLoadProgress.setVisible(true);
+        }
+        loader.addPropertyChangeListener(event -> {
+            if (loader != tableLoader || tableLoadProgress == null) {
+                return; // Superseded; the newer load owns the progress bar
             }
-
-            for (Transaction transaction : filteredTransactions) {
-                Vector<String> row = createRowFromTransaction(transaction);
-                this.tableModel.addRow(row);
+            if ("progress".equals(event.getPropertyName())) {
+                tableLoadProgress.setIndeterminate(false);
+                tableLoadProgress.setValue((Integer) event.getNewValue());
+            } else if ("state".equals(event.getPropertyName()) && event.getNewValue() == SwingWorker.StateValue.DONE) {
+                tableLoadProgress.setVisible(false);
             }
-            System.out.println("Displayed " + filteredTransactions.size() + " transactions in the table.");
+        });
+        loader.execute();
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Failed to load user transaction data!", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+    // Assuming "Income" maps to "收" and "Expense" maps to "支" or their English equivalents if data uses that.
+    // This filter needs to be robust to these variations.
+    private static boolean matchesInOutFilter(Transaction t, String filter) {
+        return t.getInOut() != null && (t.getInOut().equalsIgnoreCase(filter) ||
+                (filter.equalsIgnoreCase("Income") && (t.getInOut().equalsIgnoreCase("收") || t.getInOut().equalsIgnoreCase("In"))) ||
+                (filter.equalsIgnoreCase("Expense") && (t.getInOut().equalsIgnoreCase("支") || t.getInOut().equalsIgnoreCase("Out"))));
     }
 
     // Method to create the left panel (Menu/AI/Admin/Visualization/User Management buttons) - MODIFIED (from pre)
@@ -321,12 +363,17 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
 
         tablePanel.add(tableScrollPane, BorderLayout.CENTER);
 
+        tableLoadProgress = new JProgressBar(0, 100);
+        tableLoadProgress.setStringPainted(false);
+        tableLoadProgress.setVisible(false); // Only while loading
+        tablePanel.add(tableLoadProgress, BorderLayout.SOUTH);
+
         // Set cell renderers and editors
-        this.table.getColumnModel().getColumn(11).setCellRenderer(new ButtonRenderer());
-        this.table.getColumnModel().getColumn(11).setCellEditor(new ButtonEditor(this));
+        this.table.getColumnModel().getColumn(TransactionTableModel.MODIFY_COLUMN).setCellRenderer(new ButtonRenderer());
+        this.table.getColumnModel().getColumn(TransactionTableModel.MODIFY_COLUMN).setCellEditor(new ButtonEditor(this));
 
-        this.table.getColumnModel().getColumn(12).setCellRenderer(new ButtonRenderer());
-        this.table.getColumnModel().getColumn(12).setCellEditor(new ButtonEditor(this));
+        this.table.getColumnModel().getColumn(TransactionTableModel.DELETE_COLUMN).setCellRenderer(new ButtonRenderer());
+        this.table.getColumnModel().getColumn(TransactionTableModel.DELETE_COLUMN).setCellEditor(new ButtonEditor(this));
 
         return tablePanel;
     }
@@ -362,6 +409,23 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
 
 
         searchButton.addActionListener(e -> triggerCurrentSearch());
+
+        // Search as you type: every edit restarts the debounce timer
+        searchDebounceTimer = new Timer(SEARCH_DEBOUNCE_MILLIS, e -> triggerCurrentSearch());
+        searchDebounceTimer.setRepeats(false);
+        DocumentListener searchAsYouType = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { scheduleSearch(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { scheduleSearch(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { scheduleSearch(); }
+        };
+        for (JTextField field : new JTextField[]{searchTransactionTimeField, searchTransactionTypeField, searchCounterpartyField,
+                searchCommodityField, searchPaymentMethodField}) {
+            field.getDocument().addDocumentListener(searchAsYouType);
+        }
+        searchInOutComboBox.addActionListener(e -> scheduleSearch());
         addButton.addActionListener(e -> showAddTransactionDialog());
 
         importButton.addActionListener(e -> {
@@ -454,7 +518,7 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
                 String message;
                 try {
                     // Get data from the current table model
-                    DefaultTableModel model = (DefaultTableModel) table.getModel();
+                    TableModel model = table.getModel();
                     int rowCount = model.getRowCount();
                     int colCount = model.getColumnCount(); // Includes Modify/Delete columns
 
@@ -516,6 +580,7 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
 
     // Inside MenuUI class, showAddTransactionDialog method - (from pre, uses ExecutorService for AI)
     private void showAddTransactionDialog() {
+        collegeStudentNeeds.trainLocalClassifierAsync(); // Ready (off the EDT) by the time AI Suggest is clicked
         JDialog addDialog = new JDialog();
         addDialog.setTitle("Add Transaction"); // "Add Transaction"
         JPanel dialogPanel = new JPanel(new GridBagLayout());
@@ -593,6 +658,11 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
         JDialog waitingDialog = new JDialog(addDialog, "Please wait", true); // "Please wait"
         waitingDialog.setLayout(new FlowLayout());
         waitingDialog.add(new JLabel("Getting AI category suggestion...")); // "Getting AI category suggestion..."
+        // The running suggestion request, so the waiting dialog can cancel it; EDT only
+        List<CompletableFuture<String>> pendingSuggestion = new ArrayList<>(1);
+        JButton cancelSuggestionButton = new JButton("Cancel");
+        cancelSuggestionButton.addActionListener(e -> pendingSuggestion.forEach(task -> task.cancel(true))); // Aborts the AI request
+        waitingDialog.add(cancelSuggestionButton);
         waitingDialog.setSize(250, 100);
         waitingDialog.setResizable(false);
         waitingDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE); // Prevent closing with X (from pre)
@@ -638,29 +708,44 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
                     textFields[9].getText().trim()  // Remarks
             );
 
-            // 3. Submit the AI task to the ExecutorService
-            executorService.submit(() -> { // Use submit (from pre)
-                System.out.println("AI Suggest task submitted to ExecutorService...");
-                String aiSuggestion = null;
-                try {
-                    // Thread.sleep(3000); // Simulate delay
-                    aiSuggestion = collegeStudentNeeds.RecognizeTransaction(tempTransaction);
+            // 3. Try the already trained local classifier first: it answers repeat counterparties/commodities instantly,
+            //    without the waiting dialog (training runs in the background, see trainLocalClassifierAsync)
+            String localSuggestion = collegeStudentNeeds.recognizeWithTrainedClassifier(tempTransaction);
+            if (localSuggestion != null) {
+                System.out.println("AI Suggest answered by the local classifier: " + localSuggestion);
+                textFields[1].setText(localSuggestion);
+                aiSuggestButton.setEnabled(true);
+                return;
+            }
+
+            // Not confident locally: ask the AI asynchronously; the waiting dialog's Cancel button aborts the request
+            System.out.println("AI Suggest task started...");
+            CompletableFuture<String> suggestionTask = collegeStudentNeeds.recognizeTransactionAsync(tempTransaction);
+            pendingSuggestion.add(suggestionTask);
+            suggestionTask.whenComplete((aiSuggestion, error) -> {
+                boolean cancelled = suggestionTask.isCancelled();
+                if (cancelled) {
+                    System.out.println("AI Suggest task cancelled.");
+                } else if (error != null) {
+                    System.err.println("Error in AI Suggest task: " + unwrap(error).getMessage());
+                    unwrap(error).printStackTrace();
+                    aiSuggestion = "Error: " + unwrap(error).getMessage(); // Capture error
+                } else {
                     System.out.println("AI Suggest task finished. Result: " + aiSuggestion);
-                } catch (Exception ex) {
-                    System.err.println("Error in AI Suggest task: " + ex.getMessage());
-                    ex.printStackTrace();
-                    aiSuggestion = "Error: " + ex.getMessage(); // Capture error
                 }
 
                 // 4. Schedule UI update on Event Dispatch Thread (EDT)
                 String finalSuggestion = aiSuggestion;
                 SwingUtilities.invokeLater(() -> {
                     System.out.println("Updating UI on EDT after AI Suggest task.");
+                    pendingSuggestion.remove(suggestionTask);
                     // --- Hide waiting dialog ---
                     waitingDialog.setVisible(false); // This hides the modal dialog
 
                     // --- Display AI suggestion ---
-                    if (finalSuggestion != null && !finalSuggestion.isEmpty() && !finalSuggestion.startsWith("Error:")) {
+                    if (cancelled) {
+                        // The user cancelled; leave the field as it is
+                    } else if (finalSuggestion != null && !finalSuggestion.isEmpty() && !finalSuggestion.startsWith("Error:")) {
                         // Safety Check against standard categories
                         if (StandardCategories.ALL_KNOWN_TYPES.contains(finalSuggestion.trim())) {
                             textFields[1].setText(finalSuggestion.trim()); // Update Transaction Type field
@@ -767,6 +852,7 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
     // Inside MenuUI class, editRow method - (from pre, uses ExecutorService for AI)
     public void editRow(int rowIndex) {
         System.out.println("Editing row: " + rowIndex + " for user " + currentUser.getUsername());
+        collegeStudentNeeds.trainLocalClassifierAsync(); // Ready (off the EDT) by the time AI Suggest is clicked
 
         JDialog editDialog = new JDialog();
         JPanel dialogPanel = new JPanel(new GridBagLayout());
@@ -870,6 +956,11 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
             JDialog waitingDialog = new JDialog(editDialog, "Please wait", true); // "Please wait"
             waitingDialog.setLayout(new FlowLayout());
             waitingDialog.add(new JLabel("Getting AI category suggestion...")); // "Getting AI category suggestion..."
+            // The running suggestion request, so the waiting dialog can cancel it; EDT only
+            List<CompletableFuture<String>> pendingSuggestion = new ArrayList<>(1);
+            JButton cancelSuggestionButton = new JButton("Cancel");
+            cancelSuggestionButton.addActionListener(e -> pendingSuggestion.forEach(task -> task.cancel(true))); // Aborts the AI request
+            waitingDialog.add(cancelSuggestionButton);
             waitingDialog.setSize(250, 100);
             waitingDialog.setResizable(false);
             waitingDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE); // Prevent closing with X (from pre)
@@ -910,26 +1001,41 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
                         remarksField.getText().trim()
                 );
 
-                // Submit the AI task to the ExecutorService (from pre)
-                executorService.submit(() -> { // Use submit (from pre)
-                    System.out.println("AI Suggest task submitted to ExecutorService (edit dialog)...");
-                    String aiSuggestion = null;
-                    try {
-                        // Thread.sleep(3000); // Simulate delay
-                        aiSuggestion = collegeStudentNeeds.RecognizeTransaction(tempTransaction);
+                // Try the already trained local classifier first; the async task below retrains it if needed
+                // and only asks the AI when it is still not confident enough
+                String localSuggestion = collegeStudentNeeds.recognizeWithTrainedClassifier(tempTransaction);
+                if (localSuggestion != null) {
+                    System.out.println("AI Suggest answered by the local classifier (edit dialog): " + localSuggestion);
+                    transactionTypeField.setText(localSuggestion);
+                    aiSuggestButton.setEnabled(true);
+                    return;
+                }
+
+                // Ask the AI asynchronously; the waiting dialog's Cancel button aborts the request
+                System.out.println("AI Suggest task started (edit dialog)...");
+                CompletableFuture<String> suggestionTask = collegeStudentNeeds.recognizeTransactionAsync(tempTransaction);
+                pendingSuggestion.add(suggestionTask);
+                suggestionTask.whenComplete((aiSuggestion, error) -> {
+                    boolean cancelled = suggestionTask.isCancelled();
+                    if (cancelled) {
+                        System.out.println("AI Suggest task cancelled (edit dialog).");
+                    } else if (error != null) {
+                        System.err.println("Error in AI Suggest task (edit dialog): " + unwrap(error).getMessage());
+                        unwrap(error).printStackTrace();
+                        aiSuggestion = "Error: " + unwrap(error).getMessage();
+                    } else {
                         System.out.println("AI Suggest task finished (edit dialog). Result: " + aiSuggestion);
-                    } catch (Exception ex) {
-                        System.err.println("Error in AI Suggest task (edit dialog): " + ex.getMessage());
-                        ex.printStackTrace();
-                        aiSuggestion = "Error: " + ex.getMessage();
                     }
 
                     String finalSuggestion = aiSuggestion;
                     SwingUtilities.invokeLater(() -> { // Update UI on EDT
                         System.out.println("Updating UI on EDT after AI Suggest task (edit dialog).");
+                        pendingSuggestion.remove(suggestionTask);
                         waitingDialog.setVisible(false);
 
-                        if (finalSuggestion != null && !finalSuggestion.isEmpty() && !finalSuggestion.startsWith("Error:")) {
+                        if (cancelled) {
+                            // The user cancelled; leave the field as it is
+                        } else if (finalSuggestion != null && !finalSuggestion.isEmpty() && !finalSuggestion.startsWith("Error:")) {
                             if (StandardCategories.ALL_KNOWN_TYPES.contains(finalSuggestion.trim())) {
                                 transactionTypeField.setText(finalSuggestion.trim()); // Update Transaction Type field
                             } else {
@@ -1116,6 +1222,17 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
         batchTaskPanel.add(runBatchAiButton); // Add the button
         // --- End New Panel ---
 
+        // --- Response cache option ---
+        JPanel cacheOptionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        aiRefreshCheckBox = new JCheckBox("Refresh (ignore cached answers)");
+        aiRefreshCheckBox.setToolTipText("Answers for unchanged data are reused; check this to ask the AI again.");
+        cacheOptionPanel.add(aiRefreshCheckBox);
+        aiCancelButton = new JButton("Cancel");
+        aiCancelButton.setToolTipText("Stop the running AI request and free its slot.");
+        aiCancelButton.setEnabled(false); // Only while an AI task runs
+        aiCancelButton.addActionListener(e -> cancelAiTasks());
+        cacheOptionPanel.add(aiCancelButton);
+
         // --- 顶部控制面板 (所有按钮面板的布局) ---
         JPanel topControlPanel = new JPanel();
         topControlPanel.setLayout(new BoxLayout(topControlPanel, BoxLayout.Y_AXIS));
@@ -1127,6 +1244,8 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
         topControlPanel.add(Box.createRigidArea(new Dimension(0, 10)));
         topControlPanel.add(batchTaskPanel); // Add the new batch task panel (from pre)
         topControlPanel.add(Box.createRigidArea(new Dimension(0, 10))); // Spacing below it
+        topControlPanel.add(cacheOptionPanel);
+        topControlPanel.add(Box.createRigidArea(new Dimension(0, 10)));
 
 
         panel.add(topControlPanel, BorderLayout.NORTH);
@@ -1145,7 +1264,9 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
                 "4. Click \"Personalized Saving Tips\" to get saving advice based on your spending categories.\n" + // "4. 点击“个性化省钱技巧”获取基于您消费类别的省钱建议。\n"
                 "5. Click \"Analyze Seasonal Spending (China Focus)\" for insights into your spending habits across different seasons/holidays.\n" + // "5. 点击“分析季节性消费 (中国视角)”获取您在不同季节/节假日的消费习惯洞察。\n" (新增说明 from post)
                 "6. Student users can click \"Budget Suggestion (Student)\" and \"Saving Tips (Student)\" for exclusive advice.\n" + // "6. 学生用户可以点击“预算建议”和“省钱技巧”获取专属建议。\n"
-                "7. (Admin only) Click \"Run Batch AI Analysis (Test ExecutorService)\" to test multi-threaded AI performance.\n"); // Added description for batch button (from pre)
+                "7. (Admin only) Click \"Run Batch AI Analysis (Test ExecutorService)\" to test multi-threaded AI performance.\n" + // Added description for batch button (from pre)
+                "8. Answers for unchanged data are returned from the cache; check \"Refresh (ignore cached answers)\" to ask the AI again.\n" +
+                "9. Click \"Cancel\" to stop a running AI request you no longer need.\n");
 
 
         JScrollPane resultScrollPane = new JScrollPane(aiResultArea);
@@ -1157,17 +1278,10 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
         aiSeasonalAnalysisButton.addActionListener(e -> {
             aiResultArea.setText("--- Analyzing Seasonal Spending Patterns (China Focus) ---\n\nPlease wait while AI analyzes your monthly data for seasonal trends...\n"); // "--- 正在分析季节性消费模式 (中国视角) ---\n\n请稍候，AI正在分析您的月度数据以寻找季节性趋势...\n"
             setAIButtonsEnabled(false);
-            // Use executorService from pre
-            executorService.submit(() -> { // Use submit
-                System.out.println("Seasonal Analysis task submitted to ExecutorService..."); // Optional logging
-                String result = aiTransactionService.analyzeSeasonalSpendingPatterns(currentUser.getTransactionFilePath());
-                System.out.println("Seasonal Analysis task finished."); // Optional logging
-                SwingUtilities.invokeLater(() -> {
-                    aiResultArea.setText("--- Seasonal Spending Analysis (China Focus) ---\n\n" + result); // "--- 季节性消费分析 (中国视角) ---\n\n"
-                    setAIButtonsEnabled(true);
-                    System.out.println("UI updated after Seasonal Analysis task."); // Optional logging
-                });
-            });
+            // Stream the answer into the result area as it is generated
+            boolean refresh = aiRefreshCheckBox.isSelected();
+            runStreamingAiTask("--- Seasonal Spending Analysis (China Focus) ---\n\n", // "--- 季节性消费分析 (中国视角) ---\n\n"
+                    onDelta -> aiTransactionService.analyzeSeasonalSpendingPatternsAsync(currentUser.getTransactionFilePath(), onDelta, refresh));
         });
 
 
@@ -1190,46 +1304,39 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
             AtomicInteger completedTasks = new AtomicInteger(0);
             long startTimeMillis = System.currentTimeMillis(); // Record start time for total duration
 
+            AtomicInteger cancelledTasks = new AtomicInteger(0);
             for (int i = 0; i < numberOfTasks; i++) {
                 final int taskIndex = i;
-                // Submit each individual task to the ExecutorService (from pre)
-                executorService.submit(() -> { // Use submit
-                    String taskResult = "Task " + (taskIndex + 1) + " failed."; // Default error message for this specific task
-                    boolean success = false;
-                    try {
-                        // Call the AI service method for analysis (example)
-                        // In a real batch test, you might call analyzeTransactions or a simpler task
-                        String result = aiTransactionService.analyzeTransactions(userRequest + " (Task " + (taskIndex + 1) + ")", filePath, startTime, endTime);
-                        taskResult = "Task " + (taskIndex + 1) + " completed: " + result.substring(0, Math.min(result.length(), 50)) + "..."; // Truncate result for log
-                        success = true;
-                        System.out.println(taskResult);
-                    } catch (Exception ex) {
-                        System.err.println("Task " + (taskIndex + 1) + " failed: " + ex.getMessage());
-                        ex.printStackTrace();
-                        taskResult = "Task " + (taskIndex + 1) + " failed: " + ex.getMessage();
-                    } finally {
-                        // Increment completed task count
-                        int doneCount = completedTasks.incrementAndGet();
-
-                        // Update UI with progress and final status on EDT (from pre)
-                        SwingUtilities.invokeLater(() -> {
-                            // Append status for this task
-                            // aiResultArea.append(taskResult + "\n"); // Appending can make UI jumpy for large batches
-
-                            // Display overall progress instead of appending every result
-                            if (doneCount < numberOfTasks) {
-                                aiResultArea.setText("Running batch AI analysis... " + doneCount + "/" + numberOfTasks + " tasks completed.");
-                            } else {
-                                // All tasks are done
-                                long endTimeMillis = System.currentTimeMillis();
-                                long totalTimeSeconds = (endTimeMillis - startTimeMillis) / 1000;
-                                aiResultArea.setText("Batch run completed!\n" + numberOfTasks + " tasks finished in " + totalTimeSeconds + " seconds.");
-
-                                // Re-enable buttons
-                                setAIButtonsEnabled(true);
-                            }
-                        });
+                // Start each individual task asynchronously; the Cancel button aborts the ones still running
+                // Each task sends its own prompt, so every task is a separate AI request
+                CompletableFuture<String> task = aiTransactionService.analyzeTransactionsAsync(userRequest + " (Task " + (taskIndex + 1) + ")", filePath, startTime, endTime, null, false);
+                trackAiTask(task);
+                task.whenComplete((result, error) -> {
+                    if (task.isCancelled()) {
+                        cancelledTasks.incrementAndGet();
+                        System.out.println("Task " + (taskIndex + 1) + " cancelled.");
+                    } else if (error != null) {
+                        System.err.println("Task " + (taskIndex + 1) + " failed: " + unwrap(error).getMessage());
+                    } else {
+                        System.out.println("Task " + (taskIndex + 1) + " completed: " + result.substring(0, Math.min(result.length(), 50)) + "..."); // Truncate result for log
                     }
+                    // Increment completed task count
+                    int doneCount = completedTasks.incrementAndGet();
+
+                    // Update UI with progress and final status on EDT (from pre)
+                    SwingUtilities.invokeLater(() -> {
+                        // Display overall progress instead of appending every result
+                        if (doneCount < numberOfTasks) {
+                            aiResultArea.setText("Running batch AI analysis... " + doneCount + "/" + numberOfTasks + " tasks completed.");
+                        } else {
+                            // All tasks are done
+                            long endTimeMillis = System.currentTimeMillis();
+                            long totalTimeSeconds = (endTimeMillis - startTimeMillis) / 1000;
+                            aiResultArea.setText((cancelledTasks.get() > 0 ? "Batch run cancelled (" + cancelledTasks.get() + " of " + numberOfTasks + " tasks).\n" : "Batch run completed!\n")
+                                    + numberOfTasks + " tasks finished in " + totalTimeSeconds + " seconds.");
+                        }
+                        aiTaskFinished(task); // Re-enables the buttons after the last task
+                    });
                 });
             }
         });
@@ -1239,14 +1346,10 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
             aiResultArea.setText("--- Generating Personal Spending Summary ---\n\nGenerating summary based on your monthly spending data, please wait...\n");
             setAIButtonsEnabled(false);
 
-            // Submit task to ExecutorService
-            executorService.submit(() -> { // Use submit
-                String result = aiTransactionService.generatePersonalSummary(currentUser.getTransactionFilePath()); // Call the method
-                SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                    aiResultArea.setText("--- Personal Spending Summary ---\n\n" + result);
-                    setAIButtonsEnabled(true);
-                });
-            });
+            // Stream the answer into the result area as it is generated
+            boolean refresh = aiRefreshCheckBox.isSelected();
+            runStreamingAiTask("--- Personal Spending Summary ---\n\n",
+                    onDelta -> aiTransactionService.generatePersonalSummaryAsync(currentUser.getTransactionFilePath(), onDelta, refresh));
         });
 
         // Savings Goal Suggestions Button (from pre, uses ExecutorService)
@@ -1254,14 +1357,10 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
             aiResultArea.setText("--- Generating Savings Goal Suggestions ---\n\nGenerating savings goal suggestions based on your income and expenses, please wait...\n");
             setAIButtonsEnabled(false);
 
-            // Submit task to ExecutorService
-            executorService.submit(() -> { // Use submit
-                String result = aiTransactionService.suggestSavingsGoals(currentUser.getTransactionFilePath()); // Call the method
-                SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                    aiResultArea.setText("--- Savings Goal Suggestions ---\n\n" + result);
-                    setAIButtonsEnabled(true);
-                });
-            });
+            // Stream the answer into the result area as it is generated
+            boolean refresh = aiRefreshCheckBox.isSelected();
+            runStreamingAiTask("--- Savings Goal Suggestions ---\n\n",
+                    onDelta -> aiTransactionService.suggestSavingsGoalsAsync(currentUser.getTransactionFilePath(), onDelta, refresh));
         });
 
         // Personalized Saving Tips Button (from pre, uses ExecutorService)
@@ -1269,14 +1368,10 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
             aiResultArea.setText("--- Generating Personalized Saving Tips ---\n\nGenerating saving tips based on your spending categories, please wait...\n");
             setAIButtonsEnabled(false);
 
-            // Submit task to ExecutorService
-            executorService.submit(() -> { // Use submit
-                String result = aiTransactionService.givePersonalSavingTips(currentUser.getTransactionFilePath()); // Call the method
-                SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                    aiResultArea.setText("--- Personalized Saving Tips ---\n\n" + result);
-                    setAIButtonsEnabled(true);
-                });
-            });
+            // Stream the answer into the result area as it is generated
+            boolean refresh = aiRefreshCheckBox.isSelected();
+            runStreamingAiTask("--- Personalized Saving Tips ---\n\n",
+                    onDelta -> aiTransactionService.givePersonalSavingTipsAsync(currentUser.getTransactionFilePath(), onDelta, refresh));
         });
 
         // General Analysis Button (from pre, uses ExecutorService)
@@ -1296,14 +1391,10 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
             aiResultArea.setText("--- Generating General Analysis ---\n\n" + "Performing AI general analysis, please wait...\n");
             setAIButtonsEnabled(false);
 
-            // Submit task to ExecutorService
-            executorService.submit(() -> { // Use submit
-                String result = aiTransactionService.analyzeTransactions(userRequest, currentUser.getTransactionFilePath(), startTimeStr, endTimeStr);
-                SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                    aiResultArea.setText("--- General Analysis Result ---\n\n" + result);
-                    setAIButtonsEnabled(true);
-                });
-            });
+            // Stream the answer into the result area as it is generated
+            boolean refresh = aiRefreshCheckBox.isSelected();
+            runStreamingAiTask("--- General Analysis Result ---\n\n",
+                    onDelta -> aiTransactionService.analyzeTransactionsAsync(userRequest, currentUser.getTransactionFilePath(), startTimeStr, endTimeStr, onDelta, refresh));
         });
 
         // College Student Budget Button (from pre, uses ExecutorService)
@@ -1311,28 +1402,29 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
             aiResultArea.setText("--- Generating Student Budget Suggestion ---\n\nGenerating budget suggestion based on your historical spending, please wait...\n");
             setAIButtonsEnabled(false);
 
-            // Submit task to ExecutorService
-            executorService.submit(() -> { // Use submit
+            // Runs asynchronously; the Cancel button aborts it
+            CompletableFuture<double[]> task = collegeStudentNeeds.generateBudgetAsync(currentUser.getTransactionFilePath());
+            trackAiTask(task);
+            task.whenComplete((budgetRange, error) -> {
                 String resultMessage;
-                try {
-                    double[] budgetRange = collegeStudentNeeds.generateBudget(currentUser.getTransactionFilePath());
-                    if (budgetRange != null && budgetRange.length == 2 && budgetRange[0] != -1) {
-                        resultMessage = String.format("Based on your spending records, the recommended budget range for next week is: [%.2f CNY, %.2f CNY]", budgetRange[0], budgetRange[1]);
-                    } else if (budgetRange != null && budgetRange.length == 2 && budgetRange[0] == -1) {
-                        resultMessage = "Not enough spending records to calculate weekly budget suggestions.";
-                    } else {
-                        resultMessage = "Failed to generate budget suggestion, AI did not return a valid range.";
-                        System.err.println("AI Budget generation failed, invalid response format.");
-                    }
-                } catch (Exception ex) {
-                    resultMessage = "Failed to generate budget suggestion!\n" + ex.getMessage();
+                if (task.isCancelled()) {
+                    resultMessage = "AI request cancelled.";
+                } else if (error != null) {
+                    Throwable cause = unwrap(error);
+                    resultMessage = "Failed to generate budget suggestion!\n" + cause.getMessage();
                     System.err.println("Error generating AI budget:");
-                    ex.printStackTrace();
+                    cause.printStackTrace();
+                } else if (budgetRange != null && budgetRange.length == 2 && budgetRange[0] != -1) {
+                    resultMessage = String.format("Based on your spending records, the recommended budget range for next week is: [%.2f CNY, %.2f CNY]", budgetRange[0], budgetRange[1]);
+                } else if (budgetRange != null && budgetRange.length == 2 && budgetRange[0] == -1) {
+                    resultMessage = "Not enough spending records to calculate weekly budget suggestions.";
+                } else {
+                    resultMessage = "Failed to generate budget suggestion, AI did not return a valid range.";
+                    System.err.println("AI Budget generation failed, invalid response format.");
                 }
-                String finalResultMessage = resultMessage;
                 SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                    aiResultArea.setText("--- Student Budget Suggestion ---\n\n" + finalResultMessage);
-                    setAIButtonsEnabled(true);
+                    aiResultArea.setText("--- Student Budget Suggestion ---\n\n" + resultMessage);
+                    aiTaskFinished(task);
                 });
             });
         });
@@ -1342,27 +1434,72 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
             aiResultArea.setText("--- Generating Student Saving Tips ---\n\nGenerating saving tips, please wait...\n");
             setAIButtonsEnabled(false);
 
-            // Submit task to ExecutorService
-            executorService.submit(() -> { // Use submit
-                String resultMessage;
-                try {
-                    resultMessage = collegeStudentNeeds.generateTipsForSaving(currentUser.getTransactionFilePath());
-                } catch (Exception ex) {
-                    resultMessage = "Failed to generate saving tips!\n" + ex.getMessage();
-                    System.err.println("Error generating AI tips:");
-                    ex.printStackTrace();
-                }
-                String finalResultMessage = resultMessage;
-                SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                    aiResultArea.setText("--- Student Saving Tips ---\n\n" + finalResultMessage);
-                    setAIButtonsEnabled(true);
-                });
-            });
+            // Stream the answer into the result area as it is generated
+            boolean refresh = aiRefreshCheckBox.isSelected();
+            runStreamingAiTask("--- Student Saving Tips ---\n\n",
+                    onDelta -> collegeStudentNeeds.generateTipsForSavingAsync(currentUser.getTransactionFilePath(), onDelta, refresh));
         });
 
         return panel;
     }
 
+    /**
+     * Starts a streaming AI task. The answer is rendered into aiResultArea as it arrives (batched onto the
+     * EDT by StreamingTextAppender) and the AI buttons are re-enabled when it completes or is cancelled.
+     * Must be called on the EDT.
+     *
+     * @param resultHeader Title shown above the answer.
+     * @param aiCall Starts the asynchronous AI method with the given delta consumer.
+     */
+    private void runStreamingAiTask(String resultHeader, Function<Consumer<String>, CompletableFuture<String>> aiCall) {
+        StreamingTextAppender appender = new StreamingTextAppender(aiResultArea, resultHeader);
+        CompletableFuture<String> task = aiCall.apply(appender);
+        trackAiTask(task);
+        task.whenComplete((result, error) -> {
+            String finalResult;
+            if (task.isCancelled()) {
+                finalResult = "AI request cancelled."; // Shown below whatever was streamed so far
+            } else if (error != null) {
+                System.err.println("Streaming AI task failed:");
+                unwrap(error).printStackTrace();
+                finalResult = "AI request failed: " + unwrap(error).getMessage();
+            } else {
+                finalResult = result;
+            }
+            SwingUtilities.invokeLater(() -> { // Update UI on EDT
+                appender.finish(finalResult);
+                aiTaskFinished(task);
+            });
+        });
+    }
+
+    // Registers a running AI panel task, so the Cancel button can abort it. EDT only.
+    private void trackAiTask(CompletableFuture<?> task) {
+        runningAiTasks.add(task);
+        aiCancelButton.setEnabled(true);
+    }
+
+    // Unregisters a finished AI panel task; the buttons come back once none is left. EDT only.
+    private void aiTaskFinished(CompletableFuture<?> task) {
+        runningAiTasks.remove(task);
+        if (runningAiTasks.isEmpty()) {
+            setAIButtonsEnabled(true);
+        }
+    }
+
+    // Cancels every running AI panel task: each one's AI request is aborted and its dispatcher slot freed
+    private void cancelAiTasks() {
+        System.out.println("Cancelling " + runningAiTasks.size() + " running AI task(s).");
+        aiCancelButton.setEnabled(false);
+        for (CompletableFuture<?> task : new ArrayList<>(runningAiTasks)) {
+            task.cancel(true);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
     /**
      * Helper method to enable or disable all AI-related buttons (Updated).
      * Includes the new seasonal and batch buttons.
@@ -1379,6 +1516,7 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
         if (aiPersonalSavingTipsButton != null) aiPersonalSavingTipsButton.setEnabled(enabled);
         if (runBatchAiButton != null) runBatchAiButton.setEnabled(enabled); // Include the batch button (from pre)
         if (aiSeasonalAnalysisButton != null) aiSeasonalAnalysisButton.setEnabled(enabled); // Include the new button (from post)
+        if (aiCancelButton != null) aiCancelButton.setEnabled(!enabled && !runningAiTasks.isEmpty()); // Cancel only while a task runs
 
     }
 
@@ -1403,119 +1541,100 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
         JScrollPane scrollPane = new JScrollPane(adminStatsArea);
         panel.add(scrollPane, BorderLayout.CENTER);
 
-        // Generate Stats button listener (Uses ExecutorService) (from pre)
+        // Generate Stats button listener: asks the background scheduler for a run (coalesced with any queued run)
         generateStatsButton.addActionListener(e -> {
             adminStatsArea.setText("Generating/Updating summary statistics, please wait...\n"); // "Generating/Updating summary statistics, please wait...\n"
             generateStatsButton.setEnabled(false);
-            refreshDisplayButton.setEnabled(false);
 
-            // Submit task to ExecutorService
-            executorService.submit(() -> { // Use submit
-                String message;
-                try {
-                    // This call might generate stats for all users, depending on SummaryStatisticService implementation
-                    summaryStatisticService.generateAndSaveWeeklyStatistics(); // Call the method
-                    message = "Summary statistics generated/updated successfully!\nPlease click 'Refresh Display' to view the latest data."; // "Summary statistics generated/updated successfully!\nPlease click 'Refresh Display' to view the latest data."
-                    System.out.println("Generate Stats task finished: " + message);
-                } catch (Exception ex) {
-                    message = "Failed to generate/update summary statistics!\n" + ex.getMessage(); // "Failed to generate/update summary statistics!\n"
+            statisticsScheduler.requestRun().whenComplete((stats, ex) -> {
+                if (ex != null) {
                     System.err.println("Generate Stats task failed: " + ex.getMessage());
-                    ex.printStackTrace();
+                } else {
+                    System.out.println("Generate Stats task finished. " + stats.size() + " stats available.");
                 }
-
-                String finalMessage = message;
                 SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                    adminStatsArea.setText(finalMessage);
+                    if (ex != null) {
+                        adminStatsArea.setText("Failed to generate/update summary statistics!\n" + ex.getMessage()); // "Failed to generate/update summary statistics!\n"
+                    } else {
+                        displaySummaryStatistics();
+                    }
                     generateStatsButton.setEnabled(true);
-                    refreshDisplayButton.setEnabled(true);
                 });
             });
         });
 
-        // Refresh Display button listener (Uses ExecutorService) (from pre)
+        // Refresh Display button listener: re-renders the latest materialized statistics
         refreshDisplayButton.addActionListener(e -> {
-            displaySummaryStatistics(); // This method itself submits a task
+            displaySummaryStatistics();
         });
 
-        // Initial display when the panel is first shown (from pre)
-        executorService.submit(() -> { // Use submit
-            System.out.println("Initial Admin Stats load task submitted to ExecutorService...");
-            SwingUtilities.invokeLater(() -> adminStatsArea.setText("Loading existing statistics...\n")); // "Loading existing statistics...\n"
-            try {
-                // This loads data from the configured summary file path (likely admin's own or global)
-                List<SummaryStatistic> initialStats = summaryStatisticService.getAllSummaryStatistics(); // Call the method
-                System.out.println("Initial Admin Stats load task finished. Found " + initialStats.size() + " stats.");
-                if (!initialStats.isEmpty()) {
-                    // If initial stats exist, trigger display (which submits another EDT task)
-                    SwingUtilities.invokeLater(this::displaySummaryStatistics); // This triggers display using the loaded data (indirectly)
-                } else {
-                    SwingUtilities.invokeLater(() -> adminStatsArea.setText("No existing summary statistics found.\nPlease click the 'Generate/Update Statistics' button to generate them.")); // "No existing summary statistics found.\nPlease click the 'Generate/Update Statistics' button to generate them."
-                }
-            } catch (IOException ex) {
-                System.err.println("Initial Admin Stats load task failed: " + ex.getMessage());
-                ex.printStackTrace();
-                SwingUtilities.invokeLater(() -> adminStatsArea.setText("Failed to load existing statistics!\n" + ex.getMessage())); // "Failed to load existing statistics!\n"
-            }
-        });
+        // Re-render automatically whenever the scheduler materializes a new result
+        statisticsScheduler.addResultListener(stats -> SwingUtilities.invokeLater(this::displaySummaryStatistics));
+
+        // Initial display when the panel is first shown
+        displaySummaryStatistics();
 
         return panel;
     }
 
-    // Inside MenuUI class, displaySummaryStatistics method - (from pre, uses ExecutorService)
+    // Inside MenuUI class, displaySummaryStatistics method
+    // Only reads the latest result materialized by the StatisticsScheduler, so it is cheap enough for the EDT.
     private void displaySummaryStatistics() {
-        adminStatsArea.setText("Loading summary statistics...\n"); // "Loading summary statistics...\n"
-        if(generateStatsButton != null) generateStatsButton.setEnabled(false);
-        if(refreshDisplayButton != null) refreshDisplayButton.setEnabled(false);
-
-        // Submit data loading task to ExecutorService (from pre)
-        executorService.submit(() -> { // Use submit
-            String displayContent;
-            try {
-                // This loads data from the configured summary file path (likely admin's own or global)
-                List<SummaryStatistic> stats = summaryStatisticService.getAllSummaryStatistics(); // Call the method
-                if (stats.isEmpty()) {
-                    displayContent = "No summary statistics currently available.\nPlease click the 'Generate/Update Statistics' button first."; // "No summary statistics currently available.\nPlease click the 'Generate/Update Statistics' button first."
+        if (adminStatsArea == null) {
+            return; // Admin stats panel not created (non-admin user)
+        }
+        List<SummaryStatistic> stats = new ArrayList<>(statisticsScheduler.getLatestStatistics());
+        Map<String, WeeklySketch> sketches = statisticsScheduler.getLatestSketches();
+        String displayContent;
+        if (stats.isEmpty()) {
+            if (statisticsScheduler.getLatestRefreshTime() == null) {
+                displayContent = "Loading existing statistics...\n"; // "Loading existing statistics...\n"
+            } else {
+                displayContent = "No summary statistics currently available.\nPlease click the 'Generate/Update Statistics' button first."; // "No summary statistics currently available.\nPlease click the 'Generate/Update Statistics' button first."
+            }
+        } else {
+            StringBuilder sb = new StringBuilder("===== Summary Statistics =====\n\n"); // "===== Summary Statistics =====\n\n"
+            sb.append("Last Refreshed: ").append(statisticsScheduler.getLatestRefreshTime()).append("\n\n");
+            // Sort stats by week identifier (from pre)
+            stats.sort(Comparator.comparing(SummaryStatistic::getWeekIdentifier));
+            // Display in reverse chronological order (latest first) (from pre)
+            for (int i = stats.size() - 1; i >= 0; i--) {
+                SummaryStatistic stat = stats.get(i);
+                sb.append("Week Identifier: ").append(stat.getWeekIdentifier()).append("\n"); // "Week Identifier: "
+                // NOTE: These getters reflect the structure in the pre.txt SummaryStatistic model
+                sb.append("  Total Income (All Users): ").append(String.format("%.2f", stat.getTotalIncomeAllUsers())).append(" CNY\n"); // "  Total Income: " ... " CNY\n"
+                sb.append("  Total Expense (All Users): ").append(String.format("%.2f", stat.getTotalExpenseAllUsers())).append(" CNY\n"); // "  Total Expense: " ... " CNY\n"
+                if (stat.getTopExpenseCategoryAmount() > 0) {
+                    sb.append("  Top Expense Category (All Users): ").append(stat.getTopExpenseCategory()).append(" (").append(String.format("%.2f", stat.getTopExpenseCategoryAmount())).append(" CNY)\n"); // "  Top Expense Category: " ... " CNY)\n"
                 } else {
-                    StringBuilder sb = new StringBuilder("===== Summary Statistics =====\n\n"); // "===== Summary Statistics =====\n\n"
-                    // Sort stats by week identifier (from pre)
-                    stats.sort(Comparator.comparing(SummaryStatistic::getWeekIdentifier));
-                    // Display in reverse chronological order (latest first) (from pre)
-                    for (int i = stats.size() - 1; i >= 0; i--) {
-                        SummaryStatistic stat = stats.get(i);
-                        sb.append("Week Identifier: ").append(stat.getWeekIdentifier()).append("\n"); // "Week Identifier: "
-                        // NOTE: These getters reflect the structure in the pre.txt SummaryStatistic model
-                        sb.append("  Total Income (All Users): ").append(String.format("%.2f", stat.getTotalIncomeAllUsers())).append(" CNY\n"); // "  Total Income: " ... " CNY\n"
-                        sb.append("  Total Expense (All Users): ").append(String.format("%.2f", stat.getTotalExpenseAllUsers())).append(" CNY\n"); // "  Total Expense: " ... " CNY\n"
-                        if (stat.getTopExpenseCategoryAmount() > 0) {
-                            sb.append("  Top Expense Category (All Users): ").append(stat.getTopExpenseCategory()).append(" (").append(String.format("%.2f", stat.getTopExpenseCategoryAmount())).append(" CNY)\n"); // "  Top Expense Category: " ... " CNY)\n"
-                        } else {
-                            sb.append("  Top Expense Category (All Users): No significant expense category\n"); // "  Top Expense Category: No significant expense category\n"
-                        }
-                        // If SummaryStatistic model includes numberOfUsersWithTransactions
-                        sb.append("  Number of Participating Users: ").append(stat.getNumberOfUsersWithTransactions()).append("\n"); // "  Number of Participating Users: "
-                        sb.append("  Generated Time: ").append(stat.getTimestampGenerated()).append("\n"); // "  Generated Time: "
-                        sb.append("--------------------\n");
-                    }
-                    displayContent = sb.toString();
+                    sb.append("  Top Expense Category (All Users): No significant expense category\n"); // "  Top Expense Category: No significant expense category\n"
                 }
-            } catch (IOException ex) {
-                displayContent = "Failed to load summary statistics!\n" + ex.getMessage(); // "Failed to load summary statistics!\n"
-                ex.printStackTrace();
+                // If SummaryStatistic model includes numberOfUsersWithTransactions
+                sb.append("  Number of Participating Users: ").append(stat.getNumberOfUsersWithTransactions()).append("\n"); // "  Number of Participating Users: "
+                WeeklySketch sketch = sketches.get(stat.getWeekIdentifier());
+                if (sketch != null) {
+                    // Approximate distribution figures from the weekly sketches
+                    sb.append("  Distinct Counterparties (approx.): ").append(sketch.getEstimatedCounterparties()).append("\n");
+                    sb.append("  Spend per User P50/P90/P99: ")
+                            .append(String.format("%.2f / %.2f / %.2f", sketch.getSpendPerUserQuantile(0.5), sketch.getSpendPerUserQuantile(0.9), sketch.getSpendPerUserQuantile(0.99)))
+                            .append(" CNY\n");
+                }
+                sb.append("  Generated Time: ").append(stat.getTimestampGenerated()).append("\n"); // "  Generated Time: "
+                sb.append("--------------------\n");
             }
-            String finalDisplayContent = displayContent;
-            SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                adminStatsArea.setText(finalDisplayContent);
-                if(generateStatsButton != null) generateStatsButton.setEnabled(true);
-                if(refreshDisplayButton != null) refreshDisplayButton.setEnabled(true);
-            });
-        });
+            displayContent = sb.toString();
+        }
+        if (statisticsScheduler.getLastError() != null) {
+            displayContent = "Last background update failed: " + statisticsScheduler.getLastError() + "\n\n" + displayContent;
+        }
+        adminStatsArea.setText(displayContent);
     }
 
     // Inside MenuUI class, deleteRow method - (from pre, uses ExecutorService)
     public void deleteRow(int rowIndex) {
         System.out.println("Attempting to delete row: " + rowIndex + " for user " + currentUser.getUsername());
         if (rowIndex >= 0 && rowIndex < this.tableModel.getRowCount()) {
-            String orderNumber = (String) this.tableModel.getValueAt(rowIndex, 8); // OrderNumber is at index 8
+            String orderNumber = (String) this.tableModel.getValueAt(rowIndex, TransactionTableModel.ORDER_NUMBER_COLUMN);
             if (orderNumber == null || orderNumber.trim().isEmpty()) {
                 JOptionPane.showMessageDialog(null, "Cannot delete: Order Number is empty!", "Error", JOptionPane.ERROR_MESSAGE);
                 System.err.println("Attempted to delete row " + rowIndex + " but order number is null or empty.");
@@ -1559,14 +1678,7 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
                         if (finalDeleted) {
                             // Remove the row from the table model directly if deletion was successful
                             // Find the row index again, as it might have changed (from pre logic)
-                            int currentRowIndex = -1;
-                            for(int i=0; i < this.tableModel.getRowCount(); i++) {
-                                Object cellValue = this.tableModel.getValueAt(i, 8); // Order Number is at index 8
-                                if (cellValue != null && finalOrderNumber.equals(((String) cellValue).trim())) {
-                                    currentRowIndex = i;
-                                    break;
-                                }
-                            }
+                            int currentRowIndex = this.tableModel.findRowByOrderNumber(finalOrderNumber);
                             if (currentRowIndex != -1) {
                                 this.tableModel.removeRow(currentRowIndex);
                             } else {
@@ -1597,30 +1709,9 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
         }
     }
 
-    // Inside MenuUI class, createRowFromTransaction method - same as before (from pre)
-    private Vector<String> createRowFromTransaction(Transaction transaction) {
-        Vector<String> row = new Vector<>();
-        row.add(emptyIfNull(transaction.getTransactionTime()));
-        row.add(emptyIfNull(transaction.getTransactionType()));
-        row.add(emptyIfNull(transaction.getCounterparty()));
-        row.add(emptyIfNull(transaction.getCommodity()));
-        row.add(emptyIfNull(transaction.getInOut()));
-        row.add(String.valueOf(transaction.getPaymentAmount())); // Convert double to String
-        row.add(emptyIfNull(transaction.getPaymentMethod()));
-        row.add(emptyIfNull(transaction.getCurrentStatus()));
-        row.add(emptyIfNull(transaction.getOrderNumber()));
-        row.add(emptyIfNull(transaction.getMerchantNumber()));
-        row.add(emptyIfNull(transaction.getRemarks()));
-        row.add("Modify"); // Button text
-        row.add("Delete"); // Button text
-        return row;
-    }
-
-    // Inside MenuUI class, searchData method - (from pre, uses ExecutorService)
+    // Inside MenuUI class, searchData method - runs as a background table load (see TransactionTableLoader)
     public void searchData(String query1, String query2, String query3, String query4, String query6, String query5) {
         System.out.println("Searching with criteria: time='" + query1 + "', type='" + query2 + "', counterparty='" + query3 + "', commodity='" + query4 + "', inOut='" + query6 + "', paymentMethod='" + query5 + "'");
-        this.tableModel.setRowCount(0); // Clear the current table display
-
         Transaction searchCriteria = new Transaction(
                 query1, query2, query3, query4, query6,
                 0, // Amount is not a search criteria from the UI input fields
@@ -1628,32 +1719,60 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
                 "", "", "", "" // Other fields are not searchable from the UI input fields
         );
 
-        // Submit search task to the ExecutorService (from pre)
-        executorService.submit(() -> { // Use submit
-            System.out.println("Search task submitted to ExecutorService.");
-            try {
-                List<Transaction> transactions = transactionService.searchTransaction(searchCriteria); // Call the method
-                System.out.println("Search task finished. Found " + transactions.size() + " results.");
+        // Search in the background like a load; a newer search or refresh cancels this one
+        long generation = searchGeneration.incrementAndGet();
+        startTableLoad(() -> {
+            if (generation != searchGeneration.get()) {
+                return List.of(); // Superseded before it started; its loader is cancelled already
+            }
+            List<Transaction> ledger = transactionService.getAllTransactions();
+            SearchResult previous = lastSearch;
+            List<Transaction> transactions;
+            if (previous != null && previous.ledger == ledger && transactionService.isRefinementOf(searchCriteria, previous.criteria)) {
+                // Refined query (e.g. "mei" -> "meit") on unchanged data: narrow the previous results instead of rescanning
+                transactions = transactionService.searchTransaction(searchCriteria, previous.results);
+            } else {
+                transactions = transactionService.searchTransaction(searchCriteria); // Call the method
+            }
+            if (generation != searchGeneration.get()) {
+                System.out.println("Search superseded by a newer query; results discarded.");
+                return List.of();
+            }
+            lastSearch = new SearchResult(searchCriteria, ledger, transactions);
+            System.out.println("Search task finished. Found " + transactions.size() + " results.");
+            return transactions;
+        }, null, ex -> {
+            System.err.println("Search task failed: " + ex.getMessage());
+            JOptionPane.showMessageDialog(this, "Search failed!\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE); // "Error"
+        }, true); // Diffed into the table, so narrowing only removes rows
+    }
 
-                SwingUtilities.invokeLater(() -> { // Update UI on EDT
-                    System.out.println("Updating UI on EDT after Search task.");
-                    for (Transaction transaction : transactions) {
-                        Vector<String> row = createRowFromTransaction(transaction);
-                        this.tableModel.addRow(row); // Add matching rows to the table model
-                    }
-                    System.out.println("UI update complete after Search task. Table refreshed.");
-                });
+    // Restarts the debounce timer after a search field edit (ignored while fields are set programmatically)
+    private void scheduleSearch() {
+        if (!searchFieldsUpdating && searchDebounceTimer != null) {
+            searchDebounceTimer.restart();
+        }
+    }
 
-            } catch (Exception ex) {
-                System.err.println("Search task failed: " + ex.getMessage());
-                ex.printStackTrace();
-                String errorMessage = "Search failed!\n" + ex.getMessage(); // "Search failed!\n"
-                SwingUtilities.invokeLater(() -> { // Show error message on EDT
-                    JOptionPane.showMessageDialog(this, errorMessage, "Error", JOptionPane.ERROR_MESSAGE); // "Error"
-                    System.out.println("UI update complete after Search task. Error message shown.");
-                });
-            }
-        });
+    // Drops a debounced query that has not run yet and marks running ones stale
+    private void cancelPendingSearch() {
+        if (searchDebounceTimer != null) {
+            searchDebounceTimer.stop();
+        }
+        searchGeneration.incrementAndGet();
+    }
+
+    // A completed search: its criteria, the ledger list it searched and its (sorted) results
+    private static final class SearchResult {
+        final Transaction criteria;
+        final List<Transaction> ledger; // Identity tells whether the ledger changed since
+        final List<Transaction> results;
+
+        SearchResult(Transaction criteria, List<Transaction> ledger, List<Transaction> results) {
+            this.criteria = criteria;
+            this.ledger = ledger;
+            this.results = results;
+        }
     }
 
 
@@ -1666,16 +1785,24 @@ public class MenuUI extends JPanel { // Extend JPanel for easier use in Main (op
 
     // Helper method to clear search fields (from pre)
     private void clearSearchFields() {
-        searchTransactionTimeField.setText("");
-        searchTransactionTypeField.setText("");
-        searchCounterpartyField.setText("");
-        searchCommodityField.setText("");
-        searchInOutComboBox.setSelectedItem("");
-        searchPaymentMethodField.setText("");
+        searchFieldsUpdating = true; // Not a query: the caller refreshes the table itself
+        try {
+            searchTransactionTimeField.setText("");
+            searchTransactionTypeField.setText("");
+            searchCounterpartyField.setText("");
+            searchCommodityField.setText("");
+            searchInOutComboBox.setSelectedItem("");
+            searchPaymentMethodField.setText("");
+        } finally {
+            searchFieldsUpdating = false;
+        }
         System.out.println("Cleared search fields.");
     }
     // Helper method to trigger search (from pre)
     private void triggerCurrentSearch() {
+        if (searchDebounceTimer != null) {
+            searchDebounceTimer.stop(); // Runs now; a pending debounced run would repeat it
+        }
         searchData(
                 searchTransactionTimeField.getText().trim(),
                 searchTransactionTypeField.getText().trim(),
@@ -0,0 +1,94 @@
+package Controller;
+
+import javax.swing.*;
+import java.util.function.Consumer;
+
+/**
+ * Renders a streaming AI answer into a text area.
+ * Deltas may arrive from any thread and at any rate; they are buffered and written to the text area
+ * by a Swing Timer on the EDT, so the UI is repainted at most once per frame interval however many
+ * tokens arrive in between.
+ */
+public class StreamingTextAppender implements Consumer<String> {
+
+    public static final int DEFAULT_FRAME_INTERVAL_MILLIS = 50; // At most 20 text area updates per second
+
+    private final JTextArea target;
+    private final String header;
+    private final Timer flushTimer;
+
+    // Guarded by this
+    private final StringBuilder pending = new StringBuilder(); // Received but not yet shown
+    private final StringBuilder streamed = new StringBuilder(); // Everything received so far
+
+    // EDT only
+    private boolean headerShown;
+
+    /**
+     * @param target The text area to render into. Its current text (e.g. a "please wait" message)
+     *               stays until the first delta arrives.
+     * @param header Text that replaces the target's content when the answer starts (e.g. a section title).
+     */
+    public StreamingTextAppender(JTextArea target, String header) {
+        this(target, header, DEFAULT_FRAME_INTERVAL_MILLIS);
+    }
+
+    public StreamingTextAppender(JTextArea target, String header, int frameIntervalMillis) {
+        this.target = target;
+        this.header = header;
+        this.flushTimer = new Timer(frameIntervalMillis, e -> flush());
+        this.flushTimer.setCoalesce(true);
+        this.flushTimer.start();
+    }
+
+    /**
+     * Buffers an answer fragment. Safe to call from any thread.
+     */
+    @Override
+    public synchronized void accept(String delta) {
+        pending.append(delta);
+        streamed.append(delta);
+    }
+
+    /**
+     * Writes buffered text to the text area. Must run on the EDT.
+     */
+    private void flush() {
+        String text;
+        synchronized (this) {
+            if (pending.length() == 0) {
+                return;
+            }
+            text = pending.toString();
+            pending.setLength(0);
+        }
+        if (!headerShown) {
+            target.setText(header);
+            headerShown = true;
+        }
+        target.append(text);
+        target.setCaretPosition(target.getDocument().getLength()); // Keep the newest text in view
+    }
+
+    /**
+     * Stops rendering and shows whatever is left. Must run on the EDT.
+     *
+     * @param result The value returned by the AI method. If nothing was streamed (an early return or an error
+     *               before the first token) it is shown in full; if it differs from the streamed text
+     *               (the stream broke off), it is appended below the partial answer.
+     */
+    public void finish(String result) {
+        flushTimer.stop();
+        flush();
+        String streamedText;
+        synchronized (this) {
+            streamedText = streamed.toString();
+        }
+        if (!headerShown) {
+            target.setText(header + (result == null ? "" : result));
+            headerShown = true;
+        } else if (result != null && !result.equals(streamedText)) {
+            target.append("\n\n" + result);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package Controller;
+
+import model.Transaction;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Loads transactions into a TransactionTableModel off the EDT.
+ * <p>
+ * doInBackground fetches the transaction list (which may parse the whole CSV) and selects the matching
+ * rows in chunks. The first chunk is one screenful, so the table shows something right away; later
+ * chunks are larger. process() appends each chunk to the model on the EDT. Progress (0-100) is reported
+ * through the SwingWorker "progress" property.
+ * <p>
+ * In diff mode (used for search results) the rows are not streamed: the finished result is handed to
+ * TransactionTableModel.updateTo, which only changes the rows that differ from the current view.
+ * <p>
+ * A load is superseded by cancelling it (MenuUI does that when a newer refresh or search starts). A
+ * cancelled loader stops scanning and never touches the model again, even for chunks already published.
+ */
+public class TransactionTableLoader extends SwingWorker<Integer, int[]> {
+
+    static final int FIRST_CHUNK_ROWS = 50; // Roughly a screenful
+    static final int CHUNK_ROWS = 5_000;
+
+    private final TransactionTableModel model;
+    private final Callable<List<Transaction>> source;
+    private final Predicate<Transaction> filter; // null keeps every transaction
+    private final Consumer<Exception> onError; // Called on the EDT if loading fails
+    private final boolean diffIntoModel;
+
+    private volatile List<Transaction> snapshot; // Set before the first chunk is published
+    private volatile int[] matchedRows; // Diff mode: the result, set before doInBackground returns
+    private boolean started; // EDT only: the model shows this loader's snapshot
+
+    /**
+     * @param model The model to fill.
+     * @param source Fetches the transactions; runs off the EDT.
+     * @param filter Selects the rows to show; null shows all.
+     * @param onError Reports a failed load; runs on the EDT.
+     */
+    public TransactionTableLoader(TransactionTableModel model, Callable<List<Transaction>> source,
+                                  Predicate<Transaction> filter, Consumer<Exception> onError) {
+        this(model, source, filter, onError, false);
+    }
+
+    /**
+     * @param diffIntoModel true to apply the finished result with TransactionTableModel.updateTo instead
+     *                      of streaming chunks into an emptied view.
+     */
+    public TransactionTableLoader(TransactionTableModel model, Callable<List<Transaction>> source,
+                                  Predicate<Transaction> filter, Consumer<Exception> onError, boolean diffIntoModel) {
+        this.model = model;
+        this.source = source;
+        this.filter = filter;
+        this.onError = onError;
+        this.diffIntoModel = diffIntoModel;
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        List<Transaction> transactions = source.call();
+        snapshot = transactions;
+        int total = transactions.size();
+        if (diffIntoModel) {
+            return collectMatchingRows(transactions);
+        }
+        int matched = 0;
+        int[] chunk = new int[FIRST_CHUNK_ROWS];
+        int filled = 0;
+        for (int i = 0; i < total; i++) {
+            if ((i & 0xFFF) == 0) {
+                if (isCancelled()) {
+                    return matched; // Superseded by a newer load
+                }
+                setProgress((int) (i * 100L / total));
+            }
+            if (filter == null || filter.test(transactions.get(i))) {
+                chunk[filled++] = i;
+                matched++;
+                if (filled == chunk.length) {
+                    publish(chunk);
+                    chunk = new int[CHUNK_ROWS];
+                    filled = 0;
+                }
+            }
+        }
+        publish(Arrays.copyOf(chunk, filled)); // Also publishes an empty result, which clears the table
+        setProgress(100);
+        return matched;
+    }
+
+    // Diff mode: one index array with every match (null when everything matches)
+    private int collectMatchingRows(List<Transaction> transactions) {
+        int total = transactions.size();
+        if (filter == null) {
+            setProgress(100);
+            return total; // matchedRows stays null: the whole snapshot
+        }
+        int[] rows = new int[total];
+        int matched = 0;
+        for (int i = 0; i < total; i++) {
+            if ((i & 0xFFF) == 0) {
+                if (isCancelled()) {
+                    return matched;
+                }
+                setProgress((int) (i * 100L / total));
+            }
+            if (filter.test(transactions.get(i))) {
+                rows[matched++] = i;
+            }
+        }
+        matchedRows = Arrays.copyOf(rows, matched);
+        setProgress(100);
+        return matched;
+    }
+
+    @Override
+    protected void process(List<int[]> chunks) {
+        if (isCancelled()) {
+            return; // A newer load owns the model now
+        }
+        if (!started) {
+            model.startLoading(snapshot); // Replaces the previous rows only once new ones are ready
+            started = true;
+        }
+        for (int[] chunk : chunks) {
+            model.appendRows(chunk, chunk.length);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            int displayed = get();
+            if (diffIntoModel) {
+                model.updateTo(snapshot, matchedRows);
+            }
+            System.out.println("Displayed " + displayed + " transactions in the table.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            cause.printStackTrace();
+            onError.accept(cause);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package Controller;
+
+import model.Transaction;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table model that shows a transaction list directly instead of copying it into row vectors.
+ * <p>
+ * The model keeps a reference to a transaction snapshot (the cached list of the user's ledger, or a search
+ * result) plus an optional array of indices into it, so a filtered view costs one int per visible row.
+ * Cells are formatted in getValueAt, i.e. only for the rows JTable actually paints. Each refresh replaces
+ * the whole view and fires a single table event instead of one per row; a progressive load (see
+ * TransactionTableLoader) starts an empty view and appends rows chunk by chunk, and a search result is
+ * diffed into the current view (updateTo), so narrowing a query only deletes the rows that dropped out.
+ * <p>
+ * The snapshot is never modified; removing a row only drops it from the index array. EDT only, like every
+ * Swing model.
+ */
+public class TransactionTableModel extends AbstractTableModel {
+
+    public static final String[] COLUMN_NAMES = {"Transaction Time", "Transaction Type", "Counterparty", "Commodity", "In/Out",
+            "Amount(CNY)", "Payment Method", "Current Status", "Order Number", "Merchant Number", "Remarks", "Modify", "Delete"};
+
+    public static final int ORDER_NUMBER_COLUMN = 8;
+    public static final int MODIFY_COLUMN = 11;
+    public static final int DELETE_COLUMN = 12;
+
+    private List<Transaction> snapshot = Collections.emptyList();
+    private int[] rows; // Indices into snapshot, in display order; null shows the whole snapshot
+    private int rowCount; // Rows in use when rows != null (the array grows while loading)
+
+    /**
+     * Shows every transaction of a snapshot, in its order.
+     *
+     * @param snapshot The transactions; kept by reference and never modified.
+     */
+    public void setTransactions(List<Transaction> snapshot) {
+        setTransactions(snapshot, null);
+    }
+
+    /**
+     * Shows the given transactions of a snapshot.
+     *
+     * @param snapshot The transactions; kept by reference and never modified.
+     * @param rows Indices into the snapshot, in display order; null shows the whole snapshot.
+     */
+    public void setTransactions(List<Transaction> snapshot, int[] rows) {
+        this.snapshot = snapshot == null ? Collections.emptyList() : snapshot;
+        this.rows = rows;
+        this.rowCount = rows == null ? 0 : rows.length;
+        // One event for the whole refresh. Not a structure change: that would rebuild the columns and drop
+        // the button renderers and editors of the Modify/Delete columns.
+        fireTableDataChanged();
+    }
+
+    /**
+     * Starts showing a snapshot with no rows yet; appendRows adds them.
+     */
+    public void startLoading(List<Transaction> snapshot) {
+        setTransactions(snapshot, new int[0]);
+    }
+
+    /**
+     * Appends rows of the current snapshot to the end of the view.
+     *
+     * @param indices Indices into the snapshot; only the first count are used.
+     */
+    public void appendRows(int[] indices, int count) {
+        if (count == 0) {
+            return;
+        }
+        int first = getRowCount();
+        ensureIndexed(first + count);
+        System.arraycopy(indices, 0, rows, first, count);
+        rowCount = first + count;
+        fireTableRowsInserted(first, rowCount - 1);
+    }
+
+    /**
+     * Shows the given transactions, changing only what differs from the current view. Rows are compared by
+     * transaction identity (every search over the same cached ledger returns the same objects):
+     * <ul>
+     *   <li>the new rows are a subsequence of the current ones (a narrowed query): the rows that dropped out
+     *       are deleted, one event per contiguous run;</li>
+     *   <li>the current rows are a subsequence of the new ones (a broadened query): the new rows are
+     *       inserted, one event per contiguous run;</li>
+     *   <li>anything else replaces the view with one event, like setTransactions.</li>
+     * </ul>
+     * Selection and scroll position survive the first two cases.
+     *
+     * @param snapshot The transactions; kept by reference and never modified.
+     * @param rows Indices into the snapshot, in display order; null shows the whole snapshot.
+     */
+    public void updateTo(List<Transaction> snapshot, int[] rows) {
+        List<Transaction> next = snapshot == null ? Collections.emptyList() : snapshot;
+        int nextCount = rows == null ? next.size() : rows.length;
+        int currentCount = getRowCount();
+        if (nextCount <= currentCount && isSubsequence(next, rows, nextCount, this.snapshot, this.rows, currentCount)) {
+            // Delete the rows that are not in the new view, bottom-up so earlier row numbers stay valid
+            ensureIndexed(currentCount);
+            int matched = nextCount - 1;
+            int runEnd = -1; // Last row of the current run of deleted rows, or -1
+            for (int row = currentCount - 1; row >= -1; row--) {
+                boolean keep = row >= 0 && matched >= 0 && getTransactionAt(row) == next.get(rows == null ? matched : rows[matched]);
+                if (keep || row < 0) {
+                    if (runEnd >= 0) {
+                        System.arraycopy(this.rows, runEnd + 1, this.rows, row + 1, rowCount - runEnd - 1);
+                        rowCount -= runEnd - row;
+                        fireTableRowsDeleted(row + 1, runEnd);
+                        runEnd = -1;
+                    }
+                    matched--;
+                } else if (runEnd < 0) {
+                    runEnd = row;
+                }
+            }
+            // Same rows in the same order: switching to the new snapshot is invisible
+            this.snapshot = next;
+            this.rows = rows;
+            this.rowCount = nextCount;
+        } else if (currentCount < nextCount && isSubsequence(this.snapshot, this.rows, currentCount, next, rows, nextCount)) {
+            // Re-express the current rows as indices into the new snapshot, then insert the missing ones top-down
+            int[] newIndices = new int[nextCount];
+            int[] kept = new int[nextCount];
+            int keptCount = 0;
+            for (int i = 0, current = 0; i < nextCount; i++) {
+                newIndices[i] = rows == null ? i : rows[i];
+                if (current < currentCount && next.get(newIndices[i]) == getTransactionAt(current)) {
+                    kept[keptCount++] = newIndices[i];
+                    current++;
+                }
+            }
+            this.snapshot = next;
+            this.rows = kept;
+            this.rowCount = keptCount;
+            for (int i = 0; i < nextCount; ) {
+                if (i < rowCount && this.rows[i] == newIndices[i]) {
+                    i++; // A kept row
+                    continue;
+                }
+                // New rows up to the next kept one (or the end)
+                int runStart = i;
+                int nextKept = i < rowCount ? this.rows[i] : -1;
+                while (i < nextCount && newIndices[i] != nextKept) {
+                    i++;
+                }
+                int runLength = i - runStart;
+                ensureIndexed(rowCount + runLength);
+                System.arraycopy(this.rows, runStart, this.rows, i, rowCount - runStart);
+                System.arraycopy(newIndices, runStart, this.rows, runStart, runLength);
+                rowCount += runLength;
+                fireTableRowsInserted(runStart, i - 1);
+            }
+        } else {
+            setTransactions(next, rows);
+        }
+    }
+
+    // Whether the first list's rows appear, in order, among the second list's rows (by identity)
+    private static boolean isSubsequence(List<Transaction> small, int[] smallRows, int smallCount,
+                                         List<Transaction> large, int[] largeRows, int largeCount) {
+        int matched = 0;
+        for (int i = 0; i < largeCount && matched < smallCount; i++) {
+            if (large.get(largeRows == null ? i : largeRows[i]) == small.get(smallRows == null ? matched : smallRows[matched])) {
+                matched++;
+            }
+        }
+        return matched == smallCount;
+    }
+
+    /**
+     * Removes one row from the view (e.g. after its transaction was deleted). The snapshot is unchanged.
+     */
+    public void removeRow(int row) {
+        ensureIndexed(getRowCount());
+        System.arraycopy(rows, row + 1, rows, row, rowCount - row - 1);
+        rowCount--;
+        fireTableRowsDeleted(row, row);
+    }
+
+    // Switches to an index array (if the whole snapshot was shown) with room for at least capacity rows
+    private void ensureIndexed(int capacity) {
+        if (rows == null) {
+            int size = snapshot.size();
+            rows = new int[Math.max(capacity, size)];
+            for (int i = 0; i < size; i++) {
+                rows[i] = i;
+            }
+            rowCount = size;
+        } else if (rows.length < capacity) {
+            rows = Arrays.copyOf(rows, Math.max(capacity, rows.length * 2));
+        }
+    }
+
+    /**
+     * @return The transaction shown in the given row.
+     */
+    public Transaction getTransactionAt(int row) {
+        return snapshot.get(rows == null ? row : rows[row]);
+    }
+
+    /**
+     * @return The row showing the transaction with the given order number, or -1.
+     */
+    public int findRowByOrderNumber(String orderNumber) {
+        for (int row = 0; row < getRowCount(); row++) {
+            String value = getTransactionAt(row).getOrderNumber();
+            if (value != null && value.trim().equals(orderNumber)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows == null ? snapshot.size() : rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class; // Every cell is shown as text, as before
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == MODIFY_COLUMN || column == DELETE_COLUMN; // The buttons; data is changed through the edit dialog
+    }
+
+    // Formats only the requested cell
+    @Override
+    public Object getValueAt(int row, int column) {
+        Transaction transaction = getTransactionAt(row);
+        switch (column) {
+            case 0: return emptyIfNull(transaction.getTransactionTime());
+            case 1: return emptyIfNull(transaction.getTransactionType());
+            case 2: return emptyIfNull(transaction.getCounterparty());
+            case 3: return emptyIfNull(transaction.getCommodity());
+            case 4: return emptyIfNull(transaction.getInOut());
+            case 5: return String.valueOf(transaction.getPaymentAmount());
+            case 6: return emptyIfNull(transaction.getPaymentMethod());
+            case 7: return emptyIfNull(transaction.getCurrentStatus());
+            case 8: return emptyIfNull(transaction.getOrderNumber());
+            case 9: return emptyIfNull(transaction.getMerchantNumber());
+            case 10: return emptyIfNull(transaction.getRemarks());
+            case MODIFY_COLUMN: return "Modify"; // Button text
+            case DELETE_COLUMN: return "Delete"; // Button text
+            default: throw new IndexOutOfBoundsException("Column " + column);
+        }
+    }
+
+    private static String emptyIfNull(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -2,8 +2,15 @@ package Controller;
 
 import Service.TransactionService;
 import model.MonthlySummary;
+import model.PeriodTotals;
+import model.RollupCube;
 
 import java.awt.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.SortedMap;
 import java.util.Map;
 import java.util.List; // Import List
 import java.util.ArrayList; // Import ArrayList
@@ -39,6 +46,9 @@ public class VisualizationPanel extends JPanel {
     private static final String SELECT_CHART_TYPE_PROMPT = "Select Chart Type";
     private static final String MONTHLY_EXPENSE_PIE_CHART = "Monthly Expense Category Pie Chart";
     private static final String MONTHLY_TREND_BAR_CHART = "Monthly Income/Expense Trend Bar Chart";
+    private static final String WEEKLY_TREND_BAR_CHART = "Weekly Income/Expense Trend Bar Chart (Last 12 Weeks)";
+    private static final String YEARLY_TREND_BAR_CHART = "Yearly Income/Expense Trend Bar Chart";
+    private static final int WEEKLY_TREND_WEEKS = 12;
     private static final String SELECT_MONTH_PROMPT = "Select Month";
 
 
@@ -54,7 +64,7 @@ public class VisualizationPanel extends JPanel {
         // --- Control Panel (Top) ---
         JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
 
-        chartTypeSelector = new JComboBox<>(new String[]{SELECT_CHART_TYPE_PROMPT, MONTHLY_EXPENSE_PIE_CHART, MONTHLY_TREND_BAR_CHART});
+        chartTypeSelector = new JComboBox<>(new String[]{SELECT_CHART_TYPE_PROMPT, MONTHLY_EXPENSE_PIE_CHART, MONTHLY_TREND_BAR_CHART, WEEKLY_TREND_BAR_CHART, YEARLY_TREND_BAR_CHART});
         controlPanel.add(new JLabel("Chart Type:"));
         controlPanel.add(chartTypeSelector);
 
@@ -134,12 +144,6 @@ public class VisualizationPanel extends JPanel {
         chartDisplayPanel.repaint();
 
         try {
-            Map<String, MonthlySummary> summaries = transactionService.getMonthlyTransactionSummary();
-            if (summaries == null || summaries.isEmpty()) {
-                displayPlaceholderChart("No monthly transaction data found to generate charts.");
-                return;
-            }
-
             if (MONTHLY_EXPENSE_PIE_CHART.equals(selectedChartType)) {
                 if (selectedMonth == null || selectedMonth.equals(SELECT_MONTH_PROMPT) || selectedMonth.trim().isEmpty()) {
                     JOptionPane.showMessageDialog(this, "Please select a month to view.", "Information", JOptionPane.INFORMATION_MESSAGE);
@@ -147,8 +151,12 @@ public class VisualizationPanel extends JPanel {
                     return;
                 }
                 // --- Generate Pie Chart ---
-                MonthlySummary selectedMonthSummary = summaries.get(selectedMonth);
-                if (selectedMonthSummary == null || selectedMonthSummary.getExpenseByCategory().isEmpty()) {
+                // Only the selected month's days are rolled up from the cube
+                YearMonth month = YearMonth.parse(selectedMonth);
+                PeriodTotals selectedMonthTotals = transactionService
+                        .getPeriodTotals(RollupCube.Granularity.MONTH, month.atDay(1), month.atEndOfMonth())
+                        .get(selectedMonth);
+                if (selectedMonthTotals == null || selectedMonthTotals.getExpenseCentsByCategory().isEmpty()) {
                     displayPlaceholderChart(selectedMonth + " has no expense category data.");
                     return;
                 }
@@ -160,9 +168,9 @@ public class VisualizationPanel extends JPanel {
                         .title(selectedMonth + " Expense Categories")
                         .build();
 
-                selectedMonthSummary.getExpenseByCategory().entrySet().stream()
+                selectedMonthTotals.getExpenseCentsByCategory().entrySet().stream()
                         .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                        .forEach(entry -> chart.addSeries(entry.getKey(), entry.getValue()));
+                        .forEach(entry -> chart.addSeries(entry.getKey(), entry.getValue() / 100.0));
 
                 // Customize chart style
                 chart.getStyler().setLegendPosition(LegendPosition.OutsideE);
@@ -175,43 +183,19 @@ public class VisualizationPanel extends JPanel {
 
 
             } else if (MONTHLY_TREND_BAR_CHART.equals(selectedChartType)) {
-                // --- Generate Bar Chart (Category Chart) ---
-                System.out.println("Generating Monthly Income/Expense Trend Bar Chart...");
+                displayTrendChart("Monthly Income/Expense Trend", "Month",
+                        transactionService.getPeriodTotals(RollupCube.Granularity.MONTH, null, null));
 
-                List<String> months = new ArrayList<>();
-                List<Double> totalIncomes = new ArrayList<>();
-                List<Double> totalExpenses = new ArrayList<>();
-
-                List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-                Collections.sort(sortedMonths);
-
-                for (String month : sortedMonths) {
-                    MonthlySummary ms = summaries.get(month);
-                    months.add(month);
-                    totalIncomes.add(ms.getTotalIncome());
-                    totalExpenses.add(ms.getTotalExpense());
-                }
-
-                CategoryChart chart = new CategoryChartBuilder()
-                        .width(chartDisplayPanel.getWidth() > 0 ? chartDisplayPanel.getWidth() : 800) // Ensure width > 0
-                        .height(chartDisplayPanel.getHeight() > 0 ? chartDisplayPanel.getHeight() : 500) // Ensure height > 0
-                        .title("Monthly Income/Expense Trend")
-                        .xAxisTitle("Month")
-                        .yAxisTitle("Amount (CNY)")
-                        .build();
-
-                chart.addSeries("Total Income", months, totalIncomes);
-                chart.addSeries("Total Expense", months, totalExpenses);
-
-                // Customize chart style
-                chart.getStyler().setLegendPosition(LegendPosition.OutsideS);
-                chart.getStyler().setStacked(false);
-
-                // Add the chart to the display panel
-                XChartPanel<CategoryChart> chartPanel = new XChartPanel<>(chart);
-                chartDisplayPanel.add(chartPanel, BorderLayout.CENTER);
-                System.out.println("Bar Chart generated and displayed.");
+            } else if (WEEKLY_TREND_BAR_CHART.equals(selectedChartType)) {
+                // Range query over the last weeks only: O(days in range), regardless of ledger size
+                LocalDate today = LocalDate.now();
+                LocalDate firstDay = today.minusWeeks(WEEKLY_TREND_WEEKS - 1).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                displayTrendChart("Weekly Income/Expense Trend", "Week",
+                        transactionService.getPeriodTotals(RollupCube.Granularity.WEEK, firstDay, today));
 
+            } else if (YEARLY_TREND_BAR_CHART.equals(selectedChartType)) {
+                displayTrendChart("Yearly Income/Expense Trend", "Year",
+                        transactionService.getPeriodTotals(RollupCube.Granularity.YEAR, null, null));
 
             } else {
                 displayPlaceholderChart("Please select a chart type and necessary parameters to generate the chart.");
@@ -228,6 +212,49 @@ public class VisualizationPanel extends JPanel {
         }
     }
 
+    /**
+     * Displays an income/expense bar chart of the given periods.
+     */
+    private void displayTrendChart(String title, String periodLabel, SortedMap<String, PeriodTotals> totals) {
+        if (totals == null || totals.isEmpty()) {
+            displayPlaceholderChart("No transaction data found to generate charts.");
+            return;
+        }
+        // --- Generate Bar Chart (Category Chart) ---
+        System.out.println("Generating " + title + " Bar Chart...");
+
+        List<String> periods = new ArrayList<>();
+        List<Double> totalIncomes = new ArrayList<>();
+        List<Double> totalExpenses = new ArrayList<>();
+
+        // Periods are already sorted chronologically
+        for (PeriodTotals periodTotals : totals.values()) {
+            periods.add(periodTotals.getPeriodIdentifier());
+            totalIncomes.add(periodTotals.getTotalIncome());
+            totalExpenses.add(periodTotals.getTotalExpense());
+        }
+
+        CategoryChart chart = new CategoryChartBuilder()
+                .width(chartDisplayPanel.getWidth() > 0 ? chartDisplayPanel.getWidth() : 800) // Ensure width > 0
+                .height(chartDisplayPanel.getHeight() > 0 ? chartDisplayPanel.getHeight() : 500) // Ensure height > 0
+                .title(title)
+                .xAxisTitle(periodLabel)
+                .yAxisTitle("Amount (CNY)")
+                .build();
+
+        chart.addSeries("Total Income", periods, totalIncomes);
+        chart.addSeries("Total Expense", periods, totalExpenses);
+
+        // Customize chart style
+        chart.getStyler().setLegendPosition(LegendPosition.OutsideS);
+        chart.getStyler().setStacked(false);
+
+        // Add the chart to the display panel
+        XChartPanel<CategoryChart> chartPanel = new XChartPanel<>(chart);
+        chartDisplayPanel.add(chartPanel, BorderLayout.CENTER);
+        System.out.println("Bar Chart generated and displayed.");
+    }
+
     /**
      * Helper method to display a placeholder message.
      */
@@ -0,0 +1,29 @@
+package DAO;
+
+import Service.Impl.HeavyHitterIndex;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Interface for persisting the top-K expense indexes built by the summary statistics run:
+ * one index per user, plus the index of all users merged together.
+ */
+public interface HeavyHitterIndexDao {
+
+    /**
+     * Loads heavy hitter indexes.
+     * @param filePath The path to the index file.
+     * @return A map from key (e.g. username) to index. Empty if the file does not exist.
+     * @throws IOException If an I/O error occurs or the file is corrupt.
+     */
+    Map<String, HeavyHitterIndex> loadIndexes(String filePath) throws IOException;
+
+    /**
+     * Writes heavy hitter indexes, overwriting existing data.
+     * @param filePath The path to the index file.
+     * @param indexes A map from key (e.g. username) to index.
+     * @throws IOException If an I/O error occurs during saving.
+     */
+    void writeIndexes(String filePath, Map<String, HeavyHitterIndex> indexes) throws IOException;
+}
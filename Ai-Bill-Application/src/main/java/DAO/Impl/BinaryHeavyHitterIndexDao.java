@@ -0,0 +1,78 @@
+package DAO.Impl;
+
+import DAO.HeavyHitterIndexDao;
+import Service.Impl.HeavyHitterIndex;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Stores heavy hitter indexes in a compact binary file:
+ * magic, format version, index count, then per index its key and the index itself (see HeavyHitterIndex.writeTo).
+ */
+public class BinaryHeavyHitterIndexDao implements HeavyHitterIndexDao {
+
+    private static final int MAGIC = 0x48485831; // "HHX1"
+    private static final int FORMAT_VERSION = 1;
+
+    @Override
+    public Map<String, HeavyHitterIndex> loadIndexes(String filePath) throws IOException {
+        Map<String, HeavyHitterIndex> indexes = new HashMap<>();
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return indexes;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a heavy hitter index file: " + filePath);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported heavy hitter index file version " + version + ": " + filePath);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                indexes.put(key, HeavyHitterIndex.readFrom(in));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated heavy hitter index file: " + filePath, e);
+        }
+        return indexes;
+    }
+
+    @Override
+    public void writeIndexes(String filePath, Map<String, HeavyHitterIndex> indexes) throws IOException {
+        Path path = Paths.get(filePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        File targetFile = path.toFile();
+        File tempFile = File.createTempFile("heavy_hitters_temp", ".bin", targetFile.getAbsoluteFile().getParentFile());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(indexes.size());
+            for (Map.Entry<String, HeavyHitterIndex> entry : new TreeMap<>(indexes).entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        } catch (IOException e) {
+            tempFile.delete(); // Clean up temp file on failure
+            System.err.println("Error writing heavy hitter indexes to temporary file: " + tempFile.toPath());
+            throw e;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to atomically replace heavy hitter index file: " + targetFile.toPath());
+            tempFile.delete();
+            throw e;
+        }
+    }
+}
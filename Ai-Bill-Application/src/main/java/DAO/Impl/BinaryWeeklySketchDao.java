@@ -0,0 +1,87 @@
+package DAO.Impl;
+
+import DAO.WeeklySketchDao;
+import Utils.HyperLogLog;
+import Utils.TDigest;
+import model.WeeklySketch;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Stores weekly sketches in a compact binary file:
+ * magic, format version, sketch count, then per week the identifier, two HyperLogLogs and a t-digest.
+ */
+public class BinaryWeeklySketchDao implements WeeklySketchDao {
+
+    private static final int MAGIC = 0x57534B31; // "WSK1"
+    private static final int FORMAT_VERSION = 1;
+
+    @Override
+    public Map<String, WeeklySketch> loadSketches(String filePath) throws IOException {
+        Map<String, WeeklySketch> sketches = new HashMap<>();
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return sketches;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a weekly sketch file: " + filePath);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported weekly sketch file version " + version + ": " + filePath);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String weekIdentifier = in.readUTF();
+                HyperLogLog activeUsers = HyperLogLog.readFrom(in);
+                HyperLogLog counterparties = HyperLogLog.readFrom(in);
+                TDigest spendPerUser = TDigest.readFrom(in);
+                sketches.put(weekIdentifier, new WeeklySketch(weekIdentifier, activeUsers, counterparties, spendPerUser));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated weekly sketch file: " + filePath, e);
+        }
+        return sketches;
+    }
+
+    @Override
+    public void writeSketches(String filePath, Collection<WeeklySketch> sketches) throws IOException {
+        Path path = Paths.get(filePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        File targetFile = path.toFile();
+        File tempFile = File.createTempFile("sketch_temp", ".bin", targetFile.getAbsoluteFile().getParentFile());
+
+        List<WeeklySketch> sorted = new ArrayList<>(sketches);
+        sorted.sort(Comparator.comparing(WeeklySketch::getWeekIdentifier));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sorted.size());
+            for (WeeklySketch sketch : sorted) {
+                out.writeUTF(sketch.getWeekIdentifier());
+                sketch.getActiveUsers().writeTo(out);
+                sketch.getCounterparties().writeTo(out);
+                sketch.getSpendPerUser().writeTo(out);
+            }
+        } catch (IOException e) {
+            tempFile.delete(); // Clean up temp file on failure
+            System.err.println("Error writing weekly sketches to temporary file: " + tempFile.toPath());
+            throw e;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to atomically replace weekly sketch file: " + targetFile.toPath());
+            tempFile.delete();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package DAO.Impl;
+
+import DAO.RollupCubeDao;
+import model.LedgerWatermark;
+import model.RollupCube;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.input.BOMInputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores a user's rollup cube in a CSV file.
+ * The first data row (record_type WATERMARK) records the ledger state the cells belong to;
+ * the remaining CELL rows hold one (day, direction, category) cell each, with its count and total in cents.
+ */
+public class CsvRollupCubeDao implements RollupCubeDao {
+
+    private static final String[] HEADERS = {
+            "record_type", "day", "direction", "category", "count", "amount_cents",
+            "ledger_path", "ledger_size", "ledger_last_modified", "ledger_version"
+    };
+
+    private static final String TYPE_WATERMARK = "WATERMARK";
+    private static final String TYPE_CELL = "CELL";
+
+    @Override
+    public RollupCube loadCube(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return null;
+        }
+
+        try (Reader reader = new InputStreamReader(
+                new BOMInputStream(Files.newInputStream(path)),
+                StandardCharsets.UTF_8)) {
+
+            CSVFormat format = CSVFormat.DEFAULT
+                    .withFirstRecordAsHeader()
+                    .withIgnoreHeaderCase(true)
+                    .withTrim(true);
+
+            try (CSVParser csvParser = new CSVParser(reader, format)) {
+                Map<String, Integer> headerMap = csvParser.getHeaderMap();
+                if (headerMap == null || !headerMap.keySet().containsAll(List.of(HEADERS))) {
+                    // Older summary files (weekly statistics or monthly rollups) have a different layout; they will be rebuilt
+                    System.out.println("Summary file does not contain a rollup cube yet: " + filePath);
+                    return null;
+                }
+
+                RollupCube cube = new RollupCube();
+                for (CSVRecord record : csvParser) {
+                    String recordType = record.get("record_type");
+                    try {
+                        if (TYPE_WATERMARK.equals(recordType)) {
+                            cube.setLedgerWatermark(new LedgerWatermark(
+                                    null,
+                                    record.get("ledger_path"),
+                                    Long.parseLong(record.get("ledger_size")),
+                                    Long.parseLong(record.get("ledger_last_modified")),
+                                    record.get("ledger_version")
+                            ));
+                        } else if (TYPE_CELL.equals(recordType)) {
+                            cube.add(LocalDate.parse(record.get("day")),
+                                    RollupCube.Direction.valueOf(record.get("direction")),
+                                    record.get("category"),
+                                    Long.parseLong(record.get("amount_cents")),
+                                    Long.parseLong(record.get("count")));
+                        }
+                    } catch (NumberFormatException | DateTimeParseException e) {
+                        // A partially readable cube cannot be trusted; let the caller rebuild it
+                        System.err.println("Malformed rollup cube record at line " + record.getRecordNumber() + " in " + filePath + ": " + record.toString());
+                        return null;
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Unknown direction in rollup cube record at line " + record.getRecordNumber() + " in " + filePath + ": " + record.toString());
+                        return null;
+                    }
+                }
+                return cube;
+            }
+        }
+    }
+
+    @Override
+    public void writeCube(String filePath, RollupCube cube) throws IOException {
+        Path path = Paths.get(filePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        File targetFile = path.toFile();
+        File tempFile = File.createTempFile("rollup_temp", ".csv", targetFile.getAbsoluteFile().getParentFile());
+
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8);
+             CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(HEADERS))) {
+
+            LedgerWatermark watermark = cube.getLedgerWatermark();
+            if (watermark != null) {
+                csvPrinter.printRecord(TYPE_WATERMARK, "", "", "", "", "",
+                        watermark.getFilePath(), watermark.getSize(), watermark.getLastModifiedMillis(), watermark.getVersion());
+            }
+            // Days are already sorted; categories are sorted to keep the file readable and stable between writes
+            for (Map.Entry<LocalDate, Map<RollupCube.Direction, Map<String, RollupCube.Cell>>> dayEntry : cube.getDays().entrySet()) {
+                for (Map.Entry<RollupCube.Direction, Map<String, RollupCube.Cell>> directionEntry : dayEntry.getValue().entrySet()) {
+                    for (Map.Entry<String, RollupCube.Cell> cellEntry : new TreeMap<>(directionEntry.getValue()).entrySet()) {
+                        csvPrinter.printRecord(TYPE_CELL, dayEntry.getKey(), directionEntry.getKey().name(), cellEntry.getKey(),
+                                cellEntry.getValue().getCount(), cellEntry.getValue().getCents(), "", "", "", "");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            tempFile.delete(); // Clean up temp file on failure
+            System.err.println("Error writing rollup cube to temporary CSV file: " + tempFile.toPath());
+            throw e;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to atomically replace rollup cube file: " + targetFile.toPath());
+            tempFile.delete();
+            throw e;
+        }
+    }
+}
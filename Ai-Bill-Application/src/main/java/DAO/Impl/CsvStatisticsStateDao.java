@@ -0,0 +1,277 @@
+package DAO.Impl;
+
+import DAO.StatisticsStateDao;
+import Utils.HyperLogLog;
+import model.LedgerWatermark;
+import model.UserWeekPartial;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.input.BOMInputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Stores watermarks and user-week partials as CSV. The counterparty sketch of each partial goes to a binary
+ * sidecar next to the partials file (user_week_partials.csv -> user_week_partials.sketches):
+ * magic, format version, sketch count, then per partial the username, week identifier and HyperLogLog.
+ */
+public class CsvStatisticsStateDao implements StatisticsStateDao {
+
+    private static final String[] WATERMARK_HEADERS = {
+            "username", "file_path", "size", "last_modified_millis", "version"
+    };
+
+    private static final String[] PARTIAL_HEADERS = {
+            "username", "week_identifier", "income_cents", "expense_cents", "expense_cents_by_category"
+    };
+
+    private static final int SKETCH_MAGIC = 0x55575331; // "UWS1"
+    private static final int SKETCH_FORMAT_VERSION = 1;
+
+    // Separators used to encode the category map in a single CSV column: "餐饮=1250;交通=300"
+    private static final String CATEGORY_ENTRY_SEPARATOR = ";";
+    private static final String CATEGORY_VALUE_SEPARATOR = "=";
+
+    @Override
+    public Map<String, LedgerWatermark> loadWatermarks(String filePath) throws IOException {
+        Map<String, LedgerWatermark> watermarks = new HashMap<>();
+        for (CSVRecord record : readRecords(filePath, WATERMARK_HEADERS)) {
+            try {
+                LedgerWatermark watermark = new LedgerWatermark(
+                        record.get("username"),
+                        record.get("file_path"),
+                        Long.parseLong(record.get("size")),
+                        Long.parseLong(record.get("last_modified_millis")),
+                        record.get("version")
+                );
+                watermarks.put(watermark.getUsername(), watermark);
+            } catch (Exception e) {
+                // A dropped watermark only forces that user's ledger to be re-read
+                System.err.println("Skipping malformed watermark record at line " + record.getRecordNumber() + ": " + record.toString());
+            }
+        }
+        return watermarks;
+    }
+
+    @Override
+    public void writeWatermarks(String filePath, Collection<LedgerWatermark> watermarks) throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        for (LedgerWatermark watermark : watermarks) {
+            rows.add(List.of(
+                    watermark.getUsername(),
+                    watermark.getFilePath() != null ? watermark.getFilePath() : "",
+                    watermark.getSize(),
+                    watermark.getLastModifiedMillis(),
+                    watermark.getVersion() != null ? watermark.getVersion() : ""
+            ));
+        }
+        writeRecords(filePath, WATERMARK_HEADERS, rows);
+    }
+
+    @Override
+    public List<UserWeekPartial> loadUserWeekPartials(String filePath) throws IOException {
+        List<UserWeekPartial> partials = new ArrayList<>();
+        List<CSVRecord> records = readRecords(filePath, PARTIAL_HEADERS);
+        if (records.isEmpty()) {
+            return partials;
+        }
+        Map<String, HyperLogLog> sketches = readCounterpartySketches(counterpartySketchPath(filePath));
+        for (CSVRecord record : records) {
+            HyperLogLog counterparties = sketches.get(sketchKey(record.get("username"), record.get("week_identifier")));
+            if (counterparties == null) {
+                // E.g. partials written before the sketches moved to the sidecar
+                throw new IOException("No counterparty sketch for partial record at line " + record.getRecordNumber() + " in " + filePath);
+            }
+            try {
+                partials.add(new UserWeekPartial(
+                        record.get("username"),
+                        record.get("week_identifier"),
+                        Long.parseLong(record.get("income_cents")),
+                        Long.parseLong(record.get("expense_cents")),
+                        decodeCategories(record.get("expense_cents_by_category")),
+                        counterparties
+                ));
+            } catch (Exception e) {
+                // Malformed partials are not safe to use. Fail so the caller can fall back to a full rebuild.
+                throw new IOException("Malformed partial record at line " + record.getRecordNumber() + " in " + filePath + ": " + record.toString(), e);
+            }
+        }
+        return partials;
+    }
+
+    @Override
+    public void writeUserWeekPartials(String filePath, List<UserWeekPartial> partials) throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        for (UserWeekPartial partial : partials) {
+            rows.add(List.of(
+                    partial.getUsername(),
+                    partial.getWeekIdentifier(),
+                    partial.getIncomeCents(),
+                    partial.getExpenseCents(),
+                    encodeCategories(partial.getExpenseCentsByCategory())
+            ));
+        }
+        // Sketches first: a partial whose sketch is missing makes the next load fail (and fall back to a full rebuild)
+        writeCounterpartySketches(counterpartySketchPath(filePath), partials);
+        writeRecords(filePath, PARTIAL_HEADERS, rows);
+    }
+
+    // user_week_partials.csv -> user_week_partials.sketches
+    static String counterpartySketchPath(String partialsFilePath) {
+        String base = partialsFilePath.endsWith(".csv") ? partialsFilePath.substring(0, partialsFilePath.length() - 4) : partialsFilePath;
+        return base + ".sketches";
+    }
+
+    private static String sketchKey(String username, String weekIdentifier) {
+        return username + '\u0000' + weekIdentifier;
+    }
+
+    private Map<String, HyperLogLog> readCounterpartySketches(String filePath) throws IOException {
+        Map<String, HyperLogLog> sketches = new HashMap<>();
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return sketches;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SKETCH_MAGIC) {
+                throw new IOException("Not a counterparty sketch file: " + filePath);
+            }
+            int version = in.readInt();
+            if (version != SKETCH_FORMAT_VERSION) {
+                throw new IOException("Unsupported counterparty sketch file version " + version + ": " + filePath);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = sketchKey(in.readUTF(), in.readUTF());
+                sketches.put(key, HyperLogLog.readFrom(in));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated counterparty sketch file: " + filePath, e);
+        }
+        return sketches;
+    }
+
+    // Writes the sidecar atomically (temp file + move), like the CSV state files
+    private void writeCounterpartySketches(String filePath, List<UserWeekPartial> partials) throws IOException {
+        Path path = Paths.get(filePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        File targetFile = path.toFile();
+        File tempFile = File.createTempFile("stats_sketch_temp", ".bin", targetFile.getAbsoluteFile().getParentFile());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            out.writeInt(SKETCH_MAGIC);
+            out.writeInt(SKETCH_FORMAT_VERSION);
+            out.writeInt(partials.size());
+            for (UserWeekPartial partial : partials) {
+                out.writeUTF(partial.getUsername());
+                out.writeUTF(partial.getWeekIdentifier());
+                partial.getCounterparties().writeTo(out);
+            }
+        } catch (IOException e) {
+            tempFile.delete(); // Clean up temp file on failure
+            System.err.println("Error writing counterparty sketches to temporary file: " + tempFile.toPath());
+            throw e;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to atomically replace counterparty sketch file: " + targetFile.toPath());
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    // Encodes the category map sorted by category so the file content is stable between runs
+    private String encodeCategories(Map<String, Long> expenseCentsByCategory) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : new TreeMap<>(expenseCentsByCategory).entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(CATEGORY_ENTRY_SEPARATOR);
+            }
+            sb.append(entry.getKey()).append(CATEGORY_VALUE_SEPARATOR).append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private Map<String, Long> decodeCategories(String encoded) {
+        Map<String, Long> expenseCentsByCategory = new HashMap<>();
+        if (encoded == null || encoded.trim().isEmpty()) {
+            return expenseCentsByCategory;
+        }
+        for (String entry : encoded.split(CATEGORY_ENTRY_SEPARATOR)) {
+            int separatorIndex = entry.lastIndexOf(CATEGORY_VALUE_SEPARATOR);
+            if (separatorIndex <= 0) {
+                throw new IllegalArgumentException("Invalid category entry: " + entry);
+            }
+            expenseCentsByCategory.put(entry.substring(0, separatorIndex), Long.parseLong(entry.substring(separatorIndex + 1)));
+        }
+        return expenseCentsByCategory;
+    }
+
+    // Reads all records of a state file after validating its header. Returns an empty list if the file is missing.
+    private List<CSVRecord> readRecords(String filePath, String[] headers) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return new ArrayList<>();
+        }
+
+        try (Reader reader = new InputStreamReader(
+                new BOMInputStream(Files.newInputStream(path)),
+                StandardCharsets.UTF_8)) {
+
+            CSVFormat format = CSVFormat.DEFAULT
+                    .withFirstRecordAsHeader()
+                    .withIgnoreHeaderCase(true)
+                    .withTrim(true);
+
+            try (CSVParser csvParser = new CSVParser(reader, format)) {
+                Map<String, Integer> headerMap = csvParser.getHeaderMap();
+                List<String> requiredHeaders = List.of(headers);
+                if (headerMap == null || !headerMap.keySet().containsAll(requiredHeaders)) {
+                    throw new IOException("Missing required headers in statistics state file " + filePath + ": " + requiredHeaders +
+                            " Found: " + (headerMap == null ? "null" : headerMap.keySet()));
+                }
+                return csvParser.getRecords();
+            }
+        }
+    }
+
+    // Writes a state file atomically (temp file + move), same as the other CSV DAOs
+    private void writeRecords(String filePath, String[] headers, List<List<Object>> rows) throws IOException {
+        Path path = Paths.get(filePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        File targetFile = path.toFile();
+        File tempFile = File.createTempFile("stats_state_temp", ".csv", targetFile.getAbsoluteFile().getParentFile());
+
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8);
+             CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(headers))) {
+            for (List<Object> row : rows) {
+                csvPrinter.printRecord(row);
+            }
+        } catch (IOException e) {
+            tempFile.delete(); // Clean up temp file on failure
+            System.err.println("Error writing statistics state to temporary CSV file: " + tempFile.toPath());
+            throw e;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to atomically replace statistics state file: " + targetFile.toPath());
+            tempFile.delete();
+            throw e;
+        }
+    }
+}
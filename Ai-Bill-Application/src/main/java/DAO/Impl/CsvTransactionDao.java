@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional; // Using Optional for getTransactionByOrderNumber
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
@@ -24,13 +25,20 @@ public class CsvTransactionDao implements TransactionDao { // Implement Transact
     @Override
     public List<Transaction> loadFromCSV(String filePath) throws IOException {
         List<Transaction> transactions = new ArrayList<>();
+        streamFromCSV(filePath, transactions::add);
+        return transactions;
+    }
+
+    @Override
+    public int streamFromCSV(String filePath, Consumer<Transaction> consumer) throws IOException {
         Path path = Paths.get(filePath);
 
         if (!Files.exists(path) || Files.size(path) == 0) {
             System.out.println("CSV file not found or is empty: " + filePath);
-            return transactions;
+            return 0;
         }
 
+        int count = 0;
         try (Reader reader = new InputStreamReader(
                 new BOMInputStream(Files.newInputStream(path)),
                 StandardCharsets.UTF_8)) {
@@ -54,13 +62,18 @@ public class CsvTransactionDao implements TransactionDao { // Implement Transact
                 }
                 System.out.println("Successfully identified headers: " + headerMap.keySet() + " in file: " + filePath);
 
+                // CSVParser reads records lazily, so only the current record is held in memory
                 for (CSVRecord record : csvParser) {
+                    Transaction transaction;
                     try {
-                        transactions.add(parseRecord(record));
+                        transaction = parseRecord(record);
                     } catch (Exception e) {
                         System.err.println("Skipping malformed record at line " + record.getRecordNumber() + ": " + record.toString());
                         e.printStackTrace();
+                        continue;
                     }
+                    consumer.accept(transaction);
+                    count++;
                 }
             }
         } catch (IOException e) {
@@ -68,8 +81,8 @@ public class CsvTransactionDao implements TransactionDao { // Implement Transact
             e.printStackTrace();
             throw e;
         }
-        System.out.println("Successfully loaded " + transactions.size() + " records from " + filePath);
-        return transactions;
+        System.out.println("Successfully loaded " + count + " records from " + filePath);
+        return count;
     }
 
     private Transaction parseRecord(CSVRecord record) {
@@ -0,0 +1,27 @@
+package DAO;
+
+import model.RollupCube;
+
+import java.io.IOException;
+
+/**
+ * Interface for persisting a user's rollup cube (per-day, per-direction, per-category counts and totals).
+ */
+public interface RollupCubeDao {
+
+    /**
+     * Loads the rollup cube stored in the given file.
+     * @param filePath The path to the user's summary file.
+     * @return The stored cube, or null if the file does not exist or does not contain a cube.
+     * @throws IOException If an I/O error occurs during loading.
+     */
+    RollupCube loadCube(String filePath) throws IOException;
+
+    /**
+     * Writes the rollup cube to the given file, overwriting existing data.
+     * @param filePath The path to the user's summary file.
+     * @param cube The cube to write.
+     * @throws IOException If an I/O error occurs during saving.
+     */
+    void writeCube(String filePath, RollupCube cube) throws IOException;
+}
@@ -0,0 +1,48 @@
+package DAO;
+
+import model.LedgerWatermark;
+import model.UserWeekPartial;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists the intermediate state used for incremental summary statistics:
+ * per-user ledger watermarks and per-user weekly partial aggregates.
+ */
+public interface StatisticsStateDao {
+
+    /**
+     * Loads the ledger watermarks recorded by the last statistics run.
+     * @param filePath The path to the watermark file.
+     * @return A map from username to watermark. Empty if the file does not exist.
+     * @throws IOException If an I/O error occurs during loading.
+     */
+    Map<String, LedgerWatermark> loadWatermarks(String filePath) throws IOException;
+
+    /**
+     * Writes ledger watermarks, overwriting existing data.
+     * @param filePath The path to the watermark file.
+     * @param watermarks The watermarks to write.
+     * @throws IOException If an I/O error occurs during saving.
+     */
+    void writeWatermarks(String filePath, Collection<LedgerWatermark> watermarks) throws IOException;
+
+    /**
+     * Loads the per-user weekly partial aggregates recorded by the last statistics run.
+     * @param filePath The path to the partials file.
+     * @return A list of all partials. Empty if the file does not exist.
+     * @throws IOException If an I/O error occurs during loading.
+     */
+    List<UserWeekPartial> loadUserWeekPartials(String filePath) throws IOException;
+
+    /**
+     * Writes per-user weekly partial aggregates, overwriting existing data.
+     * @param filePath The path to the partials file.
+     * @param partials The partials to write.
+     * @throws IOException If an I/O error occurs during saving.
+     */
+    void writeUserWeekPartials(String filePath, List<UserWeekPartial> partials) throws IOException;
+}
@@ -4,6 +4,7 @@ import model.Transaction;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface for Data Access Object (DAO) operations related to Transactions.
@@ -14,6 +15,18 @@ public interface TransactionDao {
     // Keep loadFromCSV - used by cache loader
     List<Transaction> loadFromCSV(String filePath) throws IOException;
 
+    /**
+     * Streams all transactions from the specified file to a consumer, one record at a time,
+     * without building a list. Intended for bulk scans (e.g. global statistics) that should
+     * neither hold a whole ledger in memory nor go through the transaction cache.
+     *
+     * @param filePath The path to the user's CSV file.
+     * @param consumer Receives each successfully parsed transaction, in file order.
+     * @return The number of transactions passed to the consumer.
+     * @throws IOException If an I/O error occurs or the file has invalid headers.
+     */
+    int streamFromCSV(String filePath, Consumer<Transaction> consumer) throws IOException;
+
     /**
      * Loads all transactions from the specified data source file.
      * @param filePath The path to the user's CSV file.
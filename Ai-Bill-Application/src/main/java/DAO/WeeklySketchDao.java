@@ -0,0 +1,29 @@
+package DAO;
+
+import model.WeeklySketch;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Interface for persisting the weekly distribution sketches that accompany the summary statistics.
+ */
+public interface WeeklySketchDao {
+
+    /**
+     * Loads all weekly sketches.
+     * @param filePath The path to the sketch file.
+     * @return A map from week identifier to sketch. Empty if the file does not exist.
+     * @throws IOException If an I/O error occurs or the file is corrupt.
+     */
+    Map<String, WeeklySketch> loadSketches(String filePath) throws IOException;
+
+    /**
+     * Writes weekly sketches, overwriting existing data.
+     * @param filePath The path to the sketch file.
+     * @param sketches The sketches to write.
+     * @throws IOException If an I/O error occurs during saving.
+     */
+    void writeSketches(String filePath, Collection<WeeklySketch> sketches) throws IOException;
+}
@@ -1,22 +1,24 @@
 package Service.AIservice;
 
+import Constants.ConfigConstants;
 import DAO.TransactionDao;
 import DAO.Impl.CsvTransactionDao;
 import Service.TransactionService;
 import Utils.CacheManager;
+import Utils.TDigest;
+import model.AiAnalysisState;
+import model.LedgerWatermark;
 import model.MonthlySummary;
 import model.Transaction;
 
-import com.volcengine.ark.runtime.model.completion.chat.ChatCompletionRequest;
-import com.volcengine.ark.runtime.model.completion.chat.ChatMessage;
-import com.volcengine.ark.runtime.model.completion.chat.ChatMessageRole;
-import com.volcengine.ark.runtime.service.ArkService;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.concurrent.*;
 
@@ -28,27 +30,117 @@ import model.MonthlySummary;
 import static Constants.CaffeineKeys.TRANSACTION_CAFFEINE_KEY;
 
 public class AITransactionService {
-    // Keep static ArkService as it's typically thread-safe and stateless
-    private static final String API_KEY = System.getenv("ARK_API_KEY"); // Or load from config.properties
-    private static final ArkService service = ArkService.builder()
-            .timeout(Duration.ofSeconds(1800))
-            .connectTimeout(Duration.ofSeconds(20))
-            .baseUrl("https://ark.cn-beijing.volces.com/api/v3")
-            .apiKey(API_KEY) // Ensure API_KEY is loaded
-            .build();
+    // The AI backend selected by ai.client in config.properties, shared by all instances
+    private static final AiClient CONFIGURED_CLIENT = createClient(ConfigConstants.AI_CLIENT);
+
+    // Maximum number of individual counterparty lines in an analysis prompt; the rest are summarized per category
+    static final int PROMPT_TOP_COUNTERPARTIES = 20;
 
     // Need access to TransactionService to get monthly summaries
     private final TransactionService transactionService; // Inject TransactionService
 
+    // Requests are queued on the dispatcher under this key (the logged-in user), so users are served fairly
+    private final String userKey;
+    private final AiRequestDispatcher dispatcher;
+    private final AiClient client;
+    // Answers are cached by (model, prompt template, ledger version, parameters); see AiResponseCache
+    private final AiResponseCache responseCache;
+    // Coalesces identical concurrent requests, across all AITransactionService instances
+    private final AiSingleFlight singleFlight;
+    // Fails requests fast while the AI service is down; shared by everything that uses the same client
+    private final AiCircuitBreaker circuitBreaker;
+    // Send a second copy of a slow short request (see startRequest)
+    private final boolean hedging;
+    // Requests are queued at background priority (see inBackground)
+    private final boolean background;
+    // Successful request latencies per operation, for the hedging delay; guarded by itself
+    private final Map<AiOperation, TDigest> latencyByOperation = new EnumMap<>(AiOperation.class);
+
+    // Hedging needs a stable p95 before it fires
+    static final int MIN_HEDGE_SAMPLES = 20;
+
+    // Deadline of each kind of request (tests shorten them)
+    private Function<AiOperation, Duration> deadlines = AiOperation::getDeadline;
+
+    // The last monthly analysis per user and template, for incremental follow-ups (see askAiIncrementally)
+    private AiAnalysisStateStore analysisStateStore = AiAnalysisStateStore.shared();
+    // An incremental follow-up is only sent while at most this share of the months changed...
+    static final double MAX_CHANGED_MONTH_SHARE = 0.5;
+    // ...the previous analysis has been updated incrementally fewer times than this in a row...
+    static final int MAX_DELTA_RUNS = 5;
+    // ...and the full analysis it descends from is recent; otherwise the full history is sent again
+    static final long MAX_ANALYSIS_STATE_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
 
     /**
      * Constructor now accepts TransactionService instance.
      */
     public AITransactionService(TransactionService transactionService) {
+        this(transactionService, AiRequestDispatcher.DEFAULT_USER_KEY);
+    }
+
+    /**
+     * @param transactionService The user-specific transaction service.
+     * @param userKey The user the AI requests are queued for on the shared dispatcher.
+     */
+    public AITransactionService(TransactionService transactionService, String userKey) {
+        this(transactionService, userKey, CONFIGURED_CLIENT, AiRequestDispatcher.shared(), AiCircuitBreaker.shared(),
+                ConfigConstants.AI_HEDGING_ENABLED);
+    }
+
+    /**
+     * @param transactionService The user-specific transaction service.
+     * @param userKey The user the AI requests are queued for on the dispatcher.
+     * @param client The AI backend (e.g. a StubAiClient for offline runs and load tests).
+     * @param dispatcher The dispatcher requests are queued on.
+     */
+    public AITransactionService(TransactionService transactionService, String userKey, AiClient client, AiRequestDispatcher dispatcher) {
+        this(transactionService, userKey, client, dispatcher, new AiCircuitBreaker(), ConfigConstants.AI_HEDGING_ENABLED);
+    }
+
+    /**
+     * @param circuitBreaker The breaker guarding calls to this client.
+     * @param hedging Whether slow short requests get a second copy (see AiOperation.isHedgeable).
+     */
+    public AITransactionService(TransactionService transactionService, String userKey, AiClient client, AiRequestDispatcher dispatcher,
+                                AiCircuitBreaker circuitBreaker, boolean hedging) {
         this.transactionService = transactionService; // Inject the service
+        this.userKey = userKey;
+        this.client = client;
+        this.dispatcher = dispatcher;
+        this.circuitBreaker = circuitBreaker;
+        this.hedging = hedging;
+        this.background = false;
+        this.responseCache = AiResponseCache.shared();
+        this.singleFlight = AiSingleFlight.shared();
         System.out.println("AITransactionService initialized with TransactionService.");
     }
 
+    // Same user, client, dispatcher, breaker and caches as the source, at background priority and without hedging
+    private AITransactionService(AITransactionService source) {
+        this.transactionService = source.transactionService;
+        this.userKey = source.userKey;
+        this.client = source.client;
+        this.dispatcher = source.dispatcher;
+        this.circuitBreaker = source.circuitBreaker;
+        this.hedging = false; // Nobody is waiting; a second copy would only add load
+        this.background = true;
+        this.responseCache = source.responseCache;
+        this.singleFlight = source.singleFlight;
+        this.analysisStateStore = source.analysisStateStore;
+        this.deadlines = source.deadlines;
+    }
+
+    /**
+     * Returns a view of this service whose requests are queued at background priority on the dispatcher:
+     * they only start when no user request is waiting. Answers land in the same response cache, and a user
+     * who asks for the same prompt meanwhile joins the request already running (see AiSingleFlight).
+     * Used for speculative precomputation (see AiSpeculativePrecomputer).
+     */
+    public AITransactionService inBackground() {
+        return background ? this : new AITransactionService(this);
+    }
+
     /**
      * Analyzes transactions from a specific user's file based on user request and time range.
      *
@@ -59,6 +151,21 @@ public class AITransactionService {
      * @return AI analysis result as a String.
      */
     public String analyzeTransactions(String userRequest, String filePath, String startTimeStr, String endTimeStr) {
+        return analyzeTransactions(userRequest, filePath, startTimeStr, endTimeStr, null, false);
+    }
+
+    /**
+     * Streaming variant of analyzeTransactions: the answer is passed to onDelta piece by piece as the AI generates it.
+     * @param onDelta Receives answer fragments on the AI worker thread, or null to only return the full answer.
+     * @param refresh True to skip a cached answer and ask the AI again (the new answer replaces the cached one).
+     * @return The complete answer (possibly from the cache), or an error message (error messages are returned, not streamed).
+     */
+    public String analyzeTransactions(String userRequest, String filePath, String startTimeStr, String endTimeStr, Consumer<String> onDelta, boolean refresh) {
+        String cacheKey = cacheKey("general-analysis-v2", filePath, userRequest, startTimeStr, endTimeStr);
+        String cached = refresh ? null : getCachedAnswer(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         try {
             // Get transactions for the specified file path using CacheManager
             // Need to pass a DAO instance for the CacheManager's loader if it needs to load from file.
@@ -67,8 +174,10 @@ public class AITransactionService {
             System.out.println("AI Service: Retrieved " + transactions.size() + " transactions for file: " + filePath);
 
 
-            // Format filtered transactions for the AI prompt
-            List<String> transactionDetails = formatTransactions(transactions, startTimeStr, endTimeStr);
+            // Format filtered transactions for the AI prompt, leaving room in the budget for the request text
+            String promptHeader = userRequest + "\n" + "Here is my billing information:\n";
+            int dataTokenBudget = Math.max(0, ConfigConstants.AI_PROMPT_TOKEN_BUDGET - PromptBudgeter.estimateTokens(promptHeader));
+            List<String> transactionDetails = formatTransactions(transactions, startTimeStr, endTimeStr, dataTokenBudget);
             System.out.println("AI Service: Formatted " + transactionDetails.size() + " transactions for AI.");
 
 
@@ -77,9 +186,9 @@ public class AITransactionService {
                 return "No transaction records found matching the criteria within this time period, analysis cannot be performed. Please check the time and transaction data.";
             }
 
-            String aiPrompt = userRequest + "\n" + "Here is my billing information:\n" + String.join("\n", transactionDetails);
+            String aiPrompt = promptHeader + String.join("\n", transactionDetails);
             System.out.println("AI Service: Sending prompt to AI. Prompt length: " + aiPrompt.length());
-            return askAi(aiPrompt);
+            return askAi(aiPrompt, onDelta, cacheKey);
         } catch (IllegalArgumentException e) {
             System.err.println("AI analysis failed due to invalid time format: " + e.getMessage());
             return "AI analysis failed: Incorrect time format. " + e.getMessage();
@@ -92,10 +201,30 @@ public class AITransactionService {
     }
 
 
+    /**
+     * Asynchronous analyzeTransactions; cancelling the future cancels the AI request.
+     */
+    public CompletableFuture<String> analyzeTransactionsAsync(String userRequest, String filePath, String startTimeStr, String endTimeStr,
+                                                              Consumer<String> onDelta, boolean refresh) {
+        return supplyCancellable("ai-analysis", () -> analyzeTransactions(userRequest, filePath, startTimeStr, endTimeStr, onDelta, refresh));
+    }
+
+
     // Keep formatTransactions, parseDateTime, askAi methods. Ensure parseDateTime is robust.
     // The formatTransactions method relies on parseDateTime, ensure consistency with TransactionServiceImpl's parser.
 
     public List<String> formatTransactions(List<Transaction> transactions, String startTimeStr, String endTimeStr) {
+        return formatTransactions(transactions, startTimeStr, endTimeStr, ConfigConstants.AI_PROMPT_TOKEN_BUDGET);
+    }
+
+    /**
+     * Formats the transactions within a time range as billing data for an AI prompt.
+     *
+     * @param tokenBudget Maximum estimated tokens for the returned lines; the data is compacted
+     *                    (fewer counterparties, then category/week aggregates) until it fits. See PromptBudgeter.
+     * @return The time range line followed by the billing data lines.
+     */
+    public List<String> formatTransactions(List<Transaction> transactions, String startTimeStr, String endTimeStr, int tokenBudget) {
         LocalDateTime startTime = parseDateTime(startTimeStr);
         // If end time is empty, use current time
         LocalDateTime endTime = (endTimeStr == null || endTimeStr.trim().isEmpty())
@@ -117,66 +246,46 @@ public class AITransactionService {
         System.out.println("Filtering transactions from " + startTime + " to " + endTime);
 
 
-        List<Transaction> filtered = transactions.stream()
-                .filter(t -> {
-                    LocalDateTime tTime = parseDateTime(t.getTransactionTime());
-                    // Include transactions exactly at startTime, exclude transactions exactly at endTime (standard range behavior [start, end))
-                    // If endTime should be inclusive, change isBefore(startTime) to !isAfter(startTime) and isAfter(endTime) to !isBefore(endTime)
-                    // Or use isBefore(startTime) || isAfter(endTime) and negate.
-                    // Let's use !isBefore(startTime) && !isAfter(endTime) as it seems more intuitive for a date range, inclusive.
-                    return tTime != null && !tTime.isBefore(startTime) && !tTime.isAfter(endTime); // Range [startTime, endTime]
-                })
-                .collect(Collectors.toList());
-        System.out.println("Filtered down to " + filtered.size() + " transactions within range.");
-
-
-        // Group by Counterparty and summarize net amount and count
-        Map<String, double[]> grouped = new HashMap<>(); // double[0] = net amount, double[1] = count
-        for (Transaction t : filtered) {
-            String counterparty = t.getCounterparty();
-            double amount = t.getPaymentAmount();
+        // Filter by time, keeping each transaction's parsed date for the week-level summary
+        List<PromptBudgeter.Entry> entries = new ArrayList<>();
+        int filteredCount = 0;
+        for (Transaction t : transactions) {
+            LocalDateTime tTime = parseDateTime(t.getTransactionTime());
+            // Range [startTime, endTime], inclusive at both ends
+            if (tTime == null || tTime.isBefore(startTime) || tTime.isAfter(endTime)) {
+                continue;
+            }
+            filteredCount++;
             // Assuming t.getInOut() returns "Income"/"Expense" or "In"/"Out"
-            if (t.getInOut().equalsIgnoreCase("Expense") || t.getInOut().equalsIgnoreCase("Out")) {
-                amount = -amount;
-            } else if (!t.getInOut().equalsIgnoreCase("Income") && !t.getInOut().equalsIgnoreCase("In")) {
+            if (!isExpense(t) && !t.getInOut().equalsIgnoreCase("Income") && !t.getInOut().equalsIgnoreCase("In")) {
                 System.err.println("Warning: Unknown In/Out type for transaction: " + t.getOrderNumber() + " - " + t.getInOut());
                 // Decide how to handle unknown types - ignore from analysis? Treat as 0?
                 continue; // Skip unknown types for aggregation
             }
-
-            grouped.putIfAbsent(counterparty, new double[]{0.0, 0});
-            grouped.get(counterparty)[0] += amount;
-            grouped.get(counterparty)[1] += 1;
+            double amount = isExpense(t) ? -t.getPaymentAmount() : t.getPaymentAmount();
+            entries.add(new PromptBudgeter.Entry(t.getCounterparty(), t.getTransactionType(), tTime.toLocalDate(), amount));
         }
-        System.out.println("Grouped transactions by counterparty. Found " + grouped.size() + " counterparties.");
-
-
-        List<String> results = grouped.entrySet().stream()
-                .map(e -> {
-                    String cp = e.getKey();
-                    double net = e.getValue()[0];
-                    int count = (int) e.getValue()[1];
-                    String inOutLabel = net >= 0 ? "Total Income" : "Total Expense";
-                    if (Math.abs(net) < 0.01 && count > 0) { // If net is near zero but there were transactions
-                        inOutLabel = "Net Zero"; // Or specify "Income equals Expense"
-                    }
-                    return String.format("Counterparty: %s, Net %s: %.2f CNY, Transaction Count: %d",
-                            cp, inOutLabel, Math.abs(net), count);
-                })
-                .collect(Collectors.toList());
-        System.out.println("Formatted grouped results.");
+        System.out.println("Filtered down to " + filteredCount + " transactions within range.");
 
 
         // Add time range information to the results list
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
         String rangeInfo = String.format("Analysis Time Range: %s - %s",
                 formatter.format(startTime), formatter.format(endTime));
-        results.add(0, rangeInfo); // Add range info at the beginning
 
-        if (filtered.isEmpty()) { // Check if the filtered list was empty before grouping
+        if (filteredCount == 0) { // Check if the filtered list was empty before grouping
             return List.of(rangeInfo, "No transactions found within this time period.");
         }
-        return results;
+
+        // List counterparties individually while the budget allows, then fall back to category/week aggregates
+        PromptBudgeter.Result compacted = new PromptBudgeter(tokenBudget, PROMPT_TOP_COUNTERPARTIES)
+                .compact(List.of(rangeInfo), entries);
+        return new ArrayList<>(compacted.getLines());
+    }
+
+
+    private static boolean isExpense(Transaction t) {
+        return t.getInOut().equalsIgnoreCase("Expense") || t.getInOut().equalsIgnoreCase("Out");
     }
 
 
@@ -221,33 +330,129 @@ public class AITransactionService {
 
 
     // Keep askAi method
+    /**
+     * Sends a prompt to the AI service through the shared AiRequestDispatcher, which limits concurrency,
+     * queues fairly per user and retries transient failures. A caller whose prompt is identical to one
+     * already in flight waits for that request instead of sending another (see AiSingleFlight).
+     * The request gets the deadline of AiOperation.ANALYSIS.
+     * @return The AI's answer, or an error message if the request failed.
+     */
     public String askAi(String prompt) {
-        try {
-            if (API_KEY == null || API_KEY.trim().isEmpty()) {
-                System.err.println("ARK_API_KEY environment variable is not set.");
-                return "AI service configuration error: ARK_API_KEY not set.";
-            }
-            // Ensure the static service instance is properly built with the key
-            // This might be better done once at application startup if API_KEY is loaded from config.
-            // For now, relying on the static final initialization is acceptable if the env var is set before class loading.
+        return askAi(prompt, null);
+    }
+
+    /**
+     * Like askAi(prompt), with the deadline (and hedging) of the given kind of request.
+     */
+    public String askAi(AiOperation operation, String prompt) {
+        return askAi(operation, prompt, null, null);
+    }
 
+    /**
+     * Sends a prompt to the AI service and, if onDelta is given, streams the answer into it as it is generated,
+     * so the first words can be shown long before the full answer is ready.
+     * @param onDelta Receives answer fragments on the AI worker thread; null for a plain (non-streaming) request.
+     * @return The complete answer, or an error message if the request failed.
+     */
+    public String askAi(String prompt, Consumer<String> onDelta) {
+        return askAi(prompt, onDelta, null);
+    }
 
-            List<ChatMessage> messages = List.of(
-                    ChatMessage.builder().role(ChatMessageRole.USER).content(prompt).build()
-            );
+    /**
+     * Like askAi(prompt, onDelta), and stores a successful answer in the response cache under cacheKey.
+     * Error messages are never cached.
+     * @param cacheKey Key from cacheKey(...), or null to skip caching.
+     */
+    public String askAi(String prompt, Consumer<String> onDelta, String cacheKey) {
+        return askAi(AiOperation.ANALYSIS, prompt, onDelta, cacheKey);
+    }
 
-            ChatCompletionRequest chatCompletionRequest = ChatCompletionRequest.builder()
-                    .model("ep-20250308174053-7pbkq") // Use your model name
-                    .messages(messages)
-                    .build();
+    /**
+     * Sends a prompt as the given kind of request: it fails once the operation's deadline has passed,
+     * and fails immediately while the circuit breaker is open.
+     * @param onDelta Receives answer fragments, or null for a plain request.
+     * @param cacheKey Key from cacheKey(...), or null to skip caching.
+     * @return The complete answer, or an error message if the request failed.
+     */
+    public String askAi(AiOperation operation, String prompt, Consumer<String> onDelta, String cacheKey) {
+        return askAi(operation, prompt, onDelta, cacheKey, null);
+    }
+
+    /**
+     * Asynchronous askAi: returns at once with a future of the answer (or error message).
+     * Cancelling the future cancels the AI request, see supplyCancellable.
+     */
+    public CompletableFuture<String> askAiAsync(AiOperation operation, String prompt, Consumer<String> onDelta, String cacheKey) {
+        return supplyCancellable("ai-ask", () -> askAi(operation, prompt, onDelta, cacheKey));
+    }
 
-            System.out.println("AI Service: Sending request to VolcEngine Ark...");
-            // Use the static service instance
-            String responseContent = (String) service.createChatCompletion(chatCompletionRequest)
-                    .getChoices().get(0).getMessage().getContent();
-            System.out.println("AI Service: Received response from AI.");
-            return responseContent;
+    /**
+     * Runs an AI operation on its own virtual thread and returns a future of its result.
+     * <p>
+     * cancel(true) on the future interrupts the thread. The interrupted caller leaves its AiSingleFlight
+     * request, which (if nobody else is waiting for the same prompt) cancels the dispatcher request; the
+     * dispatcher then interrupts the worker running the HTTP call, which aborts it, and takes the next
+     * request. A task cancelled before it started never runs.
+     *
+     * @param threadName Name of the thread (for logs and thread dumps).
+     * @param task The operation; its exception completes the future exceptionally.
+     */
+    static <T> CompletableFuture<T> supplyCancellable(String threadName, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Thread worker = Thread.ofVirtual().name(threadName).unstarted(() -> {
+            if (future.isDone()) {
+                return; // Cancelled before it started
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                worker.interrupt();
+            }
+        });
+        worker.start();
+        return future;
+    }
 
+    // onSuccess receives the answer if the request succeeded (error messages are returned, never passed to it)
+    private String askAi(AiOperation operation, String prompt, Consumer<String> onDelta, String cacheKey, Consumer<String> onSuccess) {
+        String configurationError = client.getConfigurationError();
+        if (configurationError != null) {
+            System.err.println("AI Service: " + configurationError);
+            return "AI service configuration error: " + configurationError;
+        }
+        if (!circuitBreaker.isCallPermitted()) {
+            // Don't even queue: the answer would be the same failure, only later
+            System.err.println("AI Service: Circuit breaker open, not sending the request.");
+            return "AI service temporarily unavailable: " + new AiCircuitOpenException(circuitBreaker.getRetryAfterMillis()).getMessage();
+        }
+        try {
+            // Identical prompts already in flight (double clicks, batch runs) share one request. A user who
+            // asks while the same prompt is being precomputed joins it, and it moves to the user's queue.
+            String answer = singleFlight.call(AiSingleFlight.key(client.getModelId(), prompt),
+                    sink -> startRequest(operation, prompt, sink),
+                    onDelta,
+                    background ? dispatcher::promote : null);
+            if (cacheKey != null) {
+                responseCache.put(cacheKey, answer);
+            }
+            if (onSuccess != null) {
+                onSuccess.accept(answer);
+            }
+            return answer;
+        } catch (InterruptedException e) {
+            System.err.println("AI Service: AI request interrupted.");
+            return "AI request interrupted.";
+        } catch (TimeoutException e) {
+            System.err.println("AI Service: " + e.getMessage());
+            return "AI request timed out: " + e.getMessage();
+        } catch (AiCircuitOpenException e) {
+            System.err.println("AI Service: " + e.getMessage());
+            return "AI service temporarily unavailable: " + e.getMessage();
         } catch (Exception e) {
             System.err.println("AI Service: AI request failed.");
             e.printStackTrace();
@@ -255,27 +460,238 @@ public class AITransactionService {
         }
     }
 
-    // Keep runAiInThread method, ensure it uses the correct analyzeTransactions method
-    public void runAiInThread(String userRequest, String filePath,String startTimeStr, String endTimeStr) {
-        // ExecutorService should ideally be managed at a higher level in a larger app,
-        // but a simple single thread executor per request is acceptable for this scale.
-        // However, this creates a new thread and executor every time.
-        // A fixed thread pool managed statically or by a dedicated AI Service Manager would be more efficient.
-        // For now, let's keep it simple as in the original code.
-
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.submit(() -> {
-            // Call the instance method analyzeTransactions
-            String result = this.analyzeTransactions(userRequest, filePath,startTimeStr, endTimeStr);
-            System.out.println("AI analysis thread finished. Result: " + result);
-            // TODO: How to pass the result back to the UI?
-            // This thread doesn't have access to the UI components directly.
-            // Need a mechanism like a callback or SwingUtilities.invokeLater.
-            // This will be addressed when integrating AI output into the UI (Step 10).
+    /**
+     * Sends a month-by-month analysis prompt, incrementally if possible: the result is stored per user and
+     * template together with a fingerprint of every month's data, and a follow-up run sends the previous
+     * analysis plus only the months that were added, changed or removed since, asking the AI to update it.
+     * If no month changed, the previous analysis is returned without asking the AI.
+     * The full history is sent when there is no usable previous analysis (none, another model, refresh),
+     * when too many months changed, after MAX_DELTA_RUNS updates in a row, or when the full analysis is older
+     * than MAX_ANALYSIS_STATE_AGE_MILLIS, so the result cannot drift far from a fresh one.
+     *
+     * @param templateId Id of the prompt template; analyses are stored per template.
+     * @param ledgerFilePath The ledger the months come from; null disables incremental runs.
+     * @param months The ledger's monthly fragments.
+     * @param view The view of the months the prompt uses.
+     * @param instructions The prompt text before the monthly data (ending with a blank line).
+     * @param onDelta Receives answer fragments, or null for a plain request.
+     * @param cacheKey Key from cacheKey(...), or null to skip caching.
+     * @param refresh True to ignore the previous analysis and send the full history.
+     * @return The complete answer, or an error message if the request failed.
+     */
+    public String askAiIncrementally(AiOperation operation, String templateId, String ledgerFilePath, MonthlyPromptFragments months,
+                                     MonthlyPromptFragments.View view, String instructions, Consumer<String> onDelta,
+                                     String cacheKey, boolean refresh) {
+        if (!ConfigConstants.AI_INCREMENTAL_ANALYSIS || ledgerFilePath == null) {
+            return askAi(operation, instructions + months.render(view), onDelta, cacheKey);
+        }
+        Map<String, String> fingerprints = months.fingerprints(view);
+        AiAnalysisState previous = refresh ? null : analysisStateStore.load(userKey, ledgerFilePath, templateId);
+        if (previous != null && !client.getModelId().equals(previous.getModelId())) {
+            previous = null; // Another model's wording; start over
+        }
+        long now = System.currentTimeMillis();
+
+        if (previous != null && previous.getMonthFingerprints().equals(fingerprints)) {
+            // Only parts of the ledger this template does not use changed (or nothing did)
+            System.out.println("AI Service: No month changed since the last " + templateId + " analysis, reusing it.");
+            if (cacheKey != null) {
+                responseCache.put(cacheKey, previous.getAnalysis());
+            }
+            return previous.getAnalysis();
+        }
+
+        List<String> changedMonths = new ArrayList<>();
+        for (Map.Entry<String, String> month : fingerprints.entrySet()) {
+            if (previous == null || !month.getValue().equals(previous.getMonthFingerprints().get(month.getKey()))) {
+                changedMonths.add(month.getKey());
+            }
+        }
+        List<String> removedMonths = new ArrayList<>();
+        if (previous != null) {
+            for (String month : previous.getMonthFingerprints().keySet()) {
+                if (!fingerprints.containsKey(month)) {
+                    removedMonths.add(month);
+                }
+            }
+        }
+        boolean delta = previous != null
+                && changedMonths.size() + removedMonths.size() <= Math.max(1, (int) (fingerprints.size() * MAX_CHANGED_MONTH_SHARE))
+                && previous.getDeltaRuns() < MAX_DELTA_RUNS
+                && now - previous.getCreatedMillis() < MAX_ANALYSIS_STATE_AGE_MILLIS;
+
+        String aiPrompt;
+        if (delta) {
+            StringBuilder promptBuilder = new StringBuilder(instructions);
+            promptBuilder.append("My data has changed since your previous analysis, which was:\n\n");
+            promptBuilder.append(previous.getAnalysis().strip()).append("\n\n");
+            if (!changedMonths.isEmpty()) {
+                promptBuilder.append("These months are new or have changed (all other months are the same as in the previous analysis):\n\n");
+                promptBuilder.append(months.render(view, changedMonths));
+            }
+            if (!removedMonths.isEmpty()) {
+                promptBuilder.append("These months no longer have any transactions: ").append(String.join(", ", removedMonths)).append("\n\n");
+            }
+            promptBuilder.append("Please update the previous analysis with these changes and reply with the complete updated analysis, in the same form as before.\n");
+            aiPrompt = promptBuilder.toString();
+            System.out.println("AI Service: Sending " + templateId + " incrementally (" + changedMonths.size() + " changed, "
+                    + removedMonths.size() + " removed of " + fingerprints.size() + " months). Prompt length: " + aiPrompt.length());
+        } else {
+            aiPrompt = instructions + months.render(view);
+        }
+
+        AiAnalysisState base = previous;
+        return askAi(operation, aiPrompt, onDelta, cacheKey, answer -> analysisStateStore.save(userKey, ledgerFilePath,
+                new AiAnalysisState(client.getModelId(), templateId, months.getLedgerVersion(),
+                        delta ? base.getCreatedMillis() : now, delta ? base.getDeltaRuns() + 1 : 0, fingerprints, answer)));
+    }
+
+    /**
+     * Replaces the store of previous analyses (tests use a temporary directory).
+     */
+    void setAnalysisStateStore(AiAnalysisStateStore analysisStateStore) {
+        this.analysisStateStore = analysisStateStore;
+    }
+
+    /**
+     * Replaces the operations' deadlines (tests use short ones to simulate a hanging service quickly).
+     */
+    void setDeadlines(Function<AiOperation, Duration> deadlines) {
+        this.deadlines = deadlines;
+    }
+
+    /**
+     * Starts a request on the dispatcher, with the operation's deadline and every attempt guarded by the
+     * circuit breaker. A short non-streaming request that is still running when the operation's p95 latency
+     * has passed gets a hedged second copy; the first answer wins and the other copy is cancelled.
+     */
+    private CompletableFuture<String> startRequest(AiOperation operation, String prompt, Consumer<String> sink) {
+        CompletableFuture<String> primary = submitAttempt(operation, prompt, sink, deadlines.apply(operation));
+        long hedgeDelayMillis = sink == null && hedging && operation.isHedgeable() ? hedgeDelayMillis(operation) : -1;
+        if (hedgeDelayMillis < 0) {
+            return primary;
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        List<CompletableFuture<String>> copies = new CopyOnWriteArrayList<>(List.of(primary));
+        primary.whenComplete((answer, error) -> completeHedged(result, copies, answer, error));
+        CompletableFuture.delayedExecutor(hedgeDelayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            // Only while the service is healthy: a second copy would add load to a struggling one
+            if (result.isDone() || circuitBreaker.getState() != AiCircuitBreaker.State.CLOSED) {
+                return;
+            }
+            System.out.println("AI Service: " + operation + " request slower than its p95 (" + hedgeDelayMillis
+                    + " ms), sending a hedged copy.");
+            CompletableFuture<String> hedge = submitAttempt(operation, prompt, null,
+                    deadlines.apply(operation).minusMillis(hedgeDelayMillis));
+            copies.add(hedge);
+            if (result.isDone()) {
+                hedge.cancel(true); // The primary finished while the copy was being sent
+            }
+            hedge.whenComplete((answer, error) -> completeHedged(result, copies, answer, error));
+        });
+        // The winner (or the caller's cancel) cancels the copies still running
+        result.whenComplete((answer, error) -> copies.forEach(copy -> copy.cancel(true)));
+        return result;
+    }
+
+    // First answer wins; a failure only counts once every copy has failed
+    private static void completeHedged(CompletableFuture<String> result, List<CompletableFuture<String>> copies,
+                                       String answer, Throwable error) {
+        if (error == null) {
+            result.complete(answer);
+        } else if (copies.stream().allMatch(CompletableFuture::isDone)) {
+            result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        }
+    }
+
+    private CompletableFuture<String> submitAttempt(AiOperation operation, String prompt, Consumer<String> sink, Duration deadline) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<String> future = dispatcher.submit(userKey, () -> circuitBreaker.call(() -> sink == null
+                ? client.complete(prompt)
+                : client.stream(prompt, sink)), deadline, background);
+        future.whenComplete((answer, error) -> {
+            if (error == null) {
+                recordLatency(operation, (System.nanoTime() - startNanos) / 1_000_000.0);
+            } else if (error instanceof TimeoutException && !background) {
+                // Hanging calls are what the breaker must catch (a background request may have spent its
+                // deadline waiting behind user requests, which says nothing about the service)
+                circuitBreaker.recordFailure();
+            }
         });
-        // Consider shutting down the executor more gracefully, e.g., when the app exits.
-        // executor.shutdown(); // Shutting down immediately might cancel the task
-        // A better approach is `executor.shutdown()` after submitting, but manage the executor lifecycle elsewhere.
+        return future;
+    }
+
+    private void recordLatency(AiOperation operation, double millis) {
+        synchronized (latencyByOperation) {
+            latencyByOperation.computeIfAbsent(operation, o -> new TDigest()).add(millis);
+        }
+    }
+
+    /**
+     * @return The operation's p95 latency in milliseconds, or -1 while there are too few samples to hedge on.
+     */
+    long hedgeDelayMillis(AiOperation operation) {
+        synchronized (latencyByOperation) {
+            TDigest latency = latencyByOperation.get(operation);
+            if (latency == null || latency.size() < MIN_HEDGE_SAMPLES) {
+                return -1;
+            }
+            return Math.max(1, Math.round(latency.quantile(0.95)));
+        }
+    }
+
+    /**
+     * @return The circuit breaker guarding this service's AI calls.
+     */
+    public AiCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Builds a response cache key for a prompt template applied to the current state of a ledger file.
+     * @param templateId Id of the prompt template (bump its version when the prompt text changes).
+     * @param ledgerFilePath The transaction file the prompt is built from.
+     * @param parameters Other inputs of the prompt (request text, time range, ...).
+     */
+    public String cacheKey(String templateId, String ledgerFilePath, String... parameters) {
+        return AiResponseCache.key(client.getModelId(), templateId, LedgerWatermark.capture(null, ledgerFilePath), parameters);
+    }
+
+    /**
+     * @return The cached answer for the key, or null if there is none.
+     */
+    public String getCachedAnswer(String cacheKey) {
+        String cached = responseCache.get(cacheKey);
+        if (cached != null) {
+            System.out.println("AI Service: Answer served from the response cache.");
+        }
+        return cached;
+    }
+
+    /**
+     * Opens a connection to the AI endpoint on a background thread (if ai.http.warmup is enabled), so the
+     * user's first AI request does not pay for DNS, TCP and TLS setup. Call it right after login.
+     */
+    public void warmUpConnectionsInBackground() {
+        if (!ConfigConstants.AI_HTTP_WARMUP) {
+            return;
+        }
+        Thread.ofVirtual().name("ai-warm-up").start(client::warmUp);
+    }
+
+    /**
+     * Creates the AI backend named by the ai.client setting: "ark" (default) or "stub".
+     */
+    static AiClient createClient(String name) {
+        if ("stub".equalsIgnoreCase(name)) {
+            System.out.println("AI Service: Using the in-process stub AI client (ai.client=stub).");
+            return new StubAiClient();
+        }
+        if (!"ark".equalsIgnoreCase(name)) {
+            System.err.println("AI Service: Unknown ai.client '" + name + "', using Ark.");
+        }
+        return new ArkAiClient();
     }
 
     /**
@@ -284,49 +700,40 @@ public class AITransactionService {
      * @return AI analysis result as a String.
      */
     public String generatePersonalSummary(String userFilePath) {
+        return generatePersonalSummary(userFilePath, null, false);
+    }
+
+    /**
+     * Streaming variant of generatePersonalSummary: the answer is passed to onDelta piece by piece as the AI generates it.
+     * @param onDelta Receives answer fragments on the AI worker thread, or null to only return the full answer.
+     * @param refresh True to skip a cached answer and ask the AI again (the new answer replaces the cached one).
+     * @return The complete answer (possibly from the cache), or an error message (error messages are returned, not streamed).
+     */
+    public String generatePersonalSummary(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        String cacheKey = cacheKey("personal-summary-v2", userFilePath);
+        String cached = refresh ? null : getCachedAnswer(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         try {
             // Get monthly summary data from TransactionService
             // Note: TransactionService already operates on the current user's data implicitly if passed correctly.
             // We might not need userFilePath explicitly in this method signature if the service instance is user-specific.
             // Let's assume the injected transactionService is already scoped to the current user.
-            Map<String, MonthlySummary> summaries = transactionService.getMonthlyTransactionSummary();
-            System.out.println("AI Service: Retrieved " + summaries.size() + " months of summary data.");
+            MonthlyPromptFragments months = monthlyFragments(userFilePath);
+            System.out.println("AI Service: Retrieved " + months.getMonthCount() + " months of summary data.");
 
-            if (summaries.isEmpty()) {
+            if (months.isEmpty()) {
                 return "Not enough transaction data found to generate a personal spending summary.";
             }
 
-            // Format the summary data for the AI prompt
-            StringBuilder summaryPromptBuilder = new StringBuilder();
-            summaryPromptBuilder.append("Please generate a personal spending habits summary based on the following monthly data. Analyze main expense categories, monthly trends, and assess my spending health:\n\n");
-
-            // Sort months chronologically for better trend analysis by AI
-            List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-            Collections.sort(sortedMonths);
-
-            for (String month : sortedMonths) {
-                MonthlySummary ms = summaries.get(month);
-                summaryPromptBuilder.append("--- ").append(ms.getMonthIdentifier()).append(" ---\n");
-                summaryPromptBuilder.append("  Total Income: ").append(String.format("%.2f", ms.getTotalIncome())).append(" CNY\n");
-                summaryPromptBuilder.append("  Total Expense: ").append(String.format("%.2f", ms.getTotalExpense())).append(" CNY\n");
-                summaryPromptBuilder.append("  Expense Breakdown:\n");
-                if (ms.getExpenseByCategory().isEmpty()) {
-                    summaryPromptBuilder.append("    (No expenses)\n");
-                } else {
-                    // Sort categories by amount descending for AI to easily see major categories
-                    ms.getExpenseByCategory().entrySet().stream()
-                            .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                            .forEach(entry ->
-                                    summaryPromptBuilder.append(String.format("    %s: %.2f CNY\n", entry.getKey(), entry.getValue()))
-                            );
-                }
-                summaryPromptBuilder.append("\n"); // Add space between months
-            }
-
-            String aiPrompt = summaryPromptBuilder.toString();
-            System.out.println("AI Service: Sending personal summary prompt to AI. Prompt length: " + aiPrompt.length());
+            // Months are sorted and rendered once per ledger version; the template only adds its header.
+            // Follow-ups send the previous summary plus the changed months only.
+            String instructions = "Please generate a personal spending habits summary based on the following monthly data. Analyze main expense categories, monthly trends, and assess my spending health:\n\n";
+            System.out.println("AI Service: Sending personal summary prompt to AI.");
 
-            return askAi(aiPrompt); // Call the generic AI method
+            return askAiIncrementally(AiOperation.ANALYSIS, "personal-summary-v2", userFilePath, months,
+                    MonthlyPromptFragments.View.FULL, instructions, onDelta, cacheKey, refresh);
         } catch (Exception e) {
             System.err.println("AI Service: Failed to generate personal summary.");
             e.printStackTrace();
@@ -334,40 +741,47 @@ public class AITransactionService {
         }
     }
 
+    /**
+     * Asynchronous generatePersonalSummary; cancelling the future cancels the AI request.
+     */
+    public CompletableFuture<String> generatePersonalSummaryAsync(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        return supplyCancellable("ai-personal-summary", () -> generatePersonalSummary(userFilePath, onDelta, refresh));
+    }
+
     /**
      * Generates suggestions for savings goals based on monthly data.
      * @param userFilePath The path to the user's transaction CSV file. (Might not be strictly needed)
      * @return AI suggestions as a String.
      */
     public String suggestSavingsGoals(String userFilePath) {
+        return suggestSavingsGoals(userFilePath, null, false);
+    }
+
+    /**
+     * Streaming variant of suggestSavingsGoals: the answer is passed to onDelta piece by piece as the AI generates it.
+     * @param onDelta Receives answer fragments on the AI worker thread, or null to only return the full answer.
+     * @param refresh True to skip a cached answer and ask the AI again (the new answer replaces the cached one).
+     * @return The complete answer (possibly from the cache), or an error message (error messages are returned, not streamed).
+     */
+    public String suggestSavingsGoals(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        String cacheKey = cacheKey("savings-goals-v2", userFilePath);
+        String cached = refresh ? null : getCachedAnswer(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            Map<String, MonthlySummary> summaries = transactionService.getMonthlyTransactionSummary();
-            System.out.println("AI Service: Retrieved " + summaries.size() + " months of summary data for savings goal suggestion.");
+            MonthlyPromptFragments months = monthlyFragments(userFilePath);
+            System.out.println("AI Service: Retrieved " + months.getMonthCount() + " months of summary data for savings goal suggestion.");
 
-            if (summaries.isEmpty()) {
+            if (months.isEmpty()) {
                 return "Not enough transaction data found to suggest savings goals.";
             }
 
-            StringBuilder promptBuilder = new StringBuilder();
-            promptBuilder.append("Please provide some reasonable savings goal suggestions for my spending habits based on the following monthly income and expense summary data:\n\n");
-
-            List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-            Collections.sort(sortedMonths);
-
-            for (String month : sortedMonths) {
-                MonthlySummary ms = summaries.get(month);
-                promptBuilder.append("--- ").append(ms.getMonthIdentifier()).append(" ---\n");
-                promptBuilder.append("  Total Income: ").append(String.format("%.2f", ms.getTotalIncome())).append(" CNY\n");
-                promptBuilder.append("  Total Expense: ").append(String.format("%.2f", ms.getTotalExpense())).append(" CNY\n");
-                double net = ms.getTotalIncome() - ms.getTotalExpense();
-                promptBuilder.append("  Monthly Net Income/Expense: ").append(String.format("%.2f", net)).append(" CNY\n");
-                promptBuilder.append("\n");
-            }
+            String instructions = "Please provide some reasonable savings goal suggestions for my spending habits based on the following monthly income and expense summary data:\n\n";
+            System.out.println("AI Service: Sending savings goals prompt to AI.");
 
-            String aiPrompt = promptBuilder.toString();
-            System.out.println("AI Service: Sending savings goals prompt to AI. Prompt length: " + aiPrompt.length());
-
-            return askAi(aiPrompt);
+            return askAiIncrementally(AiOperation.ANALYSIS, "savings-goals-v2", userFilePath, months,
+                    MonthlyPromptFragments.View.TOTALS, instructions, onDelta, cacheKey, refresh);
         } catch (Exception e) {
             System.err.println("AI Service: Failed to suggest savings goals.");
             e.printStackTrace();
@@ -375,48 +789,47 @@ public class AITransactionService {
         }
     }
 
+    /**
+     * Asynchronous suggestSavingsGoals; cancelling the future cancels the AI request.
+     */
+    public CompletableFuture<String> suggestSavingsGoalsAsync(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        return supplyCancellable("ai-savings-goals", () -> suggestSavingsGoals(userFilePath, onDelta, refresh));
+    }
+
     /**
      * Generates personalized cost-cutting recommendations based on monthly data.
      * @param userFilePath The path to the user's transaction CSV file. (Might not be strictly needed)
      * @return AI recommendations as a String.
      */
     public String givePersonalSavingTips(String userFilePath) {
+        return givePersonalSavingTips(userFilePath, null, false);
+    }
+
+    /**
+     * Streaming variant of givePersonalSavingTips: the answer is passed to onDelta piece by piece as the AI generates it.
+     * @param onDelta Receives answer fragments on the AI worker thread, or null to only return the full answer.
+     * @param refresh True to skip a cached answer and ask the AI again (the new answer replaces the cached one).
+     * @return The complete answer (possibly from the cache), or an error message (error messages are returned, not streamed).
+     */
+    public String givePersonalSavingTips(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        String cacheKey = cacheKey("saving-tips-v2", userFilePath);
+        String cached = refresh ? null : getCachedAnswer(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            Map<String, MonthlySummary> summaries = transactionService.getMonthlyTransactionSummary();
-            System.out.println("AI Service: Retrieved " + summaries.size() + " months of summary data for saving tips.");
+            MonthlyPromptFragments months = monthlyFragments(userFilePath);
+            System.out.println("AI Service: Retrieved " + months.getMonthCount() + " months of summary data for saving tips.");
 
-            if (summaries.isEmpty()) {
+            if (months.isEmpty()) {
                 return "Not enough transaction data found to provide personalized saving tips.";
             }
 
-            StringBuilder promptBuilder = new StringBuilder();
-            promptBuilder.append("Please provide some targeted cost-saving suggestions for me based on the following monthly spending summary data:\n\n");
-
-            List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-            Collections.sort(sortedMonths);
-
-            for (String month : sortedMonths) {
-                MonthlySummary ms = summaries.get(month);
-                promptBuilder.append("--- ").append(ms.getMonthIdentifier()).append(" ---\n");
-                promptBuilder.append("  Total Expense: ").append(String.format("%.2f", ms.getTotalExpense())).append(" CNY\n");
-                promptBuilder.append("  Expense Breakdown:\n");
-                if (ms.getExpenseByCategory().isEmpty()) {
-                    promptBuilder.append("    (No expenses)\n");
-                } else {
-                    // Sort categories by amount descending
-                    ms.getExpenseByCategory().entrySet().stream()
-                            .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                            .forEach(entry ->
-                                    promptBuilder.append(String.format("    %s: %.2f CNY\n", entry.getKey(), entry.getValue()))
-                            );
-                }
-                promptBuilder.append("\n");
-            }
+            String instructions = "Please provide some targeted cost-saving suggestions for me based on the following monthly spending summary data:\n\n";
+            System.out.println("AI Service: Sending personal saving tips prompt to AI.");
 
-            String aiPrompt = promptBuilder.toString();
-            System.out.println("AI Service: Sending personal saving tips prompt to AI. Prompt length: " + aiPrompt.length());
-
-            return askAi(aiPrompt);
+            return askAiIncrementally(AiOperation.ANALYSIS, "saving-tips-v2", userFilePath, months,
+                    MonthlyPromptFragments.View.EXPENSES, instructions, onDelta, cacheKey, refresh);
         } catch (Exception e) {
             System.err.println("AI Service: Failed to give personal saving tips.");
             e.printStackTrace();
@@ -424,12 +837,41 @@ public class AITransactionService {
         }
     }
 
+    /**
+     * Asynchronous givePersonalSavingTips; cancelling the future cancels the AI request.
+     */
+    public CompletableFuture<String> givePersonalSavingTipsAsync(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        return supplyCancellable("ai-saving-tips", () -> givePersonalSavingTips(userFilePath, onDelta, refresh));
+    }
+
+    /**
+     * The shared month-by-month prompt text for the user's ledger, rebuilt only when the ledger changed.
+     */
+    MonthlyPromptFragments monthlyFragments(String userFilePath) throws Exception {
+        return MonthlyPromptFragments.forLedger(userFilePath, transactionService::getMonthlyTransactionSummary);
+    }
+
     public String analyzeSeasonalSpendingPatterns(String userFilePath) {
+        return analyzeSeasonalSpendingPatterns(userFilePath, null, false);
+    }
+
+    /**
+     * Streaming variant of analyzeSeasonalSpendingPatterns: the answer is passed to onDelta piece by piece as the AI generates it.
+     * @param onDelta Receives answer fragments on the AI worker thread, or null to only return the full answer.
+     * @param refresh True to skip a cached answer and ask the AI again (the new answer replaces the cached one).
+     * @return The complete answer (possibly from the cache), or an error message (error messages are returned, not streamed).
+     */
+    public String analyzeSeasonalSpendingPatterns(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        String cacheKey = cacheKey("seasonal-analysis-v2", userFilePath);
+        String cached = refresh ? null : getCachedAnswer(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            Map<String, MonthlySummary> summaries = transactionService.getMonthlyTransactionSummary();
-            System.out.println("AI Service: Retrieved " + summaries.size() + " months of summary data for detailed seasonal analysis.");
+            MonthlyPromptFragments months = monthlyFragments(userFilePath);
+            System.out.println("AI Service: Retrieved " + months.getMonthCount() + " months of summary data for detailed seasonal analysis.");
 
-            if (summaries.isEmpty()) {
+            if (months.isEmpty()) {
                 return "Not enough monthly transaction data found to analyze detailed seasonal spending patterns.";
             }
 
@@ -450,33 +892,11 @@ public class AITransactionService {
 
             promptBuilder.append("Please provide clear, actionable insights and advice based on the data. Here is my monthly financial data:\n\n");
 
+            System.out.println("AI Service: Sending detailed seasonal spending analysis prompt to AI.");
 
-            List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-            Collections.sort(sortedMonths);
-
-            for (String month : sortedMonths) {
-                MonthlySummary ms = summaries.get(month);
-                promptBuilder.append("--- ").append(ms.getMonthIdentifier()).append(" ---\n");
-                promptBuilder.append("  Total Income: ").append(String.format("%.2f", ms.getTotalIncome())).append(" CNY\n");
-                promptBuilder.append("  Total Expense: ").append(String.format("%.2f", ms.getTotalExpense())).append(" CNY\n");
-                promptBuilder.append("  Net (Income - Expense): ").append(String.format("%.2f", ms.getTotalIncome() - ms.getTotalExpense())).append(" CNY\n");
-                promptBuilder.append("  Expense Breakdown:\n");
-                if (ms.getExpenseByCategory().isEmpty()) {
-                    promptBuilder.append("    (No expenses recorded this month)\n");
-                } else {
-                    ms.getExpenseByCategory().entrySet().stream()
-                            .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                            .forEach(entry ->
-                                    promptBuilder.append(String.format("    %s: %.2f CNY\n", entry.getKey(), entry.getValue()))
-                            );
-                }
-                promptBuilder.append("\n");
-            }
-
-            String aiPrompt = promptBuilder.toString();
-            System.out.println("AI Service: Sending detailed seasonal spending analysis prompt to AI. Prompt length: " + aiPrompt.length());
-
-            return askAi(aiPrompt);
+            // A year of months is the largest prompt; follow-ups send the previous analysis plus the changed months
+            return askAiIncrementally(AiOperation.SEASONAL_ANALYSIS, "seasonal-analysis-v2", userFilePath, months,
+                    MonthlyPromptFragments.View.FULL, promptBuilder.toString(), onDelta, cacheKey, refresh);
 
         } catch (Exception e) {
             System.err.println("AI Service: Failed to analyze detailed seasonal spending patterns.");
@@ -487,6 +907,13 @@ public class AITransactionService {
 
 
 
+    /**
+     * Asynchronous analyzeSeasonalSpendingPatterns; cancelling the future cancels the AI request.
+     */
+    public CompletableFuture<String> analyzeSeasonalSpendingPatternsAsync(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        return supplyCancellable("ai-seasonal-analysis", () -> analyzeSeasonalSpendingPatterns(userFilePath, onDelta, refresh));
+    }
+
     // ... Keep other methods like analyzeTransactions, formatTransactions, parseDateTime, askAi ...
 
     // The existing CollegeStudentNeeds class also has budget and tips methods.
@@ -0,0 +1,138 @@
+package Service.AIservice;
+
+import Constants.ConfigConstants;
+import model.AiAnalysisState;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persists the last AI analysis per user and prompt template (see AiAnalysisState), one file per pair
+ * under {@code user.data.base.dir/ai_state}, so incremental analyses also work across restarts.
+ * <p>
+ * File layout: "key: value" header lines (model, template, ledger version, creation time, delta runs,
+ * and one "month:" line per month fingerprint), an empty line, then the analysis text.
+ * Files are replaced atomically; an unreadable file is treated as missing.
+ */
+public class AiAnalysisStateStore {
+
+    private static final String STATE_DIR_NAME = "ai_state";
+    private static final String FILE_SUFFIX = ".txt";
+
+    // Shared instance used by every AITransactionService
+    private static final AiAnalysisStateStore SHARED = new AiAnalysisStateStore(Paths.get(ConfigConstants.USER_DATA_BASE_DIR, STATE_DIR_NAME));
+
+    public static AiAnalysisStateStore shared() {
+        return SHARED;
+    }
+
+    private final Path directory;
+
+    public AiAnalysisStateStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param userKey The user the analysis belongs to.
+     * @param ledgerFilePath The ledger it was built from.
+     * @param templateId The prompt template.
+     * @return The stored state, or null if there is none (or it cannot be read).
+     */
+    public AiAnalysisState load(String userKey, String ledgerFilePath, String templateId) {
+        Path file = fileFor(userKey, ledgerFilePath, templateId);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, String> header = new LinkedHashMap<>();
+            Map<String, String> months = new LinkedHashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(": ");
+                if (colon < 0) {
+                    throw new IOException("malformed header line: " + line);
+                }
+                String key = line.substring(0, colon);
+                String value = line.substring(colon + 2);
+                if (key.equals("month")) {
+                    int equals = value.indexOf('=');
+                    months.put(value.substring(0, equals), value.substring(equals + 1));
+                } else {
+                    header.put(key, value);
+                }
+            }
+            StringBuilder analysis = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                analysis.append(buffer, 0, read);
+            }
+            return new AiAnalysisState(header.get("model"), header.get("template"), header.get("ledger"),
+                    Long.parseLong(header.get("created")), Integer.parseInt(header.get("delta_runs")), months, analysis.toString());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("AiAnalysisStateStore: Ignoring unreadable analysis state " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a state, replacing the previous one for the same user, ledger and template.
+     * Errors are logged; the next analysis then simply runs on the full history.
+     */
+    public void save(String userKey, String ledgerFilePath, AiAnalysisState state) {
+        Path file = fileFor(userKey, ledgerFilePath, state.getTemplateId());
+        File tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            tempFile = File.createTempFile("ai_state_temp", FILE_SUFFIX, directory.toFile());
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write("model: " + state.getModelId() + "\n");
+                writer.write("template: " + state.getTemplateId() + "\n");
+                writer.write("ledger: " + state.getLedgerVersion() + "\n");
+                writer.write("created: " + state.getCreatedMillis() + "\n");
+                writer.write("delta_runs: " + state.getDeltaRuns() + "\n");
+                for (Map.Entry<String, String> month : state.getMonthFingerprints().entrySet()) {
+                    writer.write("month: " + month.getKey() + "=" + month.getValue() + "\n");
+                }
+                writer.write("\n");
+                writer.write(state.getAnalysis());
+            }
+            Files.move(tempFile.toPath(), file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("AiAnalysisStateStore: Failed to save analysis state to " + file + ": " + e.getMessage());
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Forgets the stored analysis, so the next one covers the full history.
+     */
+    public void delete(String userKey, String ledgerFilePath, String templateId) {
+        try {
+            Files.deleteIfExists(fileFor(userKey, ledgerFilePath, templateId));
+        } catch (IOException e) {
+            System.err.println("AiAnalysisStateStore: Failed to delete analysis state: " + e.getMessage());
+        }
+    }
+
+    private Path fileFor(String userKey, String ledgerFilePath, String templateId) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[]{userKey, ledgerFilePath, templateId}) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return directory.resolve(HexFormat.of().formatHex(digest.digest()) + FILE_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e); // Required by every JRE
+        }
+    }
+}
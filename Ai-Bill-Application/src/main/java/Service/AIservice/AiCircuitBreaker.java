@@ -0,0 +1,250 @@
+package Service.AIservice;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending AI requests while the AI service is failing, so callers fail in milliseconds instead of
+ * each waiting for its own timeout.
+ * <p>
+ * - CLOSED: calls go through; their outcomes are kept for a rolling time window. When the window holds at
+ *   least minimumCalls outcomes and the failure rate reaches the threshold, the breaker opens. It also opens
+ *   after consecutiveFailures failures in a row, however long they took: a hanging service fails each call
+ *   only when its deadline (30-600 s, see AiOperation) expires, and with a handful of dispatcher workers
+ *   far fewer than minimumCalls of those fit in one window.
+ * - OPEN: calls fail immediately with AiCircuitOpenException until openDuration has passed.
+ * - HALF_OPEN: a single probe call is let through (others still fail fast). Its success closes the
+ *   breaker with an empty window; its failure opens it again.
+ * <p>
+ * Only failures that indicate a service problem count (timeouts, I/O errors, 429/5xx, broken streams);
+ * an error caused by the request itself shows that the service is answering and counts as a success.
+ */
+public class AiCircuitBreaker {
+
+    public static final Duration DEFAULT_WINDOW = Duration.ofSeconds(60);
+    public static final int DEFAULT_MINIMUM_CALLS = 20;
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+    public static final int DEFAULT_CONSECUTIVE_FAILURES = 5;
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    // Breaker for the configured AI client, shared by every AITransactionService that uses it
+    private static final AiCircuitBreaker SHARED = new AiCircuitBreaker();
+
+    public static AiCircuitBreaker shared() {
+        return SHARED;
+    }
+
+    private final long windowNanos;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int consecutiveFailureThreshold;
+    private final LongSupplier clock;
+
+    // Guarded by this
+    private final ArrayDeque<long[]> outcomes = new ArrayDeque<>(); // {timeNanos, 1 if failed}
+    private int failuresInWindow;
+    private int consecutiveFailures;
+    private State state = State.CLOSED;
+    private long openUntilNanos;
+    private boolean probeInFlight;
+    private long rejectedCalls;
+
+    public AiCircuitBreaker() {
+        this(DEFAULT_WINDOW, DEFAULT_MINIMUM_CALLS, DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_OPEN_DURATION,
+                DEFAULT_CONSECUTIVE_FAILURES, System::nanoTime);
+    }
+
+    /**
+     * @param window How far back outcomes are counted.
+     * @param minimumCalls Outcomes needed in the window before the failure rate is trusted.
+     * @param failureRateThreshold Failure rate (0..1) that opens the breaker.
+     * @param openDuration How long the breaker stays open before a probe is allowed.
+     * @param consecutiveFailures Failures in a row that open the breaker, whatever the window holds.
+     * @param clock Source of System.nanoTime()-like timestamps (replaceable in tests).
+     */
+    public AiCircuitBreaker(Duration window, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                            int consecutiveFailures, LongSupplier clock) {
+        if (minimumCalls < 1 || consecutiveFailures < 1 || failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("AiCircuitBreaker needs minimumCalls >= 1, consecutiveFailures >= 1"
+                    + " and a failure rate threshold in (0, 1]");
+        }
+        this.windowNanos = window.toNanos();
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.consecutiveFailureThreshold = consecutiveFailures;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs one AI call through the breaker and records its outcome.
+     *
+     * @throws AiCircuitOpenException If the breaker is open (the call is not made).
+     * @throws Exception The call's own failure.
+     */
+    public <T> T call(Callable<T> call) throws Exception {
+        acquirePermission();
+        T result;
+        try {
+            result = call.call();
+        } catch (Exception e) {
+            if (isInterruption(e)) {
+                // Cancelled or past its deadline: the deadline itself is recorded by the caller (recordFailure)
+                releaseProbe();
+            } else if (countsAsFailure(e)) {
+                recordFailure();
+            } else {
+                recordSuccess();
+            }
+            throw e;
+        } catch (Error e) {
+            releaseProbe();
+            throw e;
+        }
+        recordSuccess();
+        return result;
+    }
+
+    /**
+     * @return true if a call made now would be attempted (does not reserve the half-open probe).
+     */
+    public synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> clock.getAsLong() - openUntilNanos >= 0;
+            case HALF_OPEN -> !probeInFlight;
+        };
+    }
+
+    private synchronized void acquirePermission() {
+        long now = clock.getAsLong();
+        if (state == State.OPEN && now - openUntilNanos >= 0) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+            System.out.println("AiCircuitBreaker: HALF_OPEN, sending a probe request to the AI service.");
+        }
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true; // This call is the probe
+            return;
+        }
+        rejectedCalls++;
+        throw new AiCircuitOpenException(state == State.OPEN ? retryAfterMillisLocked(now) : 0);
+    }
+
+    /**
+     * Records a successful call (or one the service answered with a request error).
+     */
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probeInFlight = false;
+            outcomes.clear();
+            failuresInWindow = 0;
+            consecutiveFailures = 0;
+            System.out.println("AiCircuitBreaker: CLOSED, the AI service is answering again.");
+            return;
+        }
+        consecutiveFailures = 0;
+        addOutcome(false);
+    }
+
+    /**
+     * Records a call that failed because of the service, e.g. one that ran past its deadline.
+     */
+    public synchronized void recordFailure() {
+        long now = clock.getAsLong();
+        if (state == State.HALF_OPEN) {
+            open(now, "the probe request failed");
+            return;
+        }
+        if (state == State.OPEN) {
+            return; // A call started before the breaker opened
+        }
+        addOutcome(true);
+        consecutiveFailures++;
+        int calls = outcomes.size();
+        if (calls >= minimumCalls && failuresInWindow >= failureRateThreshold * calls) {
+            open(now, failuresInWindow + " of the last " + calls + " calls failed");
+        } else if (consecutiveFailures >= consecutiveFailureThreshold) {
+            open(now, consecutiveFailures + " calls in a row failed");
+        }
+    }
+
+    private synchronized void releaseProbe() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false; // Let the next call probe
+        }
+    }
+
+    private void addOutcome(boolean failed) {
+        long now = clock.getAsLong();
+        outcomes.addLast(new long[]{now, failed ? 1 : 0});
+        if (failed) {
+            failuresInWindow++;
+        }
+        while (!outcomes.isEmpty() && now - outcomes.peekFirst()[0] > windowNanos) {
+            failuresInWindow -= (int) outcomes.pollFirst()[1];
+        }
+    }
+
+    private void open(long now, String reason) {
+        state = State.OPEN;
+        openUntilNanos = now + openNanos;
+        probeInFlight = false;
+        outcomes.clear();
+        failuresInWindow = 0;
+        consecutiveFailures = 0;
+        System.err.println("AiCircuitBreaker: OPEN for " + TimeUnit.NANOSECONDS.toSeconds(openNanos) + " s (" + reason
+                + "); AI requests fail fast until then.");
+    }
+
+    private long retryAfterMillisLocked(long now) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openUntilNanos - now));
+    }
+
+    // Interrupts come from cancellation and deadlines (the dispatcher interrupts the worker running the call)
+    private static boolean isInterruption(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return Thread.currentThread().isInterrupted();
+    }
+
+    static boolean countsAsFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof AiStreamInterruptedException) {
+                return true;
+            }
+        }
+        return AiRequestDispatcher.isRetryable(error);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return Milliseconds until an open breaker lets a probe through (0 if not open).
+     */
+    public synchronized long getRetryAfterMillis() {
+        return state == State.OPEN ? retryAfterMillisLocked(clock.getAsLong()) : 0;
+    }
+
+    /**
+     * @return Number of calls rejected without being attempted.
+     */
+    public synchronized long getRejectedCalls() {
+        return rejectedCalls;
+    }
+}
@@ -0,0 +1,20 @@
+package Service.AIservice;
+
+/**
+ * Thrown instead of sending an AI request while the circuit breaker is open.
+ * The dispatcher never retries it; the breaker decides when the next attempt is allowed.
+ */
+public class AiCircuitOpenException extends RuntimeException {
+
+    private final long retryAfterMillis;
+
+    public AiCircuitOpenException(long retryAfterMillis) {
+        super("The AI service is failing; requests are paused"
+                + (retryAfterMillis > 0 ? " for another " + Math.max(1, (retryAfterMillis + 999) / 1000) + " s" : "") + ".");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,54 @@
+package Service.AIservice;
+
+import java.util.function.Consumer;
+
+/**
+ * A chat-completion backend. Implementations send one prompt per call and throw on failure, so that
+ * AiRequestDispatcher can decide whether to retry; queuing, rate limiting, retries, coalescing and
+ * caching all happen above this interface.
+ * <p>
+ * The dispatcher interrupts the calling thread when a request is cancelled or runs past its deadline;
+ * implementations should then give up promptly (throwing) instead of waiting for the answer.
+ */
+public interface AiClient {
+
+    /**
+     * @return The model (endpoint) id answers come from. Part of response cache keys.
+     */
+    String getModelId();
+
+    /**
+     * @return null if the client can send requests, otherwise a message describing what is missing
+     *         (e.g. an API key).
+     */
+    String getConfigurationError();
+
+    /**
+     * Sends a prompt and waits for the complete answer.
+     *
+     * @param prompt The user message.
+     * @return The answer text.
+     * @throws Exception If the request failed.
+     */
+    String complete(String prompt) throws Exception;
+
+    /**
+     * Sends a prompt and passes the answer to onDelta piece by piece as it is generated.
+     * A failure after some text was delivered must be thrown as AiStreamInterruptedException,
+     * so it is not retried (a retry would repeat the delivered text).
+     *
+     * @param prompt The user message.
+     * @param onDelta Receives answer fragments on the calling thread.
+     * @return The complete answer text.
+     * @throws Exception If the request failed.
+     */
+    String stream(String prompt, Consumer<String> onDelta) throws Exception;
+
+    /**
+     * Opens a connection to the backend ahead of the first request (DNS, TCP and TLS handshake),
+     * so the first real request can reuse it. Blocks until done; failures are logged, not thrown.
+     * Clients without network connections do nothing.
+     */
+    default void warmUp() {
+    }
+}
@@ -0,0 +1,73 @@
+package Service.AIservice;
+
+import Constants.ConfigConstants;
+
+import java.time.Duration;
+
+/**
+ * HTTP tuning for the AI backend's OkHttp client: connection pool, request limits and timeouts.
+ * Loaded from the ai.http.* keys in config.properties (see ConfigConstants for the defaults); every key is optional.
+ */
+public final class AiHttpSettings {
+
+    private final int maxIdleConnections;
+    private final int keepAliveSeconds;
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final Duration connectTimeout;
+    private final Duration timeout;
+
+    public AiHttpSettings(int maxIdleConnections, int keepAliveSeconds, int maxRequests, int maxRequestsPerHost,
+                          Duration connectTimeout, Duration timeout) {
+        if (maxIdleConnections < 1 || keepAliveSeconds < 1 || maxRequests < 1 || maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("AI HTTP pool sizes, keep-alive and request limits must be positive");
+        }
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveSeconds = keepAliveSeconds;
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = Math.min(maxRequestsPerHost, maxRequests); // OkHttp never exceeds maxRequests anyway
+        this.connectTimeout = connectTimeout;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return The settings from config.properties.
+     */
+    public static AiHttpSettings fromConfig() {
+        return new AiHttpSettings(ConfigConstants.AI_HTTP_MAX_IDLE_CONNECTIONS, ConfigConstants.AI_HTTP_KEEP_ALIVE_SECONDS,
+                ConfigConstants.AI_HTTP_MAX_REQUESTS, ConfigConstants.AI_HTTP_MAX_REQUESTS_PER_HOST,
+                Duration.ofSeconds(ConfigConstants.AI_HTTP_CONNECT_TIMEOUT_SECONDS),
+                Duration.ofSeconds(ConfigConstants.AI_HTTP_TIMEOUT_SECONDS));
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public String toString() {
+        return "pool=" + maxIdleConnections + " idle/" + keepAliveSeconds + "s keep-alive, maxRequests=" + maxRequests
+                + " (" + maxRequestsPerHost + " per host), connectTimeout=" + connectTimeout.toSeconds()
+                + "s, timeout=" + timeout.toSeconds() + "s";
+    }
+}
@@ -0,0 +1,216 @@
+package Service.AIservice;
+
+import Utils.TDigest;
+import model.AiDispatchMetrics;
+import model.Transaction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the AI pipeline at a target rate and reports throughput and tail latency.
+ * <p>
+ * Every job categorizes a batch of synthetic transactions with BatchTransactionRecognizer, which runs the
+ * full path: prompt building, AITransactionService.askAi (single-flight, circuit breaker, deadline, dispatcher
+ * queue, rate limit, retries), the AI client, and parsing/validation of the JSON answer. Jobs are started on an open-loop
+ * schedule (a new job every 1/qps seconds whether or not earlier ones finished), and latency is measured
+ * from each job's scheduled start, so queueing delay under overload shows up in the percentiles.
+ * <p>
+ * Run offline against the stub backend:
+ * java Service.AIservice.AiLoadTestHarness [qps] [seconds] [rowsPerJob] [workers] [medianLatencyMillis] [errorRate]
+ */
+public class AiLoadTestHarness {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * Results of a load test run.
+     */
+    public static final class Report {
+        private final long jobsStarted;
+        private final long jobsCompleted; // Every row got a valid category
+        private final long jobsFailed;
+        private final double elapsedSeconds;
+        private final double p50LatencyMillis;
+        private final double p95LatencyMillis;
+        private final double p99LatencyMillis;
+        private final double maxLatencyMillis;
+        private final AiDispatchMetrics dispatchMetrics;
+
+        Report(long jobsStarted, long jobsCompleted, long jobsFailed, double elapsedSeconds, TDigest latency, AiDispatchMetrics dispatchMetrics) {
+            this.jobsStarted = jobsStarted;
+            this.jobsCompleted = jobsCompleted;
+            this.jobsFailed = jobsFailed;
+            this.elapsedSeconds = elapsedSeconds;
+            boolean hasLatency = latency.size() > 0;
+            this.p50LatencyMillis = hasLatency ? latency.quantile(0.5) : 0;
+            this.p95LatencyMillis = hasLatency ? latency.quantile(0.95) : 0;
+            this.p99LatencyMillis = hasLatency ? latency.quantile(0.99) : 0;
+            this.maxLatencyMillis = hasLatency ? latency.getMax() : 0;
+            this.dispatchMetrics = dispatchMetrics;
+        }
+
+        public long getJobsStarted() {
+            return jobsStarted;
+        }
+
+        public long getJobsCompleted() {
+            return jobsCompleted;
+        }
+
+        public long getJobsFailed() {
+            return jobsFailed;
+        }
+
+        public double getThroughputPerSecond() {
+            return elapsedSeconds == 0 ? 0 : jobsCompleted / elapsedSeconds;
+        }
+
+        public double getP50LatencyMillis() {
+            return p50LatencyMillis;
+        }
+
+        public double getP95LatencyMillis() {
+            return p95LatencyMillis;
+        }
+
+        public double getP99LatencyMillis() {
+            return p99LatencyMillis;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyMillis;
+        }
+
+        public AiDispatchMetrics getDispatchMetrics() {
+            return dispatchMetrics;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("jobs started=%d, completed=%d, failed=%d in %.1fs; throughput=%.2f jobs/s; " +
+                            "latency p50=%.0fms, p95=%.0fms, p99=%.0fms, max=%.0fms; dispatcher: %s",
+                    jobsStarted, jobsCompleted, jobsFailed, elapsedSeconds, getThroughputPerSecond(),
+                    p50LatencyMillis, p95LatencyMillis, p99LatencyMillis, maxLatencyMillis, dispatchMetrics);
+        }
+    }
+
+    private final AITransactionService aiService;
+    private final AiRequestDispatcher dispatcher;
+    private final double targetQps;
+    private final Duration duration;
+    private final int rowsPerJob;
+
+    /**
+     * @param client The AI backend to load (usually a StubAiClient).
+     * @param dispatcher A dispatcher dedicated to this run.
+     * @param targetQps Jobs started per second.
+     * @param duration How long to keep starting jobs.
+     * @param rowsPerJob Transactions categorized per job.
+     */
+    public AiLoadTestHarness(AiClient client, AiRequestDispatcher dispatcher, double targetQps, Duration duration, int rowsPerJob) {
+        if (targetQps <= 0 || rowsPerJob < 1) {
+            throw new IllegalArgumentException("AiLoadTestHarness needs a positive rate and at least one row per job");
+        }
+        this.aiService = new AITransactionService(null, "load-test", client, dispatcher);
+        this.dispatcher = dispatcher;
+        this.targetQps = targetQps;
+        this.duration = duration;
+        this.rowsPerJob = rowsPerJob;
+    }
+
+    /**
+     * Runs the load test and waits for the started jobs to finish (up to a drain timeout).
+     */
+    public Report run() throws InterruptedException {
+        TDigest latencyMillis = new TDigest();
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long intervalNanos = (long) (1_000_000_000L / targetQps);
+        long durationNanos = duration.toNanos();
+        long startNanos = System.nanoTime();
+        AtomicLong lastFinishNanos = new AtomicLong(startNanos);
+        long started = 0;
+
+        System.out.println("AiLoadTestHarness: " + targetQps + " jobs/s for " + duration.toMillis() + " ms, " + rowsPerJob + " rows per job.");
+        ExecutorService jobs = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (long job = 0; job * intervalNanos < durationNanos; job++) {
+                long scheduledNanos = startNanos + job * intervalNanos;
+                long waitNanos = scheduledNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                List<Transaction> transactions = syntheticTransactions(job);
+                jobs.submit(() -> {
+                    boolean success;
+                    try {
+                        Map<Integer, String> categories = new BatchTransactionRecognizer(
+                                prompt -> aiService.askAi(AiOperation.BATCH_CATEGORY_RECOGNITION, prompt)).recognize(transactions);
+                        success = categories.size() == transactions.size();
+                    } catch (RuntimeException e) {
+                        System.err.println("AiLoadTestHarness: Job failed: " + e.getMessage());
+                        success = false;
+                    }
+                    long finishedNanos = System.nanoTime();
+                    (success ? completed : failed).incrementAndGet();
+                    lastFinishNanos.accumulateAndGet(finishedNanos, Math::max);
+                    synchronized (latencyMillis) {
+                        latencyMillis.add((finishedNanos - scheduledNanos) / 1_000_000.0); // From the scheduled start
+                    }
+                });
+                started++;
+            }
+        } finally {
+            jobs.shutdown();
+            if (!jobs.awaitTermination(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                System.err.println("AiLoadTestHarness: Jobs still running after " + DRAIN_TIMEOUT.toSeconds() + "s, cancelling them.");
+                jobs.shutdownNow();
+            }
+        }
+
+        double elapsedSeconds = (lastFinishNanos.get() - startNanos) / 1_000_000_000.0;
+        synchronized (latencyMillis) {
+            return new Report(started, completed.get(), failed.get(), elapsedSeconds, latencyMillis, dispatcher.getMetrics());
+        }
+    }
+
+    // Distinct rows per job, so identical prompts are not coalesced by the single-flight layer
+    private List<Transaction> syntheticTransactions(long job) {
+        List<Transaction> transactions = new ArrayList<>(rowsPerJob);
+        for (int i = 0; i < rowsPerJob; i++) {
+            boolean income = i % 10 == 0;
+            transactions.add(new Transaction("2025/03/01 12:00", "", "Merchant " + job + "-" + i, "Item " + i,
+                    income ? "Income" : "Expense", 10 + i, "WeChat", "Paid", "LT" + job + "-" + i, "", ""));
+        }
+        return transactions;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        double qps = args.length > 0 ? Double.parseDouble(args[0]) : 5;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int rowsPerJob = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        double medianLatencyMillis = args.length > 4 ? Double.parseDouble(args[4]) : 800;
+        double errorRate = args.length > 5 ? Double.parseDouble(args[5]) : 0.02;
+
+        StubAiClient client = new StubAiClient(42L, StubAiClient.Latency.logNormal(medianLatencyMillis, 0.5), errorRate);
+        // No rate limit beyond the worker count: the run measures the pipeline, not the Ark quota
+        AiRequestDispatcher dispatcher = new AiRequestDispatcher(workers, 10_000, 10_000,
+                AiRequestDispatcher.DEFAULT_MAX_ATTEMPTS, 100, 2000);
+        try {
+            Report report = new AiLoadTestHarness(client, dispatcher, qps, Duration.ofSeconds(seconds), rowsPerJob).run();
+            System.out.println("AiLoadTestHarness report: " + report);
+            System.out.println(String.format("Stub backend: %d requests (%d injected failures), %d prompt tokens, %d completion tokens.",
+                    client.getRequestCount(), client.getFailureCount(), client.getPromptTokens(), client.getCompletionTokens()));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+}
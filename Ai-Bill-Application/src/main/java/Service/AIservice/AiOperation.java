@@ -0,0 +1,34 @@
+package Service.AIservice;
+
+import java.time.Duration;
+
+/**
+ * The kinds of AI requests the application makes, with their deadlines.
+ * A deadline covers the whole request (queue wait, retries and the call itself); a request that runs past it
+ * is cancelled, freeing its worker, and counts as a failure for the circuit breaker.
+ * Hedgeable operations are short, non-streaming requests for which a second copy may be sent
+ * when the first one is slower than usual (see AITransactionService).
+ */
+public enum AiOperation {
+    CATEGORY_RECOGNITION(Duration.ofSeconds(30), true), // One transaction, a few words of answer
+    BATCH_CATEGORY_RECOGNITION(Duration.ofSeconds(120), false), // Up to 100 rows of JSON
+    BUDGET_SUGGESTION(Duration.ofSeconds(60), true),
+    ANALYSIS(Duration.ofSeconds(300), false), // Streamed free-text reports
+    SEASONAL_ANALYSIS(Duration.ofSeconds(600), false); // A year of monthly data; the longest report
+
+    private final Duration deadline;
+    private final boolean hedgeable;
+
+    AiOperation(Duration deadline, boolean hedgeable) {
+        this.deadline = deadline;
+        this.hedgeable = hedgeable;
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    public boolean isHedgeable() {
+        return hedgeable;
+    }
+}
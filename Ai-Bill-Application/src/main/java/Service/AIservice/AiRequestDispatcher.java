@@ -0,0 +1,475 @@
+package Service.AIservice;
+
+import Utils.TDigest;
+import Utils.TokenBucket;
+import model.AiDispatchMetrics;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Runs AI requests on a small dedicated pool, separate from the application's UI/background executor.
+ * <p>
+ * - Global concurrency cap: at most maxConcurrent requests talk to the AI service at the same time
+ *   (one per worker thread).
+ * - Fairness: every user has their own FIFO queue and workers take from the users in round-robin order,
+ *   so a user who queues a batch of ten prompts cannot starve another user's single request.
+ * - Rate limiting: every attempt (including retries) takes a token from a shared token bucket.
+ * - Retries: timeouts, I/O errors, HTTP 429 and 5xx responses are retried with exponential backoff and
+ *   full jitter; any other error fails the request immediately.
+ * - Deadlines: a request submitted with a deadline fails with a TimeoutException when it is not done in time,
+ *   and so does a cancelled request; in both cases the worker running it is interrupted. The interrupt does not
+ *   stop the HTTP call by itself: the AiClient has to give up on it (ArkAiClient cancels its OkHttp call and
+ *   throws), and then the worker moves on to the next request instead of waiting for the HTTP timeout.
+ * - Background requests (speculative precomputation) wait in their own queue and only run when no user
+ *   request is waiting, on at most all but one of the workers, so a click always finds a free worker soon.
+ *   A background request a user starts waiting for is moved to that user's queue (see promote).
+ * - Metrics: queue depth, in-flight count and end-to-end latency percentiles are available via getMetrics()
+ *   and logged after every request.
+ */
+public class AiRequestDispatcher {
+
+    public static final int DEFAULT_MAX_CONCURRENT = 3;
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 2.0;
+    public static final int DEFAULT_BURST = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+    public static final long DEFAULT_BASE_BACKOFF_MILLIS = 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30_000;
+
+    // Used for requests that are not tied to a logged-in user
+    public static final String DEFAULT_USER_KEY = "default";
+
+    // Status codes and phrases the Ark SDK and OkHttp put into exception messages for transient failures
+    private static final Pattern RETRYABLE_MESSAGE = Pattern.compile(
+            "\\b(429|500|502|503|504)\\b|too many requests|rate limit|timed? ?out|timeout|service unavailable|connection reset",
+            Pattern.CASE_INSENSITIVE);
+
+    // Shared instance used by every AITransactionService, so the limits apply to the whole application
+    private static final AiRequestDispatcher SHARED = new AiRequestDispatcher(
+            DEFAULT_MAX_CONCURRENT, DEFAULT_REQUESTS_PER_SECOND, DEFAULT_BURST,
+            DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+
+    public static AiRequestDispatcher shared() {
+        return SHARED;
+    }
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final TokenBucket rateLimiter;
+    private final ExecutorService workers;
+
+    // Queue state, guarded by lock
+    private final Object lock = new Object();
+    private final Map<String, ArrayDeque<Request<?>>> queuesByUser = new HashMap<>();
+    private final ArrayDeque<String> userRotation = new ArrayDeque<>(); // Users with waiting requests, in serving order
+    private final ArrayDeque<Request<?>> backgroundQueue = new ArrayDeque<>(); // Low-priority requests, FIFO
+    private final int maxBackgroundRunning;
+    private int backgroundRunning;
+    private int queueDepth;
+    private boolean shutdown;
+
+    // Metrics, guarded by lock (except inFlight)
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final TDigest latencyMillis = new TDigest();
+    private long completed;
+    private long failed;
+    private long retries;
+    private double totalQueueWaitMillis;
+
+    public AiRequestDispatcher(int maxConcurrent, double requestsPerSecond, int burst,
+                               int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+        if (maxConcurrent < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("AiRequestDispatcher needs at least one worker and one attempt");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.rateLimiter = new TokenBucket(burst, requestsPerSecond);
+        this.maxBackgroundRunning = Math.max(1, maxConcurrent - 1); // Keep a worker for user requests
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.workers = Executors.newFixedThreadPool(maxConcurrent, runnable -> {
+            Thread thread = new Thread(runnable, "ai-dispatch-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true); // Never keep the application alive just for pending AI work
+            return thread;
+        });
+        for (int i = 0; i < maxConcurrent; i++) {
+            workers.submit(this::workerLoop);
+        }
+        System.out.println("AiRequestDispatcher started: " + maxConcurrent + " workers, " + requestsPerSecond
+                + " requests/s (burst " + burst + "), up to " + maxAttempts + " attempts per request.");
+    }
+
+    /**
+     * Queues an AI request for the given user.
+     *
+     * @param userKey Key of the user the request belongs to (used for fair queuing); null means the default user.
+     * @param call The request. It should throw on failure so retryable errors can be detected.
+     * @return A future completed with the call's result, or exceptionally with its last error.
+     *         A request whose future is cancelled before it starts is skipped when its turn comes.
+     */
+    public <T> CompletableFuture<T> submit(String userKey, Callable<T> call) {
+        return submit(userKey, call, null);
+    }
+
+    /**
+     * Queues an AI request that must finish within a deadline.
+     *
+     * @param deadline Time from now (including queue wait and retries) after which the request fails with a
+     *                 TimeoutException and its attempt is interrupted; null for no deadline.
+     */
+    public <T> CompletableFuture<T> submit(String userKey, Callable<T> call, Duration deadline) {
+        return submit(userKey, call, deadline, false);
+    }
+
+    /**
+     * Queues an AI request, optionally at background priority.
+     *
+     * @param background True for work nobody is waiting for yet (e.g. speculative precomputation): it only
+     *                   starts when no user request is queued, and never occupies the last free worker.
+     */
+    public <T> CompletableFuture<T> submit(String userKey, Callable<T> call, Duration deadline, boolean background) {
+        String key = (userKey == null || userKey.isBlank()) ? DEFAULT_USER_KEY : userKey;
+        Request<T> request = new Request<>(key, call, background);
+        // Whoever completes the future (deadline, caller's cancel, shutdown) frees the worker running the attempt
+        request.future.whenComplete((result, error) -> request.interruptRunner());
+        if (deadline != null) {
+            CompletableFuture.delayedExecutor(deadline.toMillis(), TimeUnit.MILLISECONDS).execute(() ->
+                    request.future.completeExceptionally(new TimeoutException(
+                            "AI request exceeded its deadline of " + deadline.toSeconds() + " s")));
+        }
+        synchronized (lock) {
+            if (shutdown) {
+                request.future.completeExceptionally(new RejectedExecutionException("AiRequestDispatcher is shut down"));
+                return request.future;
+            }
+            if (background) {
+                backgroundQueue.addLast(request);
+            } else {
+                enqueueForUserLocked(request);
+            }
+            queueDepth++;
+            lock.notify();
+        }
+        return request.future;
+    }
+
+    private void enqueueForUserLocked(Request<?> request) {
+        ArrayDeque<Request<?>> queue = queuesByUser.computeIfAbsent(request.userKey, k -> new ArrayDeque<>());
+        if (queue.isEmpty()) {
+            userRotation.addLast(request.userKey); // User becomes eligible for the next round
+        }
+        queue.addLast(request);
+    }
+
+    /**
+     * Raises a background request to normal priority because a user is now waiting for its answer:
+     * if it is still queued, it moves to the back of its user's queue. A request that already started
+     * keeps running on its worker.
+     *
+     * @param future The future returned by submit for the request.
+     * @return true if the request was waiting in the background queue and has been moved.
+     */
+    public boolean promote(CompletableFuture<?> future) {
+        synchronized (lock) {
+            for (Iterator<Request<?>> iterator = backgroundQueue.iterator(); iterator.hasNext(); ) {
+                Request<?> request = iterator.next();
+                if (request.future == future) {
+                    iterator.remove();
+                    request.background = false;
+                    enqueueForUserLocked(request);
+                    lock.notify();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Runs an AI request on the dispatcher and waits for its result.
+     * If the calling thread is interrupted, the request is cancelled.
+     */
+    public <T> T call(String userKey, Callable<T> call) throws Exception {
+        CompletableFuture<T> future = submit(userKey, call);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the next request, serving users in round-robin order, then background requests.
+     * @return The next request, or null once the dispatcher is shut down.
+     */
+    private Request<?> takeNext() throws InterruptedException {
+        synchronized (lock) {
+            while (userRotation.isEmpty() && !canStartBackgroundLocked() && !shutdown) {
+                lock.wait();
+            }
+            if (shutdown) {
+                return null;
+            }
+            if (userRotation.isEmpty()) {
+                backgroundRunning++; // Released in workerLoop when the request is done
+                queueDepth--;
+                return backgroundQueue.pollFirst();
+            }
+            String key = userRotation.pollFirst();
+            ArrayDeque<Request<?>> queue = queuesByUser.get(key);
+            Request<?> request = queue.pollFirst();
+            if (queue.isEmpty()) {
+                queuesByUser.remove(key);
+            } else {
+                userRotation.addLast(key); // Back of the line until every other waiting user has had a turn
+            }
+            queueDepth--;
+            return request;
+        }
+    }
+
+    private boolean canStartBackgroundLocked() {
+        return !backgroundQueue.isEmpty() && backgroundRunning < maxBackgroundRunning;
+    }
+
+    private void workerLoop() {
+        try {
+            Request<?> request;
+            while ((request = takeNext()) != null) {
+                try {
+                    if (request.future.isDone()) {
+                        continue; // Cancelled while waiting in the queue
+                    }
+                    inFlight.incrementAndGet();
+                    try {
+                        execute(request);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                } finally {
+                    if (request.background) {
+                        synchronized (lock) {
+                            backgroundRunning--;
+                            lock.notify(); // The next background request may start now
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Shutting down
+        }
+    }
+
+    private <T> void execute(Request<T> request) throws InterruptedException {
+        long startedNanos = System.nanoTime();
+        double queueWaitMillis = (startedNanos - request.enqueuedNanos) / 1_000_000.0;
+
+        request.attach(Thread.currentThread());
+        try {
+            executeAttempts(request, queueWaitMillis);
+        } catch (InterruptedException e) {
+            if (!request.future.isDone()) {
+                throw e; // Shutting down
+            }
+            recordAbandoned(request, queueWaitMillis); // Interrupted by the deadline or the caller's cancel
+        } finally {
+            request.detach();
+        }
+    }
+
+    private <T> void executeAttempts(Request<T> request, double queueWaitMillis) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            try {
+                T result = request.call.call();
+                if (request.future.isDone()) {
+                    recordAbandoned(request, queueWaitMillis); // Answer arrived after the deadline
+                    return;
+                }
+                // Record before completing so callers see up-to-date metrics
+                recordOutcome(request, queueWaitMillis, attempt, true);
+                request.future.complete(result);
+                return;
+            } catch (Exception e) {
+                if (request.future.isDone()) {
+                    recordAbandoned(request, queueWaitMillis); // Cancelled or past its deadline during the attempt
+                    return;
+                }
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    recordOutcome(request, queueWaitMillis, attempt, false);
+                    request.future.completeExceptionally(e);
+                    return;
+                }
+                long delay = backoffMillis(attempt);
+                synchronized (lock) {
+                    retries++;
+                }
+                System.err.println("AiRequestDispatcher: attempt " + attempt + " for user " + request.userKey
+                        + " failed (" + e.getMessage() + "), retrying in " + delay + " ms.");
+                Thread.sleep(Duration.ofMillis(delay)); // Interrupted if the request is cancelled or times out meanwhile
+            }
+        }
+    }
+
+    private void recordOutcome(Request<?> request, double queueWaitMillis, int attempts, boolean success) {
+        double latency = (System.nanoTime() - request.enqueuedNanos) / 1_000_000.0;
+        AiDispatchMetrics metrics;
+        synchronized (lock) {
+            if (success) {
+                completed++;
+            } else {
+                failed++;
+            }
+            totalQueueWaitMillis += queueWaitMillis;
+            latencyMillis.add(latency);
+            metrics = snapshotLocked();
+        }
+        System.out.println(String.format("AiRequestDispatcher: request for user %s %s in %.0f ms (queued %.0f ms, %d attempt(s)). %s",
+                request.userKey, success ? "completed" : "failed", latency, queueWaitMillis, attempts, metrics));
+    }
+
+    // A request whose future was completed from outside (deadline, cancel) while a worker was running it
+    private void recordAbandoned(Request<?> request, double queueWaitMillis) {
+        if (request.future.isCancelled()) {
+            return; // Not a failure, the caller no longer wanted it
+        }
+        recordOutcome(request, queueWaitMillis, 0, false);
+    }
+
+    /**
+     * Exponential backoff with full jitter: a random delay between 0 and min(max, base * 2^(attempt-1)).
+     */
+    long backoffMillis(int attempt) {
+        long ceiling = baseBackoffMillis << Math.min(attempt - 1, 20);
+        ceiling = Math.min(maxBackoffMillis, ceiling);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Decides whether an AI call failure is transient.
+     * The Ark SDK does not expose typed HTTP errors, so this checks for I/O errors and well-known
+     * status codes or phrases anywhere in the cause chain.
+     */
+    public static boolean isRetryable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof AiStreamInterruptedException) {
+                return false; // Part of the answer was already delivered
+            }
+            if (t instanceof AiCircuitOpenException) {
+                return false; // The circuit breaker decides when to try again
+            }
+            if (t instanceof IOException || t instanceof TimeoutException) {
+                return true;
+            }
+            String message = t.getMessage();
+            if (message != null && RETRYABLE_MESSAGE.matcher(message).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return A snapshot of the queue and latency metrics.
+     */
+    public AiDispatchMetrics getMetrics() {
+        synchronized (lock) {
+            return snapshotLocked();
+        }
+    }
+
+    private AiDispatchMetrics snapshotLocked() {
+        long finished = completed + failed;
+        boolean hasLatency = latencyMillis.size() > 0;
+        return new AiDispatchMetrics(
+                queueDepth,
+                userRotation.size(),
+                inFlight.get(),
+                completed,
+                failed,
+                retries,
+                finished == 0 ? 0 : totalQueueWaitMillis / finished,
+                hasLatency ? latencyMillis.quantile(0.5) : 0,
+                hasLatency ? latencyMillis.quantile(0.95) : 0,
+                hasLatency ? latencyMillis.getMax() : 0);
+    }
+
+    /**
+     * Stops the workers. Requests still waiting in the queue are cancelled.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            for (ArrayDeque<Request<?>> queue : queuesByUser.values()) {
+                for (Request<?> request : queue) {
+                    request.future.cancel(false);
+                }
+            }
+            for (Request<?> request : backgroundQueue) {
+                request.future.cancel(false);
+            }
+            queuesByUser.clear();
+            userRotation.clear();
+            backgroundQueue.clear();
+            queueDepth = 0;
+            lock.notifyAll();
+        }
+        workers.shutdownNow(); // Interrupts requests in backoff or waiting for a rate-limit token
+        System.out.println("AiRequestDispatcher shut down.");
+    }
+
+    private static final class Request<T> {
+        final String userKey;
+        final Callable<T> call;
+        boolean background; // Only changed while queued (see promote), guarded by lock until taken
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long enqueuedNanos = System.nanoTime();
+        private Thread runner; // Worker currently executing this request, guarded by this
+
+        Request(String userKey, Callable<T> call, boolean background) {
+            this.userKey = userKey;
+            this.call = call;
+            this.background = background;
+        }
+
+        synchronized void attach(Thread worker) {
+            runner = worker;
+            if (future.isDone()) {
+                worker.interrupt(); // Completed between being taken from the queue and now
+            }
+        }
+
+        void detach() {
+            synchronized (this) {
+                runner = null;
+            }
+            Thread.interrupted(); // Clear an interrupt meant for this request before taking the next one
+        }
+
+        synchronized void interruptRunner() {
+            if (runner != null && runner != Thread.currentThread()) {
+                runner.interrupt();
+            }
+        }
+    }
+}
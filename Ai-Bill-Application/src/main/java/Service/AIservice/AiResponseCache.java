@@ -0,0 +1,243 @@
+package Service.AIservice;
+
+import Constants.ConfigConstants;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import model.LedgerWatermark;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Two-level cache of AI answers.
+ * Level 1 is an in-memory Caffeine cache; level 2 is one file per answer under
+ * {@code user.data.base.dir/ai_cache}, so answers survive restarts.
+ * <p>
+ * Keys are hashes of everything the answer depends on: the model id, the prompt template id, the
+ * ledger watermark (path, size, modification time and file version) and the request parameters.
+ * Any edit to the ledger therefore changes the key, and stale answers are simply never looked up again;
+ * they age out through the TTL and the size bounds.
+ */
+public class AiResponseCache {
+
+    public static final int DEFAULT_MEMORY_ENTRIES = 200;
+    public static final int DEFAULT_DISK_ENTRIES = 1000;
+    public static final Duration DEFAULT_TTL = Duration.ofDays(7);
+
+    private static final String CACHE_DIR_NAME = "ai_cache";
+    private static final String FILE_SUFFIX = ".txt";
+
+    // Shared instance used by every AITransactionService (disk store under the configured user data directory)
+    private static final AiResponseCache SHARED = new AiResponseCache(
+            Paths.get(ConfigConstants.USER_DATA_BASE_DIR, CACHE_DIR_NAME),
+            DEFAULT_MEMORY_ENTRIES, DEFAULT_DISK_ENTRIES, DEFAULT_TTL);
+
+    public static AiResponseCache shared() {
+        return SHARED;
+    }
+
+    private final Path directory;
+    private final int diskMaxEntries;
+    private final long ttlMillis;
+    private final Cache<String, Entry> memory;
+
+    public AiResponseCache(Path directory, int memoryMaxEntries, int diskMaxEntries, Duration ttl) {
+        this.directory = directory;
+        this.diskMaxEntries = diskMaxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(memoryMaxEntries)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Builds a cache key.
+     *
+     * @param modelId The AI model (endpoint) id.
+     * @param templateId Id of the prompt template; change it whenever the template text changes.
+     * @param ledger The state of the ledger the prompt is built from.
+     * @param parameters Any other request parameters (user request text, time range, ...). Nulls are allowed.
+     * @return A hex SHA-256 key.
+     */
+    public static String key(String modelId, String templateId, LedgerWatermark ledger, String... parameters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            List<String> parts = new ArrayList<>();
+            parts.add(modelId);
+            parts.add(templateId);
+            parts.add(ledger.getFilePath());
+            parts.add(String.valueOf(ledger.getSize()));
+            parts.add(String.valueOf(ledger.getLastModifiedMillis()));
+            parts.add(ledger.getVersion());
+            parts.addAll(Arrays.asList(parameters));
+            for (String part : parts) {
+                byte[] bytes = String.valueOf(part).getBytes(StandardCharsets.UTF_8);
+                // Length prefix keeps ("ab", "c") and ("a", "bc") apart
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ':');
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e); // Required by every JRE
+        }
+    }
+
+    /**
+     * Looks an answer up in memory, then on disk (promoting disk hits to memory).
+     * @return The cached answer, or null if there is none or it has expired.
+     */
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = memory.getIfPresent(key);
+        if (entry != null && !entry.isExpired(now, ttlMillis)) {
+            return entry.response;
+        }
+        entry = readFromDisk(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(now, ttlMillis)) {
+            deleteQuietly(fileFor(key));
+            return null;
+        }
+        memory.put(key, entry);
+        return entry.response;
+    }
+
+    /**
+     * Stores an answer in memory and on disk. Disk errors are logged and otherwise ignored;
+     * the answer is still cached in memory.
+     */
+    public void put(String key, String response) {
+        if (response == null) {
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), response);
+        memory.put(key, entry);
+        try {
+            writeToDisk(key, entry);
+            evictOldestFromDisk();
+        } catch (IOException e) {
+            System.err.println("AiResponseCache: Failed to write cached AI answer to " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes an answer from both levels.
+     */
+    public void invalidate(String key) {
+        memory.invalidate(key);
+        deleteQuietly(fileFor(key));
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    private Entry readFromDisk(String key) {
+        Path file = fileFor(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            // First line: creation time in epoch millis; the rest is the answer
+            String firstLine = reader.readLine();
+            if (firstLine == null) {
+                throw new IOException("empty cache file");
+            }
+            long createdMillis = Long.parseLong(firstLine.trim());
+            StringBuilder response = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                response.append(buffer, 0, read);
+            }
+            return new Entry(createdMillis, response.toString());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("AiResponseCache: Ignoring unreadable cache file " + file + ": " + e.getMessage());
+            deleteQuietly(file);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) throws IOException {
+        Files.createDirectories(directory);
+        File tempFile = File.createTempFile("ai_cache_temp", FILE_SUFFIX, directory.toFile());
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(Long.toString(entry.createdMillis));
+            writer.write('\n');
+            writer.write(entry.response);
+        } catch (IOException e) {
+            tempFile.delete(); // Clean up temp file on failure
+            throw e;
+        }
+        try {
+            Files.move(tempFile.toPath(), fileFor(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps the disk store within diskMaxEntries by deleting the oldest files.
+     */
+    private void evictOldestFromDisk() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(FILE_SUFFIX)
+                            && !p.getFileName().toString().startsWith("ai_cache_temp"))
+                    .toList();
+        }
+        if (files.size() <= diskMaxEntries) {
+            return;
+        }
+        List<Path> oldestFirst = new ArrayList<>(files);
+        oldestFirst.sort(Comparator.comparingLong(AiResponseCache::lastModifiedOrZero));
+        for (Path file : oldestFirst.subList(0, files.size() - diskMaxEntries)) {
+            deleteQuietly(file);
+        }
+    }
+
+    private static long lastModifiedOrZero(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("AiResponseCache: Failed to delete cache file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        final long createdMillis;
+        final String response;
+
+        Entry(long createdMillis, String response) {
+            this.createdMillis = createdMillis;
+            this.response = response;
+        }
+
+        boolean isExpired(long nowMillis, long ttlMillis) {
+            return nowMillis - createdMillis > ttlMillis;
+        }
+    }
+}
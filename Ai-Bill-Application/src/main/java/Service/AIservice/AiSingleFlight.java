@@ -0,0 +1,270 @@
+package Service.AIservice;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Coalesces identical AI requests that are in flight at the same time.
+ * <p>
+ * The first caller for a key (the leader) starts the request; callers arriving with the same key
+ * before it completes join it and receive the same answer, so a double-clicked button or a batch of
+ * identical prompts costs one AI call. Streaming joiners get the text streamed so far replayed, then
+ * every further delta. A joiner that is interrupted only stops waiting; the request itself is
+ * cancelled when the last waiting caller gives up.
+ * <p>
+ * A background request (speculative precomputation) always streams into its flight, so a user who clicks
+ * while it runs still sees the answer arrive; the first such caller also raises it to foreground priority.
+ * <p>
+ * Nothing is kept after a request completes; repeating a finished request is the response cache's job.
+ */
+public class AiSingleFlight {
+
+    // Shared instance used by every AITransactionService
+    private static final AiSingleFlight SHARED = new AiSingleFlight();
+
+    public static AiSingleFlight shared() {
+        return SHARED;
+    }
+
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Builds a coalescing key from a model id and a prompt. Whitespace differences are ignored.
+     */
+    public static String key(String modelId, String prompt) {
+        String normalized = prompt == null ? "" : prompt.trim().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(modelId).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e); // Required by every JRE
+        }
+    }
+
+    /**
+     * Runs a request, or joins the identical one already in flight, and waits for its answer.
+     *
+     * @param key Coalescing key, see key(modelId, prompt).
+     * @param starter Starts the request if this caller is the leader. It receives the sink for streamed
+     *                deltas (null if the leader does not stream) and returns the future of the full answer.
+     * @param onDelta Receives answer fragments, or null. A caller that joins a non-streaming request only
+     *                gets the full answer.
+     * @return The answer.
+     * @throws InterruptedException If this caller was interrupted while waiting.
+     * @throws Exception The request's failure.
+     */
+    public String call(String key, Function<Consumer<String>, CompletableFuture<String>> starter,
+                       Consumer<String> onDelta) throws Exception {
+        return call(key, starter, onDelta, null);
+    }
+
+    /**
+     * Like call(key, starter, onDelta), for a caller that may be running in the background.
+     *
+     * @param promoter null if somebody is waiting for this caller's answer. For a background caller, raises
+     *                 the request it started to foreground priority (e.g. AiRequestDispatcher.promote); called
+     *                 at most once, when a caller somebody is waiting for joins the flight.
+     */
+    public String call(String key, Function<Consumer<String>, CompletableFuture<String>> starter,
+                       Consumer<String> onDelta, Consumer<CompletableFuture<String>> promoter) throws Exception {
+        Flight flight = new Flight(promoter);
+        while (true) {
+            Flight existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                break; // This caller is the leader
+            }
+            if (existing.join(onDelta)) {
+                if (promoter == null) {
+                    existing.promote(); // Somebody is waiting for this request now
+                }
+                coalesced.incrementAndGet();
+                System.out.println("AiSingleFlight: Joined an identical in-flight AI request (" + coalesced.get()
+                        + " coalesced, " + started.get() + " started so far).");
+                return await(key, existing, onDelta);
+            }
+            // The existing flight was just abandoned by its last waiter; replace it
+            inFlight.remove(key, existing);
+        }
+        started.incrementAndGet();
+        flight.join(onDelta);
+        // A background request streams even without a listener, for the callers who may join it
+        start(key, flight, starter, onDelta != null || promoter != null);
+        return await(key, flight, onDelta);
+    }
+
+    private void start(String key, Flight flight, Function<Consumer<String>, CompletableFuture<String>> starter, boolean stream) {
+        CompletableFuture<String> request;
+        try {
+            request = starter.apply(stream ? flight::emit : null);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            return;
+        }
+        flight.setRequest(request);
+        request.whenComplete((answer, error) -> {
+            // Later callers start a new request (or hit the response cache)
+            inFlight.remove(key, flight);
+            if (error != null) {
+                flight.result.completeExceptionally(error);
+            } else {
+                flight.result.complete(answer);
+            }
+        });
+    }
+
+    private String await(String key, Flight flight, Consumer<String> onDelta) throws Exception {
+        try {
+            return flight.result.get();
+        } catch (InterruptedException e) {
+            if (flight.leave(onDelta)) {
+                inFlight.remove(key, flight);
+            }
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return Number of requests actually started.
+     */
+    public long getStartedCount() {
+        return started.get();
+    }
+
+    /**
+     * @return Number of calls that joined an in-flight request instead of starting one.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return Number of distinct requests currently in flight.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    // One in-flight request and the callers waiting for it
+    private static final class Flight {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        // Guarded by this
+        private final StringBuilder streamed = new StringBuilder();
+        private final List<Consumer<String>> listeners = new ArrayList<>();
+        private int waiters;
+        private boolean abandoned;
+        private CompletableFuture<String> request;
+        private Consumer<CompletableFuture<String>> promoter; // Set while the request is at background priority
+        private boolean awaited; // A caller somebody is waiting for has joined
+
+        Flight(Consumer<CompletableFuture<String>> promoter) {
+            this.promoter = promoter;
+        }
+
+        /**
+         * Registers a waiting caller.
+         * @return false if the flight was already abandoned by all its waiters and must not be joined.
+         */
+        synchronized boolean join(Consumer<String> onDelta) {
+            if (abandoned) {
+                return false;
+            }
+            waiters++;
+            if (onDelta != null) {
+                if (streamed.length() > 0) {
+                    onDelta.accept(streamed.toString()); // Catch up on what was streamed before joining
+                }
+                listeners.add(onDelta);
+            }
+            return true;
+        }
+
+        /**
+         * Unregisters a caller that stopped waiting; cancels the request when nobody is left.
+         * @return true if the flight was abandoned.
+         */
+        synchronized boolean leave(Consumer<String> onDelta) {
+            if (onDelta != null) {
+                listeners.remove(onDelta);
+            }
+            waiters--;
+            if (waiters > 0 || result.isDone()) {
+                return false;
+            }
+            abandoned = true;
+            if (request != null) {
+                request.cancel(true);
+            }
+            return true;
+        }
+
+        void setRequest(CompletableFuture<String> request) {
+            Runnable promotion;
+            synchronized (this) {
+                this.request = request;
+                if (abandoned) {
+                    request.cancel(true);
+                }
+                promotion = takePromotion();
+            }
+            if (promotion != null) {
+                promotion.run(); // A waiting caller joined before the request was started
+            }
+        }
+
+        /**
+         * Raises a background request to foreground priority, now or as soon as it has been started.
+         */
+        void promote() {
+            Runnable promotion;
+            synchronized (this) {
+                awaited = true;
+                promotion = takePromotion();
+            }
+            if (promotion != null) {
+                promotion.run(); // Outside the lock: the promoter takes the dispatcher's lock
+            }
+        }
+
+        // Guarded by this; returns the pending promotion at most once
+        private Runnable takePromotion() {
+            if (!awaited || promoter == null || request == null) {
+                return null;
+            }
+            Consumer<CompletableFuture<String>> pendingPromoter = promoter;
+            CompletableFuture<String> pendingRequest = request;
+            promoter = null;
+            return () -> pendingPromoter.accept(pendingRequest);
+        }
+
+        synchronized void emit(String delta) {
+            streamed.append(delta);
+            for (Consumer<String> listener : listeners) {
+                listener.accept(delta);
+            }
+        }
+    }
+}
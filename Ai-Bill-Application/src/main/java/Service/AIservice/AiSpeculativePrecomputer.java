@@ -0,0 +1,165 @@
+package Service.AIservice;
+
+import Service.TransactionService;
+import Utils.LedgerChangeNotifier;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Precomputes the AI analyses a user usually opens next (personal summary, budget suggestion), so the first
+ * click is answered from the response cache instead of waiting for the AI.
+ * <p>
+ * A run starts once the user's ledger has been quiet for the settle delay after login or after the last change
+ * (import, add, edit, delete). The analyses run one after another on a low-priority daemon thread, and their
+ * AI requests are queued at background priority (see AITransactionService.inBackground), so they never delay
+ * a request the user is waiting for. A further ledger change cancels the run (its answers would be stale)
+ * and schedules a new one; stop() cancels everything, e.g. when the user logs out or the application exits.
+ * Opt-in via ai.speculative.enabled, since the answers cost tokens whether or not they are opened.
+ */
+public class AiSpeculativePrecomputer {
+
+    private final String ledgerFilePath;
+    private final long settleDelayMillis;
+    private final Map<String, Callable<?>> analyses; // Name -> analysis; each stores its answer in the response cache
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<String> ledgerChangeListener = this::onLedgerChanged;
+
+    // Scheduled or running speculation; guarded by this
+    private ScheduledFuture<?> pendingRun;
+    private boolean stopped;
+
+    private final AtomicLong completedAnalyses = new AtomicLong();
+    private final AtomicLong cancelledRuns = new AtomicLong();
+
+    /**
+     * Creates a precomputer for the personal summary and the budget suggestion of the logged-in user.
+     *
+     * @param aiService The user's AI service; the analyses use its background view.
+     * @param transactionService The user's transaction service.
+     * @param ledgerFilePath The user's transaction file.
+     * @param settleDelay Quiet time after the last ledger change before the analyses are precomputed.
+     */
+    public static AiSpeculativePrecomputer forUser(AITransactionService aiService, TransactionService transactionService,
+                                                   String ledgerFilePath, Duration settleDelay) {
+        AITransactionService speculative = aiService.inBackground();
+        CollegeStudentNeeds studentNeeds = new CollegeStudentNeeds(transactionService, speculative);
+        Map<String, Callable<?>> analyses = new LinkedHashMap<>();
+        analyses.put("personal summary", () -> speculative.generatePersonalSummary(ledgerFilePath));
+        analyses.put("budget suggestion", () -> studentNeeds.generateBudget(ledgerFilePath));
+        return new AiSpeculativePrecomputer(ledgerFilePath, settleDelay, analyses);
+    }
+
+    /**
+     * @param ledgerFilePath The ledger whose changes reschedule the analyses.
+     * @param settleDelay Quiet time after the last ledger change before the analyses run.
+     * @param analyses The analyses to run, in order.
+     */
+    public AiSpeculativePrecomputer(String ledgerFilePath, Duration settleDelay, Map<String, Callable<?>> analyses) {
+        this.ledgerFilePath = ledgerFilePath;
+        this.settleDelayMillis = settleDelay.toMillis();
+        this.analyses = new LinkedHashMap<>(analyses);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-speculative");
+            thread.setDaemon(true); // Never keep the application alive
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules the first run (the ledger just became the user's current one) and follows ledger changes.
+     */
+    public void start() {
+        LedgerChangeNotifier.addListener(ledgerChangeListener);
+        schedule();
+        System.out.println("AiSpeculativePrecomputer started for " + ledgerFilePath + ": " + analyses.keySet()
+                + " after " + settleDelayMillis + " ms of quiet.");
+    }
+
+    /**
+     * Cancels the scheduled or running speculation and stops following ledger changes.
+     */
+    public void stop() {
+        LedgerChangeNotifier.removeListener(ledgerChangeListener);
+        synchronized (this) {
+            stopped = true;
+            cancelPendingLocked();
+        }
+        scheduler.shutdownNow();
+        System.out.println("AiSpeculativePrecomputer stopped.");
+    }
+
+    // Debounces ledger changes: each change cancels the current speculation and pushes the next one back
+    private void onLedgerChanged(String filePath) {
+        if (Objects.equals(ledgerFilePath, filePath)) {
+            schedule();
+        }
+    }
+
+    private synchronized void schedule() {
+        if (stopped) {
+            return;
+        }
+        cancelPendingLocked();
+        try {
+            pendingRun = scheduler.schedule(this::runAnalyses, settleDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Scheduler already stopped; ignore
+        }
+    }
+
+    private void cancelPendingLocked() {
+        if (pendingRun != null && pendingRun.cancel(true)) { // Interrupting a running analysis cancels its AI request
+            cancelledRuns.incrementAndGet();
+        }
+        pendingRun = null;
+    }
+
+    // Runs on the scheduler thread; an interrupt means the data changed or the user left
+    private void runAnalyses() {
+        for (Map.Entry<String, Callable<?>> analysis : analyses.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) {
+                System.out.println("AiSpeculativePrecomputer: Speculation cancelled before the " + analysis.getKey() + ".");
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                analysis.getValue().call(); // Answers are kept by the response cache
+                if (!Thread.currentThread().isInterrupted()) {
+                    completedAnalyses.incrementAndGet();
+                    System.out.println("AiSpeculativePrecomputer: Finished the " + analysis.getKey() + " in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Nothing is lost: the user's click simply asks the AI itself
+                System.err.println("AiSpeculativePrecomputer: Precomputing the " + analysis.getKey() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return Number of analyses precomputed so far.
+     */
+    public long getCompletedAnalyses() {
+        return completedAnalyses.get();
+    }
+
+    /**
+     * @return Number of scheduled or running speculations cancelled by a ledger change or stop().
+     */
+    public long getCancelledRuns() {
+        return cancelledRuns.get();
+    }
+}
@@ -0,0 +1,19 @@
+package Service.AIservice;
+
+/**
+ * Thrown when a streaming AI response fails after part of the answer was already passed to the caller.
+ * The dispatcher never retries it, since a retry would deliver the same text twice.
+ */
+public class AiStreamInterruptedException extends RuntimeException {
+
+    private final int deliveredCharacters;
+
+    public AiStreamInterruptedException(int deliveredCharacters, Throwable cause) {
+        super("AI response stream broke off after " + deliveredCharacters + " characters: " + cause.getMessage(), cause);
+        this.deliveredCharacters = deliveredCharacters;
+    }
+
+    public int getDeliveredCharacters() {
+        return deliveredCharacters;
+    }
+}
@@ -0,0 +1,220 @@
+package Service.AIservice;
+
+import com.volcengine.ark.runtime.interceptor.AuthenticationInterceptor;
+import com.volcengine.ark.runtime.model.completion.chat.ChatCompletionRequest;
+import com.volcengine.ark.runtime.model.completion.chat.ChatMessage;
+import com.volcengine.ark.runtime.model.completion.chat.ChatMessageRole;
+import com.volcengine.ark.runtime.service.ArkApi;
+import com.volcengine.ark.runtime.service.ArkService;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * AiClient backed by the VolcEngine Ark chat-completion API.
+ */
+public class ArkAiClient implements AiClient {
+
+    public static final String DEFAULT_BASE_URL = "https://ark.cn-beijing.volces.com/api/v3";
+    public static final String DEFAULT_MODEL_ID = "ep-20250308174053-7pbkq"; // Use your model name
+
+    private final String apiKey;
+    private final String baseUrl;
+    private final String modelId;
+    private final AiHttpSettings httpSettings;
+    // The one OkHttp client behind the ArkService; the warm-up goes through it too. OkHttp only hands a pooled
+    // connection to a request with an equal Address, which includes the client's SSLSocketFactory, and every
+    // client built without an explicit factory gets its own - so a separate warm-up client would never help.
+    private final OkHttpClient httpClient;
+    // ArkService is thread-safe; one instance (and connection pool) per client
+    private final ArkService service;
+    // The OkHttp call each waiting thread started, so interrupting the thread can cancel its call
+    private final Map<Thread, Call> runningCalls = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a client for the default endpoint and model, with the API key from the ARK_API_KEY environment variable
+     * and the HTTP settings from config.properties.
+     */
+    public ArkAiClient() {
+        this(System.getenv("ARK_API_KEY"), DEFAULT_BASE_URL, DEFAULT_MODEL_ID, AiHttpSettings.fromConfig());
+    }
+
+    public ArkAiClient(String apiKey, String baseUrl, String modelId, AiHttpSettings httpSettings) {
+        this(apiKey, baseUrl, modelId, httpSettings, new OkHttpClient.Builder());
+    }
+
+    /**
+     * @param httpClientBuilder The base for the OkHttp client, e.g. with the TLS trust of a test server;
+     *                          pool, limits, timeouts and authentication are set here.
+     */
+    ArkAiClient(String apiKey, String baseUrl, String modelId, AiHttpSettings httpSettings, OkHttpClient.Builder httpClientBuilder) {
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
+        this.modelId = modelId;
+        this.httpSettings = httpSettings;
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(httpSettings.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(httpSettings.getMaxRequestsPerHost()); // Streaming calls are async and count here
+        this.httpClient = httpClientBuilder
+                .addInterceptor(new AuthenticationInterceptor(apiKey)) // Ensure API_KEY is loaded
+                .connectionPool(new ConnectionPool(httpSettings.getMaxIdleConnections(), httpSettings.getKeepAliveSeconds(), TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(httpSettings.getConnectTimeout())
+                .readTimeout(httpSettings.getTimeout())
+                .eventListenerFactory(this::recordCall)
+                .build();
+        // What ArkService.builder() does with its own client; Retrofit wants the base URL to end with a slash
+        String retrofitBaseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.service = new ArkService(
+                ArkService.defaultRetrofit(httpClient, ArkService.defaultObjectMapper(), retrofitBaseUrl).create(ArkApi.class),
+                httpClient.dispatcher().executorService());
+        System.out.println("AI Service: Ark client HTTP settings: " + httpSettings);
+    }
+
+    @Override
+    public String getModelId() {
+        return modelId;
+    }
+
+    @Override
+    public String getConfigurationError() {
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            return "ARK_API_KEY not set.";
+        }
+        return null;
+    }
+
+    /**
+     * Performs a single chat completion call. Throws on failure so the dispatcher can decide whether to retry.
+     * <p>
+     * Built on the streaming API and collected here: the SDK's blocking call waits in a socket read that
+     * ignores interrupts, while a streamed call can be cancelled (see streamCompletion).
+     */
+    @Override
+    public String complete(String prompt) throws Exception {
+        System.out.println("AI Service: Sending request to VolcEngine Ark...");
+        String responseContent = streamCompletion(prompt, null);
+        System.out.println("AI Service: Received response from AI.");
+        return responseContent;
+    }
+
+    /**
+     * Performs a single streaming chat completion call, passing every content delta to onDelta.
+     * A failure before any text arrived is thrown as-is (and may be retried by the dispatcher);
+     * a failure after text was streamed is not retried, because the retry would repeat that text.
+     */
+    @Override
+    public String stream(String prompt, Consumer<String> onDelta) throws Exception {
+        System.out.println("AI Service: Sending streaming request to VolcEngine Ark...");
+        String answer = streamCompletion(prompt, onDelta);
+        System.out.println("AI Service: Streamed response from AI complete (" + answer.length() + " characters).");
+        return answer;
+    }
+
+    /**
+     * Streams one chat completion and collects the answer; onDelta (may be null) receives every content delta.
+     * <p>
+     * blockingForEach waits interruptibly, but disposing the subscription does not stop the HTTP call. So when
+     * this thread is interrupted (cancel, deadline, a hedge copy that lost) the OkHttp call it started is
+     * cancelled, which closes its connection at once instead of leaving the request running until the HTTP
+     * timeout, and InterruptedException is thrown.
+     */
+    private String streamCompletion(String prompt, Consumer<String> onDelta) throws InterruptedException {
+        StringBuilder answer = new StringBuilder();
+        boolean finished = false;
+        try {
+            service.streamChatCompletion(buildChatCompletionRequest(prompt))
+                    .blockingForEach(chunk -> {
+                        if (chunk.getChoices() == null || chunk.getChoices().isEmpty()) {
+                            return;
+                        }
+                        ChatMessage message = chunk.getChoices().get(0).getMessage();
+                        // Reasoning content (if the model produces any) is not part of the answer
+                        if (message == null || message.getContent() == null) {
+                            return;
+                        }
+                        String delta = message.getContent().toString();
+                        if (!delta.isEmpty()) {
+                            answer.append(delta);
+                            if (onDelta != null) {
+                                onDelta.accept(delta);
+                            }
+                        }
+                    });
+            finished = true;
+        } catch (RuntimeException e) {
+            // blockingForEach wraps the InterruptedException and clears the interrupt flag
+            if (e.getCause() instanceof InterruptedException || Thread.interrupted()) {
+                throw new InterruptedException("AI request cancelled");
+            }
+            if (onDelta != null && answer.length() > 0) {
+                throw new AiStreamInterruptedException(answer.length(), e);
+            }
+            throw e;
+        } finally {
+            Call call = runningCalls.remove(Thread.currentThread());
+            if (call != null && !finished) {
+                call.cancel(); // Closes the connection; does nothing for a call that already failed
+            }
+        }
+        return answer.toString();
+    }
+
+    // OkHttp creates a call's event listener in the Call constructor, i.e. on the thread that starts the call
+    // (Retrofit starts it when blockingForEach subscribes), so this records which call a thread waits for
+    private EventListener recordCall(Call call) {
+        runningCalls.put(Thread.currentThread(), call);
+        return EventListener.NONE;
+    }
+
+    // For tests: calls the OkHttp dispatcher still runs
+    int runningCallCount() {
+        return httpClient.dispatcher().runningCallsCount();
+    }
+
+    /**
+     * Sends a HEAD request to the endpoint through the ArkService's own OkHttp client. The answer does not
+     * matter (it is usually 404 without a model call); what stays behind is an open, TLS-handshaked connection
+     * that the pool keeps for keep_alive_seconds and the next chat completion reuses.
+     */
+    @Override
+    public void warmUp() {
+        if (getConfigurationError() != null) {
+            return; // No requests will be sent, nothing to warm up
+        }
+        long startNanos = System.nanoTime();
+        // newBuilder() shares the pool and the SSLSocketFactory, so the connection still matches chat completions
+        OkHttpClient warmUpClient = httpClient.newBuilder().readTimeout(httpSettings.getConnectTimeout()).build();
+        Request request = new Request.Builder().url(baseUrl).head().build();
+        try (Response response = warmUpClient.newCall(request).execute()) {
+            System.out.println("AI Service: Connection to the AI endpoint warmed up in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms (HTTP " + response.code() + ").");
+        } catch (Exception e) {
+            // Not fatal: the first AI request will connect on its own
+            System.err.println("AI Service: Connection warm-up failed: " + e.getMessage());
+        } finally {
+            runningCalls.remove(Thread.currentThread());
+        }
+    }
+
+    private ChatCompletionRequest buildChatCompletionRequest(String prompt) {
+        List<ChatMessage> messages = List.of(
+                ChatMessage.builder().role(ChatMessageRole.USER).content(prompt).build()
+        );
+
+        return ChatCompletionRequest.builder()
+                .model(modelId)
+                .messages(messages)
+                .build();
+    }
+}
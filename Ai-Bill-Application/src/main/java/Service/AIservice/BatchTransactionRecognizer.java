@@ -0,0 +1,214 @@
+package Service.AIservice;
+
+import Constants.StandardCategories;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import model.Transaction;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Recognizes the categories of many transactions with few AI requests.
+ * <p>
+ * Transactions are packed into batches that fit a prompt token budget; every row carries a stable id
+ * (its index in the input list) and the AI is asked for a JSON array of {"id", "category"} objects.
+ * Each returned label is validated against StandardCategories.ALL_KNOWN_TYPES. Rows that are missing
+ * from the answer, have an unknown label, or belong to a batch whose answer could not be parsed are
+ * retried in new batches, up to maxRounds rounds. Batches of the same round are sent concurrently;
+ * the AI request dispatcher bounds how many actually run at once.
+ */
+public class BatchTransactionRecognizer {
+
+    public static final int DEFAULT_MAX_PROMPT_TOKENS = 6000;
+    public static final int DEFAULT_MAX_ROWS_PER_BATCH = 100;
+    public static final int DEFAULT_MAX_ROUNDS = 3;
+
+    // Rough size of one {"id":123,"category":"Daily Necessities"} answer object, in tokens
+    static final int OUTPUT_TOKENS_PER_ROW = 16;
+
+    private static final String PROMPT_HEADER =
+            "Classify each of the following transactions. The category of every transaction must exactly match one of the entries in the following list:\n" +
+                    StandardCategories.getAllCategoriesString() + "\n" +
+                    "If a category cannot be determined, use 'Other Expenses' or 'Other Income' (depending on the In/Out direction).\n" +
+                    "Each line is: id|In/Out|Transaction Type|Counterparty|Commodity|Amount(CNY)|Payment Method|Remarks\n" +
+                    "Return only a JSON array with one object per line, in the form [{\"id\":1,\"category\":\"Dining\"}], with no additional text.\n" +
+                    "Transactions:\n";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // Lower-cased label -> canonical label, so "dining" or " Dining " are accepted as "Dining"
+    private static final Map<String, String> KNOWN_TYPES_BY_LOWER_CASE = new HashMap<>();
+
+    static {
+        for (String type : StandardCategories.ALL_KNOWN_TYPES) {
+            KNOWN_TYPES_BY_LOWER_CASE.put(type.toLowerCase(Locale.ROOT), type);
+        }
+    }
+
+    private final Function<String, String> aiCall;
+    private final int maxPromptTokens;
+    private final int maxRowsPerBatch;
+    private final int maxRounds;
+
+    /**
+     * @param aiCall Sends a prompt to the AI and returns its answer (e.g. AITransactionService::askAi).
+     */
+    public BatchTransactionRecognizer(Function<String, String> aiCall) {
+        this(aiCall, DEFAULT_MAX_PROMPT_TOKENS, DEFAULT_MAX_ROWS_PER_BATCH, DEFAULT_MAX_ROUNDS);
+    }
+
+    public BatchTransactionRecognizer(Function<String, String> aiCall, int maxPromptTokens, int maxRowsPerBatch, int maxRounds) {
+        this.aiCall = aiCall;
+        this.maxPromptTokens = maxPromptTokens;
+        this.maxRowsPerBatch = maxRowsPerBatch;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * Recognizes the categories of the given transactions.
+     *
+     * @param transactions The transactions to classify.
+     * @return Category per index into the transactions list. Rows that could not be classified
+     *         within maxRounds rounds are absent.
+     */
+    public Map<Integer, String> recognize(List<Transaction> transactions) {
+        Map<Integer, String> categories = new TreeMap<>();
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            if (transactions.get(i) != null) {
+                pending.add(i);
+            }
+        }
+
+        for (int round = 1; round <= maxRounds && !pending.isEmpty(); round++) {
+            List<List<Integer>> batches = packBatches(transactions, pending);
+            System.out.println("BatchTransactionRecognizer: Round " + round + ", " + pending.size()
+                    + " transaction(s) in " + batches.size() + " batch(es).");
+
+            // Send all batches of this round concurrently; the dispatcher bounds the actual AI concurrency
+            List<Future<Map<Integer, String>>> results = new ArrayList<>();
+            try (ExecutorService batchExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (List<Integer> batch : batches) {
+                    results.add(batchExecutor.submit(() -> recognizeBatch(transactions, batch)));
+                }
+                for (Future<Map<Integer, String>> result : results) {
+                    try {
+                        categories.putAll(result.get());
+                    } catch (Exception e) {
+                        // The rows of this batch stay pending and are retried in the next round
+                        System.err.println("BatchTransactionRecognizer: Batch failed: " + e.getMessage());
+                    }
+                }
+            }
+
+            List<Integer> stillPending = new ArrayList<>();
+            for (Integer index : pending) {
+                if (!categories.containsKey(index)) {
+                    stillPending.add(index);
+                }
+            }
+            pending = stillPending;
+        }
+
+        if (!pending.isEmpty()) {
+            System.err.println("BatchTransactionRecognizer: " + pending.size() + " transaction(s) could not be classified after " + maxRounds + " round(s).");
+        }
+        return categories;
+    }
+
+    /**
+     * Splits the pending rows into batches that stay within the prompt token budget (including the
+     * expected answer size) and the row limit.
+     */
+    List<List<Integer>> packBatches(List<Transaction> transactions, List<Integer> pending) {
+        int headerTokens = PromptBudgeter.estimateTokens(PROMPT_HEADER);
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        int currentTokens = headerTokens;
+        for (Integer index : pending) {
+            int rowTokens = PromptBudgeter.estimateTokens(formatRow(index, transactions.get(index))) + OUTPUT_TOKENS_PER_ROW;
+            if (!current.isEmpty() && (current.size() >= maxRowsPerBatch || currentTokens + rowTokens > maxPromptTokens)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = headerTokens;
+            }
+            // A single oversized row still gets its own batch
+            current.add(index);
+            currentTokens += rowTokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    private Map<Integer, String> recognizeBatch(List<Transaction> transactions, List<Integer> batch) {
+        StringBuilder prompt = new StringBuilder(PROMPT_HEADER);
+        for (Integer index : batch) {
+            prompt.append(formatRow(index, transactions.get(index))).append('\n');
+        }
+        String answer = aiCall.apply(prompt.toString());
+        return parseAnswer(answer, new HashSet<>(batch));
+    }
+
+    /**
+     * Parses the AI's JSON answer and keeps only valid labels for ids of the batch.
+     * Anything that is not a JSON array (e.g. an error message) yields an empty map.
+     */
+    static Map<Integer, String> parseAnswer(String answer, Set<Integer> expectedIds) {
+        Map<Integer, String> categories = new HashMap<>();
+        if (answer == null) {
+            return categories;
+        }
+        // Models sometimes wrap the array in a ```json fence or add a sentence around it
+        int start = answer.indexOf('[');
+        int end = answer.lastIndexOf(']');
+        if (start < 0 || end <= start) {
+            System.err.println("BatchTransactionRecognizer: Answer contains no JSON array: " + abbreviate(answer));
+            return categories;
+        }
+        try {
+            JsonNode array = OBJECT_MAPPER.readTree(answer.substring(start, end + 1));
+            for (JsonNode item : array) {
+                JsonNode id = item.get("id");
+                JsonNode category = item.get("category");
+                if (id == null || !id.canConvertToInt() || category == null || !category.isTextual()) {
+                    continue;
+                }
+                String canonical = toKnownType(category.asText());
+                if (canonical != null && expectedIds.contains(id.asInt())) {
+                    categories.put(id.asInt(), canonical);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("BatchTransactionRecognizer: Could not parse answer as JSON: " + e.getMessage());
+        }
+        return categories;
+    }
+
+    /**
+     * @return The canonical StandardCategories type for a label, or null if it is not a known type.
+     */
+    static String toKnownType(String label) {
+        return label == null ? null : KNOWN_TYPES_BY_LOWER_CASE.get(label.trim().toLowerCase(Locale.ROOT));
+    }
+
+    static String formatRow(int id, Transaction t) {
+        return id + "|" + clean(t.getInOut()) + "|" + clean(t.getTransactionType()) + "|" + clean(t.getCounterparty())
+                + "|" + clean(t.getCommodity()) + "|" + String.format("%.2f", t.getPaymentAmount())
+                + "|" + clean(t.getPaymentMethod()) + "|" + clean(t.getRemarks());
+    }
+
+    // Keeps every row on one line and the column separator unambiguous
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('|', '/').replace('\n', ' ').replace('\r', ' ').trim();
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 200 ? text : text.substring(0, 200) + "...";
+    }
+}
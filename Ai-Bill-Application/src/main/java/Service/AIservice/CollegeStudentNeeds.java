@@ -19,6 +19,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class CollegeStudentNeeds {
@@ -32,19 +35,39 @@ public class CollegeStudentNeeds {
 
     // TransactionService is injected to access transaction data and summaries.
     private final TransactionService transactionService;
+    // One AI service for all requests of this instance (it only needs askAi, not a TransactionService)
+    private final AITransactionService aiService;
+
+    // Local categorizer trained from the user's categorized history; training is guarded by this.
+    // Retrained when the transaction list returned by the service changes (new list instance or size).
+    // Volatile so the EDT can read the last trained instance without taking the lock (see recognizeWithTrainedClassifier).
+    private volatile LocalCategoryClassifier categoryClassifier;
+    private List<Transaction> classifierTrainedOn;
+    private int classifierTrainedSize;
 
     /**
      * Constructor that accepts a TransactionService instance.
      * @param transactionService The service to interact with transaction data.
      */
     public CollegeStudentNeeds(TransactionService transactionService) {
+        this(transactionService, new AITransactionService(null));
+    }
+
+    /**
+     * Constructor that also accepts the AI service to send requests through
+     * (e.g. the logged-in user's, so requests are queued under their name).
+     * @param transactionService The service to interact with transaction data.
+     * @param aiService The service used for AI requests.
+     */
+    public CollegeStudentNeeds(TransactionService transactionService, AITransactionService aiService) {
         this.transactionService = transactionService;
+        this.aiService = aiService;
         System.out.println("CollegeStudentNeeds initialized with TransactionService.");
     }
 
     /**
-     * Recognizes the spending category of a single transaction using AI.
-     * This method uses the raw transaction details for recognition.
+     * Recognizes the spending category of a single transaction.
+     * The local classifier answers first; the AI is only asked when it is not confident enough.
      *
      * @param transaction The transaction to recognize.
      * @return The AI's suggested category.
@@ -53,6 +76,12 @@ public class CollegeStudentNeeds {
         if (transaction == null) {
             return "Cannot recognize empty transaction information";
         }
+        // Most transactions repeat a counterparty or commodity the user has already categorized
+        String localCategory = recognizeLocally(transaction);
+        if (localCategory != null) {
+            System.out.println("CollegeStudentNeeds: Recognized locally as " + localCategory + ", skipping AI.");
+            return localCategory;
+        }
         StringBuilder sb = new StringBuilder();
         // Build the string with transaction details for the AI prompt.
         // Assuming In/Out and other fields are in English or will be handled by AI.
@@ -65,9 +94,110 @@ public class CollegeStudentNeeds {
                 .append("Remarks:").append(transaction.getRemarks());
 
         System.out.println("CollegeStudentNeeds: Sending recognition request to AI: " + sb.toString());
-        // Create a local AITransactionService instance for askAi calls, as it doesn't need an injected TransactionService for this specific task.
-        AITransactionService localAiService = new AITransactionService(null);
-        return localAiService.askAi(requestRecognition + sb.toString());
+        return aiService.askAi(AiOperation.CATEGORY_RECOGNITION, requestRecognition + sb.toString());
+    }
+
+    /**
+     * Asynchronous RecognizeTransaction; cancelling the future cancels the AI request.
+     */
+    public CompletableFuture<String> recognizeTransactionAsync(Transaction transaction) {
+        return AITransactionService.supplyCancellable("ai-recognition", () -> RecognizeTransaction(transaction));
+    }
+
+    /**
+     * Recognizes the categories of many transactions at once (e.g. an imported file).
+     * Transactions are sent in batches of many rows per AI request instead of one request each;
+     * see BatchTransactionRecognizer.
+     *
+     * @param transactions The transactions to recognize.
+     * @return The recognized category per index into the transactions list. Rows the AI could not
+     *         classify with a known category are absent.
+     */
+    public Map<Integer, String> recognizeTransactions(List<Transaction> transactions) {
+        if (transactions == null || transactions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, String> categories = new TreeMap<>();
+        List<Transaction> unresolved = new ArrayList<>();
+        List<Integer> unresolvedIndexes = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            String localCategory = recognizeLocally(transactions.get(i));
+            if (localCategory != null) {
+                categories.put(i, localCategory);
+            } else {
+                unresolved.add(transactions.get(i));
+                unresolvedIndexes.add(i);
+            }
+        }
+        System.out.println("CollegeStudentNeeds: Recognized " + categories.size() + " of " + transactions.size()
+                + " transaction(s) locally; sending " + unresolved.size() + " to the AI.");
+        if (!unresolved.isEmpty()) {
+            // The batch recognizer indexes into the unresolved list; map back to the caller's indexes
+            new BatchTransactionRecognizer(prompt -> aiService.askAi(AiOperation.BATCH_CATEGORY_RECOGNITION, prompt)).recognize(unresolved)
+                    .forEach((index, category) -> categories.put(unresolvedIndexes.get(index), category));
+        }
+        return categories;
+    }
+
+    /**
+     * Recognizes the category of a transaction with the local classifier only (no AI call).
+     * The classifier is trained from the user's categorized transactions on first use and
+     * retrained whenever the transaction list changes.
+     *
+     * @param transaction The transaction to recognize.
+     * @return The category if the classifier is confident enough, otherwise null.
+     */
+    public String recognizeLocally(Transaction transaction) {
+        if (transaction == null) {
+            return null;
+        }
+        LocalCategoryClassifier classifier = currentCategoryClassifier();
+        return classifier == null ? null : classifier.classify(transaction);
+    }
+
+    /**
+     * Recognizes the category of a transaction with the classifier trained so far, if any.
+     * Unlike recognizeLocally it never loads transactions, trains or waits for the training lock, so it is
+     * safe on the EDT; the model may miss the latest edits until trainLocalClassifierAsync has run.
+     *
+     * @param transaction The transaction to recognize.
+     * @return The category if a trained classifier is confident enough, otherwise null.
+     */
+    public String recognizeWithTrainedClassifier(Transaction transaction) {
+        LocalCategoryClassifier classifier = categoryClassifier;
+        return transaction == null || classifier == null ? null : classifier.classify(transaction);
+    }
+
+    /**
+     * Trains (or retrains, if the transactions changed) the local classifier on a background thread,
+     * e.g. when a dialog that offers category suggestions opens.
+     *
+     * @return A future of the trained classifier (null without transactions to train on).
+     */
+    public CompletableFuture<LocalCategoryClassifier> trainLocalClassifierAsync() {
+        return AITransactionService.supplyCancellable("local-classifier-training", this::currentCategoryClassifier);
+    }
+
+    private synchronized LocalCategoryClassifier currentCategoryClassifier() {
+        if (transactionService == null) {
+            return null;
+        }
+        try {
+            // Served from the in-memory transaction cache, so this is cheap when nothing changed
+            List<Transaction> history = transactionService.getAllTransactions();
+            if (categoryClassifier == null || history != classifierTrainedOn || history.size() != classifierTrainedSize) {
+                long start = System.nanoTime();
+                categoryClassifier = LocalCategoryClassifier.train(history, LocalCategoryClassifier.DEFAULT_CONFIDENCE_THRESHOLD);
+                classifierTrainedOn = history;
+                classifierTrainedSize = history.size();
+                System.out.println("CollegeStudentNeeds: Trained local category classifier on " + categoryClassifier.getTrainedSamples()
+                        + " categorized transaction(s) in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            }
+        } catch (Exception e) {
+            System.err.println("CollegeStudentNeeds: Could not train local category classifier: " + e.getMessage());
+            // Keep using the previous model, if any
+        }
+        return categoryClassifier;
     }
 
     /**
@@ -77,45 +207,36 @@ public class CollegeStudentNeeds {
      * @return AI's suggested saving tips.
      */
     public String generateTipsForSaving(String userFilePath) {
+        return generateTipsForSaving(userFilePath, null, false);
+    }
+
+    /**
+     * Streaming variant of generateTipsForSaving: the answer is passed to onDelta piece by piece as the AI generates it.
+     * @param onDelta Receives answer fragments on the AI worker thread, or null to only return the full answer.
+     * @param refresh True to skip a cached answer and ask the AI again (the new answer replaces the cached one).
+     * @return The complete answer (possibly from the cache), or an error message (error messages are returned, not streamed).
+     */
+    public String generateTipsForSaving(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        String cacheKey = aiService.cacheKey("student-saving-tips-v2", userFilePath);
+        String cached = refresh ? null : aiService.getCachedAnswer(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            // Get monthly summary data using the injected TransactionService.
-            Map<String, MonthlySummary> summaries = transactionService.getMonthlyTransactionSummary();
-            System.out.println("CollegeStudentNeeds: Retrieved " + summaries.size() + " months of summary data for tips.");
+            // Monthly summary text shared with the other prompts, rendered once per ledger version.
+            MonthlyPromptFragments months = monthlyFragments(userFilePath);
+            System.out.println("CollegeStudentNeeds: Retrieved " + months.getMonthCount() + " months of summary data for tips.");
 
-            if (summaries.isEmpty()) {
+            if (months.isEmpty()) {
                 return "Not enough transaction data found to provide personalized saving tips.";
             }
 
-            StringBuilder promptBuilder = new StringBuilder();
-            promptBuilder.append(requestTips).append("\n\nHere is my monthly spending summary data:\n\n");
-
-            // Sort months chronologically to present data in order to the AI.
-            List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-            Collections.sort(sortedMonths);
-
-            for (String month : sortedMonths) {
-                MonthlySummary ms = summaries.get(month);
-                promptBuilder.append("--- ").append(ms.getMonthIdentifier()).append(" ---\n");
-                promptBuilder.append("  Total Expense: ").append(String.format("%.2f", ms.getTotalExpense())).append(" CNY\n");
-                promptBuilder.append("  Expense Breakdown:\n");
-                if (ms.getExpenseByCategory().isEmpty()) {
-                    promptBuilder.append("    (No expenses)\n");
-                } else {
-                    // Sort categories by amount in descending order for clarity.
-                    ms.getExpenseByCategory().entrySet().stream()
-                            .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                            .forEach(entry ->
-                                    promptBuilder.append(String.format("    %s: %.2f CNY\n", entry.getKey(), entry.getValue()))
-                            );
-                }
-                promptBuilder.append("\n");
-            }
-
-            String aiPrompt = promptBuilder.toString();
-            System.out.println("CollegeStudentNeeds: Sending saving tips prompt to AI. Prompt length: " + aiPrompt.length());
+            // Follow-ups send the previous tips plus the changed months only
+            String instructions = requestTips + "\n\nHere is my monthly spending summary data:\n\n";
+            System.out.println("CollegeStudentNeeds: Sending saving tips prompt to AI.");
 
-            AITransactionService localAiService = new AITransactionService(null);
-            return localAiService.askAi(aiPrompt);
+            return aiService.askAiIncrementally(AiOperation.ANALYSIS, "student-saving-tips-v2", userFilePath, months,
+                    MonthlyPromptFragments.View.EXPENSES, instructions, onDelta, cacheKey, refresh);
 
         } catch (Exception e) {
             System.err.println("CollegeStudentNeeds: Failed to generate saving tips.");
@@ -124,6 +245,20 @@ public class CollegeStudentNeeds {
         }
     }
 
+    /**
+     * Asynchronous generateTipsForSaving; cancelling the future cancels the AI request.
+     */
+    public CompletableFuture<String> generateTipsForSavingAsync(String userFilePath, Consumer<String> onDelta, boolean refresh) {
+        return AITransactionService.supplyCancellable("ai-student-tips", () -> generateTipsForSaving(userFilePath, onDelta, refresh));
+    }
+
+    /**
+     * The month-by-month prompt text for the user's ledger, shared with AITransactionService's prompts.
+     */
+    private MonthlyPromptFragments monthlyFragments(String userFilePath) throws Exception {
+        return MonthlyPromptFragments.forLedger(userFilePath, transactionService::getMonthlyTransactionSummary);
+    }
+
     /**
      * Analyzes weekly spending and monthly summaries to ask AI for a budget range.
      * @param filePath The path to the user's transaction CSV file.
@@ -131,8 +266,17 @@ public class CollegeStudentNeeds {
      * @throws Exception If there's an error accessing transaction data or summaries.
      */
     public double[] generateBudget(String filePath) throws Exception {
+        // The answer is cached per ledger version, so a range precomputed in the background (or asked for
+        // before) is served at once; an answer that does not parse is asked for again.
+        String cacheKey = aiService.cacheKey("student-budget-v1", filePath);
+        String cached = aiService.getCachedAnswer(cacheKey);
+        double[] cachedRange = cached == null ? null : parseDoubleArrayFromString(cached);
+        if (cachedRange != null && cachedRange.length == 2) {
+            return cachedRange;
+        }
+
         List<Transaction> transactions;
-        Map<String, MonthlySummary> summaries;
+        MonthlyPromptFragments months;
 
         try {
             // Get transactions using CacheManager.
@@ -141,8 +285,8 @@ public class CollegeStudentNeeds {
             System.out.println("CollegeStudentNeeds: Retrieved " + transactions.size() + " transactions for budget analysis from: " + filePath);
 
             // Get monthly summary data for additional context.
-            summaries = transactionService.getMonthlyTransactionSummary();
-            System.out.println("CollegeStudentNeeds: Retrieved " + summaries.size() + " months of summary data for budget context.");
+            months = monthlyFragments(filePath);
+            System.out.println("CollegeStudentNeeds: Retrieved " + months.getMonthCount() + " months of summary data for budget context.");
 
         } catch (Exception e) {
             System.err.println("CollegeStudentNeeds: Error retrieving transactions or summary for budget analysis: " + filePath);
@@ -153,32 +297,10 @@ public class CollegeStudentNeeds {
         // Handle case with no transactions.
         if (transactions.isEmpty()) {
             System.out.println("CollegeStudentNeeds: No transactions found for budget analysis.");
-            if (!summaries.isEmpty()) {
+            if (!months.isEmpty()) {
                 // If monthly summaries exist, use them for the AI prompt.
-                StringBuilder promptBuilder = new StringBuilder();
-                promptBuilder.append("Here is my monthly income and expense summary data:\n\n");
-                List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-                Collections.sort(sortedMonths);
-                for (String month : sortedMonths) {
-                    MonthlySummary ms = summaries.get(month);
-                    promptBuilder.append("--- ").append(ms.getMonthIdentifier()).append(" ---\n");
-                    promptBuilder.append("  Total Income: ").append(String.format("%.2f", ms.getTotalIncome())).append(" CNY\n");
-                    promptBuilder.append("  Total Expense: ").append(String.format("%.2f", ms.getTotalExpense())).append(" CNY\n");
-                    double net = ms.getTotalIncome() - ms.getTotalExpense();
-                    promptBuilder.append("  Monthly Net Income/Expense: ").append(String.format("%.2f", net)).append(" CNY\n");
-                    promptBuilder.append("  Main Expense Categories:\n");
-                    if (ms.getExpenseByCategory().isEmpty()) {
-                        promptBuilder.append("    (No expenses)\n");
-                    } else {
-                        ms.getExpenseByCategory().entrySet().stream()
-                                .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                                .forEach(entry ->
-                                        promptBuilder.append(String.format("    %s: %.2f CNY\n", entry.getKey(), entry.getValue()))
-                                );
-                    }
-                    promptBuilder.append("\n");
-                }
-                String answer = new AITransactionService(null).askAi(requestBudge + "\n\nNo weekly spending data found.\n" + promptBuilder.toString());
+                String answer = aiService.askAi(AiOperation.BUDGET_SUGGESTION, requestBudge + "\n\nNo weekly spending data found.\n"
+                        + "Here is my monthly income and expense summary data:\n\n" + months.render(MonthlyPromptFragments.View.FULL), null, cacheKey);
                 return parseDoubleArrayFromString(answer);
             }
             return new double[]{-1, -1}; // No data at all.
@@ -202,32 +324,10 @@ public class CollegeStudentNeeds {
         // Handle case with no expense transactions.
         if (expenseTransactions.isEmpty()) {
             System.out.println("CollegeStudentNeeds: No expense transactions found for budget analysis.");
-            if (!summaries.isEmpty()) {
+            if (!months.isEmpty()) {
                 // If monthly summaries exist, use them for the AI prompt.
-                StringBuilder promptBuilder = new StringBuilder();
-                promptBuilder.append("Here is my monthly income and expense summary data:\n\n");
-                List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-                Collections.sort(sortedMonths);
-                for (String month : sortedMonths) {
-                    MonthlySummary ms = summaries.get(month);
-                    promptBuilder.append("--- ").append(ms.getMonthIdentifier()).append(" ---\n");
-                    promptBuilder.append("  Total Income: ").append(String.format("%.2f", ms.getTotalIncome())).append(" CNY\n");
-                    promptBuilder.append("  Total Expense: ").append(String.format("%.2f", ms.getTotalExpense())).append(" CNY\n");
-                    double net = ms.getTotalIncome() - ms.getTotalExpense();
-                    promptBuilder.append("  Monthly Net Income/Expense: ").append(String.format("%.2f", net)).append(" CNY\n");
-                    promptBuilder.append("  Main Expense Categories:\n");
-                    if (ms.getExpenseByCategory().isEmpty()) {
-                        promptBuilder.append("    (No expenses)\n");
-                    } else {
-                        ms.getExpenseByCategory().entrySet().stream()
-                                .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                                .forEach(entry ->
-                                        promptBuilder.append(String.format("    %s: %.2f CNY\n", entry.getKey(), entry.getValue()))
-                                );
-                    }
-                    promptBuilder.append("\n");
-                }
-                String answer = new AITransactionService(null).askAi(requestBudge + "\n\nNo weekly spending data found.\n" + promptBuilder.toString());
+                String answer = aiService.askAi(AiOperation.BUDGET_SUGGESTION, requestBudge + "\n\nNo weekly spending data found.\n"
+                        + "Here is my monthly income and expense summary data:\n\n" + months.render(MonthlyPromptFragments.View.FULL), null, cacheKey);
                 return parseDoubleArrayFromString(answer);
             }
             return new double[]{-1, -1}; // No expense data and no summary data.
@@ -280,36 +380,16 @@ public class CollegeStudentNeeds {
         }
 
         promptBuilder.append("\nAdditionally, here is my monthly income and expense summary data:\n\n");
-        if (summaries.isEmpty()) {
+        if (months.isEmpty()) {
             promptBuilder.append("(No monthly summary data found)\n");
         } else {
-            List<String> sortedMonths = new ArrayList<>(summaries.keySet());
-            Collections.sort(sortedMonths);
-            for (String month : sortedMonths) {
-                MonthlySummary ms = summaries.get(month);
-                promptBuilder.append("--- ").append(ms.getMonthIdentifier()).append(" ---\n");
-                promptBuilder.append("  Total Income: ").append(String.format("%.2f", ms.getTotalIncome())).append(" CNY\n");
-                promptBuilder.append("  Total Expense: ").append(String.format("%.2f", ms.getTotalExpense())).append(" CNY\n");
-                double net = ms.getTotalIncome() - ms.getTotalExpense();
-                promptBuilder.append("  Monthly Net Income/Expense: ").append(String.format("%.2f", net)).append(" CNY\n");
-                promptBuilder.append("  Main Expense Categories:\n");
-                if (ms.getExpenseByCategory().isEmpty()) {
-                    promptBuilder.append("    (No expenses)\n");
-                } else {
-                    ms.getExpenseByCategory().entrySet().stream()
-                            .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
-                            .forEach(entry ->
-                                    promptBuilder.append(String.format("    %s: %.2f CNY\n", entry.getKey(), entry.getValue()))
-                            );
-                }
-                promptBuilder.append("\n");
-            }
+            promptBuilder.append(months.render(MonthlyPromptFragments.View.FULL));
         }
 
         String aiPrompt = promptBuilder.toString();
         System.out.println("CollegeStudentNeeds: Sending budget request to AI. Prompt length: " + aiPrompt.length());
 
-        String answer = new AITransactionService(null).askAi(aiPrompt);
+        String answer = aiService.askAi(AiOperation.BUDGET_SUGGESTION, aiPrompt, null, cacheKey);
         System.out.println("CollegeStudentNeeds: Received budget response from AI: " + answer);
 
         double[] ret = parseDoubleArrayFromString(answer);
@@ -320,6 +400,14 @@ public class CollegeStudentNeeds {
         return ret;
     }
 
+    /**
+     * Asynchronous generateBudget; cancelling the future cancels the AI request.
+     * The future fails with generateBudget's exception if the transaction data cannot be read.
+     */
+    public CompletableFuture<double[]> generateBudgetAsync(String filePath) {
+        return AITransactionService.supplyCancellable("ai-student-budget", () -> generateBudget(filePath));
+    }
+
     /**
      * Helper method to safely parse a date string from a transaction's time field.
      * This method attempts to parse the date part of various common timestamp formats.
@@ -382,4 +470,4 @@ public class CollegeStudentNeeds {
             return null;
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,274 @@
+package Service.AIservice;
+
+import Constants.StandardCategories;
+import model.Transaction;
+
+import java.util.*;
+
+/**
+ * On-device transaction categorizer trained from the user's already-categorized history.
+ * <p>
+ * Two models are combined:
+ * - Counterparty table: how often each category was used for a counterparty. Most transactions repeat
+ *   a counterparty the user has already labelled, so this alone answers the common case.
+ * - Multinomial naive Bayes over character 2- and 3-grams of the commodity and remarks (plus the
+ *   counterparty as a whole-word feature). Character n-grams work for Chinese text without a tokenizer.
+ * The more confident model wins. Only categories that fit the transaction's In/Out direction are considered.
+ * <p>
+ * Instances are immutable once trained and safe to share between threads.
+ */
+public class LocalCategoryClassifier {
+
+    public static final double DEFAULT_CONFIDENCE_THRESHOLD = 0.8;
+
+    private static final int MIN_NGRAM = 2;
+    private static final int MAX_NGRAM = 3;
+
+    private final double confidenceThreshold;
+
+    // Normalized counterparty -> category -> count
+    private final Map<String, Map<String, Integer>> counterpartyCounts = new HashMap<>();
+
+    // Naive Bayes statistics
+    private final Map<String, Integer> samplesByCategory = new HashMap<>();
+    private final Map<String, Map<String, Integer>> featureCountsByCategory = new HashMap<>();
+    private final Map<String, Integer> totalFeaturesByCategory = new HashMap<>();
+    private final Set<String> vocabulary = new HashSet<>();
+    private int trainedSamples;
+
+    /**
+     * The classifier's best guess for a transaction.
+     */
+    public static final class Prediction {
+        private final String category;
+        private final double confidence; // 0..1
+        private final String source; // "counterparty" or "naive-bayes"
+
+        Prediction(String category, double confidence, String source) {
+            this.category = category;
+            this.confidence = confidence;
+            this.source = source;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.2f, %s)", category, confidence, source);
+        }
+    }
+
+    private LocalCategoryClassifier(double confidenceThreshold) {
+        this.confidenceThreshold = confidenceThreshold;
+    }
+
+    /**
+     * Trains a classifier from categorized transactions.
+     * Transactions whose type is not one of StandardCategories.ALL_KNOWN_TYPES are skipped.
+     *
+     * @param history The user's transactions.
+     * @param confidenceThreshold Minimum confidence for classify() to return a category.
+     * @return The trained classifier.
+     */
+    public static LocalCategoryClassifier train(List<Transaction> history, double confidenceThreshold) {
+        LocalCategoryClassifier classifier = new LocalCategoryClassifier(confidenceThreshold);
+        if (history != null) {
+            for (Transaction t : history) {
+                classifier.learn(t);
+            }
+        }
+        return classifier;
+    }
+
+    private void learn(Transaction t) {
+        if (t == null || t.getTransactionType() == null) {
+            return;
+        }
+        String category = t.getTransactionType().trim();
+        if (!StandardCategories.ALL_KNOWN_TYPES.contains(category)) {
+            return; // Not a usable label
+        }
+        String counterparty = normalize(t.getCounterparty());
+        if (!counterparty.isEmpty()) {
+            counterpartyCounts.computeIfAbsent(counterparty, k -> new HashMap<>()).merge(category, 1, Integer::sum);
+        }
+
+        samplesByCategory.merge(category, 1, Integer::sum);
+        Map<String, Integer> featureCounts = featureCountsByCategory.computeIfAbsent(category, k -> new HashMap<>());
+        for (String feature : features(t)) {
+            featureCounts.merge(feature, 1, Integer::sum);
+            totalFeaturesByCategory.merge(category, 1, Integer::sum);
+            vocabulary.add(feature);
+        }
+        trainedSamples++;
+    }
+
+    /**
+     * @return The predicted category if the classifier is at least confidenceThreshold sure, otherwise null.
+     */
+    public String classify(Transaction t) {
+        Prediction prediction = predict(t);
+        return prediction != null && prediction.getConfidence() >= confidenceThreshold ? prediction.getCategory() : null;
+    }
+
+    /**
+     * @return The best guess with its confidence, or null if the classifier has nothing to go on.
+     */
+    public Prediction predict(Transaction t) {
+        if (t == null || trainedSamples == 0) {
+            return null;
+        }
+        Set<String> candidates = candidateCategories(t.getInOut());
+        Prediction byCounterparty = predictByCounterparty(t, candidates);
+        if (byCounterparty != null && byCounterparty.getConfidence() >= confidenceThreshold) {
+            return byCounterparty; // Common case, no need to score n-grams
+        }
+        Prediction byText = predictByNaiveBayes(t, candidates);
+        if (byCounterparty == null) {
+            return byText;
+        }
+        if (byText == null) {
+            return byCounterparty;
+        }
+        return byText.getConfidence() > byCounterparty.getConfidence() ? byText : byCounterparty;
+    }
+
+    private Prediction predictByCounterparty(Transaction t, Set<String> candidates) {
+        Map<String, Integer> counts = counterpartyCounts.get(normalize(t.getCounterparty()));
+        if (counts == null) {
+            return null;
+        }
+        String best = null;
+        int bestCount = 0;
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (!candidates.contains(entry.getKey())) {
+                continue;
+            }
+            total += entry.getValue();
+            if (entry.getValue() > bestCount) {
+                best = entry.getKey();
+                bestCount = entry.getValue();
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        // (count)/(total + 1): one sighting gives 0.5, four consistent sightings 0.8, nine 0.9
+        return new Prediction(best, bestCount / (total + 1.0), "counterparty");
+    }
+
+    private Prediction predictByNaiveBayes(Transaction t, Set<String> candidates) {
+        List<String> categories = new ArrayList<>();
+        for (String category : candidates) {
+            if (samplesByCategory.containsKey(category)) {
+                categories.add(category);
+            }
+        }
+        if (categories.size() < 2) {
+            return null; // With a single trained category the posterior would always be 1
+        }
+        List<String> features = new ArrayList<>();
+        for (String feature : features(t)) {
+            if (vocabulary.contains(feature)) {
+                features.add(feature); // Unseen features carry no information
+            }
+        }
+        if (features.isEmpty()) {
+            return null;
+        }
+
+        int candidateSamples = 0;
+        for (String category : categories) {
+            candidateSamples += samplesByCategory.get(category);
+        }
+        double[] logScores = new double[categories.size()];
+        double maxLogScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < categories.size(); i++) {
+            String category = categories.get(i);
+            Map<String, Integer> featureCounts = featureCountsByCategory.get(category);
+            double denominator = totalFeaturesByCategory.getOrDefault(category, 0) + vocabulary.size(); // Laplace smoothing
+            double logScore = Math.log(samplesByCategory.get(category) / (double) candidateSamples);
+            for (String feature : features) {
+                logScore += Math.log((featureCounts.getOrDefault(feature, 0) + 1) / denominator);
+            }
+            logScores[i] = logScore;
+            maxLogScore = Math.max(maxLogScore, logScore);
+        }
+
+        // Normalize to posteriors (shifted by the maximum to avoid underflow)
+        double sum = 0;
+        int best = 0;
+        for (int i = 0; i < logScores.length; i++) {
+            sum += Math.exp(logScores[i] - maxLogScore);
+            if (logScores[i] > logScores[best]) {
+                best = i;
+            }
+        }
+        return new Prediction(categories.get(best), 1.0 / sum, "naive-bayes");
+    }
+
+    /**
+     * Categories that fit the transaction's direction; special types (transfers, red packets) fit both.
+     */
+    private static Set<String> candidateCategories(String inOut) {
+        Set<String> candidates = new LinkedHashSet<>();
+        String direction = inOut == null ? "" : inOut.trim();
+        if (direction.equalsIgnoreCase("Income") || direction.equalsIgnoreCase("In")) {
+            candidates.addAll(StandardCategories.INCOME_CATEGORIES);
+        } else if (direction.equalsIgnoreCase("Expense") || direction.equalsIgnoreCase("Out")) {
+            candidates.addAll(StandardCategories.EXPENSE_CATEGORIES);
+        } else {
+            candidates.addAll(StandardCategories.EXPENSE_CATEGORIES);
+            candidates.addAll(StandardCategories.INCOME_CATEGORIES);
+        }
+        candidates.addAll(StandardCategories.SPECIAL_TYPES);
+        return candidates;
+    }
+
+    static List<String> features(Transaction t) {
+        List<String> features = new ArrayList<>();
+        String counterparty = normalize(t.getCounterparty());
+        if (!counterparty.isEmpty()) {
+            features.add("cp:" + counterparty);
+        }
+        addNgrams(features, normalize(t.getCommodity()));
+        addNgrams(features, normalize(t.getRemarks()));
+        return features;
+    }
+
+    private static void addNgrams(List<String> features, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        String padded = " " + text + " "; // Marks word boundaries at the start and end
+        int[] codePoints = padded.codePoints().toArray();
+        for (int n = MIN_NGRAM; n <= MAX_NGRAM; n++) {
+            for (int i = 0; i + n <= codePoints.length; i++) {
+                features.add(new String(codePoints, i, n));
+            }
+        }
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    public int getTrainedSamples() {
+        return trainedSamples;
+    }
+
+    public double getConfidenceThreshold() {
+        return confidenceThreshold;
+    }
+}
@@ -0,0 +1,237 @@
+package Service.AIservice;
+
+import model.LedgerWatermark;
+import model.MonthlySummary;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * The month-by-month text that the summary, savings, tips, seasonal and budget prompts share, rendered once
+ * per ledger version.
+ * <p>
+ * Months are sorted and every month's lines (totals, net, categories by amount) are rendered once when the
+ * fragments are built; each View is concatenated from those lines the first time it is asked for. Prompt
+ * templates then only append their own header to a cached block. Amounts are rendered with plain
+ * StringBuilder arithmetic instead of String.format.
+ * <p>
+ * Fragments are cached per ledger file and keyed by its LedgerWatermark (the same version the rollup cube
+ * and the AI response cache use), so any edit to the ledger rebuilds them on the next prompt.
+ * <p>
+ * Each month's text in a view also has a fingerprint, so incremental analyses can tell which months changed
+ * since the last run and render only those (see AITransactionService.askAiIncrementally).
+ */
+public class MonthlyPromptFragments {
+
+    /**
+     * The per-month blocks prompt templates can use.
+     */
+    public enum View {
+        FULL, // Income, expense, net and the expense breakdown
+        TOTALS, // Income, expense and net
+        EXPENSES // Expense and the expense breakdown
+    }
+
+    // Ledgers whose fragments are kept; one per logged-in user is the normal case
+    private static final int MAX_CACHED_LEDGERS = 16;
+
+    // Guarded by itself; access order, so the least recently used ledger is evicted first
+    private static final Map<String, MonthlyPromptFragments> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MonthlyPromptFragments> eldest) {
+            return size() > MAX_CACHED_LEDGERS;
+        }
+    };
+
+    private final LedgerWatermark watermark;
+    private final List<Month> months;
+    private final EnumMap<View, String> rendered = new EnumMap<>(View.class); // Guarded by this
+
+    MonthlyPromptFragments(LedgerWatermark watermark, Map<String, MonthlySummary> summaries) {
+        this.watermark = watermark;
+        List<String> sortedMonths = new ArrayList<>(summaries.keySet());
+        Collections.sort(sortedMonths);
+        List<Month> rows = new ArrayList<>(sortedMonths.size());
+        for (String month : sortedMonths) {
+            rows.add(new Month(summaries.get(month)));
+        }
+        this.months = rows;
+    }
+
+    /**
+     * Returns the fragments for a ledger, building them from the monthly summaries only if the ledger
+     * changed since they were last built.
+     *
+     * @param ledgerFilePath The ledger the summaries come from; null disables caching.
+     * @param summaries Loads the monthly summaries (only called on a cache miss).
+     */
+    public static MonthlyPromptFragments forLedger(String ledgerFilePath, Callable<Map<String, MonthlySummary>> summaries) throws Exception {
+        // Captured before loading: if the ledger changes meanwhile, the next call sees a different watermark
+        LedgerWatermark current = LedgerWatermark.capture(null, ledgerFilePath);
+        if (ledgerFilePath != null) {
+            synchronized (CACHE) {
+                MonthlyPromptFragments cached = CACHE.get(ledgerFilePath);
+                if (cached != null && current.matches(cached.watermark)) {
+                    return cached;
+                }
+            }
+        }
+        MonthlyPromptFragments built = new MonthlyPromptFragments(current, summaries.call());
+        if (ledgerFilePath != null && current.getSize() >= 0) {
+            synchronized (CACHE) {
+                CACHE.put(ledgerFilePath, built);
+            }
+        }
+        return built;
+    }
+
+    public boolean isEmpty() {
+        return months.isEmpty();
+    }
+
+    public int getMonthCount() {
+        return months.size();
+    }
+
+    /**
+     * @return Every month, oldest first, in the given view; months are separated by a blank line.
+     */
+    public synchronized String render(View view) {
+        String text = rendered.get(view);
+        if (text == null) {
+            StringBuilder sb = new StringBuilder(months.size() * 256);
+            for (Month month : months) {
+                month.appendTo(sb, view);
+            }
+            text = sb.toString();
+            rendered.put(view, text);
+        }
+        return text;
+    }
+
+    /**
+     * @return The given months, oldest first, in the given view; months without data are skipped.
+     */
+    public String render(View view, Collection<String> monthIdentifiers) {
+        StringBuilder sb = new StringBuilder(monthIdentifiers.size() * 256);
+        for (Month month : months) {
+            if (monthIdentifiers.contains(month.identifier)) {
+                month.appendTo(sb, view);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Month identifier -> fingerprint of the month's text in the given view, oldest first.
+     *         A month's fingerprint changes exactly when its rendered text does.
+     */
+    public Map<String, String> fingerprints(View view) {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Month month : months) {
+                StringBuilder sb = new StringBuilder(256);
+                month.appendTo(sb, view);
+                byte[] hash = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+                fingerprints.put(month.identifier, HexFormat.of().formatHex(hash, 0, 8)); // 64 bits are plenty per month
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e); // Required by every JRE
+        }
+        return fingerprints;
+    }
+
+    /**
+     * @return The ledger version the fragments were built from (size, modification time and file key).
+     */
+    public String getLedgerVersion() {
+        return watermark.getSize() + "/" + watermark.getLastModifiedMillis() + "/" + watermark.getVersion();
+    }
+
+    /**
+     * Appends an amount with two decimals, rounded like "%.2f" (half up on the amount's shortest decimal form).
+     */
+    static StringBuilder appendAmount(StringBuilder sb, double amount) {
+        double scaled = Math.abs(amount) * 100;
+        double fraction = scaled - Math.floor(scaled);
+        long cents;
+        if (Math.abs(fraction - 0.5) < 1e-6 || scaled >= 1e15) {
+            // Near a tie, binary rounding of amount * 100 can go either way; decide on the decimal digits
+            cents = BigDecimal.valueOf(Math.abs(amount)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        } else {
+            cents = Math.round(scaled);
+        }
+        if (amount < 0 && cents != 0) {
+            sb.append('-');
+        }
+        sb.append(cents / 100).append('.');
+        long remainder = cents % 100;
+        if (remainder < 10) {
+            sb.append('0');
+        }
+        return sb.append(remainder);
+    }
+
+    // One month's lines, each rendered once
+    private static final class Month {
+        final String identifier;
+        final String header;
+        final String incomeLine;
+        final String expenseLine;
+        final String netLine;
+        final String breakdown;
+
+        Month(MonthlySummary summary) {
+            identifier = summary.getMonthIdentifier();
+            header = "--- " + identifier + " ---\n";
+            incomeLine = line("  Total Income: ", summary.getTotalIncome());
+            expenseLine = line("  Total Expense: ", summary.getTotalExpense());
+            netLine = line("  Net (Income - Expense): ", summary.getTotalIncome() - summary.getTotalExpense());
+
+            StringBuilder sb = new StringBuilder("  Expense Breakdown:\n");
+            if (summary.getExpenseByCategory().isEmpty()) {
+                sb.append("    (No expenses)\n");
+            } else {
+                // Largest categories first, so the AI sees the main expenses at a glance
+                List<Map.Entry<String, Double>> categories = new ArrayList<>(summary.getExpenseByCategory().entrySet());
+                categories.sort(Map.Entry.comparingByValue(Collections.reverseOrder()));
+                for (Map.Entry<String, Double> category : categories) {
+                    appendAmount(sb.append("    ").append(category.getKey()).append(": "), category.getValue()).append(" CNY\n");
+                }
+            }
+            breakdown = sb.toString();
+        }
+
+        private static String line(String label, double amount) {
+            return appendAmount(new StringBuilder(label), amount).append(" CNY\n").toString();
+        }
+
+        void appendTo(StringBuilder sb, View view) {
+            sb.append(header);
+            if (view != View.EXPENSES) {
+                sb.append(incomeLine);
+            }
+            sb.append(expenseLine);
+            if (view != View.EXPENSES) {
+                sb.append(netLine);
+            }
+            if (view != View.TOTALS) {
+                sb.append(breakdown);
+            }
+            sb.append('\n');
+        }
+    }
+}
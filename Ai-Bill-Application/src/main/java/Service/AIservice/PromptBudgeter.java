@@ -0,0 +1,289 @@
+package Service.AIservice;
+
+import Service.Impl.WeeklyAggregate;
+import Utils.SpaceSaving;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Turns transactions into billing-data lines for an AI prompt that fit a token budget.
+ * <p>
+ * Levels are tried from most to least detailed and the first one that fits is used:
+ * 1. COUNTERPARTY: the heaviest counterparties individually (20, then 10, 5, 3), with the long tail
+ *    folded into one "others" line per category.
+ * 2. CATEGORY_AND_WEEK: one line per category plus one line per week.
+ * 3. CATEGORY: one line per category.
+ * 4. TRUNCATED_CATEGORY: the largest categories, with the smallest ones folded into a single line.
+ * Token counts are estimates (see estimateTokens), not the model's tokenizer.
+ */
+public class PromptBudgeter {
+
+    public static final int DEFAULT_TOKEN_BUDGET = 3000;
+    static final int MIN_TOP_COUNTERPARTIES = 3;
+
+    private static final DateTimeFormatter WEEK_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+    public enum Level { COUNTERPARTY, CATEGORY_AND_WEEK, CATEGORY, TRUNCATED_CATEGORY }
+
+    /**
+     * One transaction reduced to what the prompt needs.
+     */
+    public static final class Entry {
+        final String counterparty;
+        final String category;
+        final LocalDate date; // May be null; such entries are left out of week lines only
+        final double amount; // Positive for income, negative for expense
+
+        public Entry(String counterparty, String category, LocalDate date, double amount) {
+            this.counterparty = String.valueOf(counterparty);
+            this.category = (category == null || category.trim().isEmpty()) ? "Uncategorized" : category.trim();
+            this.date = date;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * The chosen lines and how much detail they kept.
+     */
+    public static final class Result {
+        private final List<String> lines;
+        private final Level level;
+        private final int estimatedTokens;
+
+        Result(List<String> lines, Level level, int estimatedTokens) {
+            this.lines = lines;
+            this.level = level;
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        public List<String> getLines() {
+            return lines;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+
+        public int getEstimatedTokens() {
+            return estimatedTokens;
+        }
+    }
+
+    private final int tokenBudget;
+    private final int maxTopCounterparties;
+
+    /**
+     * @param tokenBudget Maximum estimated tokens for all lines, including the header lines.
+     * @param maxTopCounterparties Most counterparties listed individually at the most detailed level.
+     */
+    public PromptBudgeter(int tokenBudget, int maxTopCounterparties) {
+        this.tokenBudget = tokenBudget;
+        this.maxTopCounterparties = maxTopCounterparties;
+    }
+
+    /**
+     * Builds the most detailed billing data that fits the budget.
+     *
+     * @param headerLines Lines that are always included first (e.g. the analysis time range).
+     * @param entries The transactions to describe.
+     * @return The lines (header lines first) and the level that was used.
+     */
+    public Result compact(List<String> headerLines, List<Entry> entries) {
+        // Heaviest counterparties by income + expense volume, found with a fixed-memory Space-Saving pass
+        SpaceSaving counterpartyVolume = new SpaceSaving(Math.max(1, maxTopCounterparties * 4));
+        for (Entry entry : entries) {
+            counterpartyVolume.offer(entry.counterparty, WeeklyAggregate.toCents(Math.abs(entry.amount)));
+        }
+        Result result = null;
+        for (int top = maxTopCounterparties; ; top = Math.max(MIN_TOP_COUNTERPARTIES, top / 2)) {
+            result = fit(headerLines, counterpartyLines(entries, counterpartyVolume, top), Level.COUNTERPARTY);
+            if (result != null || top <= MIN_TOP_COUNTERPARTIES) {
+                break;
+            }
+        }
+        List<String> categoryLines = categoryLines(entries);
+        if (result == null) {
+            List<String> lines = new ArrayList<>(categoryLines);
+            lines.addAll(weekLines(entries));
+            result = fit(headerLines, lines, Level.CATEGORY_AND_WEEK);
+        }
+        if (result == null) {
+            result = fit(headerLines, categoryLines, Level.CATEGORY);
+        }
+        if (result == null) {
+            result = truncatedCategories(headerLines, entries);
+        }
+        System.out.println("PromptBudgeter: " + entries.size() + " transaction(s) compacted to " + result.getLines().size()
+                + " line(s) at level " + result.getLevel() + ", ~" + result.getEstimatedTokens() + " of " + tokenBudget + " tokens.");
+        return result;
+    }
+
+    private Result fit(List<String> headerLines, List<String> bodyLines, Level level) {
+        List<String> lines = new ArrayList<>(headerLines);
+        lines.addAll(bodyLines);
+        int tokens = estimateTokens(lines);
+        return tokens <= tokenBudget ? new Result(lines, level, tokens) : null;
+    }
+
+    private List<String> counterpartyLines(List<Entry> entries, SpaceSaving counterpartyVolume, int top) {
+        Set<String> topCounterparties = new HashSet<>();
+        for (SpaceSaving.Counter counter : counterpartyVolume.top(top)) {
+            topCounterparties.add(counter.getItem());
+        }
+
+        // Exact totals for the selected counterparties; the rest are folded into one line per category
+        Map<String, Totals> byCounterparty = new LinkedHashMap<>();
+        Map<String, Totals> othersByCategory = new LinkedHashMap<>();
+        Map<String, Set<String>> otherCounterpartiesByCategory = new HashMap<>();
+        for (Entry entry : entries) {
+            if (topCounterparties.contains(entry.counterparty)) {
+                byCounterparty.computeIfAbsent(entry.counterparty, k -> new Totals()).add(entry.amount);
+            } else {
+                othersByCategory.computeIfAbsent(entry.category, k -> new Totals()).add(entry.amount);
+                otherCounterpartiesByCategory.computeIfAbsent(entry.category, k -> new HashSet<>()).add(entry.counterparty);
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        byCounterparty.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Totals> e) -> Math.abs(e.getValue().net())).reversed())
+                .forEach(e -> {
+                    Totals totals = e.getValue();
+                    double net = totals.net();
+                    String inOutLabel = net >= 0 ? "Total Income" : "Total Expense";
+                    if (Math.abs(net) < 0.01 && totals.count > 0) { // If net is near zero but there were transactions
+                        inOutLabel = "Net Zero";
+                    }
+                    lines.add(String.format("Counterparty: %s, Net %s: %.2f CNY, Transaction Count: %d",
+                            e.getKey(), inOutLabel, Math.abs(net), totals.count));
+                });
+        othersByCategory.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Totals> e) -> e.getValue().volume()).reversed())
+                .forEach(e -> lines.add(String.format("Other %d counterparties in %s: %s",
+                        otherCounterpartiesByCategory.get(e.getKey()).size(), e.getKey(), e.getValue().describe())));
+        return lines;
+    }
+
+    private static Map<String, Totals> totalsByCategory(List<Entry> entries) {
+        Map<String, Totals> byCategory = new HashMap<>();
+        for (Entry entry : entries) {
+            byCategory.computeIfAbsent(entry.category, k -> new Totals()).add(entry.amount);
+        }
+        return byCategory;
+    }
+
+    private static List<Map.Entry<String, Totals>> categoriesByVolume(List<Entry> entries) {
+        List<Map.Entry<String, Totals>> categories = new ArrayList<>(totalsByCategory(entries).entrySet());
+        categories.sort(Comparator.comparingDouble((Map.Entry<String, Totals> e) -> e.getValue().volume()).reversed());
+        return categories;
+    }
+
+    private static List<String> categoryLines(List<Entry> entries) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Totals> e : categoriesByVolume(entries)) {
+            lines.add(String.format("Category: %s, %s", e.getKey(), e.getValue().describe()));
+        }
+        return lines;
+    }
+
+    private static List<String> weekLines(List<Entry> entries) {
+        Map<LocalDate, Totals> byWeek = new TreeMap<>();
+        for (Entry entry : entries) {
+            if (entry.date != null) {
+                LocalDate monday = entry.date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                byWeek.computeIfAbsent(monday, k -> new Totals()).add(entry.amount);
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<LocalDate, Totals> e : byWeek.entrySet()) {
+            lines.add(String.format("Week of %s: %s", WEEK_FORMATTER.format(e.getKey()), e.getValue().describe()));
+        }
+        return lines;
+    }
+
+    /**
+     * Last resort: keeps the largest categories and folds the smallest ones into a single line until it fits.
+     * The header lines are always kept, even if they alone exceed the budget.
+     */
+    private Result truncatedCategories(List<String> headerLines, List<Entry> entries) {
+        List<Map.Entry<String, Totals>> categories = categoriesByVolume(entries);
+        Totals folded = new Totals();
+        int foldedCategories = 0;
+        while (true) {
+            List<String> lines = new ArrayList<>(headerLines);
+            for (Map.Entry<String, Totals> e : categories) {
+                lines.add(String.format("Category: %s, %s", e.getKey(), e.getValue().describe()));
+            }
+            if (foldedCategories > 0) {
+                lines.add(String.format("%d smaller categories combined: %s", foldedCategories, folded.describe()));
+            }
+            int tokens = estimateTokens(lines);
+            if (tokens <= tokenBudget || categories.isEmpty()) {
+                return new Result(lines, Level.TRUNCATED_CATEGORY, tokens);
+            }
+            folded.addAll(categories.remove(categories.size() - 1).getValue());
+            foldedCategories++;
+        }
+    }
+
+    /**
+     * Estimates the token count of a text: about one token per CJK character and four characters
+     * per token otherwise. Deliberately conservative, so prompts stay under the model's limit.
+     */
+    public static int estimateTokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (codePoint >= 0x2E80) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    static int estimateTokens(List<String> lines) {
+        return estimateTokens(String.join("\n", lines));
+    }
+
+    // Income, expense and count of a group of entries
+    private static final class Totals {
+        double income;
+        double expense;
+        int count;
+
+        void add(double amount) {
+            if (amount < 0) {
+                expense -= amount;
+            } else {
+                income += amount;
+            }
+            count++;
+        }
+
+        void addAll(Totals other) {
+            income += other.income;
+            expense += other.expense;
+            count += other.count;
+        }
+
+        double net() {
+            return income - expense;
+        }
+
+        double volume() {
+            return income + expense;
+        }
+
+        String describe() {
+            return String.format("Total Income: %.2f CNY, Total Expense: %.2f CNY, Transaction Count: %d", income, expense, count);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package Service.AIservice;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process AiClient for offline runs, tests and load tests (select it with ai.client=stub).
+ * <p>
+ * - Deterministic: latency, injected errors and answers depend only on the seed, the prompt and how often
+ *   that prompt was sent before, not on thread timing, so runs are repeatable.
+ * - Latency: sampled from a configurable distribution; streaming spends part of it before the first
+ *   chunk and spreads the rest over the chunks.
+ * - Errors: a configurable fraction of requests fails with a retryable "503" IOException before any output.
+ * - Token accounting: prompt and completion tokens are estimated with PromptBudgeter.estimateTokens.
+ * The default responder recognizes the prompts of BatchTransactionRecognizer, category recognition and
+ * budget suggestions and answers them in the expected format, so parsing code runs as in production.
+ */
+public class StubAiClient implements AiClient {
+
+    public static final String MODEL_ID = "stub-model";
+
+    // Share of the latency spent before the first streamed chunk
+    private static final double TIME_TO_FIRST_CHUNK_SHARE = 0.3;
+    private static final int CHUNK_CHARACTERS = 8;
+
+    private static final Pattern BATCH_ROW = Pattern.compile("(?m)^(\\d+)\\|([^|]*)\\|");
+
+    /**
+     * A latency distribution in milliseconds.
+     */
+    public interface Latency {
+        long sampleMillis(Random random);
+
+        static Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        static Latency uniform(long minMillis, long maxMillis) {
+            return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+        }
+
+        /**
+         * Log-normal latency, the usual shape of service response times: most requests near the median, a long tail.
+         * @param medianMillis The median latency.
+         * @param sigma Spread of the tail (0.5 gives p99 of about 3.2 times the median).
+         */
+        static Latency logNormal(double medianMillis, double sigma) {
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    private final long seed;
+    private final Latency latency;
+    private final double errorRate;
+    private final Function<String, String> responder;
+
+    private final ConcurrentHashMap<Integer, Integer> attemptsByPrompt = new ConcurrentHashMap<>();
+
+    // Token accounting
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+
+    /**
+     * Creates a stub with log-normal latency around 800 ms and no errors.
+     */
+    public StubAiClient() {
+        this(42L, Latency.logNormal(800, 0.5), 0.0);
+    }
+
+    public StubAiClient(long seed, Latency latency, double errorRate) {
+        this(seed, latency, errorRate, StubAiClient::defaultAnswer);
+    }
+
+    /**
+     * @param seed Seed for latency and error sampling.
+     * @param latency The latency distribution.
+     * @param errorRate Fraction of requests (0..1) that fail with a retryable error.
+     * @param responder Produces the answer for a prompt.
+     */
+    public StubAiClient(long seed, Latency latency, double errorRate, Function<String, String> responder) {
+        this.seed = seed;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.responder = responder;
+    }
+
+    @Override
+    public String getModelId() {
+        return MODEL_ID;
+    }
+
+    @Override
+    public String getConfigurationError() {
+        return null; // Always available
+    }
+
+    @Override
+    public String complete(String prompt) throws Exception {
+        Random random = randomFor(prompt);
+        long latencyMillis = begin(prompt, random);
+        Thread.sleep(Duration.ofMillis(latencyMillis));
+        return finish(responder.apply(prompt));
+    }
+
+    @Override
+    public String stream(String prompt, Consumer<String> onDelta) throws Exception {
+        Random random = randomFor(prompt);
+        long latencyMillis = begin(prompt, random);
+        String answer = responder.apply(prompt);
+        int chunks = Math.max(1, (answer.length() + CHUNK_CHARACTERS - 1) / CHUNK_CHARACTERS);
+        long firstChunkMillis = Math.round(latencyMillis * TIME_TO_FIRST_CHUNK_SHARE);
+        long perChunkMillis = (latencyMillis - firstChunkMillis) / chunks;
+        Thread.sleep(Duration.ofMillis(firstChunkMillis));
+        for (int start = 0; start < answer.length(); start += CHUNK_CHARACTERS) {
+            onDelta.accept(answer.substring(start, Math.min(answer.length(), start + CHUNK_CHARACTERS)));
+            Thread.sleep(Duration.ofMillis(perChunkMillis));
+        }
+        return finish(answer);
+    }
+
+    // Same seed, prompt and attempt number -> same latency and error decision, regardless of thread timing.
+    // The attempt number makes a retry of a failed prompt draw again instead of failing forever.
+    private Random randomFor(String prompt) {
+        int promptHash = prompt == null ? 0 : prompt.hashCode();
+        int attempt = attemptsByPrompt.merge(promptHash, 1, Integer::sum);
+        // java.util.Random's first draws are correlated for adjacent seeds; SplittableRandom mixes the seed first
+        return new Random(new SplittableRandom((seed * 31 + promptHash) * 31 + attempt).nextLong());
+    }
+
+    private long begin(String prompt, Random random) throws IOException {
+        requests.incrementAndGet();
+        promptTokens.addAndGet(PromptBudgeter.estimateTokens(prompt == null ? "" : prompt));
+        long latencyMillis = Math.max(0, latency.sampleMillis(random));
+        if (random.nextDouble() < errorRate) {
+            failures.incrementAndGet();
+            throw new IOException("HTTP 503 Service Unavailable (stub)");
+        }
+        return latencyMillis;
+    }
+
+    private String finish(String answer) {
+        completionTokens.addAndGet(PromptBudgeter.estimateTokens(answer));
+        return answer;
+    }
+
+    /**
+     * Answers the application's structured prompts in the format they ask for; anything else gets
+     * a fixed analysis text.
+     */
+    static String defaultAnswer(String prompt) {
+        if (prompt.contains("Return only a JSON array")) {
+            // BatchTransactionRecognizer: one {"id","category"} per row, by In/Out direction
+            StringBuilder json = new StringBuilder("[");
+            Matcher matcher = BATCH_ROW.matcher(prompt);
+            while (matcher.find()) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                boolean income = matcher.group(2).trim().equalsIgnoreCase("Income") || matcher.group(2).trim().equalsIgnoreCase("In");
+                json.append("{\"id\":").append(matcher.group(1))
+                        .append(",\"category\":\"").append(income ? "Other Income" : "Other Expenses").append("\"}");
+            }
+            return json.append(']').toString();
+        }
+        if (prompt.contains("Return only the type string")) {
+            return "Other Expenses";
+        }
+        if (prompt.contains("[minimum_budget, maximum_budget]")) {
+            return "[150.00, 300.00]";
+        }
+        return "Stub analysis: spending is concentrated in a few categories. Dining and daily necessities are the largest "
+                + "expenses; consider setting a weekly limit for them and reviewing small recurring payments.";
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getPromptTokens() {
+        return promptTokens.get();
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens.get();
+    }
+}
@@ -0,0 +1,214 @@
+package Service.Impl;
+
+import Utils.CountMinSketch;
+import Utils.SpaceSaving;
+import model.HeavyHitter;
+import model.RollupCube;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Streaming top-K index of expenses per week and per month, for counterparties, commodities and categories.
+ * Each (period, dimension) pair keeps a Space-Saving summary of expense cents, and each period keeps one
+ * Count-Min sketch of transaction counts shared by all dimensions, so memory per period is fixed
+ * no matter how many distinct counterparties or users are fed in.
+ * Indexes built by different workers can be combined with {@link #merge(HeavyHitterIndex)}, and are
+ * persisted with {@link #writeTo(DataOutputStream)} (see HeavyHitterIndexDao).
+ */
+public class HeavyHitterIndex {
+
+    public enum Period {
+        WEEK,  // ISO week, "YYYY-Www"
+        MONTH  // "YYYY-MM"
+    }
+
+    public enum Dimension {
+        COUNTERPARTY,
+        COMMODITY,
+        CATEGORY
+    }
+
+    public static final int DEFAULT_CAPACITY = 64; // Counters per (period, dimension); enough for a reliable top 20
+
+    private static final DateTimeFormatter WEEK_FORMATTER = RollupCube.Granularity.WEEK.getFormatter(); // ISO week-based year
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final int capacity;
+    // Period -> period identifier -> values for that period
+    private final Map<Period, Map<String, PeriodSketches>> periods = new HashMap<>();
+
+    // Sketches for a single period
+    private static class PeriodSketches {
+        private final Map<Dimension, SpaceSaving> amounts = new HashMap<>();
+        private final CountMinSketch counts = new CountMinSketch(); // Keys are prefixed with the dimension name
+    }
+
+    public HeavyHitterIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HeavyHitterIndex(int capacity) {
+        this.capacity = capacity;
+    }
+
+    private PeriodSketches sketches(Period period, String periodIdentifier) {
+        return periods.computeIfAbsent(period, k -> new HashMap<>())
+                .computeIfAbsent(periodIdentifier, k -> new PeriodSketches());
+    }
+
+    private static String countKey(Dimension dimension, String item) {
+        return dimension.name() + '\u0000' + item;
+    }
+
+    /**
+     * Formats a date as the identifier of the period it falls in.
+     */
+    public static String periodIdentifier(Period period, LocalDate date) {
+        return date.format(period == Period.WEEK ? WEEK_FORMATTER : MONTH_FORMATTER);
+    }
+
+    /**
+     * Adds one expense to the week and month it falls in. Blank values are skipped for their dimension.
+     * @param date The transaction date.
+     * @param counterparty The counterparty (may be null).
+     * @param commodity The commodity description (may be null).
+     * @param category The standard expense category (may be null).
+     * @param cents The expense amount in cents.
+     */
+    public void addExpense(LocalDate date, String counterparty, String commodity, String category, long cents) {
+        for (Period period : Period.values()) {
+            PeriodSketches sketches = sketches(period, periodIdentifier(period, date));
+            add(sketches, Dimension.COUNTERPARTY, counterparty, cents);
+            add(sketches, Dimension.COMMODITY, commodity, cents);
+            add(sketches, Dimension.CATEGORY, category, cents);
+        }
+    }
+
+    private void add(PeriodSketches sketches, Dimension dimension, String item, long cents) {
+        if (item == null || item.trim().isEmpty()) {
+            return;
+        }
+        String key = item.trim();
+        sketches.amounts.computeIfAbsent(dimension, k -> new SpaceSaving(capacity)).offer(key, cents);
+        sketches.counts.add(countKey(dimension, key), 1);
+    }
+
+    /**
+     * Merges another index into this one (e.g. a per-user index into a global one).
+     * @param other The index to merge. It is not modified.
+     * @return this index, for chaining.
+     */
+    public HeavyHitterIndex merge(HeavyHitterIndex other) {
+        if (other == null) {
+            return this;
+        }
+        other.periods.forEach((period, byIdentifier) -> byIdentifier.forEach((identifier, otherSketches) -> {
+            PeriodSketches sketches = sketches(period, identifier);
+            otherSketches.amounts.forEach((dimension, summary) ->
+                    sketches.amounts.computeIfAbsent(dimension, k -> new SpaceSaving(capacity)).merge(summary));
+            sketches.counts.merge(otherSketches.counts);
+        }));
+        return this;
+    }
+
+    /**
+     * Returns the heaviest items of a period by expense amount.
+     * @param period Week or month.
+     * @param periodIdentifier e.g. "2025-W14" or "2025-04".
+     * @param dimension Counterparty, commodity or category.
+     * @param k Maximum number of items to return.
+     * @return Up to k items, heaviest first. Empty if the period has no expenses.
+     */
+    public List<HeavyHitter> topK(Period period, String periodIdentifier, Dimension dimension, int k) {
+        PeriodSketches sketches = periods.getOrDefault(period, Collections.emptyMap()).get(periodIdentifier);
+        if (sketches == null || !sketches.amounts.containsKey(dimension)) {
+            return Collections.emptyList();
+        }
+        List<HeavyHitter> result = new ArrayList<>();
+        for (SpaceSaving.Counter counter : sketches.amounts.get(dimension).top(k)) {
+            result.add(new HeavyHitter(counter.getItem(), counter.getCount(), counter.getError(),
+                    sketches.counts.estimate(countKey(dimension, counter.getItem()))));
+        }
+        return result;
+    }
+
+    /**
+     * @return The exact total expense in cents of a period over all items of the dimension
+     *         (expenses with a blank value for the dimension are not included).
+     */
+    public long getTotalExpenseCents(Period period, String periodIdentifier, Dimension dimension) {
+        PeriodSketches sketches = periods.getOrDefault(period, Collections.emptyMap()).get(periodIdentifier);
+        if (sketches == null || !sketches.amounts.containsKey(dimension)) {
+            return 0;
+        }
+        return sketches.amounts.get(dimension).getTotalWeight();
+    }
+
+    /**
+     * @return The identifiers of all periods with at least one expense, sorted chronologically.
+     */
+    public Set<String> getPeriodIdentifiers(Period period) {
+        return Collections.unmodifiableSet(new TreeSet<>(periods.getOrDefault(period, Collections.emptyMap()).keySet()));
+    }
+
+    public boolean isEmpty() {
+        return periods.isEmpty();
+    }
+
+    /**
+     * Writes the index: capacity, then per period kind and identifier the Space-Saving summary of each
+     * dimension and the count sketch. Periods are written in sorted order, so equal indexes give equal bytes.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(capacity);
+        out.writeInt(periods.size());
+        for (Map.Entry<Period, Map<String, PeriodSketches>> byPeriod : new TreeMap<>(periods).entrySet()) {
+            out.writeUTF(byPeriod.getKey().name());
+            out.writeInt(byPeriod.getValue().size());
+            for (Map.Entry<String, PeriodSketches> entry : new TreeMap<>(byPeriod.getValue()).entrySet()) {
+                out.writeUTF(entry.getKey());
+                PeriodSketches sketches = entry.getValue();
+                out.writeInt(sketches.amounts.size());
+                for (Map.Entry<Dimension, SpaceSaving> amounts : new TreeMap<>(sketches.amounts).entrySet()) {
+                    out.writeUTF(amounts.getKey().name());
+                    amounts.getValue().writeTo(out);
+                }
+                sketches.counts.writeTo(out);
+            }
+        }
+    }
+
+    public static HeavyHitterIndex readFrom(DataInputStream in) throws IOException {
+        HeavyHitterIndex index = new HeavyHitterIndex(in.readInt());
+        try {
+            int periodCount = in.readInt();
+            for (int i = 0; i < periodCount; i++) {
+                Period period = Period.valueOf(in.readUTF());
+                int identifierCount = in.readInt();
+                for (int j = 0; j < identifierCount; j++) {
+                    PeriodSketches sketches = index.sketches(period, in.readUTF());
+                    int dimensionCount = in.readInt();
+                    for (int d = 0; d < dimensionCount; d++) {
+                        sketches.amounts.put(Dimension.valueOf(in.readUTF()), SpaceSaving.readFrom(in));
+                    }
+                    sketches.counts.merge(CountMinSketch.readFrom(in));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid heavy hitter index: " + e.getMessage(), e);
+        }
+        return index;
+    }
+}
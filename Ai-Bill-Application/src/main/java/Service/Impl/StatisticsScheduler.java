@@ -0,0 +1,226 @@
+package Service.Impl;
+
+import Utils.LedgerChangeNotifier;
+import model.SummaryStatistic;
+import model.WeeklySketch;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs weekly statistics generation in the background and keeps the latest result in memory.
+ *
+ * Runs are triggered periodically, shortly after a ledger changes, or on request (admin button).
+ * All requests that arrive before a run starts are coalesced into that single run.
+ * Runs execute one at a time on a dedicated low-priority daemon thread, so they never
+ * compete with the UI executor. Readers use {@link #getLatestStatistics()}, which never blocks.
+ */
+public class StatisticsScheduler {
+
+    // Default schedule used by the application
+    public static final long DEFAULT_PERIOD_MINUTES = 60;
+    public static final long DEFAULT_CHANGE_DELAY_SECONDS = 30; // Quiet time after a ledger change before regenerating
+
+    private final SummaryStatisticService summaryStatisticService;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<String> ledgerChangeListener = filePath -> onLedgerChanged();
+    private final CopyOnWriteArrayList<Consumer<List<SummaryStatistic>>> resultListeners = new CopyOnWriteArrayList<>();
+
+    // Future shared by every request waiting for the next run; null when no run is queued
+    private CompletableFuture<List<SummaryStatistic>> pendingRun;
+    // Delayed run scheduled after a ledger change; rescheduled on further changes
+    private ScheduledFuture<?> pendingChangeTrigger;
+    private long changeDelaySeconds = DEFAULT_CHANGE_DELAY_SECONDS;
+
+    // Latest materialized result (immutable list) and when it was produced
+    private volatile List<SummaryStatistic> latestStatistics = Collections.emptyList();
+    private volatile Map<String, WeeklySketch> latestSketches = Collections.emptyMap();
+    private volatile String latestRefreshTime;
+    private volatile String lastError;
+
+    /**
+     * Creates a scheduler for the given statistics service. Nothing runs until {@link #start(long, long)}
+     * or {@link #requestRun()} is called.
+     * @param summaryStatisticService The service that generates and loads the statistics.
+     */
+    public StatisticsScheduler(SummaryStatisticService summaryStatisticService) {
+        this.summaryStatisticService = summaryStatisticService;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-scheduler");
+            thread.setDaemon(true); // Never keep the application alive
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the last saved statistics, then starts periodic and on-change regeneration.
+     * @param periodMinutes Interval between periodic runs.
+     * @param changeDelaySeconds Quiet time after the last ledger change before a run is triggered.
+     */
+    public void start(long periodMinutes, long changeDelaySeconds) {
+        synchronized (this) {
+            this.changeDelaySeconds = changeDelaySeconds;
+        }
+        scheduler.execute(this::reloadLatest);
+        scheduler.scheduleWithFixedDelay(this::requestRun, periodMinutes, periodMinutes, TimeUnit.MINUTES);
+        LedgerChangeNotifier.addListener(ledgerChangeListener);
+        System.out.println("StatisticsScheduler started. Period: " + periodMinutes + " min, change delay: " + changeDelaySeconds + " s.");
+    }
+
+    /**
+     * Stops the scheduler. Queued requests are completed exceptionally.
+     */
+    public void stop() {
+        LedgerChangeNotifier.removeListener(ledgerChangeListener);
+        scheduler.shutdownNow();
+        CompletableFuture<List<SummaryStatistic>> run;
+        synchronized (this) {
+            run = pendingRun;
+            pendingRun = null;
+        }
+        if (run != null) {
+            run.completeExceptionally(new IllegalStateException("Statistics scheduler stopped."));
+        }
+        System.out.println("StatisticsScheduler stopped.");
+    }
+
+    /**
+     * Requests a regeneration run. If a run is already queued (but not started), this request joins it.
+     * @return A future completed with the statistics produced by the run that covers this request.
+     */
+    public CompletableFuture<List<SummaryStatistic>> requestRun() {
+        synchronized (this) {
+            if (pendingRun == null) {
+                pendingRun = new CompletableFuture<>();
+                try {
+                    scheduler.execute(this::runOnce);
+                } catch (Exception e) {
+                    // Scheduler already stopped
+                    CompletableFuture<List<SummaryStatistic>> rejected = pendingRun;
+                    pendingRun = null;
+                    rejected.completeExceptionally(e);
+                    return rejected;
+                }
+            }
+            return pendingRun;
+        }
+    }
+
+    /**
+     * Registers a listener that receives every newly materialized result (called on the scheduler thread).
+     * @param listener The listener to add.
+     */
+    public void addResultListener(Consumer<List<SummaryStatistic>> listener) {
+        resultListeners.addIfAbsent(listener);
+    }
+
+    public void removeResultListener(Consumer<List<SummaryStatistic>> listener) {
+        resultListeners.remove(listener);
+    }
+
+    /**
+     * @return The latest materialized statistics (never null, unmodifiable). Does not touch the disk.
+     */
+    public List<SummaryStatistic> getLatestStatistics() {
+        return latestStatistics;
+    }
+
+    /**
+     * @return The weekly distribution sketches materialized with the latest statistics (never null, unmodifiable).
+     */
+    public Map<String, WeeklySketch> getLatestSketches() {
+        return latestSketches;
+    }
+
+    /**
+     * @return When the latest statistics were materialized, or null if nothing has been loaded yet.
+     */
+    public String getLatestRefreshTime() {
+        return latestRefreshTime;
+    }
+
+    /**
+     * @return The error message of the last failed run, or null if the last run succeeded.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    // Debounces ledger changes: each change pushes the triggered run back by changeDelaySeconds
+    private synchronized void onLedgerChanged() {
+        if (pendingChangeTrigger != null) {
+            pendingChangeTrigger.cancel(false);
+        }
+        try {
+            pendingChangeTrigger = scheduler.schedule(this::requestRun, changeDelaySeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // Scheduler already stopped; ignore
+        }
+    }
+
+    // Executes one coalesced run on the scheduler thread
+    private void runOnce() {
+        CompletableFuture<List<SummaryStatistic>> run;
+        synchronized (this) {
+            // Requests arriving from now on are queued for the next run
+            run = pendingRun;
+            pendingRun = null;
+        }
+        if (run == null) {
+            return;
+        }
+
+        try {
+            System.out.println("StatisticsScheduler: Regenerating weekly statistics...");
+            summaryStatisticService.generateAndSaveWeeklyStatistics();
+            lastError = null;
+            publish(summaryStatisticService.getAllSummaryStatistics());
+            run.complete(latestStatistics);
+        } catch (Exception e) {
+            lastError = e.getMessage() != null ? e.getMessage() : e.toString();
+            System.err.println("StatisticsScheduler: Statistics regeneration failed: " + lastError);
+            e.printStackTrace();
+            run.completeExceptionally(e);
+        }
+    }
+
+    // Loads the last saved statistics without regenerating them
+    private void reloadLatest() {
+        try {
+            publish(summaryStatisticService.getAllSummaryStatistics());
+        } catch (Exception e) {
+            lastError = e.getMessage() != null ? e.getMessage() : e.toString();
+            System.err.println("StatisticsScheduler: Failed to load existing statistics: " + lastError);
+        }
+    }
+
+    private void publish(List<SummaryStatistic> statistics) {
+        try {
+            latestSketches = Collections.unmodifiableMap(summaryStatisticService.getWeeklySketches());
+        } catch (Exception e) {
+            // Sketches are optional extra detail; the totals are still published
+            System.err.println("StatisticsScheduler: Failed to load weekly sketches: " + e.getMessage());
+            latestSketches = Collections.emptyMap();
+        }
+        latestStatistics = Collections.unmodifiableList(statistics);
+        latestRefreshTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        for (Consumer<List<SummaryStatistic>> listener : resultListeners) {
+            try {
+                listener.accept(latestStatistics);
+            } catch (Exception e) {
+                System.err.println("StatisticsScheduler: Result listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -4,17 +4,37 @@ import Constants.StandardCategories; // Import StandardCategories
 import DAO.TransactionDao; // Import TransactionDao interface
 import DAO.UserDao; // Import UserDao interface
 import DAO.SummaryStatisticDao; // Import SummaryStatisticDao interface
+import DAO.StatisticsStateDao;
+import DAO.Impl.CsvStatisticsStateDao;
+import DAO.HeavyHitterIndexDao;
+import DAO.Impl.BinaryHeavyHitterIndexDao;
+import DAO.WeeklySketchDao;
+import DAO.Impl.BinaryWeeklySketchDao;
+import model.HeavyHitter;
+import model.LedgerWatermark;
+import model.RollupCube;
 import model.SummaryStatistic;
 import model.Transaction;
 import model.User;
+import model.UserWeekPartial;
+import model.WeeklySketch;
 import Utils.CacheManager; // Import CacheManager
 import Constants.ConfigConstants; // Import ConfigConstants for summary file path
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.WeekFields; // For getting week of year
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.time.format.DateTimeFormatter; // For generating timestamp
 
@@ -24,6 +44,20 @@ public class SummaryStatisticService {
     private final TransactionDao transactionDao; // Need a DAO instance for CacheManager loading
     private final SummaryStatisticDao summaryStatisticDao;
     private final String summaryFilePath;
+    private final StatisticsStateDao statisticsStateDao; // Watermarks and per-user partials for incremental runs
+    private final String watermarksFilePath;
+    private final String partialsFilePath;
+    private final WeeklySketchDao weeklySketchDao; // Distribution sketches (binary sidecar next to the summary file)
+    private final String sketchFilePath;
+    private final HeavyHitterIndexDao heavyHitterIndexDao; // Top-K expense indexes, per user and merged
+    private final String userHeavyHittersFilePath;
+    private final String heavyHittersFilePath;
+
+    // Upper bound on users scanned concurrently by generateAndSaveWeeklyStatistics
+    private static final int MAX_CONCURRENT_USER_SCANS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final String STATE_DIR_NAME = "summary_state";
+    // Key of the merged index in the heavy hitters file (that file holds no per-user entries)
+    private static final String ALL_USERS_KEY = "*";
 
     /**
      * Constructor to inject dependencies.
@@ -32,10 +66,43 @@ public class SummaryStatisticService {
      * @param summaryStatisticDao DAO for summary statistics data.
      */
     public SummaryStatisticService(UserDao userDao, TransactionDao transactionDao, SummaryStatisticDao summaryStatisticDao) {
+        this(userDao, transactionDao, summaryStatisticDao, new CsvStatisticsStateDao());
+    }
+
+    /**
+     * Constructor to inject dependencies, including the store for incremental statistics state.
+     * @param userDao DAO for user data.
+     * @param transactionDao DAO for transaction data (used by CacheManager loader).
+     * @param summaryStatisticDao DAO for summary statistics data.
+     * @param statisticsStateDao DAO for ledger watermarks and per-user weekly partials.
+     */
+    public SummaryStatisticService(UserDao userDao, TransactionDao transactionDao, SummaryStatisticDao summaryStatisticDao, StatisticsStateDao statisticsStateDao) {
+        this(userDao, transactionDao, summaryStatisticDao, statisticsStateDao, new BinaryHeavyHitterIndexDao(), ConfigConstants.SUMMARY_CSV_PATH);
+    }
+
+    /**
+     * Constructor with every store and the summary file path (tests use a temporary directory).
+     * @param heavyHitterIndexDao DAO for the top-K expense indexes.
+     * @param summaryFilePath The summary file; the other state files live next to it.
+     */
+    SummaryStatisticService(UserDao userDao, TransactionDao transactionDao, SummaryStatisticDao summaryStatisticDao,
+                            StatisticsStateDao statisticsStateDao, HeavyHitterIndexDao heavyHitterIndexDao, String summaryFilePath) {
         this.userDao = userDao;
         this.transactionDao = transactionDao; // Injected for use in CacheManager loader
         this.summaryStatisticDao = summaryStatisticDao;
-        this.summaryFilePath = ConfigConstants.SUMMARY_CSV_PATH; // Get summary file path from config
+        this.summaryFilePath = summaryFilePath;
+        this.statisticsStateDao = statisticsStateDao;
+        // State files live in a sidecar directory next to the summary file
+        Path stateDir = Paths.get(summaryFilePath).resolveSibling(STATE_DIR_NAME);
+        this.watermarksFilePath = stateDir.resolve("ledger_watermarks.csv").toString();
+        this.partialsFilePath = stateDir.resolve("user_week_partials.csv").toString();
+        this.heavyHitterIndexDao = heavyHitterIndexDao;
+        this.userHeavyHittersFilePath = stateDir.resolve("user_heavy_hitters.sketches").toString();
+        this.heavyHittersFilePath = stateDir.resolve("heavy_hitters.sketches").toString();
+        this.weeklySketchDao = new BinaryWeeklySketchDao();
+        String summaryFileName = Paths.get(summaryFilePath).getFileName().toString();
+        String sketchFileName = (summaryFileName.endsWith(".csv") ? summaryFileName.substring(0, summaryFileName.length() - 4) : summaryFileName) + ".sketches";
+        this.sketchFilePath = Paths.get(summaryFilePath).resolveSibling(sketchFileName).toString();
         System.out.println("SummaryStatisticService initialized. Summary file: " + summaryFilePath);
     }
 
@@ -79,7 +146,7 @@ public class SummaryStatisticService {
      */
     private Map<String, List<Transaction>> groupTransactionsByWeek(List<Transaction> transactions) {
         WeekFields weekFields = WeekFields.ISO; // ISO 8601 week numbering (Monday is the first day of the week)
-        DateTimeFormatter weekFormatter = DateTimeFormatter.ofPattern("yyyy-'W'ww"); // Format as "YYYY-Www"
+        DateTimeFormatter weekFormatter = RollupCube.Granularity.WEEK.getFormatter(); // Format as "YYYY-Www"
 
         return transactions.stream()
                 .filter(t -> t.getTransactionTime() != null && !t.getTransactionTime().trim().isEmpty()) // Filter out transactions with no time
@@ -132,6 +199,15 @@ public class SummaryStatisticService {
     }
 
 
+    /**
+     * Retrieves the weekly distribution sketches (distinct users/counterparties, spend-per-user quantiles).
+     * @return A map from week identifier to sketch. Empty if no sketches have been generated yet.
+     * @throws IOException If loading fails.
+     */
+    public Map<String, WeeklySketch> getWeeklySketches() throws IOException {
+        return weeklySketchDao.loadSketches(sketchFilePath);
+    }
+
     /**
      * Retrieves all summary statistics from the data source.
      * @return List of summary statistics.
@@ -143,157 +219,395 @@ public class SummaryStatisticService {
     }
 
 
+    /**
+     * Retrieves the top-K expense index (counterparties, commodities, categories per week and month)
+     * built by the last generateAndSaveWeeklyStatistics run. No ledger is read.
+     * @param username The user, or null for all users merged together.
+     * @return The index. Empty if the statistics have not been generated yet or the user has no expenses.
+     * @throws IOException If loading fails.
+     */
+    public HeavyHitterIndex getHeavyHitterIndex(String username) throws IOException {
+        if (username == null) {
+            return heavyHitterIndexDao.loadIndexes(heavyHittersFilePath).getOrDefault(ALL_USERS_KEY, new HeavyHitterIndex());
+        }
+        return heavyHitterIndexDao.loadIndexes(userHeavyHittersFilePath).getOrDefault(username, new HeavyHitterIndex());
+    }
+
+    /**
+     * Returns the heaviest expense items of a single week or month.
+     * @param username The user, or null for all users.
+     * @param period Week or month.
+     * @param periodIdentifier e.g. "2025-W14" or "2025-04".
+     * @param dimension Counterparty, commodity or category.
+     * @param k Maximum number of items.
+     * @return Up to k items, heaviest first, as of the last statistics run.
+     * @throws IOException If loading the index fails.
+     */
+    public List<HeavyHitter> getTopK(String username, HeavyHitterIndex.Period period, String periodIdentifier,
+                                     HeavyHitterIndex.Dimension dimension, int k) throws IOException {
+        return getHeavyHitterIndex(username).topK(period, periodIdentifier, dimension, k);
+    }
+
+
     // --- Revised Plan for generateAndSaveWeeklyStatistics ---
     // The previous approach of loading all transactions and then grouping by week
     // doesn't easily allow counting unique users per week unless we augment the Transaction object
     // or wrap it with User info during loading.
     // A better approach for unique user count is to process user by user.
+    // Each user now produces its own partial WeeklyAggregate (and top-K index) on a worker thread.
+    // The per-user partials are persisted together with a watermark of the ledger they came from,
+    // so later runs only re-read ledgers that changed and only recompute the weeks that changed.
 
     public void generateAndSaveWeeklyStatistics() throws Exception {
-        System.out.println("Generating weekly summary statistics (Revised approach)...");
+        System.out.println("Generating weekly summary statistics (incremental)...");
         List<User> allUsers = userDao.getAllUsers();
         System.out.println("Loaded " + allUsers.size() + " users.");
 
-        // Map to hold weekly stats per user (WeekId -> Map<UserId, UserWeeklyStats>)
-        // This intermediate structure is complex.
-
-        // Map to hold aggregated stats for each week (WeekId -> AggregatedWeeklyStats)
-        Map<String, Double> totalIncomeByWeek = new HashMap<>();
-        Map<String, Double> totalExpenseByWeek = new HashMap<>();
-        Map<String, Map<String, Double>> expenseByCategoryByWeek = new HashMap<>(); // WeekId -> (Category -> Amount)
-        Map<String, Set<String>> usersByWeek = new HashMap<>(); // WeekId -> Set<Username>
-
-        WeekFields weekFields = WeekFields.ISO;
-        DateTimeFormatter weekFormatter = DateTimeFormatter.ofPattern("yyyy-'W'ww");
-
+        // 1. Load the state left by the previous run (watermarks and per-user weekly partials)
+        Map<String, LedgerWatermark> previousWatermarks;
+        Map<String, WeeklyAggregate> userAggregates;
+        try {
+            userAggregates = WeeklyAggregate.fromUserWeekPartials(statisticsStateDao.loadUserWeekPartials(partialsFilePath));
+            // Watermarks without their partials are useless, so only trust them if the partials file exists
+            previousWatermarks = Files.exists(Paths.get(partialsFilePath))
+                    ? statisticsStateDao.loadWatermarks(watermarksFilePath)
+                    : new HashMap<>();
+        } catch (IOException e) {
+            System.err.println("Failed to load statistics state from " + partialsFilePath + ". Falling back to a full rebuild.");
+            e.printStackTrace();
+            previousWatermarks = new HashMap<>();
+            userAggregates = new HashMap<>();
+        }
+        Map<String, HeavyHitterIndex> userHeavyHitters;
+        try {
+            userHeavyHitters = heavyHitterIndexDao.loadIndexes(userHeavyHittersFilePath);
+        } catch (IOException e) {
+            System.err.println("Failed to load top-K indexes from " + userHeavyHittersFilePath + ". They will be rebuilt.");
+            e.printStackTrace();
+            userHeavyHitters = new HashMap<>();
+        }
 
-        // Iterate through each user
+        // 2. Find the users whose ledger changed since the last run
+        Map<String, LedgerWatermark> currentWatermarks = new LinkedHashMap<>();
+        List<User> changedUsers = new ArrayList<>();
+        Set<String> currentUsernames = new HashSet<>();
         for (User user : allUsers) {
-            String userFilePath = user.getTransactionFilePath();
-            String username = user.getUsername();
+            LedgerWatermark current = LedgerWatermark.capture(user.getUsername(), user.getTransactionFilePath());
+            currentWatermarks.put(user.getUsername(), current);
+            currentUsernames.add(user.getUsername());
+            // A user without a top-K index (e.g. first run after an upgrade) is re-read as well
+            if (!current.matches(previousWatermarks.get(user.getUsername())) || !userHeavyHitters.containsKey(user.getUsername())) {
+                changedUsers.add(user);
+            }
+        }
+        System.out.println(changedUsers.size() + " of " + allUsers.size() + " user ledgers changed since the last run.");
 
-            if (userFilePath != null && !userFilePath.trim().isEmpty()) {
-                try {
-                    // Load transactions for this user
-                    List<Transaction> userTransactions = CacheManager.getTransactions(userFilePath, transactionDao);
-                    System.out.println("Processing " + userTransactions.size() + " transactions for user: " + username);
+        // 3. Re-aggregate only the changed ledgers and collect the weeks they affect
+        Set<String> dirtyWeeks = new HashSet<>();
+        Map<String, UserScan> refreshedScans = aggregateAllUsers(changedUsers);
+        for (User user : changedUsers) {
+            String username = user.getUsername();
+            UserScan scan = refreshedScans.get(username);
+            if (scan == null) {
+                // Loading failed: keep the previous partial and watermark so the next run retries this user
+                LedgerWatermark previous = previousWatermarks.get(username);
+                if (previous != null) {
+                    currentWatermarks.put(username, previous);
+                } else {
+                    currentWatermarks.remove(username);
+                }
+                continue;
+            }
+            dirtyWeeks.addAll(WeeklyAggregate.changedWeeks(userAggregates.get(username), scan.aggregate));
+            userAggregates.put(username, scan.aggregate);
+            userHeavyHitters.put(username, scan.heavyHitters);
+        }
 
-                    // Iterate through transactions for this user
-                    for (Transaction t : userTransactions) {
-                        if (t.getTransactionTime() == null || t.getTransactionTime().trim().isEmpty()) {
-                            System.err.println("Skipping transaction with no time for user " + username + ": " + t.getOrderNumber());
-                            continue; // Skip transactions with no time
-                        }
+        // Users that no longer exist make their weeks dirty as well
+        Iterator<Map.Entry<String, WeeklyAggregate>> userIterator = userAggregates.entrySet().iterator();
+        while (userIterator.hasNext()) {
+            Map.Entry<String, WeeklyAggregate> entry = userIterator.next();
+            if (!currentUsernames.contains(entry.getKey())) {
+                dirtyWeeks.addAll(entry.getValue().getWeekIdentifiers());
+                userIterator.remove();
+            }
+        }
+        userHeavyHitters.keySet().retainAll(currentUsernames);
+        boolean stateChanged = !changedUsers.isEmpty() || !currentWatermarks.keySet().equals(previousWatermarks.keySet());
 
-                        LocalDate date = parseDateFromTransactionTime(t.getTransactionTime());
-                        if (date == null) {
-                            System.err.println("Skipping transaction with unparseable date for user " + username + ": " + t.getTransactionTime());
-                            continue; // Skip transactions with invalid date
-                        }
+        // 4. Load existing statistics (weeks missing from the summary file are recomputed as well)
+        List<SummaryStatistic> existingStatistics = getAllSummaryStatistics();
+        System.out.println("Loaded " + existingStatistics.size() + " existing summary statistics.");
+        Map<String, SummaryStatistic> finalStatisticsMap = new HashMap<>();
+        for(SummaryStatistic stat : existingStatistics) {
+            finalStatisticsMap.put(stat.getWeekIdentifier(), stat);
+        }
+        for (WeeklyAggregate aggregate : userAggregates.values()) {
+            for (String week : aggregate.getWeekIdentifiers()) {
+                if (!finalStatisticsMap.containsKey(week)) {
+                    dirtyWeeks.add(week);
+                }
+            }
+        }
 
-                        String weekIdentifier = date.format(weekFormatter);
-
-                        // Add user to the set for this week
-                        usersByWeek.computeIfAbsent(weekIdentifier, k -> new HashSet<>()).add(username);
-
-                        // Aggregate income/expense
-                        if (t.getInOut() != null) {
-                            String inOut = t.getInOut().trim();
-                            if (inOut.equals("Income")) {
-                                totalIncomeByWeek.put(weekIdentifier, totalIncomeByWeek.getOrDefault(weekIdentifier, 0.0) + t.getPaymentAmount());
-                            } else if (inOut.equals("Expense")) {
-                                totalExpenseByWeek.put(weekIdentifier, totalExpenseByWeek.getOrDefault(weekIdentifier, 0.0) + t.getPaymentAmount());
-
-                                // Aggregate expense by standard category
-                                String rawType = t.getTransactionType();
-                                String standardCategory = StandardCategories.getStandardCategory(rawType);
-                                // Only aggregate standard expense categories for the top category calculation
-                                if (StandardCategories.isStandardExpenseCategory(standardCategory) || !StandardCategories.ALL_KNOWN_TYPES.contains(standardCategory)) {
-                                    String effectiveExpenseCategoryForTop = StandardCategories.isStandardExpenseCategory(standardCategory) ? standardCategory : "其他支出";
-                                    expenseByCategoryByWeek.computeIfAbsent(weekIdentifier, k -> new HashMap<>())
-                                            .put(effectiveExpenseCategoryForTop, expenseByCategoryByWeek.get(weekIdentifier).getOrDefault(effectiveExpenseCategoryForTop, 0.0) + t.getPaymentAmount());
-                                }
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error loading transactions for user " + user.getUsername() + " from " + userFilePath + ". Skipping this user's data for statistics.");
-                    e.printStackTrace();
-                    // Continue processing other users
+        // Weeks without a sketch (e.g. first run after an upgrade) are recomputed as well
+        Map<String, WeeklySketch> weeklySketches;
+        try {
+            weeklySketches = weeklySketchDao.loadSketches(sketchFilePath);
+        } catch (IOException e) {
+            System.err.println("Failed to load weekly sketches from " + sketchFilePath + ". They will be rebuilt.");
+            weeklySketches = new HashMap<>();
+        }
+        for (WeeklyAggregate aggregate : userAggregates.values()) {
+            for (String week : aggregate.getWeekIdentifiers()) {
+                if (!weeklySketches.containsKey(week)) {
+                    dirtyWeeks.add(week);
                 }
-            } else {
-                System.out.println("User " + user.getUsername() + " has no transaction file path configured. Skipping for statistics.");
             }
         }
-        System.out.println("Completed aggregation across all users by week.");
 
+        if (dirtyWeeks.isEmpty()) {
+            System.out.println("No weeks changed since the last run. Summary statistics are up to date.");
+            if (stateChanged) {
+                saveStatisticsState(allUsers, userAggregates, userHeavyHitters, currentWatermarks);
+            }
+            return;
+        }
+        System.out.println("Recomputing " + dirtyWeeks.size() + " changed weeks.");
+
+        // 5. Recompute the dirty weeks from the per-user partials (no ledger reads needed)
+        WeeklyAggregate dirtyAggregate = new WeeklyAggregate();
+        for (User user : allUsers) {
+            // Merge in user order so the result does not depend on map iteration order
+            dirtyAggregate.mergeWeeks(userAggregates.get(user.getUsername()), dirtyWeeks);
+        }
 
-        // 5. Consolidate aggregated data into SummaryStatistic objects
-        List<SummaryStatistic> calculatedStatistics = new ArrayList<>();
         DateTimeFormatter timestampFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         String timestamp = LocalDateTime.now().format(timestampFormatter);
+        // Timestamp is when the stats were generated, not per week
+        List<SummaryStatistic> calculatedStatistics = dirtyAggregate.toStatistics(timestamp);
+        System.out.println("Created " + calculatedStatistics.size() + " SummaryStatistic objects.");
 
-        // Iterate through all week identifiers found
-        Set<String> allWeeks = new HashSet<>();
-        allWeeks.addAll(totalIncomeByWeek.keySet());
-        allWeeks.addAll(totalExpenseByWeek.keySet());
-        allWeeks.addAll(usersByWeek.keySet());
-        allWeeks.addAll(expenseByCategoryByWeek.keySet());
+        // 6. Replace the dirty weeks in the existing statistics; dirty weeks with no data left are dropped
+        finalStatisticsMap.keySet().removeAll(dirtyWeeks);
+        for(SummaryStatistic stat : calculatedStatistics) {
+            finalStatisticsMap.put(stat.getWeekIdentifier(), stat);
+        }
 
-        List<String> sortedWeekIdentifiers = allWeeks.stream().sorted().collect(Collectors.toList());
+        // 7. Sort merged statistics by week identifier (chronologically)
+        List<SummaryStatistic> finalStatistics = finalStatisticsMap.values().stream()
+                .sorted(Comparator.comparing(SummaryStatistic::getWeekIdentifier))
+                .collect(Collectors.toList());
 
-        for (String weekIdentifier : sortedWeekIdentifiers) {
-            double totalIncome = totalIncomeByWeek.getOrDefault(weekIdentifier, 0.0);
-            double totalExpense = totalExpenseByWeek.getOrDefault(weekIdentifier, 0.0);
-            int numberOfUsers = usersByWeek.getOrDefault(weekIdentifier, Collections.emptySet()).size();
+        // Rebuild the sketches of the dirty weeks from the per-user partials
+        weeklySketches.keySet().removeAll(dirtyWeeks);
+        weeklySketches.putAll(buildWeeklySketches(allUsers, userAggregates, dirtyWeeks));
 
-            // Find top expense category for this week
-            Map<String, Double> weeklyExpenseByCategory = expenseByCategoryByWeek.getOrDefault(weekIdentifier, Collections.emptyMap());
-            String topExpenseCategory = "无支出";
-            double topExpenseCategoryAmount = 0.0;
+        // 8. Save the final list and sketches, then the state they were computed from
+        summaryStatisticDao.writeAllStatistics(summaryFilePath, finalStatistics);
+        weeklySketchDao.writeSketches(sketchFilePath, weeklySketches.values());
+        saveStatisticsState(allUsers, userAggregates, userHeavyHitters, currentWatermarks);
+        System.out.println("Weekly summary statistics generated and saved successfully to " + summaryFilePath);
+    }
 
-            Optional<Map.Entry<String, Double>> maxEntry = weeklyExpenseByCategory.entrySet().stream()
-                    .max(Map.Entry.comparingByValue());
 
-            if (maxEntry.isPresent()) {
-                topExpenseCategory = maxEntry.get().getKey();
-                topExpenseCategoryAmount = maxEntry.get().getValue();
+    /**
+     * Builds the distribution sketches of the given weeks. Each user contributes one sketch entry per week
+     * (user id, weekly spend and counterparty sketch); the per-user contributions merge into the week's sketch.
+     * @param users All users, in a stable order.
+     * @param userAggregates Per-user weekly aggregates.
+     * @param weeks The weeks to build.
+     * @return A map from week identifier to sketch (weeks without any activity are absent).
+     */
+    private Map<String, WeeklySketch> buildWeeklySketches(List<User> users, Map<String, WeeklyAggregate> userAggregates, Set<String> weeks) {
+        Map<String, WeeklySketch> sketches = new HashMap<>();
+        for (User user : users) {
+            WeeklyAggregate aggregate = userAggregates.get(user.getUsername());
+            if (aggregate == null) {
+                continue;
             }
+            for (String week : weeks) {
+                WeeklyAggregate.WeekBucket bucket = aggregate.getBucket(week);
+                if (bucket != null) {
+                    sketches.computeIfAbsent(week, WeeklySketch::new)
+                            .addUser(user.getUsername(), bucket.getExpenseCents() / 100.0, bucket.getCounterparties());
+                }
+            }
+        }
+        return sketches;
+    }
+
 
-            calculatedStatistics.add(new SummaryStatistic(
-                    weekIdentifier,
-                    totalIncome,
-                    totalExpense,
-                    topExpenseCategory,
-                    topExpenseCategoryAmount,
-                    numberOfUsers,
-                    timestamp // Timestamp is when the stats were generated, not per week
-            ));
+    /**
+     * Persists the per-user partials, per-user top-K indexes and ledger watermarks used by the next incremental
+     * run, and the merged top-K index read by getTopK.
+     * Watermarks are written last: if an earlier write fails, the next run simply re-reads those ledgers.
+     * @param users All users, in a stable order (the merged index is built in this order).
+     * @param userAggregates Per-user weekly aggregates.
+     * @param userHeavyHitters Per-user top-K indexes.
+     * @param watermarks Ledger watermarks matching the aggregates.
+     * @throws IOException If writing any file fails.
+     */
+    private void saveStatisticsState(List<User> users, Map<String, WeeklyAggregate> userAggregates,
+                                     Map<String, HeavyHitterIndex> userHeavyHitters, Map<String, LedgerWatermark> watermarks) throws IOException {
+        List<UserWeekPartial> partials = new ArrayList<>();
+        for (Map.Entry<String, WeeklyAggregate> entry : new TreeMap<>(userAggregates).entrySet()) {
+            partials.addAll(entry.getValue().toUserWeekPartials(entry.getKey()));
         }
-        System.out.println("Created " + calculatedStatistics.size() + " SummaryStatistic objects.");
+        HeavyHitterIndex allHeavyHitters = new HeavyHitterIndex();
+        for (User user : users) {
+            allHeavyHitters.merge(userHeavyHitters.get(user.getUsername()));
+        }
+        statisticsStateDao.writeUserWeekPartials(partialsFilePath, partials);
+        heavyHitterIndexDao.writeIndexes(userHeavyHittersFilePath, userHeavyHitters);
+        heavyHitterIndexDao.writeIndexes(heavyHittersFilePath, Map.of(ALL_USERS_KEY, allHeavyHitters));
+        statisticsStateDao.writeWatermarks(watermarksFilePath, watermarks.values());
+        System.out.println("Saved statistics state (" + partials.size() + " user-week partials, " + userHeavyHitters.size()
+                + " top-K indexes, " + watermarks.size() + " watermarks).");
+    }
 
 
-        // 6. Load existing statistics
-        List<SummaryStatistic> existingStatistics = getAllSummaryStatistics();
-        System.out.println("Loaded " + existingStatistics.size() + " existing summary statistics.");
+    // What one pass over a user's ledger produces
+    private static class UserScan {
+        private final WeeklyAggregate aggregate = new WeeklyAggregate();
+        private final HeavyHitterIndex heavyHitters = new HeavyHitterIndex();
+    }
 
-        // 7. Merge existing and newly calculated statistics (overwrite new weeks, keep old)
-        Map<String, SummaryStatistic> finalStatisticsMap = new HashMap<>();
-        for(SummaryStatistic stat : existingStatistics) {
-            finalStatisticsMap.put(stat.getWeekIdentifier(), stat);
+    /**
+     * Aggregates the given users' ledgers by week and indexes their top expenses. Each user is processed on
+     * its own virtual thread (at most MAX_CONCURRENT_USER_SCANS at a time) into a thread-local partial result.
+     * @param users The users whose transaction files should be aggregated.
+     * @return A map from username to that user's scan. Users whose ledger failed to load are absent.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for workers.
+     */
+    private Map<String, UserScan> aggregateAllUsers(List<User> users) throws InterruptedException {
+        Map<String, UserScan> aggregates = new LinkedHashMap<>();
+        if (users.isEmpty()) {
+            return aggregates;
         }
-        for(SummaryStatistic stat : calculatedStatistics) {
-            finalStatisticsMap.put(stat.getWeekIdentifier(), stat); // New calculation replaces old for the week
+
+        Semaphore scanPermits = new Semaphore(MAX_CONCURRENT_USER_SCANS);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<UserScan>> partials = new ArrayList<>(users.size());
+            for (User user : users) {
+                partials.add(workers.submit(() -> {
+                    scanPermits.acquire();
+                    try {
+                        return aggregateUser(user);
+                    } finally {
+                        scanPermits.release();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < partials.size(); i++) {
+                try {
+                    UserScan scan = partials.get(i).get();
+                    if (scan != null) {
+                        aggregates.put(users.get(i).getUsername(), scan);
+                    }
+                } catch (ExecutionException e) {
+                    // aggregateUser already handles per-user load errors; this only covers unexpected failures.
+                    System.err.println("Unexpected error aggregating statistics for user " + users.get(i).getUsername() + ". Skipping this user's data for statistics.");
+                    e.getCause().printStackTrace();
+                }
+            }
         }
+        return aggregates;
+    }
 
-        // 8. Sort merged statistics by week identifier (chronologically)
-        List<SummaryStatistic> finalStatistics = finalStatisticsMap.values().stream()
-                .sorted(Comparator.comparing(SummaryStatistic::getWeekIdentifier))
-                .collect(Collectors.toList());
+    /**
+     * Builds the weekly partial aggregate and top-K index for a single user in one pass over the ledger.
+     * Runs on a worker thread and only touches its own local state.
+     * @param user The user whose transactions should be aggregated.
+     * @return The user's scan (empty if the user has no usable data), or null if the ledger failed to load.
+     */
+    private UserScan aggregateUser(User user) {
+        UserScan scan = new UserScan();
+        String userFilePath = user.getTransactionFilePath();
+        String username = user.getUsername();
+
+        if (userFilePath == null || userFilePath.trim().isEmpty()) {
+            System.out.println("User " + username + " has no transaction file path configured. Skipping for statistics.");
+            return scan;
+        }
 
-        // 9. Save the final list
-        summaryStatisticDao.writeAllStatistics(summaryFilePath, finalStatistics);
-        System.out.println("Weekly summary statistics generated and saved successfully to " + summaryFilePath);
+        DateTimeFormatter weekFormatter = RollupCube.Granularity.WEEK.getFormatter(); // ISO week-based year, like the rollup cube
+        try {
+            int processed = forEachTransaction(user, t -> accumulateTransaction(scan, username, t, weekFormatter));
+            System.out.println("Processed " + processed + " transactions for user: " + username);
+        } catch (Exception e) {
+            System.err.println("Error loading transactions for user " + username + " from " + userFilePath + ". Skipping this user's data for statistics.");
+            e.printStackTrace();
+            // Continue processing other users
+            return null;
+        }
+        return scan;
+    }
+
+    /**
+     * Feeds every transaction of a user's ledger to the consumer.
+     * Reuses the cached list if this user is active; otherwise streams the file without caching it,
+     * so a global scan neither holds every ledger in memory nor evicts interactive users.
+     * @return The number of transactions processed (0 if the user has no ledger configured).
+     * @throws Exception If the ledger fails to load.
+     */
+    private int forEachTransaction(User user, Consumer<Transaction> consumer) throws Exception {
+        String userFilePath = user.getTransactionFilePath();
+        if (userFilePath == null || userFilePath.trim().isEmpty()) {
+            return 0;
+        }
+        List<Transaction> cachedTransactions = CacheManager.getTransactionsIfPresent(userFilePath);
+        if (cachedTransactions != null) {
+            for (Transaction t : cachedTransactions) {
+                consumer.accept(t);
+            }
+            return cachedTransactions.size();
+        }
+        return transactionDao.streamFromCSV(userFilePath, consumer);
+    }
+
+    // Only standard expense categories take part in top category calculations; unknown types count as "其他支出"
+    private String expenseCategoryForTop(String rawType) {
+        String standardCategory = StandardCategories.getStandardCategory(rawType);
+        if (StandardCategories.isStandardExpenseCategory(standardCategory)) {
+            return standardCategory;
+        }
+        return StandardCategories.ALL_KNOWN_TYPES.contains(standardCategory) ? null : "其他支出";
+    }
+
+    // Adds a single transaction to a user's partial aggregate; expenses also go to the user's top-K index
+    private void accumulateTransaction(UserScan scan, String username, Transaction t, DateTimeFormatter weekFormatter) {
+        WeeklyAggregate partial = scan.aggregate;
+        if (t.getTransactionTime() == null || t.getTransactionTime().trim().isEmpty()) {
+            System.err.println("Skipping transaction with no time for user " + username + ": " + t.getOrderNumber());
+            return; // Skip transactions with no time
+        }
+
+        LocalDate date = parseDateFromTransactionTime(t.getTransactionTime());
+        if (date == null) {
+            System.err.println("Skipping transaction with unparseable date for user " + username + ": " + t.getTransactionTime());
+            return; // Skip transactions with invalid date
+        }
+
+        String weekIdentifier = date.format(weekFormatter);
+
+        // Add user to the set for this week
+        partial.markUserActive(weekIdentifier, username);
+        partial.addCounterparty(weekIdentifier, t.getCounterparty());
+
+        // Aggregate income/expense
+        if (t.getInOut() != null) {
+            String inOut = t.getInOut().trim();
+            if (inOut.equals("Income")) {
+                partial.addIncome(weekIdentifier, t.getPaymentAmount());
+            } else if (inOut.equals("Expense")) {
+                // Aggregate expense by standard category
+                String category = expenseCategoryForTop(t.getTransactionType());
+                partial.addExpense(weekIdentifier, category, t.getPaymentAmount());
+                scan.heavyHitters.addExpense(date, t.getCounterparty(), t.getCommodity(), category, WeeklyAggregate.toCents(t.getPaymentAmount()));
+            }
+        }
     }
 
 
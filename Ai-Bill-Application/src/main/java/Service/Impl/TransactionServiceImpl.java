@@ -1,18 +1,23 @@
 package Service.Impl;
 
 import Constants.StandardCategories;
+import DAO.RollupCubeDao;
 import DAO.TransactionDao; // Import the interface
+import DAO.Impl.CsvRollupCubeDao;
 import DAO.Impl.CsvTransactionDao; // Import the implementation
 import Service.TransactionService;
 import Utils.CacheManager; // Import the new CacheManager
+import Utils.LedgerChangeNotifier;
+import model.LedgerWatermark;
 import model.MonthlySummary;
+import model.PeriodTotals;
+import model.RollupCube;
 import model.Transaction;
 
 import javax.swing.*;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException; // Added for clarity in catch blocks if specific parsing errors are handled
 import java.util.*;
@@ -24,17 +29,46 @@ public class TransactionServiceImpl implements TransactionService {
     // TransactionDao instance needed to load data if cache misses
     private final TransactionDao transactionDao;
 
+    // Persisted rollup cube (User.summaryFilePath). Null path means the cube is not persisted
+    // and period totals are computed from the raw transactions on every request.
+    private final String summaryFilePath;
+    private final RollupCubeDao rollupCubeDao;
+    private final Object rollupLock = new Object();
+    private RollupCube rollupCube; // Guarded by rollupLock; null until loaded/validated or after a failed update
+
     /**
      * Constructor now accepts the user's transaction file path.
      *
      * @param currentUserTransactionFilePath The file path for the current user's transactions.
      */
     public TransactionServiceImpl(String currentUserTransactionFilePath) {
+        this(currentUserTransactionFilePath, null);
+    }
+
+    /**
+     * Constructor for a user with a per-user summary file holding its rollup cube.
+     * The stored cube is validated against the ledger at construction time and rebuilt if stale.
+     *
+     * @param currentUserTransactionFilePath The file path for the current user's transactions.
+     * @param summaryFilePath The file path for the user's rollup cube (may be null to disable persistence).
+     */
+    public TransactionServiceImpl(String currentUserTransactionFilePath, String summaryFilePath) {
         this.currentUserTransactionFilePath = currentUserTransactionFilePath;
         // Create a DAO instance for this service instance.
         this.transactionDao = new CsvTransactionDao(); // One DAO instance per service instance
+        this.summaryFilePath = (summaryFilePath != null && !summaryFilePath.trim().isEmpty()) ? summaryFilePath : null;
+        this.rollupCubeDao = new CsvRollupCubeDao();
         System.out.println("TransactionServiceImpl initialized for file: " + currentUserTransactionFilePath);
         // Cache is managed by CacheManager, not directly by this instance.
+
+        if (this.summaryFilePath != null) {
+            try {
+                getValidRollupCube(); // Validate (or rebuild) the persisted rollup at startup
+            } catch (Exception e) {
+                System.err.println("Failed to validate rollup cube " + this.summaryFilePath + ". It will be rebuilt on demand.");
+                e.printStackTrace();
+            }
+        }
     }
 
     @Override // Implement the new interface method
@@ -111,6 +145,7 @@ public class TransactionServiceImpl implements TransactionService {
 
 
         // 4. Save the merged list back to the current user's file
+        LedgerWatermark ledgerBeforeWrite = captureLedgerWatermark();
         try {
             // Use the DAO instance associated with this service
             transactionDao.writeTransactionsToCSV(userFilePath, mergedTransactions);
@@ -120,6 +155,10 @@ public class TransactionServiceImpl implements TransactionService {
             // Invalidation is simpler: forces CacheManager to reload from the updated file next time.
             CacheManager.invalidateTransactionCache(userFilePath);
             System.out.println("Cache invalidated for user file: " + userFilePath);
+            if (userFilePath.equals(currentUserTransactionFilePath)) {
+                updateRollupCube(ledgerBeforeWrite, List.of(), mergedTransactions.subList(existingTransactions.size(), mergedTransactions.size()));
+            }
+            LedgerChangeNotifier.fireLedgerChanged(userFilePath);
 
 
         } catch (IOException e) {
@@ -158,6 +197,7 @@ public class TransactionServiceImpl implements TransactionService {
             transaction.setTransactionTime(currentTime);
         }
 
+        LedgerWatermark ledgerBeforeWrite = captureLedgerWatermark();
         try {
             // Call DAO layer to add transaction to the user's specific file
             transactionDao.addTransaction(currentUserTransactionFilePath, transaction);
@@ -165,6 +205,8 @@ public class TransactionServiceImpl implements TransactionService {
             // After adding, invalidate the cache for this user's file
             CacheManager.invalidateTransactionCache(currentUserTransactionFilePath);
             System.out.println("Transaction added and cache invalidated for " + currentUserTransactionFilePath);
+            updateRollupCube(ledgerBeforeWrite, List.of(), List.of(transaction));
+            LedgerChangeNotifier.fireLedgerChanged(currentUserTransactionFilePath);
 
         } catch (IOException e) {
             System.err.println("Error adding transaction for user file: " + currentUserTransactionFilePath);
@@ -180,16 +222,19 @@ public class TransactionServiceImpl implements TransactionService {
      */
     @Override
     public void changeTransaction(Transaction updatedTransaction) throws Exception {
+        LedgerWatermark ledgerBeforeWrite = captureLedgerWatermark();
         try {
             // Load existing transactions (from cache/file)
             List<Transaction> allTransactions = getAllTransactionsForCurrentUser();
 
             // Find and update the target transaction in the list
             boolean foundAndUpdatedInMemory = false;
+            Transaction originalTransaction = null; // Copy taken before the update, for the rollup cube
             List<Transaction> updatedList = new ArrayList<>(allTransactions.size());
             for (Transaction t : allTransactions) {
                 if (t.getOrderNumber().trim().equals(updatedTransaction.getOrderNumber().trim())) {
                     // Found the transaction, apply updates
+                    originalTransaction = copyTransaction(t);
                     updateTransactionFields(t, updatedTransaction); // Helper method to apply updates
                     updatedList.add(t); // Add the modified transaction
                     foundAndUpdatedInMemory = true;
@@ -210,6 +255,14 @@ public class TransactionServiceImpl implements TransactionService {
             // Update the cache with the modified list
             CacheManager.putTransactions(currentUserTransactionFilePath, updatedList, transactionDao);
             System.out.println("Cache updated with the modified transaction list for " + currentUserTransactionFilePath);
+            Transaction changedTransaction = null;
+            for (Transaction t : updatedList) {
+                if (t.getOrderNumber().trim().equals(updatedTransaction.getOrderNumber().trim())) {
+                    changedTransaction = t;
+                }
+            }
+            updateRollupCube(ledgerBeforeWrite, List.of(originalTransaction), List.of(changedTransaction));
+            LedgerChangeNotifier.fireLedgerChanged(currentUserTransactionFilePath);
 
         } catch (IOException e) {
             System.err.println("Error changing transaction for user file: " + currentUserTransactionFilePath);
@@ -277,6 +330,9 @@ public class TransactionServiceImpl implements TransactionService {
      */
     @Override
     public boolean deleteTransaction(String orderNumber) throws Exception {
+        LedgerWatermark ledgerBeforeWrite = captureLedgerWatermark();
+        // The cube needs the deleted transaction's values, so look it up before it is gone
+        Transaction transactionToDelete = summaryFilePath != null ? findTransactionByOrderNumber(orderNumber) : null;
         try {
             // Call DAO layer to delete transaction from the user's specific file
             boolean deleted = transactionDao.deleteTransaction(currentUserTransactionFilePath, orderNumber);
@@ -285,6 +341,12 @@ public class TransactionServiceImpl implements TransactionService {
                 // After deleting, invalidate the cache for this user's file
                 CacheManager.invalidateTransactionCache(currentUserTransactionFilePath);
                 System.out.println("Transaction with order number " + orderNumber + " deleted and cache invalidated for " + currentUserTransactionFilePath);
+                if (transactionToDelete != null) {
+                    updateRollupCube(ledgerBeforeWrite, List.of(transactionToDelete), List.of());
+                } else {
+                    invalidateRollupCube();
+                }
+                LedgerChangeNotifier.fireLedgerChanged(currentUserTransactionFilePath);
             } else {
                 System.out.println("Transaction with order number " + orderNumber + " not found for deletion in " + currentUserTransactionFilePath);
             }
@@ -332,6 +394,52 @@ public class TransactionServiceImpl implements TransactionService {
         }
     }
 
+    /**
+     * Searches among the given candidates only (e.g. the previous results when a query is refined).
+     * Candidates are filtered in order and not re-sorted: searchTransaction's results are already sorted.
+     *
+     * @param searchCriteria The Transaction object containing search criteria.
+     * @param candidates The transactions to search.
+     * @return The matching candidates.
+     */
+    @Override
+    public List<Transaction> searchTransaction(Transaction searchCriteria, List<Transaction> candidates) {
+        List<Transaction> matched = new ArrayList<>();
+        for (Transaction t : candidates) {
+            if (matchesCriteria(t, searchCriteria)) {
+                matched.add(t);
+            }
+        }
+        System.out.println("Narrowed " + candidates.size() + " candidates to " + matched.size() + " matching transactions.");
+        return matched;
+    }
+
+    /**
+     * Fields are matched by case-insensitive "contains", so a field narrows when its text contains the
+     * broader text (or the broader field is empty). In/Out categories are not nested and must be equal.
+     */
+    @Override
+    public boolean isRefinementOf(Transaction narrower, Transaction broader) {
+        return refinesContains(narrower.getTransactionTime(), broader.getTransactionTime())
+                && refinesContains(narrower.getTransactionType(), broader.getTransactionType())
+                && refinesContains(narrower.getCounterparty(), broader.getCounterparty())
+                && refinesContains(narrower.getCommodity(), broader.getCommodity())
+                && (isBlank(broader.getInOut()) || (!isBlank(narrower.getInOut()) && narrower.getInOut().trim().equalsIgnoreCase(broader.getInOut().trim())))
+                && refinesContains(narrower.getPaymentMethod(), broader.getPaymentMethod());
+    }
+
+    // Anything containing narrower contains broader when narrower contains broader
+    private boolean refinesContains(String narrower, String broader) {
+        if (isBlank(broader)) {
+            return true;
+        }
+        return !isBlank(narrower) && narrower.trim().toLowerCase().contains(broader.trim().toLowerCase());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
     /**
      * Helper method: Checks if a single transaction matches the search criteria.
      */
@@ -420,48 +528,51 @@ public class TransactionServiceImpl implements TransactionService {
      */
     @Override
     public Map<String, MonthlySummary> getMonthlyTransactionSummary() throws Exception {
-        System.out.println("Generating monthly transaction summary for user file: " + currentUserTransactionFilePath);
+        // Month view rolled up from the day cells of the cube
+        return getRollupCube().toMonthlySummaries();
+    }
+
+    /**
+     * Rolls the current user's transactions up to days, weeks, months or years within a date range.
+     *
+     * @param granularity The period size.
+     * @param from First day to include, or null for no lower bound.
+     * @param to Last day to include, or null for no upper bound.
+     * @return Totals per period, sorted by period identifier.
+     * @throws Exception If an error occurs during data retrieval.
+     */
+    @Override
+    public SortedMap<String, PeriodTotals> getPeriodTotals(RollupCube.Granularity granularity, LocalDate from, LocalDate to) throws Exception {
+        return getRollupCube().rollUp(granularity, from, to);
+    }
+
+    /**
+     * Returns the persisted rollup cube if available; otherwise builds a transient cube from the raw transactions.
+     */
+    private RollupCube getRollupCube() throws Exception {
+        if (summaryFilePath != null) {
+            try {
+                // Served from the persisted cube; raw transactions are only read if the cube is stale
+                return getValidRollupCube();
+            } catch (Exception e) {
+                System.err.println("Rollup cube unavailable for " + currentUserTransactionFilePath + ". Falling back to raw transactions.");
+                e.printStackTrace();
+            }
+        }
+        System.out.println("Building rollup cube from raw transactions for user file: " + currentUserTransactionFilePath);
         List<Transaction> allTransactions;
         try {
             allTransactions = getAllTransactions();
-            System.out.println("Retrieved " + allTransactions.size() + " transactions for summary.");
         } catch (Exception e) {
             System.err.println("Error retrieving transactions for summary generation.");
             e.printStackTrace();
             throw new Exception("Failed to get transaction data!", e);
         }
-
-        Map<String, MonthlySummary> monthlySummaries = new HashMap<>();
-        DateTimeFormatter monthFormatter = DateTimeFormatter.ofPattern("yyyy-MM");
-
+        RollupCube cube = new RollupCube();
         for (Transaction t : allTransactions) {
-            if (t.getTransactionTime() == null || t.getTransactionTime().trim().isEmpty()) {
-                System.err.println("Skipping transaction with no time for summary aggregation: " + t.getOrderNumber());
-                continue;
-            }
-            LocalDate date = parseDateFromTransactionTimeSafe(t.getTransactionTime());
-            if (date == null) {
-                System.err.println("Skipping transaction with unparseable date for summary aggregation: " + t.getTransactionTime() + " - " + t.getOrderNumber());
-                continue;
-            }
-            String monthIdentifier = YearMonth.from(date).format(monthFormatter);
-            monthlySummaries.putIfAbsent(monthIdentifier, new MonthlySummary(monthIdentifier));
-            MonthlySummary currentMonthSummary = monthlySummaries.get(monthIdentifier);
-
-            if (t.getInOut() != null) {
-                String inOut = t.getInOut().trim();
-                if (inOut.equalsIgnoreCase("Income") || inOut.equalsIgnoreCase("In")) { // Use English here
-                    currentMonthSummary.addIncome(t.getPaymentAmount());
-                } else if (inOut.equalsIgnoreCase("Expense") || inOut.equalsIgnoreCase("Out")) { // Use English here
-                    String rawType = t.getTransactionType();
-                    String standardCategory = StandardCategories.getStandardCategory(rawType);
-                    String effectiveExpenseCategoryForSummary = StandardCategories.isStandardExpenseCategory(standardCategory) ? standardCategory : StandardCategories.EXPENSE_CATEGORIES.get(StandardCategories.EXPENSE_CATEGORIES.size() - 1); // Default to "Other Expenses"
-                    currentMonthSummary.addExpense(t.getPaymentAmount(), effectiveExpenseCategoryForSummary);
-                }
-            }
+            applyToRollupCube(cube, t, 1);
         }
-        System.out.println("Generated summary for " + monthlySummaries.size() + " months.");
-        return monthlySummaries;
+        return cube;
     }
 
     /**
@@ -483,4 +594,142 @@ public class TransactionServiceImpl implements TransactionService {
         System.err.println("TransactionServiceImpl: Failed to parse date part '" + datePart + "' from transaction time: " + timeStr);
         return null;
     }
-}
\ No newline at end of file
+
+    // --- Rollup cube maintenance ---
+
+    /**
+     * Returns the in-memory rollup cube, making sure it matches the current ledger.
+     * Loads the persisted cube if it is valid; otherwise rebuilds it from the ledger and persists it.
+     */
+    private RollupCube getValidRollupCube() throws Exception {
+        synchronized (rollupLock) {
+            // Capture before reading: if the ledger changes during a rebuild, the next check will see it
+            LedgerWatermark current = captureLedgerWatermark();
+            if (rollupCube != null && current.matches(rollupCube.getLedgerWatermark())) {
+                return rollupCube;
+            }
+
+            if (rollupCube == null) {
+                RollupCube stored = rollupCubeDao.loadCube(summaryFilePath);
+                if (stored != null && current.matches(stored.getLedgerWatermark())) {
+                    System.out.println("Loaded valid rollup cube from " + summaryFilePath);
+                    rollupCube = stored;
+                    return rollupCube;
+                }
+            }
+
+            System.out.println("Rollup cube is missing or stale. Rebuilding from " + currentUserTransactionFilePath);
+            RollupCube rebuilt = new RollupCube(current);
+            List<Transaction> cachedTransactions = CacheManager.getTransactionsIfPresent(currentUserTransactionFilePath);
+            if (cachedTransactions != null) {
+                for (Transaction t : cachedTransactions) {
+                    applyToRollupCube(rebuilt, t, 1);
+                }
+            } else {
+                transactionDao.streamFromCSV(currentUserTransactionFilePath, t -> applyToRollupCube(rebuilt, t, 1));
+            }
+            rollupCube = rebuilt;
+            saveRollupCube();
+            return rollupCube;
+        }
+    }
+
+    /**
+     * Applies a successful ledger write to the rollup cube.
+     * If the cube did not match the ledger before the write, it is dropped and rebuilt on the next read.
+     *
+     * @param ledgerBeforeWrite The ledger watermark captured before the write.
+     * @param removed Transactions removed from the ledger (or their values before a change).
+     * @param added Transactions added to the ledger (or their values after a change).
+     */
+    private void updateRollupCube(LedgerWatermark ledgerBeforeWrite, List<Transaction> removed, List<Transaction> added) {
+        if (summaryFilePath == null) {
+            return;
+        }
+        synchronized (rollupLock) {
+            if (rollupCube == null || !ledgerBeforeWrite.matches(rollupCube.getLedgerWatermark())) {
+                rollupCube = null; // Unknown base state; rebuild lazily
+                return;
+            }
+            try {
+                for (Transaction t : removed) {
+                    applyToRollupCube(rollupCube, t, -1);
+                }
+                for (Transaction t : added) {
+                    applyToRollupCube(rollupCube, t, 1);
+                }
+                rollupCube.setLedgerWatermark(captureLedgerWatermark());
+                saveRollupCube();
+            } catch (Exception e) {
+                System.err.println("Failed to update rollup cube for " + currentUserTransactionFilePath + ". It will be rebuilt on demand.");
+                e.printStackTrace();
+                rollupCube = null;
+            }
+        }
+    }
+
+    private void invalidateRollupCube() {
+        synchronized (rollupLock) {
+            rollupCube = null;
+        }
+    }
+
+    // Persists the in-memory cube. A failed write is not fatal: the file is simply rebuilt next time.
+    private void saveRollupCube() {
+        try {
+            rollupCubeDao.writeCube(summaryFilePath, rollupCube);
+        } catch (IOException e) {
+            System.err.println("Failed to save rollup cube to " + summaryFilePath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds (sign = 1) or removes (sign = -1) one transaction's contribution to a rollup cube.
+     * Expenses are filed under their standard expense category ("Other Expenses" if not standard),
+     * income under its standard income category ("Other Income" if not standard).
+     */
+    private void applyToRollupCube(RollupCube cube, Transaction t, int sign) {
+        if (t == null || t.getTransactionTime() == null || t.getTransactionTime().trim().isEmpty()) {
+            return;
+        }
+        LocalDate date = parseDateFromTransactionTimeSafe(t.getTransactionTime());
+        if (date == null || t.getInOut() == null) {
+            return;
+        }
+        long cents = sign * WeeklyAggregate.toCents(t.getPaymentAmount());
+
+        String inOut = t.getInOut().trim();
+        String standardCategory = StandardCategories.getStandardCategory(t.getTransactionType());
+        if (inOut.equalsIgnoreCase("Income") || inOut.equalsIgnoreCase("In")) {
+            String incomeCategory = StandardCategories.INCOME_CATEGORIES.contains(standardCategory) ? standardCategory : StandardCategories.INCOME_CATEGORIES.get(StandardCategories.INCOME_CATEGORIES.size() - 1); // Default to "Other Income"
+            cube.add(date, RollupCube.Direction.INCOME, incomeCategory, cents, sign);
+        } else if (inOut.equalsIgnoreCase("Expense") || inOut.equalsIgnoreCase("Out")) {
+            String effectiveExpenseCategoryForSummary = StandardCategories.isStandardExpenseCategory(standardCategory) ? standardCategory : StandardCategories.EXPENSE_CATEGORIES.get(StandardCategories.EXPENSE_CATEGORIES.size() - 1); // Default to "Other Expenses"
+            cube.add(date, RollupCube.Direction.EXPENSE, effectiveExpenseCategoryForSummary, cents, sign);
+        }
+    }
+
+    private LedgerWatermark captureLedgerWatermark() {
+        return LedgerWatermark.capture(null, currentUserTransactionFilePath);
+    }
+
+    // Finds a transaction of the current user by order number (null if not found or loading fails)
+    private Transaction findTransactionByOrderNumber(String orderNumber) {
+        try {
+            for (Transaction t : getAllTransactionsForCurrentUser()) {
+                if (t.getOrderNumber() != null && t.getOrderNumber().trim().equals(orderNumber.trim())) {
+                    return t;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Could not look up transaction " + orderNumber + " for the rollup cube: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private Transaction copyTransaction(Transaction t) {
+        return new Transaction(t.getTransactionTime(), t.getTransactionType(), t.getCounterparty(), t.getCommodity(),
+                t.getInOut(), t.getPaymentAmount(), t.getPaymentMethod(), t.getCurrentStatus(), t.getOrderNumber(),
+                t.getMerchantNumber(), t.getRemarks());
+    }
+}
@@ -0,0 +1,257 @@
+package Service.Impl;
+
+import model.SummaryStatistic;
+import model.UserWeekPartial;
+import Utils.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Partial weekly aggregate produced by one worker (typically one user's ledger).
+ * Partials from different workers are combined with {@link #merge(WeeklyAggregate)}.
+ * Amounts are kept in integer cents so that merging is associative and the merged
+ * result does not depend on the order in which the workers finish.
+ */
+public class WeeklyAggregate {
+
+    // Week identifier (YYYY-Www) -> aggregated values for that week
+    private final Map<String, WeekBucket> buckets = new HashMap<>();
+
+    /**
+     * Aggregated values for a single week.
+     */
+    public static class WeekBucket {
+        private long incomeCents;
+        private long expenseCents;
+        private final Map<String, Long> expenseCentsByCategory = new HashMap<>(); // Category -> cents
+        private final Set<String> users = new HashSet<>(); // Users with any transaction this week
+        private final HyperLogLog counterparties = new HyperLogLog(); // Sparse while the week has few counterparties
+
+        public long getIncomeCents() {
+            return incomeCents;
+        }
+
+        public long getExpenseCents() {
+            return expenseCents;
+        }
+
+        public Map<String, Long> getExpenseCentsByCategory() {
+            return Collections.unmodifiableMap(expenseCentsByCategory);
+        }
+
+        public Set<String> getUsers() {
+            return Collections.unmodifiableSet(users);
+        }
+
+        public HyperLogLog getCounterparties() {
+            return counterparties;
+        }
+
+        // Compares the aggregated values (not the user set) with another bucket
+        private boolean sameAmountsAs(WeekBucket other) {
+            return other != null
+                    && incomeCents == other.incomeCents
+                    && expenseCents == other.expenseCents
+                    && expenseCentsByCategory.equals(other.expenseCentsByCategory)
+                    && counterparties.equals(other.counterparties);
+        }
+
+        private void mergeFrom(WeekBucket other) {
+            this.incomeCents += other.incomeCents;
+            this.expenseCents += other.expenseCents;
+            other.expenseCentsByCategory.forEach((category, cents) -> this.expenseCentsByCategory.merge(category, cents, Long::sum));
+            this.users.addAll(other.users);
+            this.counterparties.merge(other.counterparties);
+        }
+    }
+
+    /**
+     * Converts a CNY amount to integer cents (rounded half-up).
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    private WeekBucket bucket(String weekIdentifier) {
+        return buckets.computeIfAbsent(weekIdentifier, k -> new WeekBucket());
+    }
+
+    /**
+     * Records that a user had at least one transaction in the given week.
+     */
+    public void markUserActive(String weekIdentifier, String username) {
+        bucket(weekIdentifier).users.add(username);
+    }
+
+    /**
+     * Records a counterparty seen in the given week (in the week's HyperLogLog for the distinct-counterparty sketch).
+     */
+    public void addCounterparty(String weekIdentifier, String counterparty) {
+        if (counterparty != null && !counterparty.trim().isEmpty()) {
+            bucket(weekIdentifier).counterparties.add(counterparty.trim());
+        }
+    }
+
+    public void addIncome(String weekIdentifier, double amount) {
+        bucket(weekIdentifier).incomeCents += toCents(amount);
+    }
+
+    /**
+     * Adds an expense to the week total. A null category only counts towards the total
+     * and is excluded from the top category calculation.
+     */
+    public void addExpense(String weekIdentifier, String category, double amount) {
+        WeekBucket bucket = bucket(weekIdentifier);
+        long cents = toCents(amount);
+        bucket.expenseCents += cents;
+        if (category != null) {
+            bucket.expenseCentsByCategory.merge(category, cents, Long::sum);
+        }
+    }
+
+    /**
+     * Merges another partial aggregate into this one (associative and commutative).
+     * @param other The partial to merge. It is not modified.
+     * @return this aggregate, for chaining.
+     */
+    public WeeklyAggregate merge(WeeklyAggregate other) {
+        if (other == null) {
+            return this;
+        }
+        other.buckets.forEach((week, otherBucket) -> bucket(week).mergeFrom(otherBucket));
+        return this;
+    }
+
+    /**
+     * Merges only the given weeks of another partial aggregate into this one.
+     * @param other The partial to merge. It is not modified.
+     * @param weekIdentifiers The weeks to take from the other partial.
+     * @return this aggregate, for chaining.
+     */
+    public WeeklyAggregate mergeWeeks(WeeklyAggregate other, Set<String> weekIdentifiers) {
+        if (other == null) {
+            return this;
+        }
+        for (String week : weekIdentifiers) {
+            WeekBucket otherBucket = other.buckets.get(week);
+            if (otherBucket != null) {
+                bucket(week).mergeFrom(otherBucket);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the weeks whose values differ between two aggregates of the same user,
+     * including weeks that only exist in one of them.
+     * @param before The previously persisted aggregate (may be null).
+     * @param after The freshly computed aggregate (may be null).
+     * @return The set of changed week identifiers.
+     */
+    public static Set<String> changedWeeks(WeeklyAggregate before, WeeklyAggregate after) {
+        Map<String, WeekBucket> beforeBuckets = before != null ? before.buckets : Collections.emptyMap();
+        Map<String, WeekBucket> afterBuckets = after != null ? after.buckets : Collections.emptyMap();
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, WeekBucket> entry : afterBuckets.entrySet()) {
+            if (!entry.getValue().sameAmountsAs(beforeBuckets.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String week : beforeBuckets.keySet()) {
+            if (!afterBuckets.containsKey(week)) {
+                changed.add(week);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Converts a single user's aggregate into persistable per-week partials.
+     * @param username The user this aggregate belongs to.
+     * @return One partial per week, sorted by week identifier.
+     */
+    public List<UserWeekPartial> toUserWeekPartials(String username) {
+        List<UserWeekPartial> partials = new ArrayList<>();
+        for (Map.Entry<String, WeekBucket> entry : new TreeMap<>(buckets).entrySet()) {
+            WeekBucket bucket = entry.getValue();
+            partials.add(new UserWeekPartial(username, entry.getKey(), bucket.incomeCents, bucket.expenseCents, bucket.expenseCentsByCategory, bucket.counterparties));
+        }
+        return partials;
+    }
+
+    /**
+     * Rebuilds per-user aggregates from persisted partials.
+     * @param partials The partials loaded from storage.
+     * @return A map from username to that user's aggregate.
+     */
+    public static Map<String, WeeklyAggregate> fromUserWeekPartials(List<UserWeekPartial> partials) {
+        Map<String, WeeklyAggregate> byUser = new HashMap<>();
+        for (UserWeekPartial partial : partials) {
+            WeeklyAggregate aggregate = byUser.computeIfAbsent(partial.getUsername(), k -> new WeeklyAggregate());
+            WeekBucket bucket = aggregate.bucket(partial.getWeekIdentifier());
+            bucket.users.add(partial.getUsername());
+            bucket.incomeCents += partial.getIncomeCents();
+            bucket.expenseCents += partial.getExpenseCents();
+            partial.getExpenseCentsByCategory().forEach((category, cents) -> bucket.expenseCentsByCategory.merge(category, cents, Long::sum));
+            bucket.counterparties.merge(partial.getCounterparties());
+        }
+        return byUser;
+    }
+
+    public Set<String> getWeekIdentifiers() {
+        return Collections.unmodifiableSet(buckets.keySet());
+    }
+
+    public WeekBucket getBucket(String weekIdentifier) {
+        return buckets.get(weekIdentifier);
+    }
+
+    public boolean isEmpty() {
+        return buckets.isEmpty();
+    }
+
+    /**
+     * Converts the aggregate into SummaryStatistic rows, sorted by week identifier.
+     * Ties for the top expense category are broken alphabetically so the output is deterministic.
+     * @param timestamp The generation timestamp stamped on every row.
+     * @return Sorted list of summary statistics.
+     */
+    public List<SummaryStatistic> toStatistics(String timestamp) {
+        List<SummaryStatistic> statistics = new ArrayList<>();
+        for (Map.Entry<String, WeekBucket> entry : new TreeMap<>(buckets).entrySet()) {
+            statistics.add(toStatistic(entry.getKey(), entry.getValue(), timestamp));
+        }
+        return statistics;
+    }
+
+    /**
+     * Converts a single week bucket into a SummaryStatistic row.
+     */
+    public static SummaryStatistic toStatistic(String weekIdentifier, WeekBucket bucket, String timestamp) {
+        String topExpenseCategory = null;
+        long topExpenseCents = 0;
+        for (Map.Entry<String, Long> categoryEntry : new TreeMap<>(bucket.expenseCentsByCategory).entrySet()) {
+            if (topExpenseCategory == null || categoryEntry.getValue() > topExpenseCents) {
+                topExpenseCategory = categoryEntry.getKey();
+                topExpenseCents = categoryEntry.getValue();
+            }
+        }
+
+        return new SummaryStatistic(
+                weekIdentifier,
+                bucket.incomeCents / 100.0,
+                bucket.expenseCents / 100.0,
+                topExpenseCategory != null ? topExpenseCategory : "无支出",
+                topExpenseCents / 100.0,
+                bucket.users.size(),
+                timestamp
+        );
+    }
+}
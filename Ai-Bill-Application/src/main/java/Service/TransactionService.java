@@ -1,11 +1,15 @@
 package Service;
 
 import model.MonthlySummary;
+import model.PeriodTotals;
+import model.RollupCube;
 import model.Transaction;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 public interface TransactionService {
 
@@ -45,6 +49,21 @@ public interface TransactionService {
      */
     List<Transaction> searchTransaction(Transaction transaction);
 
+    /**
+     * Searches only among the given candidates, e.g. the results of a broader query over the same data
+     * (see isRefinementOf). The candidates keep their order, so sorted results stay sorted.
+     * @param transaction Search criteria.
+     * @param candidates The transactions to search.
+     * @return The candidates matching the criteria.
+     */
+    List<Transaction> searchTransaction(Transaction transaction, List<Transaction> candidates);
+
+    /**
+     * @return true if every transaction matching the narrower criteria also matches the broader ones,
+     *         so a search for narrower can be answered from the results of broader.
+     */
+    boolean isRefinementOf(Transaction narrower, Transaction broader);
+
     /**
      * Imports transactions from a given CSV file path into the current user's transactions.
      *
@@ -63,4 +82,16 @@ public interface TransactionService {
      * @throws Exception If an error occurs during data retrieval.
      */
     Map<String, MonthlySummary> getMonthlyTransactionSummary() throws Exception; // Added this method
-}
\ No newline at end of file
+
+    /**
+     * Rolls the current user's transactions up to days, weeks, months or years within a date range.
+     * Served from the user's rollup cube, so the cost depends on the number of days, not transactions.
+     *
+     * @param granularity The period size.
+     * @param from First day to include, or null for no lower bound.
+     * @param to Last day to include, or null for no upper bound.
+     * @return Totals per period, sorted by period identifier.
+     * @throws Exception If an error occurs during data retrieval.
+     */
+    SortedMap<String, PeriodTotals> getPeriodTotals(RollupCube.Granularity granularity, LocalDate from, LocalDate to) throws Exception;
+}
@@ -6,6 +6,9 @@ import DAO.TransactionDao;
 import DAO.SummaryStatisticDao;
 import DAO.Impl.CsvTransactionDao;
 import DAO.Impl.CsvSummaryStatisticDao;
+import DAO.Impl.CsvRollupCubeDao;
+import model.LedgerWatermark;
+import model.RollupCube;
 import model.User;
 
 import java.io.IOException;
@@ -177,9 +180,9 @@ public class UserService {
             tempTxDao.writeTransactionsToCSV(userTransactionFilePathStr, List.of());
             System.out.println("Created new transaction file with header: " + userTransactionFilePathStr);
 
-            // Use CsvSummaryStatisticDao write method to create file with header
-            CsvSummaryStatisticDao tempSummaryDao = new CsvSummaryStatisticDao();
-            tempSummaryDao.writeAllStatistics(userSummaryFilePathStr, List.of());
+            // The summary file holds the user's rollup cube; start with an empty cube for the empty ledger
+            CsvRollupCubeDao tempRollupDao = new CsvRollupCubeDao();
+            tempRollupDao.writeCube(userSummaryFilePathStr, new RollupCube(LedgerWatermark.capture(null, userTransactionFilePathStr)));
             System.out.println("Created new summary file with header: " + userSummaryFilePathStr);
 
         } catch (IOException e) {
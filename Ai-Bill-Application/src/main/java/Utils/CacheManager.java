@@ -94,6 +94,22 @@ public class CacheManager {
         return cache.get(CaffeineKeys.TRANSACTION_CAFFEINE_KEY);
     }
 
+    /**
+     * Returns the cached transaction list for a file only if it is already resident.
+     * Never loads from disk and never creates a cache for the file, so bulk scans can
+     * reuse warm data without pulling cold users into the cache.
+     *
+     * @param filePath The path to the user's transaction CSV file.
+     * @return The cached list, or null if this file is not currently cached.
+     */
+    public static List<Transaction> getTransactionsIfPresent(String filePath) {
+        LoadingCache<String, List<Transaction>> cache = fileCaches.get(filePath);
+        if (cache == null) {
+            return null;
+        }
+        return cache.getIfPresent(CaffeineKeys.TRANSACTION_CAFFEINE_KEY);
+    }
+
     /**
      * Manually puts a list of transactions into the cache for a specific file path.
      * This is useful after a write operation (add, delete, update) to refresh the cache.
@@ -0,0 +1,154 @@
+package Utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Count-Min sketch for estimating per-item frequencies of a stream with fixed memory.
+ * Estimates never undercount; with width w the overcount is at most about e/w of the total
+ * with high probability (controlled by depth). Sketches with the same shape can be merged by adding cells.
+ */
+public class CountMinSketch {
+
+    public static final int DEFAULT_WIDTH = 512;
+    public static final int DEFAULT_DEPTH = 4;
+
+    private final int width;
+    private final int depth;
+    private final long[][] cells;
+    private long totalCount;
+
+    public CountMinSketch() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("CountMinSketch width and depth must be positive: " + width + "x" + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.cells = new long[depth][width];
+    }
+
+    // Row index derived from one 64-bit hash (Kirsch-Mitzenmacher double hashing)
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + row * h2, width);
+    }
+
+    /**
+     * Adds count occurrences of an item. Null items and non-positive counts are ignored.
+     */
+    public void add(String item, long count) {
+        if (item == null || count <= 0) {
+            return;
+        }
+        long hash = HyperLogLog.hash64(item);
+        for (int row = 0; row < depth; row++) {
+            cells[row][index(hash, row)] += count;
+        }
+        totalCount += count;
+    }
+
+    /**
+     * @return The estimated count of the item (never less than the true count).
+     */
+    public long estimate(String item) {
+        if (item == null) {
+            return 0;
+        }
+        long hash = HyperLogLog.hash64(item);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, cells[row][index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Merges another sketch into this one.
+     * @param other A sketch with the same width and depth. It is not modified.
+     * @return this sketch, for chaining.
+     */
+    public CountMinSketch merge(CountMinSketch other) {
+        if (other == null) {
+            return this;
+        }
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge CountMinSketch of different shapes: " + width + "x" + depth + " vs " + other.width + "x" + other.depth);
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                cells[row][column] += other.cells[row][column];
+            }
+        }
+        totalCount += other.totalCount;
+        return this;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Writes the sketch. Sparse sketches (few non-zero cells, e.g. one user's week) are written as index/value pairs.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        int nonZero = 0;
+        for (long[] row : cells) {
+            for (long cell : row) {
+                if (cell != 0) {
+                    nonZero++;
+                }
+            }
+        }
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeLong(totalCount);
+        boolean sparse = nonZero * 12 < width * depth * 8; // 4-byte index + 8-byte value per entry
+        out.writeBoolean(sparse);
+        if (sparse) {
+            out.writeInt(nonZero);
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                if (!sparse) {
+                    out.writeLong(cells[row][column]);
+                } else if (cells[row][column] != 0) {
+                    out.writeInt(row * width + column);
+                    out.writeLong(cells[row][column]);
+                }
+            }
+        }
+    }
+
+    public static CountMinSketch readFrom(DataInputStream in) throws IOException {
+        int width = in.readInt();
+        int depth = in.readInt();
+        if (width <= 0 || depth <= 0 || (long) width * depth > 1 << 24) {
+            throw new IOException("Invalid CountMinSketch shape " + width + "x" + depth);
+        }
+        CountMinSketch sketch = new CountMinSketch(width, depth);
+        sketch.totalCount = in.readLong();
+        if (in.readBoolean()) {
+            int nonZero = in.readInt();
+            for (int i = 0; i < nonZero; i++) {
+                int index = in.readInt();
+                if (index < 0 || index >= width * depth) {
+                    throw new IOException("Invalid CountMinSketch cell " + index);
+                }
+                sketch.cells[index / width][index % width] = in.readLong();
+            }
+        } else {
+            for (long[] row : sketch.cells) {
+                for (int column = 0; column < width; column++) {
+                    row[column] = in.readLong();
+                }
+            }
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,271 @@
+package Utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch for estimating the number of distinct values with fixed memory.
+ * Two sketches with the same precision can be merged (register-wise max), so partial
+ * sketches built by different workers combine into the sketch of the union.
+ * <p>
+ * A new sketch is sparse: it only stores its non-zero registers, so a sketch that saw a few dozen values
+ * (e.g. one user's counterparties in one week) takes a few hundred bytes instead of 4 KB. It switches to
+ * the dense register array once that is smaller. Both forms give the same estimates and serialization.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12; // 4096 registers, ~1.6% standard error
+
+    private final int precision;
+    private byte[] registers; // Dense form; null while the sketch is sparse
+    // Sparse form: the non-zero registers as (index << 8 | value), sorted by index
+    private int[] sparse = new int[0];
+    private int sparseSize;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 16: " + precision);
+        }
+        this.precision = precision;
+    }
+
+    /**
+     * @return An independent copy of this sketch.
+     */
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision).merge(this);
+    }
+
+    /**
+     * 64-bit hash of a string (FNV-1a over UTF-8 bytes followed by a MurmurHash3 finalizer).
+     * Stable across JVM runs, so hashes can be persisted.
+     */
+    public static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        // fmix64
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public void add(String value) {
+        if (value != null) {
+            addHash(hash64(value));
+        }
+    }
+
+    /**
+     * Adds a value by its precomputed {@link #hash64(String)} hash.
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Rank = position of the first 1-bit in the remaining bits (1-based)
+        long remaining = hash << precision;
+        int rank = remaining == 0 ? (64 - precision + 1) : Long.numberOfLeadingZeros(remaining) + 1;
+        updateRegister(index, rank);
+    }
+
+    // Raises a register to value if that is larger
+    private void updateRegister(int index, int value) {
+        if (registers != null) {
+            if (value > registers[index]) {
+                registers[index] = (byte) value;
+            }
+            return;
+        }
+        // Values are at least 1, so (index << 8) sorts just before the entry of that index
+        int position = -Arrays.binarySearch(sparse, 0, sparseSize, index << 8) - 1;
+        if (position < sparseSize && sparse[position] >>> 8 == index) {
+            if (value > (sparse[position] & 0xff)) {
+                sparse[position] = index << 8 | value;
+            }
+            return;
+        }
+        if (sparseSize >= (1 << precision) / 4) {
+            toDense(); // 4 bytes per sparse entry: from here on the register array is smaller
+            registers[index] = (byte) value;
+            return;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.max(4, sparseSize * 2));
+        }
+        System.arraycopy(sparse, position, sparse, position + 1, sparseSize - position);
+        sparse[position] = index << 8 | value;
+        sparseSize++;
+    }
+
+    private void toDense() {
+        registers = denseRegisters();
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    // The dense register array (a new array while the sketch is sparse)
+    private byte[] denseRegisters() {
+        if (registers != null) {
+            return registers;
+        }
+        byte[] dense = new byte[1 << precision];
+        for (int i = 0; i < sparseSize; i++) {
+            dense[sparse[i] >>> 8] = (byte) (sparse[i] & 0xff);
+        }
+        return dense;
+    }
+
+    /**
+     * Merges another sketch into this one.
+     * @param other A sketch with the same precision. It is not modified.
+     * @return this sketch, for chaining.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other == null) {
+            return this;
+        }
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches with different precision: " + precision + " vs " + other.precision);
+        }
+        if (other.registers == null) {
+            for (int i = 0; i < other.sparseSize; i++) {
+                updateRegister(other.sparse[i] >>> 8, other.sparse[i] & 0xff);
+            }
+            return this;
+        }
+        if (registers == null) {
+            toDense();
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return The estimated number of distinct values added.
+     */
+    public long estimate() {
+        int m = 1 << precision;
+        double sum = 0.0;
+        int zeroRegisters = 0;
+        if (registers == null) {
+            zeroRegisters = m - sparseSize;
+            sum = zeroRegisters; // 1 / 2^0 per zero register
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xff));
+            }
+        } else {
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeroRegisters++;
+                }
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Small range correction (linear counting) keeps small cardinalities nearly exact
+        if (estimate <= 2.5 * m && zeroRegisters > 0) {
+            estimate = m * Math.log((double) m / zeroRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    public boolean isEmpty() {
+        if (registers == null) {
+            return sparseSize == 0;
+        }
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the sketch. Sparse sketches (few non-zero registers) are written as index/value pairs.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        byte[] dense = denseRegisters();
+        int nonZero = 0;
+        for (byte register : dense) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        out.writeByte(precision);
+        boolean sparse = nonZero * 3 < dense.length; // 2-byte index + 1-byte value per entry
+        out.writeBoolean(sparse);
+        if (sparse) {
+            out.writeShort(nonZero);
+            for (int i = 0; i < dense.length; i++) {
+                if (dense[i] != 0) {
+                    out.writeShort(i);
+                    out.writeByte(dense[i]);
+                }
+            }
+        } else {
+            out.write(dense);
+        }
+    }
+
+    public static HyperLogLog readFrom(DataInputStream in) throws IOException {
+        HyperLogLog sketch = new HyperLogLog(in.readUnsignedByte());
+        boolean sparse = in.readBoolean();
+        if (sparse) {
+            int nonZero = in.readUnsignedShort();
+            for (int i = 0; i < nonZero; i++) {
+                int index = in.readUnsignedShort();
+                byte value = in.readByte();
+                if (index >= 1 << sketch.precision || value <= 0) {
+                    throw new IOException("Invalid HyperLogLog register " + index + "=" + value);
+                }
+                sketch.updateRegister(index, value);
+            }
+        } else {
+            sketch.registers = new byte[1 << sketch.precision];
+            in.readFully(sketch.registers);
+            sketch.sparse = null;
+        }
+        return sketch;
+    }
+
+    // Equal if the precision and every register match, whichever form each sketch is in
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HyperLogLog)) {
+            return false;
+        }
+        HyperLogLog other = (HyperLogLog) o;
+        if (precision != other.precision) {
+            return false;
+        }
+        if (registers == null && other.registers == null) {
+            return Arrays.equals(sparse, 0, sparseSize, other.sparse, 0, other.sparseSize);
+        }
+        return Arrays.equals(denseRegisters(), other.denseRegisters());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(denseRegisters());
+    }
+}
@@ -0,0 +1,50 @@
+package Utils;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Notifies interested components when a user's transaction file has been modified.
+ * Fired by the transaction service after every successful write, so background jobs
+ * (e.g. statistics regeneration) can react without polling.
+ */
+public class LedgerChangeNotifier {
+
+    // Listeners receive the path of the modified transaction file
+    private static final CopyOnWriteArrayList<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    // Private constructor to prevent instantiation
+    private LedgerChangeNotifier() {}
+
+    /**
+     * Registers a listener for ledger changes.
+     * @param listener Called with the modified file path. Must be cheap; it runs on the writer's thread.
+     */
+    public static void addListener(Consumer<String> listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Unregisters a previously registered listener.
+     * @param listener The listener to remove.
+     */
+    public static void removeListener(Consumer<String> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies all listeners that a transaction file has changed.
+     * A failing listener does not prevent the others from being notified.
+     * @param filePath The path of the modified transaction file.
+     */
+    public static void fireLedgerChanged(String filePath) {
+        for (Consumer<String> listener : listeners) {
+            try {
+                listener.accept(filePath);
+            } catch (Exception e) {
+                System.err.println("LedgerChangeNotifier: Listener failed for file " + filePath + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+}
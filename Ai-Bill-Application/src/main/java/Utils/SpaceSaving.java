@@ -0,0 +1,194 @@
+package Utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving summary for finding the heaviest items (top-K) of a weighted stream with fixed memory.
+ * At most {@code capacity} counters are kept. When a new item arrives and all counters are taken,
+ * the smallest counter is reassigned to the new item and its old count becomes the new item's error bound.
+ * Every item whose true weight exceeds totalWeight / capacity is guaranteed to be tracked.
+ */
+public class SpaceSaving {
+
+    /**
+     * A tracked item. The true weight lies between {@code count - error} and {@code count}.
+     */
+    public static class Counter {
+        private final String item;
+        private long count;
+        private long error;
+
+        private Counter(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    // Smallest counter first; ties broken by item so the order is deterministic
+    private static final Comparator<Counter> BY_COUNT = Comparator.comparingLong((Counter c) -> c.count).thenComparing(c -> c.item);
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> ordered = new TreeSet<>(BY_COUNT);
+    private long totalWeight;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("SpaceSaving capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds weight to an item. Null items and non-positive weights are ignored.
+     */
+    public void offer(String item, long weight) {
+        if (item == null || weight <= 0) {
+            return;
+        }
+        totalWeight += weight;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            increment(counter, weight);
+        } else if (counters.size() < capacity) {
+            insert(new Counter(item, weight, 0));
+        } else {
+            // Evict the smallest counter; the new item inherits its count as the error bound
+            Counter smallest = ordered.pollFirst();
+            counters.remove(smallest.item);
+            insert(new Counter(item, smallest.count + weight, smallest.count));
+        }
+    }
+
+    private void insert(Counter counter) {
+        counters.put(counter.item, counter);
+        ordered.add(counter);
+    }
+
+    // Counters are re-inserted after a change, since the TreeSet orders by count
+    private void increment(Counter counter, long weight) {
+        ordered.remove(counter);
+        counter.count += weight;
+        ordered.add(counter);
+    }
+
+    /**
+     * Merges another summary into this one. Items missing from a full summary may still have
+     * up to that summary's smallest count there, so that amount is added to their count and error.
+     * @param other The summary to merge. It is not modified.
+     * @return this summary, for chaining.
+     */
+    public SpaceSaving merge(SpaceSaving other) {
+        if (other == null || other.counters.isEmpty()) {
+            return this;
+        }
+        long thisMin = counters.size() < capacity || ordered.isEmpty() ? 0 : ordered.first().count;
+        long otherMin = other.counters.size() < other.capacity ? 0 : other.ordered.first().count;
+
+        Map<String, Counter> combined = new HashMap<>();
+        for (Counter counter : counters.values()) {
+            Counter otherCounter = other.counters.get(counter.item);
+            if (otherCounter != null) {
+                combined.put(counter.item, new Counter(counter.item, counter.count + otherCounter.count, counter.error + otherCounter.error));
+            } else {
+                combined.put(counter.item, new Counter(counter.item, counter.count + otherMin, counter.error + otherMin));
+            }
+        }
+        for (Counter otherCounter : other.counters.values()) {
+            if (!combined.containsKey(otherCounter.item)) {
+                combined.put(otherCounter.item, new Counter(otherCounter.item, otherCounter.count + thisMin, otherCounter.error + thisMin));
+            }
+        }
+
+        // Keep the heaviest counters only
+        List<Counter> sorted = new ArrayList<>(combined.values());
+        sorted.sort(BY_COUNT.reversed());
+        counters.clear();
+        ordered.clear();
+        for (int i = 0; i < Math.min(capacity, sorted.size()); i++) {
+            insert(sorted.get(i));
+        }
+        totalWeight += other.totalWeight;
+        return this;
+    }
+
+    /**
+     * @param k Number of items to return.
+     * @return Up to k tracked items, heaviest first (ties broken by item).
+     */
+    public List<Counter> top(int k) {
+        List<Counter> result = new ArrayList<>(counters.size());
+        for (Counter counter : counters.values()) {
+            result.add(new Counter(counter.item, counter.count, counter.error));
+        }
+        result.sort(Comparator.comparingLong((Counter c) -> c.count).reversed().thenComparing(c -> c.item));
+        if (result.size() > k) {
+            result = new ArrayList<>(result.subList(0, Math.max(0, k)));
+        }
+        return result;
+    }
+
+    /**
+     * @return The sum of all weights offered (including merged summaries).
+     */
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(capacity);
+        out.writeLong(totalWeight);
+        out.writeInt(counters.size());
+        for (Counter counter : ordered) {
+            out.writeUTF(counter.item);
+            out.writeLong(counter.count);
+            out.writeLong(counter.error);
+        }
+    }
+
+    public static SpaceSaving readFrom(DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        if (capacity <= 0) {
+            throw new IOException("Invalid SpaceSaving capacity " + capacity);
+        }
+        SpaceSaving summary = new SpaceSaving(capacity);
+        summary.totalWeight = in.readLong();
+        int size = in.readInt();
+        if (size < 0 || size > capacity) {
+            throw new IOException("Invalid SpaceSaving size " + size + " for capacity " + capacity);
+        }
+        for (int i = 0; i < size; i++) {
+            summary.insert(new Counter(in.readUTF(), in.readLong(), in.readLong()));
+        }
+        return summary;
+    }
+}
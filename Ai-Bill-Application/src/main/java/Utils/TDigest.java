@@ -0,0 +1,179 @@
+package Utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merging t-digest for approximate quantiles (p50/p90/p99) with bounded memory.
+ * Values are summarized as weighted centroids; the number of centroids is bounded
+ * by the compression factor. Digests can be merged, so per-worker digests combine cheaply.
+ */
+public class TDigest {
+
+    public static final double DEFAULT_COMPRESSION = 100.0;
+
+    private final double compression;
+    private List<double[]> centroids = new ArrayList<>(); // Sorted by mean; each entry is {mean, weight}
+    private final List<double[]> buffer = new ArrayList<>(); // Unmerged values
+    private double totalWeight;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(double compression) {
+        this.compression = compression;
+    }
+
+    public void add(double value) {
+        add(value, 1.0);
+    }
+
+    private void add(double mean, double weight) {
+        buffer.add(new double[]{mean, weight});
+        totalWeight += weight;
+        min = Double.isNaN(min) ? mean : Math.min(min, mean);
+        max = Double.isNaN(max) ? mean : Math.max(max, mean);
+        if (buffer.size() > 5 * compression) {
+            compress();
+        }
+    }
+
+    /**
+     * Merges another digest into this one.
+     * @param other The digest to merge. It is not modified.
+     * @return this digest, for chaining.
+     */
+    public TDigest merge(TDigest other) {
+        if (other == null || other.totalWeight == 0) {
+            return this;
+        }
+        for (double[] centroid : other.centroids) {
+            add(centroid[0], centroid[1]);
+        }
+        for (double[] value : other.buffer) {
+            add(value[0], value[1]);
+        }
+        // Centroid means hide the other digest's extremes, so carry them over explicitly
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    // Merges buffered values into the centroid list, keeping each centroid within the k1 size limit
+    private void compress() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<double[]> all = new ArrayList<>(centroids.size() + buffer.size());
+        all.addAll(centroids);
+        all.addAll(buffer);
+        buffer.clear();
+        all.sort(Comparator.comparingDouble(c -> c[0]));
+
+        List<double[]> merged = new ArrayList<>();
+        double[] current = all.get(0).clone();
+        double weightSoFar = 0.0;
+        for (int i = 1; i < all.size(); i++) {
+            double[] next = all.get(i);
+            double proposedWeight = current[1] + next[1];
+            double qLeft = weightSoFar / totalWeight;
+            double qRight = (weightSoFar + proposedWeight) / totalWeight;
+            if (scale(qRight) - scale(qLeft) <= 1.0) {
+                current[0] += (next[0] - current[0]) * next[1] / proposedWeight;
+                current[1] = proposedWeight;
+            } else {
+                merged.add(current);
+                weightSoFar += current[1];
+                current = next.clone();
+            }
+        }
+        merged.add(current);
+        centroids = merged;
+    }
+
+    // k1 scale function: centroids near the tails stay small, so extreme quantiles stay accurate
+    private double scale(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1.0, Math.max(0.0, q)) - 1);
+    }
+
+    /**
+     * Estimates the value at the given quantile.
+     * @param q Quantile between 0 and 1 (e.g. 0.5, 0.9, 0.99).
+     * @return The estimated value, or NaN if the digest is empty.
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroids.isEmpty()) {
+            return Double.NaN;
+        }
+        if (centroids.size() == 1) {
+            return centroids.get(0)[0];
+        }
+        double target = q * totalWeight;
+        if (target <= centroids.get(0)[1] / 2) {
+            return interpolate(min, centroids.get(0)[0], target / (centroids.get(0)[1] / 2));
+        }
+        double cumulative = centroids.get(0)[1] / 2; // Position of the first centroid's center
+        for (int i = 0; i < centroids.size() - 1; i++) {
+            double[] left = centroids.get(i);
+            double[] right = centroids.get(i + 1);
+            double gap = (left[1] + right[1]) / 2;
+            if (target <= cumulative + gap) {
+                return interpolate(left[0], right[0], (target - cumulative) / gap);
+            }
+            cumulative += gap;
+        }
+        double[] last = centroids.get(centroids.size() - 1);
+        double remaining = last[1] / 2;
+        return interpolate(last[0], max, remaining == 0 ? 1.0 : Math.min(1.0, (target - cumulative) / remaining));
+    }
+
+    private static double interpolate(double from, double to, double fraction) {
+        return from + (to - from) * Math.max(0.0, Math.min(1.0, fraction));
+    }
+
+    public long size() {
+        return Math.round(totalWeight);
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        compress();
+        out.writeDouble(compression);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(centroids.size());
+        for (double[] centroid : centroids) {
+            out.writeDouble(centroid[0]);
+            out.writeDouble(centroid[1]);
+        }
+    }
+
+    public static TDigest readFrom(DataInputStream in) throws IOException {
+        TDigest digest = new TDigest(in.readDouble());
+        digest.min = in.readDouble();
+        digest.max = in.readDouble();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            double mean = in.readDouble();
+            double weight = in.readDouble();
+            digest.centroids.add(new double[]{mean, weight});
+            digest.totalWeight += weight;
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,70 @@
+package Utils;
+
+import java.time.Duration;
+
+/**
+ * Token-bucket rate limiter. Tokens refill continuously at a fixed rate up to the bucket capacity;
+ * each request takes one token, so short bursts up to the capacity are allowed while the
+ * long-run rate stays at the refill rate.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param capacity Maximum burst size (tokens).
+     * @param refillPerSecond Tokens added per second.
+     */
+    public TokenBucket(double capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("TokenBucket needs capacity >= 1 and a positive refill rate: " + capacity + ", " + refillPerSecond);
+        }
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000.0;
+        this.tokens = capacity; // Start full
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * Takes a token if one is available.
+     * @return true if a token was taken.
+     */
+    public synchronized boolean tryAcquire() {
+        refill(System.nanoTime());
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Takes a token, waiting until one is available.
+     * @return The time spent waiting, in nanoseconds.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public long acquire() throws InterruptedException {
+        long start = System.nanoTime();
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill(System.nanoTime());
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return System.nanoTime() - start;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / refillPerNano);
+            }
+            // Sleep outside the lock so other callers can check the bucket
+            Thread.sleep(Duration.ofNanos(Math.max(waitNanos, 1_000_000)));
+        }
+    }
+}
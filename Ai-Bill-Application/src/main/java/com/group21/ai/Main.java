@@ -13,7 +13,10 @@ import Interceptor.Login.LoginDialog;
 import Interceptor.Login.RegistrationDialog; // Import RegistrationDialog
 import Service.Impl.TransactionServiceImpl;
 import Service.Impl.SummaryStatisticService;
+import Service.Impl.StatisticsScheduler;
 import Service.AIservice.AITransactionService;
+import Service.AIservice.AiRequestDispatcher;
+import Service.AIservice.AiSpeculativePrecomputer;
 import Service.AIservice.CollegeStudentNeeds;
 import Service.TransactionService;
 import Service.User.UserService;
@@ -22,6 +25,7 @@ import lombok.Getter;
 import model.User;
 import Constants.ConfigConstants;
 
+import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -80,6 +84,11 @@ public class Main {
 
         SummaryStatisticService summaryStatisticService = new SummaryStatisticService(userDao, transactionDao, summaryStatisticDao);
 
+        // Background stats generation on its own low-priority thread (periodic + after ledger changes).
+        // Runs in every session so that edits made by regular users are reflected in the admin statistics.
+        StatisticsScheduler statisticsScheduler = new StatisticsScheduler(summaryStatisticService);
+        statisticsScheduler.start(StatisticsScheduler.DEFAULT_PERIOD_MINUTES, StatisticsScheduler.DEFAULT_CHANGE_DELAY_SECONDS);
+
 
         // In the event dispatch thread (EDT) start GUI
         SwingUtilities.invokeLater(() -> {
@@ -96,15 +105,27 @@ public class Main {
 
 
                 // Initialize TransactionServiceImpl *for the logged-in user*
-                TransactionService transactionServiceForCurrentUser = new TransactionServiceImpl(authenticatedUser.getTransactionFilePath());
+                // The user's summary file holds the persisted rollup cube, validated against the ledger here
+                TransactionService transactionServiceForCurrentUser = new TransactionServiceImpl(authenticatedUser.getTransactionFilePath(), authenticatedUser.getSummaryFilePath());
 
                 // Initialize AI Services *with* the user-specific TransactionService
-                AITransactionService aiTransactionService = new AITransactionService(transactionServiceForCurrentUser);
-                CollegeStudentNeeds collegeStudentNeeds = new CollegeStudentNeeds(transactionServiceForCurrentUser);
+                // AI requests are queued under the username on the shared AiRequestDispatcher
+                AITransactionService aiTransactionService = new AITransactionService(transactionServiceForCurrentUser, authenticatedUser.getUsername());
+                CollegeStudentNeeds collegeStudentNeeds = new CollegeStudentNeeds(transactionServiceForCurrentUser, aiTransactionService);
+                // Open the AI connection now, while the main window is being built (ai.http.warmup)
+                aiTransactionService.warmUpConnectionsInBackground();
+                // Opt-in: precompute the analyses users usually open first, once the ledger is quiet (ai.speculative.enabled)
+                AiSpeculativePrecomputer speculativePrecomputer = ConfigConstants.AI_SPECULATIVE_ENABLED
+                        ? AiSpeculativePrecomputer.forUser(aiTransactionService, transactionServiceForCurrentUser,
+                                authenticatedUser.getTransactionFilePath(), Duration.ofSeconds(ConfigConstants.AI_SPECULATIVE_SETTLE_SECONDS))
+                        : null;
+                if (speculativePrecomputer != null) {
+                    speculativePrecomputer.start();
+                }
 
 
                 // Pass UserService instance to MenuUI constructor
-                MenuUI menuUI = new MenuUI(authenticatedUser, transactionServiceForCurrentUser, summaryStatisticService, aiTransactionService, collegeStudentNeeds, executorService, userService); // Pass userService
+                MenuUI menuUI = new MenuUI(authenticatedUser, transactionServiceForCurrentUser, summaryStatisticService, statisticsScheduler, aiTransactionService, collegeStudentNeeds, executorService, userService); // Pass userService
 
                 JFrame frame = new JFrame("Transaction Management System - " + authenticatedUser.getUsername());
                 frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -115,6 +136,11 @@ public class Main {
 
                 // --- Add a shutdown hook to gracefully close the ExecutorService on application exit ---
                 Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    statisticsScheduler.stop();
+                    if (speculativePrecomputer != null) {
+                        speculativePrecomputer.stop(); // The user is leaving; drop speculative AI work first
+                    }
+                    AiRequestDispatcher.shared().shutdown();
                     System.out.println("Shutting down ExecutorService...");
                     executorService.shutdown(); // Initiate an orderly shutdown
                     try {
@@ -0,0 +1,71 @@
+package model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The last AI analysis of one kind (prompt template) for one user, and the data it was based on:
+// the ledger version and a fingerprint of every month's prompt text. A follow-up analysis compares the
+// fingerprints with the current ones and only sends the months that changed, along with this analysis.
+public class AiAnalysisState {
+    private String modelId;
+    private String templateId;
+    private String ledgerVersion; // Ledger watermark (size, modification time, file version) at the time of the analysis
+    private long createdMillis; // When the full analysis this one was (incrementally) derived from was made
+    private int deltaRuns; // Incremental updates since the last analysis of the full history
+    private Map<String, String> monthFingerprints; // Month identifier -> fingerprint of its prompt text, oldest first
+    private String analysis;
+
+    public AiAnalysisState(String modelId, String templateId, String ledgerVersion, long createdMillis, int deltaRuns,
+                           Map<String, String> monthFingerprints, String analysis) {
+        this.modelId = modelId;
+        this.templateId = templateId;
+        this.ledgerVersion = ledgerVersion;
+        this.createdMillis = createdMillis;
+        this.deltaRuns = deltaRuns;
+        this.monthFingerprints = new LinkedHashMap<>(monthFingerprints);
+        this.analysis = analysis;
+    }
+
+    // Getters
+    public String getModelId() {
+        return modelId;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public String getLedgerVersion() {
+        return ledgerVersion;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public int getDeltaRuns() {
+        return deltaRuns;
+    }
+
+    public Map<String, String> getMonthFingerprints() {
+        return Collections.unmodifiableMap(monthFingerprints);
+    }
+
+    public String getAnalysis() {
+        return analysis;
+    }
+
+    @Override
+    public String toString() {
+        return "AiAnalysisState{" +
+                "modelId='" + modelId + '\'' +
+                ", templateId='" + templateId + '\'' +
+                ", ledgerVersion='" + ledgerVersion + '\'' +
+                ", createdMillis=" + createdMillis +
+                ", deltaRuns=" + deltaRuns +
+                ", months=" + monthFingerprints.size() +
+                ", analysisLength=" + (analysis == null ? 0 : analysis.length()) +
+                '}';
+    }
+}
@@ -0,0 +1,79 @@
+package model;
+
+// Point-in-time snapshot of the AI request dispatcher: how much work is waiting,
+// how much is running, and how long requests take end to end (queue wait + retries + call).
+public class AiDispatchMetrics {
+    private int queueDepth; // Requests waiting for a worker, across all users
+    private int queuedUsers; // Users with at least one waiting request
+    private int inFlight; // Requests currently being sent (including backoff waits)
+    private long completed; // Requests that returned a response
+    private long failed; // Requests that gave up (non-retryable error or attempts exhausted)
+    private long retries; // Extra attempts made after retryable errors
+    private double meanQueueWaitMillis;
+    private double p50LatencyMillis;
+    private double p95LatencyMillis;
+    private double maxLatencyMillis;
+
+    public AiDispatchMetrics(int queueDepth, int queuedUsers, int inFlight, long completed, long failed, long retries,
+                             double meanQueueWaitMillis, double p50LatencyMillis, double p95LatencyMillis, double maxLatencyMillis) {
+        this.queueDepth = queueDepth;
+        this.queuedUsers = queuedUsers;
+        this.inFlight = inFlight;
+        this.completed = completed;
+        this.failed = failed;
+        this.retries = retries;
+        this.meanQueueWaitMillis = meanQueueWaitMillis;
+        this.p50LatencyMillis = p50LatencyMillis;
+        this.p95LatencyMillis = p95LatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    // Getters
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueuedUsers() {
+        return queuedUsers;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public double getMeanQueueWaitMillis() {
+        return meanQueueWaitMillis;
+    }
+
+    public double getP50LatencyMillis() {
+        return p50LatencyMillis;
+    }
+
+    public double getP95LatencyMillis() {
+        return p95LatencyMillis;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued=%d (users=%d), inFlight=%d, completed=%d, failed=%d, retries=%d, " +
+                        "meanQueueWait=%.0fms, p50=%.0fms, p95=%.0fms, max=%.0fms",
+                queueDepth, queuedUsers, inFlight, completed, failed, retries,
+                meanQueueWaitMillis, p50LatencyMillis, p95LatencyMillis, maxLatencyMillis);
+    }
+}
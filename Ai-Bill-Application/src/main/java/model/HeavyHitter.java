@@ -0,0 +1,54 @@
+package model;
+
+// One entry of a top-K list (heaviest counterparties, commodities or categories of a period).
+// Values are estimates from fixed-memory sketches: the true amount lies between
+// (amountCents - errorCents) and amountCents; the transaction count is never underestimated.
+public class HeavyHitter {
+    private String item; // Counterparty, commodity or standard category
+    private long amountCents; // Estimated total expense in cents (upper bound)
+    private long errorCents; // Maximum overestimate of amountCents
+    private long transactionCount; // Estimated number of expense transactions (upper bound)
+
+    public HeavyHitter(String item, long amountCents, long errorCents, long transactionCount) {
+        this.item = item;
+        this.amountCents = amountCents;
+        this.errorCents = errorCents;
+        this.transactionCount = transactionCount;
+    }
+
+    // Getters
+    public String getItem() {
+        return item;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public long getErrorCents() {
+        return errorCents;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public double getAmount() {
+        return amountCents / 100.0;
+    }
+
+    // True when the amount is exact (the item was never evicted from the summary)
+    public boolean isExact() {
+        return errorCents == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "HeavyHitter{" +
+                "item='" + item + '\'' +
+                ", amountCents=" + amountCents +
+                ", errorCents=" + errorCents +
+                ", transactionCount=" + transactionCount +
+                '}';
+    }
+}
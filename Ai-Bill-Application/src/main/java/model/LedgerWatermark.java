@@ -0,0 +1,98 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+// Records the state of a user's transaction file when it was last processed by a statistics job.
+// If the file's size, modification time and version (file key) all still match, the file is unchanged.
+public class LedgerWatermark {
+    private String username;
+    private String filePath;
+    private long size; // -1 if the file did not exist
+    private long lastModifiedMillis; // -1 if the file did not exist
+    private String version; // File key (e.g. inode); changes on every atomic replace. Empty if unavailable.
+
+    // Constructors
+    public LedgerWatermark() {
+    }
+
+    public LedgerWatermark(String username, String filePath, long size, long lastModifiedMillis, String version) {
+        this.username = username;
+        this.filePath = filePath;
+        this.size = size;
+        this.lastModifiedMillis = lastModifiedMillis;
+        this.version = version;
+    }
+
+    /**
+     * Captures the current watermark of a ledger file.
+     * A missing or unreadable file yields a watermark with size and modification time of -1.
+     * @param username The owner of the ledger.
+     * @param filePath The path to the ledger file (may be null).
+     * @return The current watermark.
+     */
+    public static LedgerWatermark capture(String username, String filePath) {
+        if (filePath == null || filePath.trim().isEmpty()) {
+            return new LedgerWatermark(username, "", -1, -1, "");
+        }
+        Path path = Paths.get(filePath);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey();
+            return new LedgerWatermark(username, filePath, attributes.size(),
+                    attributes.lastModifiedTime().toMillis(), fileKey != null ? fileKey.toString() : "");
+        } catch (IOException e) {
+            // Treat as missing; a later run will pick the file up once it exists
+            return new LedgerWatermark(username, filePath, -1, -1, "");
+        }
+    }
+
+    /**
+     * Checks whether this watermark describes the same file state as another one.
+     * @param other The watermark to compare with (may be null).
+     * @return true if the file path, size, modification time and version all match.
+     */
+    public boolean matches(LedgerWatermark other) {
+        return other != null
+                && Objects.equals(filePath, other.filePath)
+                && size == other.size
+                && lastModifiedMillis == other.lastModifiedMillis
+                && Objects.equals(version, other.version);
+    }
+
+    // Getters
+    public String getUsername() {
+        return username;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerWatermark{" +
+                "username='" + username + '\'' +
+                ", filePath='" + filePath + '\'' +
+                ", size=" + size +
+                ", lastModifiedMillis=" + lastModifiedMillis +
+                ", version='" + version + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Income and expense totals (cents and transaction counts) of one period of a rollup cube,
+// e.g. a day, an ISO week, a month, a year or an arbitrary date range.
+public class PeriodTotals {
+    private String periodIdentifier; // e.g., "2025-03-14", "2025-W11", "2025-03", "2025"
+    private long incomeCents;
+    private long incomeCount;
+    private long expenseCents;
+    private long expenseCount;
+    // Map from standard expense category to cents / number of transactions in that category
+    private final Map<String, Long> expenseCentsByCategory = new HashMap<>();
+    private final Map<String, Long> expenseCountByCategory = new HashMap<>();
+
+    public PeriodTotals(String periodIdentifier) {
+        this.periodIdentifier = periodIdentifier;
+    }
+
+    // Getters
+    public String getPeriodIdentifier() {
+        return periodIdentifier;
+    }
+
+    public long getIncomeCents() {
+        return incomeCents;
+    }
+
+    public long getIncomeCount() {
+        return incomeCount;
+    }
+
+    public long getExpenseCents() {
+        return expenseCents;
+    }
+
+    public long getExpenseCount() {
+        return expenseCount;
+    }
+
+    public Map<String, Long> getExpenseCentsByCategory() {
+        return expenseCentsByCategory;
+    }
+
+    public Map<String, Long> getExpenseCountByCategory() {
+        return expenseCountByCategory;
+    }
+
+    public double getTotalIncome() {
+        return incomeCents / 100.0;
+    }
+
+    public double getTotalExpense() {
+        return expenseCents / 100.0;
+    }
+
+    // Methods to accumulate cube cells
+    public void addIncome(long cents, long count) {
+        this.incomeCents += cents;
+        this.incomeCount += count;
+    }
+
+    public void addExpense(String category, long cents, long count) {
+        this.expenseCents += cents;
+        this.expenseCount += count;
+        this.expenseCentsByCategory.merge(category, cents, Long::sum);
+        this.expenseCountByCategory.merge(category, count, Long::sum);
+    }
+
+    /**
+     * Converts these totals into a MonthlySummary (the shape used by the UI and AI services).
+     */
+    public MonthlySummary toMonthlySummary() {
+        MonthlySummary summary = new MonthlySummary(periodIdentifier);
+        summary.addIncome(incomeCents / 100.0);
+        expenseCentsByCategory.forEach((category, cents) -> summary.addExpense(cents / 100.0, category));
+        return summary;
+    }
+
+    @Override
+    public String toString() {
+        return "PeriodTotals{" +
+                "periodIdentifier='" + periodIdentifier + '\'' +
+                ", incomeCents=" + incomeCents +
+                ", incomeCount=" + incomeCount +
+                ", expenseCents=" + expenseCents +
+                ", expenseCount=" + expenseCount +
+                ", expenseCentsByCategory=" + expenseCentsByCategory +
+                '}';
+    }
+}
@@ -0,0 +1,192 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.IsoFields;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Persisted per-user rollup cube: transaction counts and cent sums keyed by (day, direction, category).
+// Week, month and year views (and arbitrary date ranges) are derived by rolling up the day cells,
+// so their cost depends on the number of days in the range, not on the number of transactions.
+// Amounts are kept in integer cents so the cube can be updated by adding and subtracting
+// individual transactions without accumulating rounding errors.
+public class RollupCube {
+
+    public enum Direction {
+        INCOME,
+        EXPENSE
+    }
+
+    // Roll-up levels and the identifiers they produce
+    public enum Granularity {
+        DAY("yyyy-MM-dd"),
+        // ISO week-based year and week ("YYYY-Www"): Monday 2025-12-29 starts 2026-W01, so identifiers sort
+        // chronologically across New Year. Also used by the weekly summary statistics and the top-K index.
+        WEEK(new DateTimeFormatterBuilder()
+                .appendValue(IsoFields.WEEK_BASED_YEAR, 4)
+                .appendLiteral("-W")
+                .appendValue(IsoFields.WEEK_OF_WEEK_BASED_YEAR, 2)
+                .toFormatter()),
+        MONTH("yyyy-MM"),
+        YEAR("yyyy");
+
+        private final DateTimeFormatter formatter;
+
+        Granularity(String pattern) {
+            this(DateTimeFormatter.ofPattern(pattern));
+        }
+
+        Granularity(DateTimeFormatter formatter) {
+            this.formatter = formatter;
+        }
+
+        public String format(LocalDate day) {
+            return day.format(formatter);
+        }
+
+        public DateTimeFormatter getFormatter() {
+            return formatter;
+        }
+    }
+
+    // Count and cent sum of one (day, direction, category) cell
+    public static class Cell {
+        private long count;
+        private long cents;
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getCents() {
+            return cents;
+        }
+    }
+
+    private LedgerWatermark ledgerWatermark; // State of the ledger these cells were computed from
+    // Day -> direction -> category -> cell
+    private final TreeMap<LocalDate, Map<Direction, Map<String, Cell>>> days = new TreeMap<>();
+
+    // Constructors
+    public RollupCube() {
+    }
+
+    public RollupCube(LedgerWatermark ledgerWatermark) {
+        this.ledgerWatermark = ledgerWatermark;
+    }
+
+    // Getters and setters
+    public LedgerWatermark getLedgerWatermark() {
+        return ledgerWatermark;
+    }
+
+    public void setLedgerWatermark(LedgerWatermark ledgerWatermark) {
+        this.ledgerWatermark = ledgerWatermark;
+    }
+
+    /**
+     * @return All day cells, sorted by day (read-only view).
+     */
+    public NavigableMap<LocalDate, Map<Direction, Map<String, Cell>>> getDays() {
+        return Collections.unmodifiableNavigableMap(days);
+    }
+
+    /**
+     * Adds (positive values) or removes (negative values) transactions to a cell.
+     * Cells, directions and days that drop to zero are removed, so removing a transaction
+     * restores the exact previous state.
+     */
+    public void add(LocalDate day, Direction direction, String category, long cents, long count) {
+        Map<Direction, Map<String, Cell>> byDirection = days.computeIfAbsent(day, k -> new EnumMap<>(Direction.class));
+        Map<String, Cell> byCategory = byDirection.computeIfAbsent(direction, k -> new HashMap<>());
+        Cell cell = byCategory.computeIfAbsent(category, k -> new Cell());
+        cell.cents += cents;
+        cell.count += count;
+        if (cell.cents == 0 && cell.count == 0) {
+            byCategory.remove(category);
+            if (byCategory.isEmpty()) {
+                byDirection.remove(direction);
+                if (byDirection.isEmpty()) {
+                    days.remove(day);
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return days.isEmpty();
+    }
+
+    /**
+     * Rolls the day cells up to the given granularity.
+     * @param granularity Day, week, month or year.
+     * @param from First day to include, or null for no lower bound.
+     * @param to Last day to include, or null for no upper bound.
+     * @return Totals per period, sorted by period identifier. Periods without transactions are absent.
+     */
+    public SortedMap<String, PeriodTotals> rollUp(Granularity granularity, LocalDate from, LocalDate to) {
+        SortedMap<String, PeriodTotals> totals = new TreeMap<>();
+        for (Map.Entry<LocalDate, Map<Direction, Map<String, Cell>>> dayEntry : range(from, to).entrySet()) {
+            String periodIdentifier = granularity.format(dayEntry.getKey());
+            accumulate(totals.computeIfAbsent(periodIdentifier, PeriodTotals::new), dayEntry.getValue());
+        }
+        return totals;
+    }
+
+    /**
+     * Totals of an arbitrary date range (both ends inclusive, null for open-ended).
+     */
+    public PeriodTotals total(LocalDate from, LocalDate to) {
+        PeriodTotals totals = new PeriodTotals((from != null ? from.toString() : "") + ".." + (to != null ? to.toString() : ""));
+        for (Map<Direction, Map<String, Cell>> dayCells : range(from, to).values()) {
+            accumulate(totals, dayCells);
+        }
+        return totals;
+    }
+
+    /**
+     * Converts the cube into MonthlySummary objects (the shape used by the UI and AI services).
+     * @return A map from month identifier to its summary, sorted by month.
+     */
+    public Map<String, MonthlySummary> toMonthlySummaries() {
+        Map<String, MonthlySummary> summaries = new TreeMap<>();
+        rollUp(Granularity.MONTH, null, null).forEach((month, totals) -> summaries.put(month, totals.toMonthlySummary()));
+        return summaries;
+    }
+
+    private NavigableMap<LocalDate, Map<Direction, Map<String, Cell>>> range(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return Collections.emptyNavigableMap();
+        }
+        NavigableMap<LocalDate, Map<Direction, Map<String, Cell>>> view = days;
+        if (from != null) {
+            view = view.tailMap(from, true);
+        }
+        if (to != null) {
+            view = view.headMap(to, true);
+        }
+        return view;
+    }
+
+    private static void accumulate(PeriodTotals totals, Map<Direction, Map<String, Cell>> dayCells) {
+        dayCells.getOrDefault(Direction.INCOME, Collections.emptyMap())
+                .forEach((category, cell) -> totals.addIncome(cell.cents, cell.count));
+        dayCells.getOrDefault(Direction.EXPENSE, Collections.emptyMap())
+                .forEach((category, cell) -> totals.addExpense(category, cell.cents, cell.count));
+    }
+
+    @Override
+    public String toString() {
+        return "RollupCube{" +
+                "ledgerWatermark=" + ledgerWatermark +
+                ", days=" + days.size() +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package model;
+
+import Utils.HyperLogLog;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// One user's contribution to one week of the global summary statistics.
+// Amounts are stored in integer cents so partials can be summed without rounding drift.
+public class UserWeekPartial {
+    private String username;
+    private String weekIdentifier; // e.g., "2025-W14"
+    private long incomeCents;
+    private long expenseCents;
+    // Map from expense category to cents spent (only categories that count towards the top category)
+    private Map<String, Long> expenseCentsByCategory;
+    // Sparse sketch of the counterparties this user traded with this week (merged into the distinct-counterparty sketches)
+    private HyperLogLog counterparties;
+
+    // Constructors
+    public UserWeekPartial() {
+        this.expenseCentsByCategory = new HashMap<>();
+        this.counterparties = new HyperLogLog();
+    }
+
+    public UserWeekPartial(String username, String weekIdentifier, long incomeCents, long expenseCents, Map<String, Long> expenseCentsByCategory) {
+        this(username, weekIdentifier, incomeCents, expenseCents, expenseCentsByCategory, null);
+    }
+
+    public UserWeekPartial(String username, String weekIdentifier, long incomeCents, long expenseCents, Map<String, Long> expenseCentsByCategory, HyperLogLog counterparties) {
+        this.username = username;
+        this.weekIdentifier = weekIdentifier;
+        this.incomeCents = incomeCents;
+        this.expenseCents = expenseCents;
+        this.expenseCentsByCategory = expenseCentsByCategory != null ? new HashMap<>(expenseCentsByCategory) : new HashMap<>();
+        this.counterparties = counterparties != null ? counterparties.copy() : new HyperLogLog();
+    }
+
+    // Getters
+    public String getUsername() {
+        return username;
+    }
+
+    public String getWeekIdentifier() {
+        return weekIdentifier;
+    }
+
+    public long getIncomeCents() {
+        return incomeCents;
+    }
+
+    public long getExpenseCents() {
+        return expenseCents;
+    }
+
+    public Map<String, Long> getExpenseCentsByCategory() {
+        return expenseCentsByCategory;
+    }
+
+    public HyperLogLog getCounterparties() {
+        return counterparties;
+    }
+
+    @Override
+    public String toString() {
+        return "UserWeekPartial{" +
+                "username='" + username + '\'' +
+                ", weekIdentifier='" + weekIdentifier + '\'' +
+                ", incomeCents=" + incomeCents +
+                ", expenseCents=" + expenseCents +
+                ", expenseCentsByCategory=" + expenseCentsByCategory +
+                ", counterparties=" + counterparties.estimate() +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package model;
+
+import Utils.HyperLogLog;
+import Utils.TDigest;
+
+// Mergeable distribution sketches for one week across all users:
+// distinct active users, distinct counterparties and the spend-per-user distribution.
+public class WeeklySketch {
+    private String weekIdentifier; // e.g., "2025-W14"
+    private HyperLogLog activeUsers;
+    private HyperLogLog counterparties;
+    private TDigest spendPerUser; // One value per active user: that user's total expense in the week (CNY)
+
+    // Constructors
+    public WeeklySketch(String weekIdentifier) {
+        this(weekIdentifier, new HyperLogLog(), new HyperLogLog(), new TDigest());
+    }
+
+    public WeeklySketch(String weekIdentifier, HyperLogLog activeUsers, HyperLogLog counterparties, TDigest spendPerUser) {
+        this.weekIdentifier = weekIdentifier;
+        this.activeUsers = activeUsers;
+        this.counterparties = counterparties;
+        this.spendPerUser = spendPerUser;
+    }
+
+    /**
+     * Adds one user's activity for this week.
+     * @param username The active user.
+     * @param expense The user's total expense in the week (CNY).
+     * @param userCounterparties Sketch of the counterparties the user traded with; merged, not modified.
+     */
+    public void addUser(String username, double expense, HyperLogLog userCounterparties) {
+        activeUsers.add(username);
+        spendPerUser.add(expense);
+        counterparties.merge(userCounterparties);
+    }
+
+    /**
+     * Merges another sketch of the same week into this one.
+     */
+    public WeeklySketch merge(WeeklySketch other) {
+        activeUsers.merge(other.activeUsers);
+        counterparties.merge(other.counterparties);
+        spendPerUser.merge(other.spendPerUser);
+        return this;
+    }
+
+    // Getters
+    public String getWeekIdentifier() {
+        return weekIdentifier;
+    }
+
+    public HyperLogLog getActiveUsers() {
+        return activeUsers;
+    }
+
+    public HyperLogLog getCounterparties() {
+        return counterparties;
+    }
+
+    public TDigest getSpendPerUser() {
+        return spendPerUser;
+    }
+
+    public long getEstimatedActiveUsers() {
+        return activeUsers.estimate();
+    }
+
+    public long getEstimatedCounterparties() {
+        return counterparties.estimate();
+    }
+
+    public double getSpendPerUserQuantile(double q) {
+        return spendPerUser.quantile(q);
+    }
+
+    @Override
+    public String toString() {
+        return "WeeklySketch{" +
+                "weekIdentifier='" + weekIdentifier + '\'' +
+                ", activeUsers~" + getEstimatedActiveUsers() +
+                ", counterparties~" + getEstimatedCounterparties() +
+                ", spendP50=" + getSpendPerUserQuantile(0.5) +
+                '}';
+    }
+}
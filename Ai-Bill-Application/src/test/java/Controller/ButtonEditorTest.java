@@ -10,6 +10,7 @@ import DAO.TransactionDao;
 import DAO.UserDao;
 import Service.AIservice.AITransactionService;
 import Service.AIservice.CollegeStudentNeeds;
+import Service.Impl.StatisticsScheduler;
 import Service.Impl.SummaryStatisticService;
 import Service.Impl.TransactionServiceImpl;
 import Service.TransactionService;
@@ -69,11 +70,12 @@ public class ButtonEditorTest {
         // Option 2: Create a test-specific ExecutorService for this test class or method
         // For simplicity, let's create one specific to this test method.
         ExecutorService testExecutorService = Executors.newSingleThreadExecutor(); // Use a small pool for test
+        StatisticsScheduler statisticsScheduler = new StatisticsScheduler(summaryStatisticService); // Not started: nothing runs unless requested
 
 
         try {
             // --- Modify MenuUI initialization to pass ExecutorService ---
-            MenuUI menuUI = new MenuUI(testUser, transactionService, summaryStatisticService, aiTransactionService, collegeStudentNeeds, testExecutorService, new UserService(new CsvUserDao(""), new CsvTransactionDao(), new CsvSummaryStatisticDao())); // Pass ExecutorService
+            MenuUI menuUI = new MenuUI(testUser, transactionService, summaryStatisticService, statisticsScheduler, aiTransactionService, collegeStudentNeeds, testExecutorService, new UserService(new CsvUserDao(""), new CsvTransactionDao(), new CsvSummaryStatisticDao())); // Pass ExecutorService
 
 
             ButtonEditor editor = new ButtonEditor(menuUI); // Pass the MenuUI instance
@@ -100,6 +102,7 @@ public class ButtonEditorTest {
             e.printStackTrace();
             throw e; // Re-throw to make JUnit mark it as failed
         } finally {
+            statisticsScheduler.stop();
             // Shut down the test-specific ExecutorService
             if (testExecutorService != null) {
                 testExecutorService.shutdown();
@@ -0,0 +1,55 @@
+package Controller;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingTextAppenderTest {
+
+    private static String textOf(JTextArea area) throws Exception {
+        String[] text = new String[1];
+        SwingUtilities.invokeAndWait(() -> text[0] = area.getText());
+        return text[0];
+    }
+
+    @Test
+    void testDeltasFromWorkerThreadAreRenderedAfterHeader() throws Exception {
+        JTextArea area = new JTextArea("Please wait...");
+        StreamingTextAppender[] appender = new StreamingTextAppender[1];
+        SwingUtilities.invokeAndWait(() -> appender[0] = new StreamingTextAppender(area, "--- Summary ---\n\n", 10));
+
+        Thread worker = new Thread(() -> {
+            for (String delta : new String[]{"You spent ", "most on ", "food."}) {
+                appender[0].accept(delta);
+            }
+        });
+        worker.start();
+        worker.join();
+
+        SwingUtilities.invokeAndWait(() -> appender[0].finish("You spent most on food."));
+        assertEquals("--- Summary ---\n\nYou spent most on food.", textOf(area));
+    }
+
+    @Test
+    void testResultShownWhenNothingWasStreamed() throws Exception {
+        JTextArea area = new JTextArea("Please wait...");
+        SwingUtilities.invokeAndWait(() -> {
+            StreamingTextAppender appender = new StreamingTextAppender(area, "--- Tips ---\n\n");
+            appender.finish("Not enough transaction data found.");
+        });
+        assertEquals("--- Tips ---\n\nNot enough transaction data found.", textOf(area));
+    }
+
+    @Test
+    void testErrorAppendedAfterPartialAnswer() throws Exception {
+        JTextArea area = new JTextArea();
+        SwingUtilities.invokeAndWait(() -> {
+            StreamingTextAppender appender = new StreamingTextAppender(area, "--- Goals ---\n\n");
+            appender.accept("Save 500 CNY");
+            appender.finish("AI request failed: stream broke off");
+        });
+        assertEquals("--- Goals ---\n\nSave 500 CNY\n\nAI request failed: stream broke off", textOf(area));
+    }
+}
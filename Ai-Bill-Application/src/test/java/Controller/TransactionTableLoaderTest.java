@@ -0,0 +1,94 @@
+package Controller;
+
+import model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionTableLoaderTest {
+
+    private static List<Transaction> ledger(int size) {
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactions.add(new Transaction("2025/03/01 12:00", "Dining", "Shop " + i, "Item", i % 2 == 0 ? "Expense" : "Income",
+                    i, "WeChat", "Done", "ON" + i, "M" + i, ""));
+        }
+        return transactions;
+    }
+
+    private static int rowCountOnEdt(TransactionTableModel model) throws Exception {
+        int[] count = new int[1];
+        SwingUtilities.invokeAndWait(() -> count[0] = model.getRowCount());
+        return count[0];
+    }
+
+    // SwingWorker hands chunks and done() to the EDT through a short timer, so wait for them
+    private static int awaitRowCount(TransactionTableModel model, int expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        int count;
+        while ((count = rowCountOnEdt(model)) != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return count;
+    }
+
+    @Test
+    void testLoadsMatchingRowsInChunks() throws Exception {
+        TransactionTableModel model = new TransactionTableModel();
+        List<Integer> insertedBatches = new ArrayList<>();
+        model.addTableModelListener(event -> insertedBatches.add(event.getLastRow() - event.getFirstRow() + 1));
+
+        TransactionTableLoader loader = new TransactionTableLoader(model, () -> ledger(20_000),
+                t -> "Expense".equals(t.getInOut()), e -> { throw new AssertionError(e); });
+        loader.execute();
+        assertEquals(10_000, (int) loader.get(10, TimeUnit.SECONDS));
+
+        assertEquals(10_000, awaitRowCount(model, 10_000));
+        assertEquals("ON19998", model.getValueAt(9_999, TransactionTableModel.ORDER_NUMBER_COLUMN));
+        assertEquals(100, loader.getProgress());
+        assertTrue(insertedBatches.size() > 1); // Not one big event at the end
+    }
+
+    @Test
+    void testCancelledLoadNeverTouchesTheModel() throws Exception {
+        TransactionTableModel model = new TransactionTableModel();
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionTableLoader stale = new TransactionTableLoader(model, () -> {
+            release.await();
+            return ledger(100);
+        }, null, e -> { });
+        stale.execute();
+        stale.cancel(false); // Superseded before its data arrived
+        release.countDown();
+
+        TransactionTableLoader current = new TransactionTableLoader(model, () -> ledger(3), null, e -> { });
+        current.execute();
+        current.get(10, TimeUnit.SECONDS);
+        assertEquals(3, awaitRowCount(model, 3));
+        Thread.sleep(200); // Give the stale loader time to finish and deliver whatever it published
+        assertEquals(3, rowCountOnEdt(model));
+    }
+
+    @Test
+    void testFailureIsReported() throws Exception {
+        TransactionTableModel model = new TransactionTableModel();
+        AtomicReference<Exception> reported = new AtomicReference<>();
+        TransactionTableLoader loader = new TransactionTableLoader(model, () -> {
+            throw new IllegalStateException("disk gone");
+        }, null, reported::set);
+        loader.execute();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (reported.get() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10); // done() runs on the EDT
+        }
+        assertNotNull(reported.get());
+        assertEquals("disk gone", reported.get().getMessage());
+    }
+}
@@ -0,0 +1,117 @@
+package Controller;
+
+import model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionTableModelTest {
+
+    private static List<Transaction> ledger() {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction("2025/03/01 12:00", "Dining", "Canteen", "Lunch", "Expense", 15.5, "WeChat", "Done", "ON1", "M1", null));
+        transactions.add(new Transaction("2025/03/02 09:00", "Salary", "Company", "Pay", "Income", 3000, "Bank", "Done", "ON2", "M2", ""));
+        transactions.add(new Transaction("2025/03/03 18:00", "Transport", "Metro", "Ticket", "Expense", 4, "Alipay", "Done", "ON3", "M3", "commute"));
+        return transactions;
+    }
+
+    @Test
+    void testCellsAreFormattedFromTheSnapshot() {
+        TransactionTableModel model = new TransactionTableModel();
+        model.setTransactions(ledger());
+
+        assertEquals(3, model.getRowCount());
+        assertEquals(13, model.getColumnCount());
+        assertEquals("Order Number", model.getColumnName(TransactionTableModel.ORDER_NUMBER_COLUMN));
+        assertEquals("Canteen", model.getValueAt(0, 2));
+        assertEquals("15.5", model.getValueAt(0, 5));
+        assertEquals("", model.getValueAt(0, 10)); // Null remarks
+        assertEquals("Modify", model.getValueAt(1, TransactionTableModel.MODIFY_COLUMN));
+        assertEquals("Delete", model.getValueAt(1, TransactionTableModel.DELETE_COLUMN));
+        assertTrue(model.isCellEditable(0, TransactionTableModel.DELETE_COLUMN));
+        assertFalse(model.isCellEditable(0, 2));
+    }
+
+    @Test
+    void testFilteredViewAndRowRemoval() {
+        List<Transaction> transactions = ledger();
+        TransactionTableModel model = new TransactionTableModel();
+        model.setTransactions(transactions, new int[]{0, 2}); // The expenses
+
+        assertEquals(2, model.getRowCount());
+        assertEquals("ON3", model.getValueAt(1, TransactionTableModel.ORDER_NUMBER_COLUMN));
+        assertEquals(1, model.findRowByOrderNumber("ON3"));
+        assertEquals(-1, model.findRowByOrderNumber("ON2"));
+
+        model.removeRow(0);
+        assertEquals(1, model.getRowCount());
+        assertEquals("ON3", model.getValueAt(0, TransactionTableModel.ORDER_NUMBER_COLUMN));
+        assertEquals(3, transactions.size()); // The snapshot is untouched
+    }
+
+    @Test
+    void testNarrowedResultDeletesOnlyDroppedRows() {
+        List<Transaction> transactions = ledger();
+        transactions.add(new Transaction("2025/03/04 08:00", "Dining", "Bakery", "Bread", "Expense", 6, "Cash", "Done", "ON4", "M4", ""));
+        TransactionTableModel model = new TransactionTableModel();
+        model.setTransactions(transactions);
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        // A narrower search returns a new list holding some of the same objects
+        model.updateTo(List.of(transactions.get(0), transactions.get(3)), null);
+
+        assertEquals(2, model.getRowCount());
+        assertEquals("ON1", model.getValueAt(0, TransactionTableModel.ORDER_NUMBER_COLUMN));
+        assertEquals("ON4", model.getValueAt(1, TransactionTableModel.ORDER_NUMBER_COLUMN));
+        assertEquals(1, events.size()); // Rows 1-2 form one run
+        assertEquals(TableModelEvent.DELETE, events.get(0).getType());
+        assertEquals(1, events.get(0).getFirstRow());
+        assertEquals(2, events.get(0).getLastRow());
+    }
+
+    @Test
+    void testBroadenedResultInsertsOnlyNewRows() {
+        List<Transaction> transactions = ledger();
+        TransactionTableModel model = new TransactionTableModel();
+        model.setTransactions(List.of(transactions.get(1)));
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        model.updateTo(transactions, null);
+
+        assertEquals(3, model.getRowCount());
+        for (int row = 0; row < 3; row++) {
+            assertEquals("ON" + (row + 1), model.getValueAt(row, TransactionTableModel.ORDER_NUMBER_COLUMN));
+        }
+        assertEquals(2, events.size()); // One row before the kept one, one after
+        assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+        assertEquals(0, events.get(0).getFirstRow());
+        assertEquals(2, events.get(1).getFirstRow());
+
+        // Unrelated results replace the view with one event
+        Transaction other = new Transaction("2025/04/01 10:00", "Other", "Shop", "Gift", "Expense", 99, "Cash", "Done", "ON9", "M9", "");
+        model.updateTo(List.of(other), null);
+        assertEquals(1, model.getRowCount());
+        assertEquals(3, events.size());
+        assertEquals("ON9", model.getValueAt(0, TransactionTableModel.ORDER_NUMBER_COLUMN));
+    }
+
+    @Test
+    void testRefreshFiresOneEvent() {
+        TransactionTableModel model = new TransactionTableModel();
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        model.setTransactions(ledger());
+        assertEquals(1, events.size());
+        model.removeRow(1);
+        assertEquals(2, events.size());
+        assertEquals(TableModelEvent.DELETE, events.get(1).getType());
+        assertEquals("ON3", model.getValueAt(1, TransactionTableModel.ORDER_NUMBER_COLUMN));
+    }
+}
@@ -0,0 +1,100 @@
+package DAO.Impl;
+
+import DAO.RollupCubeDao;
+import model.LedgerWatermark;
+import model.MonthlySummary;
+import model.PeriodTotals;
+import model.RollupCube;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvRollupCubeDaoTest {
+
+    private RollupCubeDao cubeDao;
+    private Path tempCubeFilePath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cubeDao = new CsvRollupCubeDao();
+        tempCubeFilePath = Files.createTempFile("test_rollup_cube_", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (tempCubeFilePath != null) {
+            Files.deleteIfExists(tempCubeFilePath);
+        }
+    }
+
+    @Test
+    void testRoundTripKeepsTotalsAndWatermark() throws IOException {
+        LedgerWatermark watermark = new LedgerWatermark(null, "data/user_a.csv", 2048, 1700000000000L, "(dev=1,ino=7)");
+        RollupCube cube = new RollupCube(watermark);
+        cube.add(LocalDate.of(2025, 3, 10), RollupCube.Direction.INCOME, "Salary", 500000, 1);
+        cube.add(LocalDate.of(2025, 3, 12), RollupCube.Direction.EXPENSE, "Dining", 12345, 3);
+        cube.add(LocalDate.of(2025, 4, 2), RollupCube.Direction.EXPENSE, "Transportation", 800, 1);
+
+        cubeDao.writeCube(tempCubeFilePath.toString(), cube);
+        RollupCube loaded = cubeDao.loadCube(tempCubeFilePath.toString());
+
+        assertNotNull(loaded);
+        assertTrue(watermark.matches(loaded.getLedgerWatermark()));
+        Map<String, MonthlySummary> summaries = loaded.toMonthlySummaries();
+        assertEquals(5000.00, summaries.get("2025-03").getTotalIncome(), 0.001);
+        assertEquals(123.45, summaries.get("2025-03").getExpenseByCategory().get("Dining"), 0.001);
+        assertEquals(8.00, summaries.get("2025-04").getTotalExpense(), 0.001);
+        assertEquals(3L, (long) loaded.total(null, null).getExpenseCountByCategory().get("Dining"));
+    }
+
+    @Test
+    void testRemovingTransactionRestoresPreviousState() {
+        RollupCube cube = new RollupCube();
+        LocalDate day = LocalDate.of(2025, 3, 1);
+        cube.add(day, RollupCube.Direction.EXPENSE, "Dining", 1000, 1);
+        cube.add(day, RollupCube.Direction.EXPENSE, "Dining", 250, 1);
+        cube.add(day, RollupCube.Direction.EXPENSE, "Dining", -250, -1);
+        cube.add(day, RollupCube.Direction.EXPENSE, "Dining", -1000, -1);
+
+        assertTrue(cube.isEmpty(), "Zeroed cells and days should be dropped");
+    }
+
+    @Test
+    void testRollUpByGranularityAndRange() {
+        RollupCube cube = new RollupCube();
+        cube.add(LocalDate.of(2024, 12, 30), RollupCube.Direction.EXPENSE, "Groceries", 2000, 1);
+        cube.add(LocalDate.of(2025, 1, 3), RollupCube.Direction.EXPENSE, "Groceries", 3000, 2);
+        cube.add(LocalDate.of(2025, 1, 20), RollupCube.Direction.INCOME, "Salary", 900000, 1);
+
+        SortedMap<String, PeriodTotals> byYear = cube.rollUp(RollupCube.Granularity.YEAR, null, null);
+        assertEquals(2000, byYear.get("2024").getExpenseCents());
+        assertEquals(3000, byYear.get("2025").getExpenseCents());
+        assertEquals(900000, byYear.get("2025").getIncomeCents());
+
+        SortedMap<String, PeriodTotals> januaryDays = cube.rollUp(RollupCube.Granularity.DAY, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31));
+        assertEquals(2, januaryDays.size());
+        assertEquals(2, januaryDays.get("2025-01-03").getExpenseCount());
+
+        PeriodTotals range = cube.total(LocalDate.of(2024, 12, 30), LocalDate.of(2025, 1, 3));
+        assertEquals(5000, range.getExpenseCents());
+        assertEquals(3, range.getExpenseCount());
+        assertEquals(0, range.getIncomeCents());
+    }
+
+    @Test
+    void testOldSummaryLayoutIsNotTreatedAsCube() throws IOException {
+        // Files created before the cube existed contain the monthly rollup header
+        Files.writeString(tempCubeFilePath, "record_type,month_identifier,category,amount_cents,ledger_path,ledger_size,ledger_last_modified,ledger_version\n");
+        assertNull(cubeDao.loadCube(tempCubeFilePath.toString()));
+    }
+}
@@ -0,0 +1,89 @@
+package DAO.Impl;
+
+import DAO.StatisticsStateDao;
+import Utils.HyperLogLog;
+import model.LedgerWatermark;
+import model.UserWeekPartial;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvStatisticsStateDaoTest {
+
+    private StatisticsStateDao stateDao;
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stateDao = new CsvStatisticsStateDao();
+        tempDir = Files.createTempDirectory("test_stats_state_");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (tempDir != null && Files.exists(tempDir)) {
+            try (Stream<Path> paths = Files.walk(tempDir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    void testMissingFilesLoadAsEmpty() throws IOException {
+        assertTrue(stateDao.loadWatermarks(tempDir.resolve("missing_watermarks.csv").toString()).isEmpty());
+        assertTrue(stateDao.loadUserWeekPartials(tempDir.resolve("missing_partials.csv").toString()).isEmpty());
+    }
+
+    @Test
+    void testWatermarksRoundTrip() throws IOException {
+        String filePath = tempDir.resolve("state/ledger_watermarks.csv").toString();
+        LedgerWatermark watermark = new LedgerWatermark("alice", "data/alice.csv", 1234, 1700000000000L, "(dev=1,ino=42)");
+        stateDao.writeWatermarks(filePath, List.of(watermark));
+
+        Map<String, LedgerWatermark> loaded = stateDao.loadWatermarks(filePath);
+        assertEquals(1, loaded.size());
+        assertTrue(watermark.matches(loaded.get("alice")), "Watermark should survive a write/load round trip");
+    }
+
+    @Test
+    void testPartialsRoundTrip() throws IOException {
+        String filePath = tempDir.resolve("state/user_week_partials.csv").toString();
+        HyperLogLog counterparties = new HyperLogLog();
+        counterparties.add("Campus Canteen");
+        counterparties.add("Metro");
+        UserWeekPartial partial = new UserWeekPartial("bob", "2025-W10", 10010, 560, Map.of("餐饮", 30L, "交通", 30L), counterparties);
+        UserWeekPartial incomeOnly = new UserWeekPartial("bob", "2025-W11", 2000, 0, Map.of());
+        stateDao.writeUserWeekPartials(filePath, List.of(partial, incomeOnly));
+
+        List<UserWeekPartial> loaded = stateDao.loadUserWeekPartials(filePath);
+        assertEquals(2, loaded.size());
+        assertEquals("2025-W10", loaded.get(0).getWeekIdentifier());
+        assertEquals(10010, loaded.get(0).getIncomeCents());
+        assertEquals(560, loaded.get(0).getExpenseCents());
+        assertEquals(Map.of("餐饮", 30L, "交通", 30L), loaded.get(0).getExpenseCentsByCategory());
+        assertTrue(loaded.get(1).getExpenseCentsByCategory().isEmpty());
+        assertEquals(counterparties, loaded.get(0).getCounterparties()); // From the binary sidecar
+        assertTrue(loaded.get(1).getCounterparties().isEmpty());
+    }
+
+    @Test
+    void testPartialsWithoutSketchesFailToLoad() throws IOException {
+        String filePath = tempDir.resolve("state/user_week_partials.csv").toString();
+        stateDao.writeUserWeekPartials(filePath, List.of(new UserWeekPartial("bob", "2025-W10", 100, 0, Map.of())));
+        Files.delete(Path.of(CsvStatisticsStateDao.counterpartySketchPath(filePath)));
+
+        // The caller falls back to a full rebuild instead of using partials without counterparties
+        assertThrows(IOException.class, () -> stateDao.loadUserWeekPartials(filePath));
+    }
+}
@@ -0,0 +1,137 @@
+package Service.AIservice;
+
+import model.AiAnalysisState;
+import model.LedgerWatermark;
+import model.MonthlySummary;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiAnalysisStateStoreTest {
+
+    private static final String LEDGER = "user_data/alice_transactions.csv";
+
+    private static MonthlyPromptFragments months(double marchDining, boolean withApril) {
+        Map<String, MonthlySummary> summaries = new LinkedHashMap<>();
+        for (String month : new String[]{"2025-01", "2025-02", "2025-03"}) {
+            MonthlySummary summary = new MonthlySummary(month);
+            summary.addIncome(1000);
+            summary.addExpense(month.equals("2025-03") ? marchDining : 200, "Dining");
+            summaries.put(month, summary);
+        }
+        if (withApril) {
+            MonthlySummary april = new MonthlySummary("2025-04");
+            april.addExpense(80, "Transport");
+            summaries.put("2025-04", april);
+        }
+        return new MonthlyPromptFragments(LedgerWatermark.capture(null, LEDGER), summaries);
+    }
+
+    private static void deleteDirectory(Path directory) {
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    void testSaveAndLoad() throws Exception {
+        Path directory = Files.createTempDirectory("ai_state_test");
+        try {
+            AiAnalysisStateStore store = new AiAnalysisStateStore(directory);
+            Map<String, String> fingerprints = new LinkedHashMap<>();
+            fingerprints.put("2025-01", "0123456789abcdef");
+            fingerprints.put("2025-02", "fedcba9876543210");
+            store.save("alice", LEDGER, new AiAnalysisState("model", "tips-v1", "10/20/x", 1234L, 2, fingerprints,
+                    "Line one\n\nmonth: not a header line\n"));
+
+            AiAnalysisState loaded = store.load("alice", LEDGER, "tips-v1");
+            assertNotNull(loaded);
+            assertEquals("model", loaded.getModelId());
+            assertEquals("10/20/x", loaded.getLedgerVersion());
+            assertEquals(1234L, loaded.getCreatedMillis());
+            assertEquals(2, loaded.getDeltaRuns());
+            assertEquals(fingerprints, loaded.getMonthFingerprints());
+            assertEquals("Line one\n\nmonth: not a header line\n", loaded.getAnalysis());
+
+            // Stored per user and template
+            assertNull(store.load("bob", LEDGER, "tips-v1"));
+            assertNull(store.load("alice", LEDGER, "summary-v1"));
+            store.delete("alice", LEDGER, "tips-v1");
+            assertNull(store.load("alice", LEDGER, "tips-v1"));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    void testFingerprintsOnlyChangeForChangedMonths() {
+        Map<String, String> before = months(300, false).fingerprints(MonthlyPromptFragments.View.FULL);
+        Map<String, String> after = months(350, true).fingerprints(MonthlyPromptFragments.View.FULL);
+
+        assertEquals(List.of("2025-01", "2025-02", "2025-03"), new ArrayList<>(before.keySet()));
+        assertEquals(before.get("2025-01"), after.get("2025-01"));
+        assertEquals(before.get("2025-02"), after.get("2025-02"));
+        assertNotEquals(before.get("2025-03"), after.get("2025-03"));
+        assertTrue(after.containsKey("2025-04"));
+        // Income is not part of the EXPENSES view
+        assertNotEquals(before.get("2025-01"), months(300, false).fingerprints(MonthlyPromptFragments.View.EXPENSES).get("2025-01"));
+    }
+
+    @Test
+    void testFollowUpSendsOnlyChangedMonths() throws Exception {
+        Path directory = Files.createTempDirectory("ai_state_test");
+        List<String> prompts = new ArrayList<>();
+        StubAiClient client = new StubAiClient(1L, StubAiClient.Latency.fixed(0), 0.0, prompt -> {
+            synchronized (prompts) {
+                prompts.add(prompt);
+                return "Analysis #" + prompts.size();
+            }
+        });
+        AiRequestDispatcher dispatcher = new AiRequestDispatcher(2, 1000, 100, 1, 1, 5);
+        try {
+            AITransactionService service = new AITransactionService(null, "alice", client, dispatcher);
+            service.setAnalysisStateStore(new AiAnalysisStateStore(directory));
+            String instructions = "Summarize my spending:\n\n";
+
+            // First run: the full history
+            assertEquals("Analysis #1", service.askAiIncrementally(AiOperation.ANALYSIS, "summary-test", LEDGER, months(300, false),
+                    MonthlyPromptFragments.View.FULL, instructions, null, null, false));
+            assertTrue(prompts.get(0).contains("--- 2025-01 ---"));
+
+            // Nothing changed: the previous analysis is reused without a request
+            assertEquals("Analysis #1", service.askAiIncrementally(AiOperation.ANALYSIS, "summary-test", LEDGER, months(300, false),
+                    MonthlyPromptFragments.View.FULL, instructions, null, null, false));
+            assertEquals(1, prompts.size());
+
+            // March changed and April was added: only those are sent, with the previous analysis
+            assertEquals("Analysis #2", service.askAiIncrementally(AiOperation.ANALYSIS, "summary-test", LEDGER, months(350, true),
+                    MonthlyPromptFragments.View.FULL, instructions, null, null, false));
+            String delta = prompts.get(1);
+            assertTrue(delta.startsWith(instructions));
+            assertTrue(delta.contains("Analysis #1"));
+            assertTrue(delta.contains("--- 2025-03 ---") && delta.contains("--- 2025-04 ---"));
+            assertFalse(delta.contains("--- 2025-01 ---") || delta.contains("--- 2025-02 ---"));
+
+            // Refresh sends the full history again
+            assertEquals("Analysis #3", service.askAiIncrementally(AiOperation.ANALYSIS, "summary-test", LEDGER, months(350, true),
+                    MonthlyPromptFragments.View.FULL, instructions, null, null, true));
+            assertTrue(prompts.get(2).contains("--- 2025-01 ---"));
+            assertFalse(prompts.get(2).contains("Analysis #2"));
+        } finally {
+            dispatcher.shutdown();
+            deleteDirectory(directory);
+        }
+    }
+}
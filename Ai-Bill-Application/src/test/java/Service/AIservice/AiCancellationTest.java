@@ -0,0 +1,58 @@
+package Service.AIservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiCancellationTest {
+
+    @Test
+    void testCancelAbortsRequestAndFreesSlot() throws Exception {
+        // The first request hangs; every later one answers at once
+        AtomicInteger calls = new AtomicInteger();
+        StubAiClient client = new StubAiClient(1L, random -> calls.incrementAndGet() == 1 ? 20_000 : 5, 0.0);
+        AiRequestDispatcher dispatcher = new AiRequestDispatcher(1, 1000, 100, 1, 1, 5); // A single slot
+        try {
+            AITransactionService service = new AITransactionService(null, "alice", client, dispatcher, new AiCircuitBreaker(), false);
+            CompletableFuture<String> slow = service.askAiAsync(AiOperation.ANALYSIS, "Summarize my spending", null, null);
+            while (calls.get() == 0) {
+                Thread.sleep(5); // Wait until the request occupies the slot
+            }
+
+            long start = System.nanoTime();
+            assertTrue(slow.cancel(true));
+            assertThrows(CancellationException.class, slow::join);
+
+            // Only answered in time if the cancelled request gave its slot back
+            String answer = service.askAiAsync(AiOperation.CATEGORY_RECOGNITION, "Return only the type string", null, null)
+                    .get(5, TimeUnit.SECONDS);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            assertEquals("Other Expenses", answer);
+            assertTrue(elapsedMillis < 5_000, "took " + elapsedMillis + " ms");
+            assertEquals(2, client.getRequestCount());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void testTaskCancelledBeforeStartNeverRuns() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        CompletableFuture<String> first = AITransactionService.supplyCancellable("test-task", () -> {
+            runs.incrementAndGet();
+            return blocker.get();
+        });
+        assertTrue(first.cancel(true));
+        assertTrue(first.isCancelled());
+
+        // A task that completes normally still delivers its result
+        assertEquals("done", AITransactionService.supplyCancellable("test-task", () -> "done").get(5, TimeUnit.SECONDS));
+        assertTrue(runs.get() <= 1); // The cancelled task either never ran or was interrupted in blocker.get()
+    }
+}
@@ -0,0 +1,157 @@
+package Service.AIservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiCircuitBreakerTest {
+
+    private final AtomicLong nowNanos = new AtomicLong();
+
+    // 4 calls minimum, opens at 50% failures or 5 in a row, stays open for 10 s
+    private AiCircuitBreaker newBreaker() {
+        return new AiCircuitBreaker(Duration.ofSeconds(60), 4, 0.5, Duration.ofSeconds(10), 5, nowNanos::get);
+    }
+
+    private static String fail() throws IOException {
+        throw new IOException("HTTP 503 Service Unavailable");
+    }
+
+    @Test
+    void testOpensWhenFailureRateReachesThreshold() throws Exception {
+        AiCircuitBreaker breaker = newBreaker();
+
+        assertEquals("ok", breaker.call(() -> "ok"));
+        assertEquals("ok", breaker.call(() -> "ok"));
+        assertThrows(IOException.class, () -> breaker.call(AiCircuitBreakerTest::fail));
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState()); // Only 3 calls so far
+        assertThrows(IOException.class, () -> breaker.call(AiCircuitBreakerTest::fail));
+
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isCallPermitted());
+        AiCircuitOpenException rejected = assertThrows(AiCircuitOpenException.class, () -> breaker.call(() -> "not sent"));
+        assertEquals(10_000, rejected.getRetryAfterMillis());
+        assertEquals(1, breaker.getRejectedCalls());
+        assertFalse(AiRequestDispatcher.isRetryable(rejected));
+    }
+
+    @Test
+    void testOldFailuresLeaveTheWindow() throws Exception {
+        AiCircuitBreaker breaker = newBreaker();
+        assertThrows(IOException.class, () -> breaker.call(AiCircuitBreakerTest::fail));
+        assertThrows(IOException.class, () -> breaker.call(AiCircuitBreakerTest::fail));
+        nowNanos.addAndGet(Duration.ofSeconds(61).toNanos());
+
+        breaker.call(() -> "ok");
+        breaker.call(() -> "ok");
+        breaker.call(() -> "ok");
+        assertThrows(IOException.class, () -> breaker.call(AiCircuitBreakerTest::fail));
+
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState()); // 1 of 4 in the window
+    }
+
+    @Test
+    void testConsecutiveFailuresOpenWhenTooFewCallsFitTheWindow() {
+        // The default settings, with calls as slow as a hanging service's: one failure every 30 s
+        AiCircuitBreaker breaker = new AiCircuitBreaker(AiCircuitBreaker.DEFAULT_WINDOW, AiCircuitBreaker.DEFAULT_MINIMUM_CALLS,
+                AiCircuitBreaker.DEFAULT_FAILURE_RATE_THRESHOLD, AiCircuitBreaker.DEFAULT_OPEN_DURATION,
+                AiCircuitBreaker.DEFAULT_CONSECUTIVE_FAILURES, nowNanos::get);
+        breaker.recordFailure();
+        breaker.recordSuccess(); // Resets the run
+        for (int i = 0; i < AiCircuitBreaker.DEFAULT_CONSECUTIVE_FAILURES - 1; i++) {
+            nowNanos.addAndGet(Duration.ofSeconds(30).toNanos());
+            breaker.recordFailure();
+        }
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+
+        nowNanos.addAndGet(Duration.ofSeconds(30).toNanos());
+        breaker.recordFailure();
+
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenProbe() throws Exception {
+        AiCircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IOException.class, () -> breaker.call(AiCircuitBreakerTest::fail));
+        }
+        nowNanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertTrue(breaker.isCallPermitted());
+
+        // A failed probe opens the breaker again
+        assertThrows(IOException.class, () -> breaker.call(AiCircuitBreakerTest::fail));
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.getState());
+
+        // While the probe runs, other calls fail fast; its success closes the breaker
+        nowNanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        String answer = breaker.call(() -> {
+            assertThrows(AiCircuitOpenException.class, () -> breaker.call(() -> "concurrent"));
+            return "probe";
+        });
+        assertEquals("probe", answer);
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testRequestErrorsDoNotCount() {
+        AiCircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 6; i++) {
+            assertThrows(IllegalArgumentException.class, () -> breaker.call(() -> {
+                throw new IllegalArgumentException("HTTP 400 Bad Request");
+            }));
+        }
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testServiceFailsFastWhileOpen() {
+        StubAiClient client = new StubAiClient(1L, StubAiClient.Latency.fixed(0), 1.0); // Every request fails
+        AiRequestDispatcher dispatcher = new AiRequestDispatcher(1, 1000, 100, 1, 1, 5);
+        try {
+            AiCircuitBreaker breaker = newBreaker();
+            AITransactionService service = new AITransactionService(null, "alice", client, dispatcher, breaker, false);
+            for (int i = 0; i < 4; i++) {
+                assertTrue(service.askAi(AiOperation.CATEGORY_RECOGNITION, "prompt " + i).startsWith("AI request failed"));
+            }
+
+            String answer = service.askAi(AiOperation.CATEGORY_RECOGNITION, "prompt 5");
+
+            assertTrue(answer.startsWith("AI service temporarily unavailable"), answer);
+            assertEquals(4, client.getRequestCount());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void testHangingServiceOpensTheDefaultBreaker() throws Exception {
+        StubAiClient client = new StubAiClient(1L, StubAiClient.Latency.fixed(60_000), 0.0); // Never answers in time
+        AiRequestDispatcher dispatcher = new AiRequestDispatcher(3, 1000, 100, 4, 1, 5);
+        try {
+            AiCircuitBreaker breaker = new AiCircuitBreaker();
+            AITransactionService service = new AITransactionService(null, "alice", client, dispatcher, breaker, false);
+            service.setDeadlines(operation -> Duration.ofMillis(200));
+            for (int i = 0; i < AiCircuitBreaker.DEFAULT_CONSECUTIVE_FAILURES; i++) {
+                assertTrue(service.askAi(AiOperation.CATEGORY_RECOGNITION, "prompt " + i).startsWith("AI request timed out"));
+            }
+            long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos(); // The last timeout is recorded asynchronously
+            while (breaker.getState() != AiCircuitBreaker.State.OPEN && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            long start = System.nanoTime();
+            String answer = service.askAi(AiOperation.CATEGORY_RECOGNITION, "prompt 6");
+
+            assertTrue(answer.startsWith("AI service temporarily unavailable"), answer);
+            assertTrue(System.nanoTime() - start < Duration.ofMillis(100).toNanos());
+            assertEquals(AiCircuitBreaker.DEFAULT_CONSECUTIVE_FAILURES, client.getRequestCount());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package Service.AIservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiHttpSettingsTest {
+
+    @Test
+    void testPerHostLimitNeverExceedsOverallLimit() {
+        AiHttpSettings settings = new AiHttpSettings(5, 300, 4, 8, Duration.ofSeconds(20), Duration.ofSeconds(1800));
+
+        assertEquals(4, settings.getMaxRequests());
+        assertEquals(4, settings.getMaxRequestsPerHost());
+        assertEquals(Duration.ofSeconds(20), settings.getConnectTimeout());
+    }
+
+    @Test
+    void testRejectsNonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AiHttpSettings(0, 300, 64, 8, Duration.ofSeconds(20), Duration.ofSeconds(1800)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AiHttpSettings(5, 300, 64, 0, Duration.ofSeconds(20), Duration.ofSeconds(1800)));
+    }
+
+    @Test
+    void testWarmUpIsNoOpForStub() {
+        StubAiClient client = new StubAiClient(1L, StubAiClient.Latency.fixed(0), 0.0);
+
+        client.warmUp();
+
+        assertEquals(0, client.getRequestCount());
+    }
+}
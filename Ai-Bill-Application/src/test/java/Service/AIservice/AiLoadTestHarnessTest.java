@@ -0,0 +1,66 @@
+package Service.AIservice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiLoadTestHarnessTest {
+
+    private AiRequestDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void testRunsFullPipelineAgainstStub() throws Exception {
+        StubAiClient client = new StubAiClient(1L, StubAiClient.Latency.fixed(5), 0.0);
+        dispatcher = new AiRequestDispatcher(4, 10_000, 10_000, 3, 1, 5);
+
+        AiLoadTestHarness.Report report = new AiLoadTestHarness(client, dispatcher, 20, Duration.ofMillis(500), 20).run();
+
+        assertEquals(10, report.getJobsStarted());
+        assertEquals(10, report.getJobsCompleted());
+        assertEquals(0, report.getJobsFailed());
+        assertTrue(report.getThroughputPerSecond() > 0);
+        assertTrue(report.getP99LatencyMillis() >= report.getP50LatencyMillis());
+        assertEquals(10, client.getRequestCount()); // One batch prompt per job
+        assertTrue(client.getPromptTokens() > 0 && client.getCompletionTokens() > 0);
+    }
+
+    @Test
+    void testInjectedErrorsAreRetried() throws Exception {
+        StubAiClient client = new StubAiClient(7L, StubAiClient.Latency.fixed(1), 0.3);
+        dispatcher = new AiRequestDispatcher(4, 10_000, 10_000, 6, 1, 5);
+
+        AiLoadTestHarness.Report report = new AiLoadTestHarness(client, dispatcher, 50, Duration.ofMillis(400), 5).run();
+
+        assertEquals(20, report.getJobsStarted());
+        assertEquals(20, report.getJobsCompleted());
+        assertTrue(client.getFailureCount() > 0);
+        assertEquals(client.getFailureCount(), report.getDispatchMetrics().getRetries());
+    }
+
+    @Test
+    void testStubIsDeterministicAndStreams() throws Exception {
+        String prompt = "Return only a JSON array\n0|Expense|Shopping|A|B|1.00|WeChat|\n1|Income|Salary|C|D|2.00|Bank|\n";
+        StubAiClient first = new StubAiClient(3L, StubAiClient.Latency.uniform(0, 3), 0.0);
+        StubAiClient second = new StubAiClient(3L, StubAiClient.Latency.uniform(0, 3), 0.0);
+        List<String> deltas = new ArrayList<>();
+
+        String streamed = first.stream(prompt, deltas::add);
+
+        assertEquals("[{\"id\":0,\"category\":\"Other Expenses\"},{\"id\":1,\"category\":\"Other Income\"}]", streamed);
+        assertEquals(streamed, second.complete(prompt));
+        assertTrue(deltas.size() > 1);
+        assertEquals(streamed, String.join("", deltas));
+    }
+}
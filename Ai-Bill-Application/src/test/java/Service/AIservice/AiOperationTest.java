@@ -0,0 +1,57 @@
+package Service.AIservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiOperationTest {
+
+    @Test
+    void testShortOperationsHaveShorterDeadlines() {
+        assertTrue(AiOperation.CATEGORY_RECOGNITION.getDeadline().compareTo(AiOperation.ANALYSIS.getDeadline()) < 0);
+        assertTrue(AiOperation.ANALYSIS.getDeadline().compareTo(AiOperation.SEASONAL_ANALYSIS.getDeadline()) < 0);
+        assertFalse(AiOperation.ANALYSIS.isHedgeable()); // Streamed; a second copy would repeat the text
+    }
+
+    @Test
+    void testSlowShortRequestIsHedged() {
+        // The first MIN_HEDGE_SAMPLES requests are fast; the next one hangs and its hedged copy answers
+        AtomicInteger calls = new AtomicInteger();
+        StubAiClient client = new StubAiClient(1L,
+                random -> calls.incrementAndGet() == AITransactionService.MIN_HEDGE_SAMPLES + 1 ? 20_000 : 5, 0.0);
+        AiRequestDispatcher dispatcher = new AiRequestDispatcher(2, 1000, 100, 1, 1, 5);
+        try {
+            AITransactionService service = new AITransactionService(null, "alice", client, dispatcher, new AiCircuitBreaker(), true);
+            for (int i = 0; i < AITransactionService.MIN_HEDGE_SAMPLES; i++) {
+                service.askAi(AiOperation.CATEGORY_RECOGNITION, "Return only the type string " + i);
+            }
+
+            long start = System.nanoTime();
+            String answer = service.askAi(AiOperation.CATEGORY_RECOGNITION, "Return only the type string slow");
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals("Other Expenses", answer);
+            assertTrue(elapsedMillis < 5_000, "took " + elapsedMillis + " ms");
+            assertEquals(AITransactionService.MIN_HEDGE_SAMPLES + 2, client.getRequestCount());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void testNoHedgeWhenDisabled() {
+        StubAiClient client = new StubAiClient(1L, StubAiClient.Latency.fixed(1), 0.0);
+        AiRequestDispatcher dispatcher = new AiRequestDispatcher(2, 1000, 100, 1, 1, 5);
+        try {
+            AITransactionService service = new AITransactionService(null, "alice", client, dispatcher, new AiCircuitBreaker(), false);
+            for (int i = 0; i < AITransactionService.MIN_HEDGE_SAMPLES + 5; i++) {
+                service.askAi(AiOperation.CATEGORY_RECOGNITION, "Return only the type string " + i);
+            }
+            assertEquals(AITransactionService.MIN_HEDGE_SAMPLES + 5, client.getRequestCount());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package Service.AIservice;
+
+import model.AiDispatchMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiRequestDispatcherTest {
+
+    private AiRequestDispatcher dispatcher;
+
+    // High rate limit and 1 ms backoff so the tests only exercise queuing and retry logic
+    private AiRequestDispatcher newDispatcher(int workers, int maxAttempts) {
+        dispatcher = new AiRequestDispatcher(workers, 1000, 100, maxAttempts, 1, 5);
+        return dispatcher;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void testUsersAreServedRoundRobin() throws Exception {
+        AiRequestDispatcher dispatcher = newDispatcher(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Occupy the only worker so the following requests queue up
+        CompletableFuture<String> blocker = dispatcher.submit("blocker", () -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "blocker";
+        });
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (String name : List.of("A1", "A2", "A3")) {
+            futures.add(dispatcher.submit("alice", () -> { order.add(name); return name; }));
+        }
+        futures.add(dispatcher.submit("bob", () -> { order.add("B1"); return "B1"; }));
+        assertEquals(4, dispatcher.getMetrics().getQueueDepth());
+        assertEquals(2, dispatcher.getMetrics().getQueuedUsers());
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<String> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        // Bob's single request is not stuck behind all of Alice's
+        assertEquals(List.of("A1", "B1", "A2", "A3"), order);
+        assertEquals(0, dispatcher.getMetrics().getQueueDepth());
+    }
+
+    @Test
+    void testConcurrencyIsCapped() throws Exception {
+        AiRequestDispatcher dispatcher = newDispatcher(2, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(dispatcher.submit("user" + (i % 3), () -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return now;
+            }));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertTrue(maxRunning.get() <= 2, "At most 2 requests should run at once, saw " + maxRunning.get());
+        assertEquals(8L, dispatcher.getMetrics().getCompleted());
+    }
+
+    @Test
+    void testRetryableErrorsAreRetried() throws Exception {
+        AiRequestDispatcher dispatcher = newDispatcher(1, 4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = dispatcher.call("alice", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new SocketTimeoutException("timeout");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        AiDispatchMetrics metrics = dispatcher.getMetrics();
+        assertEquals(2L, metrics.getRetries());
+        assertEquals(1L, metrics.getCompleted());
+        assertTrue(metrics.getP95LatencyMillis() >= 0);
+    }
+
+    @Test
+    void testNonRetryableErrorFailsImmediately() {
+        AiRequestDispatcher dispatcher = newDispatcher(1, 4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> future = dispatcher.submit("alice", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("invalid model endpoint");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(1, attempts.get());
+        assertEquals(1L, dispatcher.getMetrics().getFailed());
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        AiRequestDispatcher dispatcher = newDispatcher(1, 3);
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> future = dispatcher.submit("alice", () -> {
+            attempts.incrementAndGet();
+            throw new IOException("connection reset");
+        });
+
+        assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+        assertEquals(2L, dispatcher.getMetrics().getRetries());
+    }
+
+    @Test
+    void testRetryClassification() {
+        assertTrue(AiRequestDispatcher.isRetryable(new RuntimeException("HTTP 429 Too Many Requests")));
+        assertTrue(AiRequestDispatcher.isRetryable(new RuntimeException("wrapped", new SocketTimeoutException("Read timed out"))));
+        assertTrue(AiRequestDispatcher.isRetryable(new RuntimeException("server returned 503")));
+        assertFalse(AiRequestDispatcher.isRetryable(new RuntimeException("HTTP 401 Unauthorized")));
+        assertFalse(AiRequestDispatcher.isRetryable(new IllegalArgumentException("bad prompt")));
+        // A stream that already delivered text must not be replayed, even if it broke off on a timeout
+        assertFalse(AiRequestDispatcher.isRetryable(new AiStreamInterruptedException(42, new SocketTimeoutException("timeout"))));
+    }
+
+    @Test
+    void testBackoffStaysWithinBounds() {
+        AiRequestDispatcher dispatcher = new AiRequestDispatcher(1, 1000, 100, 5, 100, 1000);
+        this.dispatcher = dispatcher;
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long delay = dispatcher.backoffMillis(attempt);
+            assertTrue(delay >= 0 && delay <= Math.min(1000, 100L << (attempt - 1)), "attempt " + attempt + " delay " + delay);
+        }
+    }
+
+    @Test
+    void testDeadlineFreesTheWorker() throws Exception {
+        AiRequestDispatcher dispatcher = newDispatcher(1, 3);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> hanging = dispatcher.submit("alice", () -> {
+            try {
+                Thread.sleep(60_000); // An AI call that never answers
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "too late";
+        }, Duration.ofMillis(100));
+        CompletableFuture<String> next = dispatcher.submit("alice", () -> "next");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> hanging.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof TimeoutException);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals("next", next.get(5, TimeUnit.SECONDS)); // The only worker was freed
+        assertEquals(1L, dispatcher.getMetrics().getFailed());
+    }
+
+    @Test
+    void testBackgroundRequestsYieldToUserRequests() throws Exception {
+        AiRequestDispatcher dispatcher = newDispatcher(2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // One background request occupies a worker; the other must leave the last worker to users
+        CompletableFuture<String> speculative1 = dispatcher.submit("alice", () -> {
+            release.await();
+            order.add("speculative1");
+            return "s1";
+        }, null, true);
+        CompletableFuture<String> speculative2 = dispatcher.submit("alice", () -> {
+            order.add("speculative2");
+            return "s2";
+        }, null, true);
+        CompletableFuture<String> click = dispatcher.submit("alice", () -> {
+            order.add("click");
+            return "c";
+        });
+
+        assertEquals("c", click.get(5, TimeUnit.SECONDS));
+        assertFalse(speculative2.isDone());
+        release.countDown();
+        assertEquals("s1", speculative1.get(5, TimeUnit.SECONDS));
+        assertEquals("s2", speculative2.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("click", "speculative1", "speculative2"), order);
+    }
+
+    @Test
+    void testPromotedBackgroundRequestRunsLikeAUserRequest() throws Exception {
+        AiRequestDispatcher dispatcher = newDispatcher(2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> speculative1 = dispatcher.submit("alice", () -> {
+            release.await();
+            return "s1";
+        }, null, true);
+        CompletableFuture<String> speculative2 = dispatcher.submit("alice", () -> "s2", null, true);
+        Thread.sleep(100);
+        assertFalse(speculative2.isDone()); // Waits for the background slot
+
+        // A user now waits for speculative2: it may use the last worker
+        assertTrue(dispatcher.promote(speculative2));
+        assertEquals("s2", speculative2.get(5, TimeUnit.SECONDS));
+        assertFalse(speculative1.isDone());
+
+        assertFalse(dispatcher.promote(speculative1)); // Already running
+        assertFalse(dispatcher.promote(new CompletableFuture<>()));
+        release.countDown();
+        assertEquals("s1", speculative1.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testSubmitAfterShutdownIsRejected() {
+        AiRequestDispatcher dispatcher = newDispatcher(1, 1);
+        dispatcher.shutdown();
+        CompletableFuture<String> future = dispatcher.submit("alice", () -> "never");
+        assertTrue(future.isCompletedExceptionally());
+    }
+}
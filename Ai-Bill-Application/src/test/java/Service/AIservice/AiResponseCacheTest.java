@@ -0,0 +1,94 @@
+package Service.AIservice;
+
+import model.LedgerWatermark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiResponseCacheTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("test_ai_cache_");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (tempDir != null && Files.exists(tempDir)) {
+            try (Stream<Path> paths = Files.walk(tempDir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static long cacheFileCount(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testKeyDependsOnLedgerVersionAndParameters() {
+        LedgerWatermark ledger = new LedgerWatermark(null, "data/alice.csv", 1234, 1700000000000L, "(dev=1,ino=42)");
+        LedgerWatermark edited = new LedgerWatermark(null, "data/alice.csv", 1300, 1700000005000L, "(dev=1,ino=43)");
+
+        String key = AiResponseCache.key("model", "personal-summary-v1", ledger);
+        assertEquals(key, AiResponseCache.key("model", "personal-summary-v1", ledger));
+        assertNotEquals(key, AiResponseCache.key("model", "personal-summary-v1", edited));
+        assertNotEquals(key, AiResponseCache.key("model", "savings-goals-v1", ledger));
+        assertNotEquals(key, AiResponseCache.key("other-model", "personal-summary-v1", ledger));
+        assertNotEquals(AiResponseCache.key("model", "t", ledger, "ab", "c"), AiResponseCache.key("model", "t", ledger, "a", "bc"));
+        assertEquals(AiResponseCache.key("model", "t", ledger, "request", null), AiResponseCache.key("model", "t", ledger, "request", null));
+    }
+
+    @Test
+    void testAnswerSurvivesRestartThroughDiskStore() {
+        AiResponseCache cache = new AiResponseCache(tempDir, 10, 10, Duration.ofHours(1));
+        assertNull(cache.get("k1"));
+        cache.put("k1", "You spent most on food.\nConsider cooking at home.");
+        assertEquals("You spent most on food.\nConsider cooking at home.", cache.get("k1"));
+
+        // A new instance has an empty memory level and must read the answer from disk
+        AiResponseCache restarted = new AiResponseCache(tempDir, 10, 10, Duration.ofHours(1));
+        assertEquals("You spent most on food.\nConsider cooking at home.", restarted.get("k1"));
+    }
+
+    @Test
+    void testExpiredAnswersAreNotReturned() throws InterruptedException {
+        AiResponseCache cache = new AiResponseCache(tempDir, 10, 10, Duration.ofMillis(20));
+        cache.put("k1", "old answer");
+        Thread.sleep(50);
+        assertNull(cache.get("k1"));
+        assertNull(new AiResponseCache(tempDir, 10, 10, Duration.ofMillis(20)).get("k1"));
+    }
+
+    @Test
+    void testDiskStoreIsBounded() throws IOException {
+        AiResponseCache cache = new AiResponseCache(tempDir, 10, 3, Duration.ofHours(1));
+        for (int i = 0; i < 6; i++) {
+            cache.put("k" + i, "answer " + i);
+        }
+        assertEquals(3, cacheFileCount(tempDir));
+    }
+
+    @Test
+    void testInvalidateRemovesBothLevels() {
+        AiResponseCache cache = new AiResponseCache(tempDir, 10, 10, Duration.ofHours(1));
+        cache.put("k1", "answer");
+        cache.invalidate("k1");
+        assertNull(cache.get("k1"));
+        assertNull(new AiResponseCache(tempDir, 10, 10, Duration.ofHours(1)).get("k1"));
+    }
+}
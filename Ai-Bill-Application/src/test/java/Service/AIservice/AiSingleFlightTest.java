@@ -0,0 +1,174 @@
+package Service.AIservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiSingleFlightTest {
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not reached in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testConcurrentIdenticalCallsShareOneRequest() throws Exception {
+        AiSingleFlight singleFlight = new AiSingleFlight();
+        CompletableFuture<String> request = new CompletableFuture<>();
+        AtomicInteger starts = new AtomicInteger();
+        String key = AiSingleFlight.key("model", "Summarize recent activity");
+
+        ExecutorService callers = Executors.newFixedThreadPool(5);
+        List<Future<String>> answers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            answers.add(callers.submit(() -> singleFlight.call(key, sink -> {
+                starts.incrementAndGet();
+                return request;
+            }, null)));
+        }
+        waitUntil(() -> singleFlight.getStartedCount() + singleFlight.getCoalescedCount() == 5);
+        request.complete("answer");
+
+        for (Future<String> answer : answers) {
+            assertEquals("answer", answer.get(5, TimeUnit.SECONDS));
+        }
+        callers.shutdown();
+        assertEquals(1, starts.get());
+        assertEquals(4, singleFlight.getCoalescedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void testKeyIgnoresWhitespaceDifferences() {
+        assertEquals(AiSingleFlight.key("m", "a  b\nc "), AiSingleFlight.key("m", " a b c"));
+        assertNotEquals(AiSingleFlight.key("m", "a b c"), AiSingleFlight.key("m", "a b d"));
+        assertNotEquals(AiSingleFlight.key("m1", "a b c"), AiSingleFlight.key("m2", "a b c"));
+    }
+
+    @Test
+    void testLateStreamingJoinerGetsReplayAndLaterDeltas() throws Exception {
+        AiSingleFlight singleFlight = new AiSingleFlight();
+        CompletableFuture<String> request = new CompletableFuture<>();
+        AtomicReference<java.util.function.Consumer<String>> sink = new AtomicReference<>();
+        StringBuffer leaderText = new StringBuffer();
+        StringBuffer joinerText = new StringBuffer();
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<String> leader = callers.submit(() -> singleFlight.call("k", s -> {
+            sink.set(s);
+            return request;
+        }, leaderText::append));
+        waitUntil(() -> sink.get() != null);
+        sink.get().accept("Hello");
+
+        Future<String> joiner = callers.submit(() -> singleFlight.call("k", s -> {
+            throw new AssertionError("Must not start a second request");
+        }, joinerText::append));
+        waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+        sink.get().accept(", world");
+        request.complete("Hello, world");
+
+        assertEquals("Hello, world", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("Hello, world", joiner.get(5, TimeUnit.SECONDS));
+        assertEquals("Hello, world", leaderText.toString());
+        assertEquals("Hello, world", joinerText.toString());
+        callers.shutdown();
+    }
+
+    @Test
+    void testStreamingCallerJoiningBackgroundLeaderIsStreamedAndPromotes() throws Exception {
+        AiSingleFlight singleFlight = new AiSingleFlight();
+        CompletableFuture<String> request = new CompletableFuture<>();
+        AtomicReference<java.util.function.Consumer<String>> sink = new AtomicReference<>();
+        List<CompletableFuture<String>> promoted = new CopyOnWriteArrayList<>();
+        StringBuffer joinerText = new StringBuffer();
+
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        // A background leader that does not stream itself still streams into the flight
+        Future<String> leader = callers.submit(() -> singleFlight.call("k", s -> {
+            assertNotNull(s);
+            sink.set(s);
+            return request;
+        }, null, promoted::add));
+        waitUntil(() -> sink.get() != null);
+        sink.get().accept("Hello");
+
+        // Another background caller does not promote the request
+        Future<String> backgroundJoiner = callers.submit(() -> singleFlight.call("k", s -> {
+            throw new AssertionError("Must not start a second request");
+        }, null, promoted::add));
+        waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+        assertTrue(promoted.isEmpty());
+
+        Future<String> joiner = callers.submit(() -> singleFlight.call("k", s -> {
+            throw new AssertionError("Must not start a second request");
+        }, joinerText::append));
+        waitUntil(() -> singleFlight.getCoalescedCount() == 2);
+        assertEquals(List.of(request), promoted);
+        sink.get().accept(", world");
+        request.complete("Hello, world");
+
+        assertEquals("Hello, world", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("Hello, world", backgroundJoiner.get(5, TimeUnit.SECONDS));
+        assertEquals("Hello, world", joiner.get(5, TimeUnit.SECONDS));
+        assertEquals("Hello, world", joinerText.toString());
+        assertEquals(1, promoted.size());
+        callers.shutdown();
+    }
+
+    @Test
+    void testRequestIsCancelledOnlyWhenLastWaiterLeaves() throws Exception {
+        AiSingleFlight singleFlight = new AiSingleFlight();
+        CompletableFuture<String> request = new CompletableFuture<>();
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<String> first = callers.submit(() -> singleFlight.call("k", s -> request, null));
+        waitUntil(() -> singleFlight.getStartedCount() == 1);
+        Future<String> second = callers.submit(() -> singleFlight.call("k", s -> request, null));
+        waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+
+        first.cancel(true); // Interrupts the first caller
+        Thread.sleep(50);
+        assertFalse(request.isCancelled());
+
+        second.cancel(true);
+        waitUntil(request::isCancelled);
+        waitUntil(() -> singleFlight.getInFlightCount() == 0);
+        callers.shutdown();
+    }
+
+    @Test
+    void testFailureReachesEveryCallerAndNextCallStartsAgain() throws Exception {
+        AiSingleFlight singleFlight = new AiSingleFlight();
+        CompletableFuture<String> request = new CompletableFuture<>();
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<String> first = callers.submit(() -> singleFlight.call("k", s -> request, null));
+        waitUntil(() -> singleFlight.getStartedCount() == 1);
+        Future<String> second = callers.submit(() -> singleFlight.call("k", s -> request, null));
+        waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+        request.completeExceptionally(new IOException("connection reset"));
+
+        for (Future<String> caller : List.of(first, second)) {
+            ExecutionException error = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+            assertTrue(error.getCause() instanceof IOException);
+        }
+        callers.shutdown();
+
+        // Nothing is remembered after completion
+        assertEquals("fresh", singleFlight.call("k", s -> CompletableFuture.completedFuture("fresh"), null));
+        assertEquals(2, singleFlight.getStartedCount());
+    }
+}
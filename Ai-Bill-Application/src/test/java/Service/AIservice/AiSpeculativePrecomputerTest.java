@@ -0,0 +1,102 @@
+package Service.AIservice;
+
+import Utils.LedgerChangeNotifier;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AiSpeculativePrecomputerTest {
+
+    private static final String LEDGER = "user_data/speculative_test_transactions.csv";
+
+    @Test
+    void testRunsOnceAfterChangesSettle() throws Exception {
+        AtomicInteger summaries = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        Map<String, Callable<?>> analyses = new LinkedHashMap<>();
+        analyses.put("summary", summaries::incrementAndGet);
+        analyses.put("budget", () -> {
+            done.countDown();
+            return null;
+        });
+        AiSpeculativePrecomputer precomputer = new AiSpeculativePrecomputer(LEDGER, Duration.ofMillis(300), analyses);
+        try {
+            precomputer.start();
+            // A burst of changes (e.g. an import) only pushes the run back
+            for (int i = 0; i < 5; i++) {
+                LedgerChangeNotifier.fireLedgerChanged(LEDGER);
+                Thread.sleep(50);
+            }
+            LedgerChangeNotifier.fireLedgerChanged("user_data/someone_else.csv"); // Other ledgers are ignored
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(1, summaries.get());
+            assertEquals(2L, precomputer.getCompletedAnalyses());
+        } finally {
+            precomputer.stop();
+        }
+    }
+
+    @Test
+    void testLedgerChangeCancelsRunningSpeculation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Map<String, Callable<?>> analyses = new LinkedHashMap<>();
+        analyses.put("summary", () -> {
+            if (runs.incrementAndGet() > 1) {
+                return "fresh";
+            }
+            started.countDown();
+            try {
+                Thread.sleep(60_000); // An AI request that is still running
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "stale";
+        });
+        AiSpeculativePrecomputer precomputer = new AiSpeculativePrecomputer(LEDGER, Duration.ofMillis(10), analyses);
+        try {
+            precomputer.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            LedgerChangeNotifier.fireLedgerChanged(LEDGER);
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            assertEquals(1L, precomputer.getCancelledRuns());
+
+            // The data settled again: a new speculation runs on the new data
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (precomputer.getCompletedAnalyses() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1L, precomputer.getCompletedAnalyses());
+        } finally {
+            precomputer.stop();
+        }
+    }
+
+    @Test
+    void testStopCancelsScheduledSpeculation() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        Map<String, Callable<?>> analyses = new LinkedHashMap<>();
+        analyses.put("summary", runs::incrementAndGet);
+        AiSpeculativePrecomputer precomputer = new AiSpeculativePrecomputer(LEDGER, Duration.ofMillis(200), analyses);
+        precomputer.start();
+        precomputer.stop(); // e.g. the user logged out right away
+
+        LedgerChangeNotifier.fireLedgerChanged(LEDGER);
+        Thread.sleep(400);
+        assertEquals(0, runs.get());
+        assertEquals(1L, precomputer.getCancelledRuns());
+    }
+}
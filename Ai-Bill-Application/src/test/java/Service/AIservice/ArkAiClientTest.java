@@ -0,0 +1,104 @@
+package Service.AIservice;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArkAiClientTest {
+
+    private static final AiHttpSettings SETTINGS = new AiHttpSettings(5, 300, 64, 8, Duration.ofSeconds(5), Duration.ofSeconds(5));
+
+    private MockWebServer server;
+    private HandshakeCertificates clientCertificates;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // HTTPS, so the test covers the TLS part of the connection address, not just host and port
+        String localhost = InetAddress.getByName("localhost").getCanonicalHostName();
+        HeldCertificate certificate = new HeldCertificate.Builder().addSubjectAlternativeName(localhost).build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder().heldCertificate(certificate).build();
+        clientCertificates = new HandshakeCertificates.Builder().addTrustedCertificate(certificate.certificate()).build();
+        server = new MockWebServer();
+        server.useHttps(serverCertificates.sslSocketFactory(), false);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private ArkAiClient newClient() {
+        OkHttpClient.Builder trustingBuilder = new OkHttpClient.Builder()
+                .sslSocketFactory(clientCertificates.sslSocketFactory(), clientCertificates.trustManager());
+        return new ArkAiClient("test-key", server.url("/api/v3").toString(), "test-model", SETTINGS, trustingBuilder);
+    }
+
+    private static String chunk(String content) {
+        return "data: {\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"test-model\","
+                + "\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"" + content + "\"}}]}\n\n";
+    }
+
+    @Test
+    void testCompletionReusesTheWarmedUpConnection() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404)); // The warm-up's answer does not matter
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody(chunk("Din") + chunk("ing") + "data: [DONE]\n\n"));
+        ArkAiClient client = newClient();
+
+        client.warmUp();
+        assertEquals("Dining", client.complete("Classify: lunch at the canteen"));
+
+        RecordedRequest warmUp = server.takeRequest(5, TimeUnit.SECONDS);
+        RecordedRequest completion = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals("HEAD", warmUp.getMethod());
+        assertEquals("POST", completion.getMethod());
+        assertEquals("Bearer test-key", completion.getHeader("Authorization"));
+        // Sequence numbers count requests per connection: 1 means the completion went over the warm-up's connection
+        assertEquals(0, warmUp.getSequenceNumber());
+        assertEquals(1, completion.getSequenceNumber());
+    }
+
+    @Test
+    void testInterruptCancelsTheHttpCall() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE)); // Never answers
+        ArkAiClient client = newClient();
+        AtomicReference<Exception> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                client.complete("Classify: lunch at the canteen");
+            } catch (Exception e) {
+                thrown.set(e);
+            }
+        });
+        caller.start();
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS)); // The request is on the wire
+
+        caller.interrupt();
+        caller.join(2_000);
+
+        assertFalse(caller.isAlive());
+        assertTrue(thrown.get() instanceof InterruptedException);
+        // The call itself was cancelled, not left waiting for the 5 s read timeout
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (client.runningCallCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.runningCallCount());
+    }
+}
@@ -0,0 +1,113 @@
+package Service.AIservice;
+
+import model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchTransactionRecognizerTest {
+
+    private static final Pattern ROW_ID = Pattern.compile("(?m)^(\\d+)\\|");
+
+    private static List<Transaction> transactions(int count) {
+        List<Transaction> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new Transaction("2025-03-01 12:00", "Shopping", "Shop " + i, "Item " + i, "Expense",
+                    10 + i, "Alipay", "Paid", "ORDER" + i, "M" + i, ""));
+        }
+        return list;
+    }
+
+    private static List<Integer> idsIn(String prompt) {
+        List<Integer> ids = new ArrayList<>();
+        Matcher matcher = ROW_ID.matcher(prompt);
+        while (matcher.find()) {
+            ids.add(Integer.parseInt(matcher.group(1)));
+        }
+        return ids;
+    }
+
+    private static String answerFor(List<Integer> ids, String category) {
+        StringJoiner json = new StringJoiner(",", "[", "]");
+        for (Integer id : ids) {
+            json.add("{\"id\":" + id + ",\"category\":\"" + category + "\"}");
+        }
+        return json.toString();
+    }
+
+    @Test
+    void testPacksManyRowsPerRequest() {
+        AtomicInteger calls = new AtomicInteger();
+        BatchTransactionRecognizer recognizer = new BatchTransactionRecognizer(prompt -> {
+            calls.incrementAndGet();
+            return answerFor(idsIn(prompt), "Dining");
+        }, 100_000, 50, 3);
+
+        Map<Integer, String> result = recognizer.recognize(transactions(120));
+
+        assertEquals(120, result.size());
+        assertEquals(3, calls.get()); // 50 + 50 + 20 rows
+        assertEquals("Dining", result.get(119));
+    }
+
+    @Test
+    void testRetriesOnlyInvalidAndMissingRows() {
+        Queue<List<Integer>> prompts = new ConcurrentLinkedQueue<>();
+        BatchTransactionRecognizer recognizer = new BatchTransactionRecognizer(prompt -> {
+            List<Integer> ids = idsIn(prompt);
+            prompts.add(ids);
+            if (prompts.size() == 1) {
+                // Row 0 valid (different case), row 1 unknown label, row 2 missing, wrapped in a code fence
+                return "```json\n[{\"id\":0,\"category\":\"dining\"},{\"id\":1,\"category\":\"Snacks\"}]\n```";
+            }
+            return answerFor(ids, "Transportation");
+        }, 100_000, 100, 3);
+
+        Map<Integer, String> result = recognizer.recognize(transactions(3));
+
+        assertEquals(2, prompts.size());
+        assertEquals(List.of(1, 2), new ArrayList<>(prompts).get(1));
+        assertEquals("Dining", result.get(0));
+        assertEquals("Transportation", result.get(1));
+        assertEquals("Transportation", result.get(2));
+    }
+
+    @Test
+    void testGivesUpAfterMaxRounds() {
+        AtomicInteger calls = new AtomicInteger();
+        BatchTransactionRecognizer recognizer = new BatchTransactionRecognizer(prompt -> {
+            calls.incrementAndGet();
+            return "Error: AI service unavailable";
+        }, 100_000, 100, 2);
+
+        Map<Integer, String> result = recognizer.recognize(transactions(5));
+
+        assertTrue(result.isEmpty());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testBatchesRespectTokenBudget() {
+        BatchTransactionRecognizer recognizer = new BatchTransactionRecognizer(prompt -> "[]", 1000, 1000, 1);
+        List<Transaction> list = transactions(200);
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            all.add(i);
+        }
+
+        List<List<Integer>> batches = recognizer.packBatches(list, all);
+
+        assertTrue(batches.size() > 1);
+        int packed = 0;
+        for (List<Integer> batch : batches) {
+            packed += batch.size();
+        }
+        assertEquals(200, packed);
+    }
+}
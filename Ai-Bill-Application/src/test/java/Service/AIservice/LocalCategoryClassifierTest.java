@@ -0,0 +1,69 @@
+package Service.AIservice;
+
+import model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalCategoryClassifierTest {
+
+    private static Transaction tx(String type, String counterparty, String commodity, String inOut) {
+        return new Transaction("2025-03-01 12:00", type, counterparty, commodity, inOut,
+                20.0, "WeChat", "Paid", "", "", "");
+    }
+
+    private static List<Transaction> history() {
+        List<Transaction> history = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            history.add(tx("Dining", "Campus Canteen", "Lunch set " + i, "Expense"));
+            history.add(tx("Transportation", "Metro Line " + i, "Metro ticket", "Expense"));
+            history.add(tx("Groceries", "FreshMart", "Vegetables and fruit", "Expense"));
+        }
+        history.add(tx("Part-time Income", "Tutoring Center", "Tutoring fee", "Income"));
+        history.add(tx("Salary", "Company A", "March salary", "Income"));
+        history.add(tx("Shopping", "Unknown Shop", "Not a standard category", "Expense")); // Ignored
+        return history;
+    }
+
+    @Test
+    void testKnownCounterpartyIsClassifiedConfidently() {
+        LocalCategoryClassifier classifier = LocalCategoryClassifier.train(history(), 0.8);
+
+        LocalCategoryClassifier.Prediction prediction = classifier.predict(tx("", "campus canteen", "Dinner", "Expense"));
+
+        assertEquals("Dining", prediction.getCategory());
+        assertEquals("counterparty", prediction.getSource());
+        assertEquals("Dining", classifier.classify(tx("", "Campus Canteen", "Dinner", "Expense")));
+        assertEquals(17, classifier.getTrainedSamples());
+    }
+
+    @Test
+    void testNgramsClassifyNewCounterparty() {
+        LocalCategoryClassifier classifier = LocalCategoryClassifier.train(history(), 0.8);
+
+        // Never-seen counterparty, but the commodity text matches earlier metro rides
+        assertEquals("Transportation", classifier.classify(tx("", "Metro Line 9", "Metro ticket", "Expense")));
+    }
+
+    @Test
+    void testDirectionLimitsCandidates() {
+        LocalCategoryClassifier classifier = LocalCategoryClassifier.train(history(), 0.0);
+
+        // Same counterparty as expenses, but an income can only get an income (or special) category
+        LocalCategoryClassifier.Prediction prediction = classifier.predict(tx("", "Campus Canteen", "Tutoring fee", "Income"));
+
+        assertNotNull(prediction);
+        assertTrue(List.of("Part-time Income", "Salary").contains(prediction.getCategory()));
+    }
+
+    @Test
+    void testUnknownTransactionFallsBelowThreshold() {
+        LocalCategoryClassifier classifier = LocalCategoryClassifier.train(history(), 0.8);
+
+        assertNull(classifier.classify(tx("", "Bookstore", "Textbook", "Expense")));
+        assertNull(LocalCategoryClassifier.train(new ArrayList<>(), 0.8).predict(tx("", "Campus Canteen", "Lunch", "Expense")));
+    }
+}
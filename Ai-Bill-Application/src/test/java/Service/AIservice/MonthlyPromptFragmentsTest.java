@@ -0,0 +1,98 @@
+package Service.AIservice;
+
+import model.MonthlySummary;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MonthlyPromptFragmentsTest {
+
+    private static Map<String, MonthlySummary> summaries() {
+        MonthlySummary march = new MonthlySummary("2025-03");
+        march.addIncome(1500);
+        march.addExpense(30.5, "Dining");
+        march.addExpense(120, "Shopping");
+        MonthlySummary february = new MonthlySummary("2025-02");
+        february.addIncome(100);
+        Map<String, MonthlySummary> summaries = new HashMap<>();
+        summaries.put("2025-03", march);
+        summaries.put("2025-02", february);
+        return summaries;
+    }
+
+    @Test
+    void testViewsShareMonthLines() throws Exception {
+        MonthlyPromptFragments months = MonthlyPromptFragments.forLedger(null, MonthlyPromptFragmentsTest::summaries);
+
+        assertEquals(2, months.getMonthCount());
+        assertEquals("--- 2025-02 ---\n"
+                + "  Total Income: 100.00 CNY\n"
+                + "  Total Expense: 0.00 CNY\n"
+                + "  Net (Income - Expense): 100.00 CNY\n"
+                + "  Expense Breakdown:\n"
+                + "    (No expenses)\n"
+                + "\n"
+                + "--- 2025-03 ---\n"
+                + "  Total Income: 1500.00 CNY\n"
+                + "  Total Expense: 150.50 CNY\n"
+                + "  Net (Income - Expense): 1349.50 CNY\n"
+                + "  Expense Breakdown:\n"
+                + "    Shopping: 120.00 CNY\n"
+                + "    Dining: 30.50 CNY\n"
+                + "\n", months.render(MonthlyPromptFragments.View.FULL));
+        assertTrue(months.render(MonthlyPromptFragments.View.TOTALS).contains("  Net (Income - Expense): 100.00 CNY\n\n--- 2025-03 ---\n"));
+        assertFalse(months.render(MonthlyPromptFragments.View.TOTALS).contains("Breakdown"));
+        assertFalse(months.render(MonthlyPromptFragments.View.EXPENSES).contains("Income"));
+        assertSame(months.render(MonthlyPromptFragments.View.FULL), months.render(MonthlyPromptFragments.View.FULL));
+    }
+
+    @Test
+    void testAmountsMatchStringFormat() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            double amount = Math.round(random.nextGaussian() * 1_000_000) / 100.0 * (i % 3 == 0 ? 1 : 0.37);
+            String expected = String.format("%.2f", amount);
+            if (expected.equals("-0.00")) {
+                expected = "0.00";
+            }
+            assertEquals(expected, MonthlyPromptFragments.appendAmount(new StringBuilder(), amount).toString(), "amount " + amount);
+        }
+    }
+
+    @Test
+    void testRebuiltOnlyWhenLedgerChanges() throws Exception {
+        Path ledger = Files.createTempFile("test_prompt_fragments_", ".csv");
+        Files.writeString(ledger, "header\n");
+        AtomicInteger loads = new AtomicInteger();
+        try {
+            MonthlyPromptFragments first = MonthlyPromptFragments.forLedger(ledger.toString(), () -> {
+                loads.incrementAndGet();
+                return summaries();
+            });
+            MonthlyPromptFragments second = MonthlyPromptFragments.forLedger(ledger.toString(), () -> {
+                loads.incrementAndGet();
+                return summaries();
+            });
+            assertSame(first, second);
+            assertEquals(1, loads.get());
+
+            Files.writeString(ledger, "header\nrow\n"); // Size changes, so does the watermark
+            MonthlyPromptFragments third = MonthlyPromptFragments.forLedger(ledger.toString(), () -> {
+                loads.incrementAndGet();
+                return new HashMap<>();
+            });
+            assertNotSame(first, third);
+            assertTrue(third.isEmpty());
+            assertEquals(2, loads.get());
+        } finally {
+            Files.deleteIfExists(ledger);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package Service.AIservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromptBudgeterTest {
+
+    private static final List<String> HEADER = List.of("Analysis Time Range: 2025/01/01 00:00 - 2025/03/31 23:59");
+
+    // 300 counterparties over 6 categories, spread over the given number of days from 2025/01/01 (a Wednesday)
+    private static List<PromptBudgeter.Entry> heavyUser(int days) {
+        String[] categories = {"Dining", "Groceries", "Transportation", "Entertainment", "Education", "Salary"};
+        List<PromptBudgeter.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String category = categories[i % categories.length];
+            double amount = category.equals("Salary") ? 1000 : -(10 + i);
+            entries.add(new PromptBudgeter.Entry("Counterparty " + i, category, LocalDate.of(2025, 1, 1).plusDays(i % days), amount));
+        }
+        return entries;
+    }
+
+    private static boolean anyStartsWith(List<String> lines, String prefix) {
+        return lines.stream().anyMatch(line -> line.startsWith(prefix));
+    }
+
+    @Test
+    void testLargeBudgetKeepsTopCounterpartiesAndFoldsTailPerCategory() {
+        PromptBudgeter.Result result = new PromptBudgeter(100_000, 20).compact(HEADER, heavyUser(90));
+
+        assertEquals(PromptBudgeter.Level.COUNTERPARTY, result.getLevel());
+        assertEquals(HEADER.get(0), result.getLines().get(0));
+        assertEquals(20, result.getLines().stream().filter(line -> line.startsWith("Counterparty: ")).count());
+        assertTrue(anyStartsWith(result.getLines(), "Other "));
+        assertTrue(result.getLines().stream().anyMatch(line -> line.contains(" in Groceries: ")));
+    }
+
+    @Test
+    void testShrinkingBudgetCompactsProgressively() {
+        List<PromptBudgeter.Entry> entries = heavyUser(10); // Two weeks, so week lines are cheaper than counterparty lines
+
+        PromptBudgeter.Result fewerCounterparties = new PromptBudgeter(400, 20).compact(HEADER, entries);
+        assertEquals(PromptBudgeter.Level.COUNTERPARTY, fewerCounterparties.getLevel());
+        assertTrue(fewerCounterparties.getLines().stream().filter(line -> line.startsWith("Counterparty: ")).count() < 20);
+
+        PromptBudgeter.Result weeks = new PromptBudgeter(230, 20).compact(HEADER, entries);
+        assertEquals(PromptBudgeter.Level.CATEGORY_AND_WEEK, weeks.getLevel());
+        assertTrue(anyStartsWith(weeks.getLines(), "Week of "));
+
+        PromptBudgeter.Result categories = new PromptBudgeter(180, 20).compact(HEADER, entries);
+        assertEquals(PromptBudgeter.Level.CATEGORY, categories.getLevel());
+        assertEquals(1 + 6, categories.getLines().size());
+
+        assertTrue(fewerCounterparties.getEstimatedTokens() <= 400);
+        assertTrue(weeks.getEstimatedTokens() <= 230);
+        assertTrue(categories.getEstimatedTokens() <= 180);
+    }
+
+    @Test
+    void testTinyBudgetFoldsSmallestCategories() {
+        PromptBudgeter.Result result = new PromptBudgeter(70, 20).compact(HEADER, heavyUser(90));
+
+        assertEquals(PromptBudgeter.Level.TRUNCATED_CATEGORY, result.getLevel());
+        assertTrue(result.getEstimatedTokens() <= 70);
+        assertTrue(anyStartsWith(result.getLines(), "Category: Salary")); // Largest volume is kept
+        assertTrue(result.getLines().get(result.getLines().size() - 1).contains("smaller categories combined"));
+    }
+
+    @Test
+    void testEstimateTokensCountsCjkPerCharacter() {
+        assertEquals(0, PromptBudgeter.estimateTokens(""));
+        assertEquals(2, PromptBudgeter.estimateTokens("abcdefgh"));
+        assertEquals(4, PromptBudgeter.estimateTokens("午餐外卖"));
+    }
+}
@@ -0,0 +1,83 @@
+package Service.Impl;
+
+import DAO.Impl.CsvSummaryStatisticDao;
+import DAO.Impl.CsvTransactionDao;
+import DAO.Impl.CsvUserDao;
+import model.SummaryStatistic;
+import Constants.ConfigConstants;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatisticsSchedulerTest {
+
+    private StatisticsScheduler scheduler;
+
+    // Service stub that counts runs and can block inside a run
+    private static class CountingStatisticService extends SummaryStatisticService {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch firstRunStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstRun = new CountDownLatch(1);
+
+        CountingStatisticService() {
+            super(new CsvUserDao(ConfigConstants.USERS_CSV_PATH), new CsvTransactionDao(), new CsvSummaryStatisticDao());
+        }
+
+        @Override
+        public void generateAndSaveWeeklyStatistics() throws Exception {
+            if (runs.incrementAndGet() == 1) {
+                firstRunStarted.countDown();
+                releaseFirstRun.await(5, TimeUnit.SECONDS);
+            }
+        }
+
+        @Override
+        public List<SummaryStatistic> getAllSummaryStatistics() {
+            List<SummaryStatistic> stats = new ArrayList<>();
+            stats.add(new SummaryStatistic("2025-W" + runs.get(), 1, 1, "餐饮", 1, 1, "ts"));
+            return stats;
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    void testRequestsWhileRunningAreCoalescedIntoOneRun() throws Exception {
+        CountingStatisticService service = new CountingStatisticService();
+        scheduler = new StatisticsScheduler(service);
+
+        CompletableFuture<List<SummaryStatistic>> first = scheduler.requestRun();
+        assertTrue(service.firstRunStarted.await(5, TimeUnit.SECONDS));
+
+        // Three requests while the first run is in progress share one queued run
+        CompletableFuture<List<SummaryStatistic>> second = scheduler.requestRun();
+        CompletableFuture<List<SummaryStatistic>> third = scheduler.requestRun();
+        CompletableFuture<List<SummaryStatistic>> fourth = scheduler.requestRun();
+        assertSame(second, third);
+        assertSame(second, fourth);
+        assertNotSame(first, second);
+
+        service.releaseFirstRun.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        List<SummaryStatistic> result = second.get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, service.runs.get(), "Overlapping requests should be coalesced into a single extra run");
+        assertEquals("2025-W2", result.get(0).getWeekIdentifier());
+        assertSame(result, scheduler.getLatestStatistics(), "Latest result should be the one produced by the last run");
+        assertNotNull(scheduler.getLatestRefreshTime());
+    }
+}
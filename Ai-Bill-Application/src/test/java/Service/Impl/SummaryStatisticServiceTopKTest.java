@@ -0,0 +1,187 @@
+package Service.Impl;
+
+import DAO.Impl.BinaryHeavyHitterIndexDao;
+import DAO.Impl.CsvTransactionDao;
+import DAO.Impl.CsvUserDao;
+import DAO.StatisticsStateDao;
+import DAO.SummaryStatisticDao;
+import model.HeavyHitter;
+import model.LedgerWatermark;
+import model.SummaryStatistic;
+import model.Transaction;
+import model.User;
+import model.UserWeekPartial;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SummaryStatisticServiceTopKTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, List<Transaction>> ledgers = new HashMap<>(); // Ledger path -> transactions
+    private final Map<String, Integer> scans = new HashMap<>(); // Ledger path -> times it was read
+    private final List<User> users = new ArrayList<>();
+    private SummaryStatisticService service;
+
+    // Reads ledgers from memory and counts the reads
+    private class InMemoryTransactionDao extends CsvTransactionDao {
+        @Override
+        public int streamFromCSV(String filePath, Consumer<Transaction> consumer) {
+            scans.merge(filePath, 1, Integer::sum);
+            ledgers.get(filePath).forEach(consumer);
+            return ledgers.get(filePath).size();
+        }
+    }
+
+    private static class InMemorySummaryStatisticDao implements SummaryStatisticDao {
+        private List<SummaryStatistic> statistics = new ArrayList<>();
+
+        @Override
+        public List<SummaryStatistic> loadAllStatistics(String filePath) {
+            return new ArrayList<>(statistics);
+        }
+
+        @Override
+        public void writeAllStatistics(String filePath, List<SummaryStatistic> statistics) {
+            this.statistics = new ArrayList<>(statistics);
+        }
+    }
+
+    private static class InMemoryStatisticsStateDao implements StatisticsStateDao {
+        private final Map<String, LedgerWatermark> watermarks = new HashMap<>();
+        private final List<UserWeekPartial> partials = new ArrayList<>();
+
+        @Override
+        public Map<String, LedgerWatermark> loadWatermarks(String filePath) {
+            return new HashMap<>(watermarks);
+        }
+
+        @Override
+        public void writeWatermarks(String filePath, Collection<LedgerWatermark> watermarks) {
+            this.watermarks.clear();
+            watermarks.forEach(w -> this.watermarks.put(w.getUsername(), w));
+        }
+
+        @Override
+        public List<UserWeekPartial> loadUserWeekPartials(String filePath) {
+            return new ArrayList<>(partials);
+        }
+
+        @Override
+        public void writeUserWeekPartials(String filePath, List<UserWeekPartial> partials) throws IOException {
+            this.partials.clear();
+            this.partials.addAll(partials);
+            // Like the CSV DAO, leave the file behind: watermarks are only trusted when it exists
+            Files.createDirectories(Path.of(filePath).getParent());
+            Files.writeString(Path.of(filePath), "");
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        addUser("alice", List.of(
+                expense("2025/03/03 12:00", "Meituan", "Lunch", 30),
+                expense("2025/03/04 12:00", "Meituan", "Lunch", 20),
+                expense("2025/03/05 09:00", "JD", "Cable", 10),
+                new Transaction("2025/03/05 10:00", "Salary", "Company", "Pay", "Income", 5000, "Bank", "Done", "A4", "M", "")));
+        addUser("bob", List.of(expense("2025/03/06 20:00", "JD", "Phone", 100)));
+        CsvUserDao userDao = new CsvUserDao(tempDir.resolve("users.csv").toString()) {
+            @Override
+            public List<User> getAllUsers() {
+                return new ArrayList<>(users);
+            }
+        };
+        service = new SummaryStatisticService(userDao, new InMemoryTransactionDao(), new InMemorySummaryStatisticDao(),
+                new InMemoryStatisticsStateDao(), new BinaryHeavyHitterIndexDao(), tempDir.resolve("summary.csv").toString());
+    }
+
+    private void addUser(String username, List<Transaction> transactions) throws IOException {
+        Path ledger = tempDir.resolve(username + ".csv");
+        writeLedger(ledger, transactions);
+        users.add(new User(username, "pw", "user", ledger.toString()));
+    }
+
+    // The watermark only looks at the file, so its size changes with the transactions
+    private void writeLedger(Path ledger, List<Transaction> transactions) throws IOException {
+        Files.writeString(ledger, "x".repeat(transactions.size()));
+        ledgers.put(ledger.toString(), new ArrayList<>(transactions));
+    }
+
+    private static Transaction expense(String time, String counterparty, String commodity, double amount) {
+        return new Transaction(time, "餐饮", counterparty, commodity, "Expense", amount, "WeChat", "Done", time, "M", "");
+    }
+
+    private int scansOf(String username) {
+        return scans.getOrDefault(tempDir.resolve(username + ".csv").toString(), 0);
+    }
+
+    private static List<String> items(List<HeavyHitter> hitters) {
+        return hitters.stream().map(HeavyHitter::getItem).toList();
+    }
+
+    @Test
+    void testTopKIsBuiltByTheStatisticsRunAndOnlyReadAfterwards() throws Exception {
+        assertTrue(service.getTopK(null, HeavyHitterIndex.Period.WEEK, "2025-W10", HeavyHitterIndex.Dimension.COUNTERPARTY, 5).isEmpty());
+
+        service.generateAndSaveWeeklyStatistics();
+        assertEquals(1, scansOf("alice"));
+        assertEquals(1, scansOf("bob"));
+
+        // All users merged: bob's JD purchase outweighs alice's Meituan lunches
+        List<HeavyHitter> all = service.getTopK(null, HeavyHitterIndex.Period.WEEK, "2025-W10", HeavyHitterIndex.Dimension.COUNTERPARTY, 5);
+        assertEquals(List.of("JD", "Meituan"), items(all));
+        assertEquals(11000, all.get(0).getAmountCents());
+        assertEquals(2, all.get(0).getTransactionCount());
+        assertEquals(5000, all.get(1).getAmountCents());
+
+        List<HeavyHitter> alice = service.getTopK("alice", HeavyHitterIndex.Period.MONTH, "2025-03", HeavyHitterIndex.Dimension.COUNTERPARTY, 5);
+        assertEquals(List.of("Meituan", "JD"), items(alice)); // Income is not indexed
+        assertEquals(List.of("Lunch", "Cable"),
+                items(service.getTopK("alice", HeavyHitterIndex.Period.MONTH, "2025-03", HeavyHitterIndex.Dimension.COMMODITY, 5)));
+        assertTrue(service.getTopK("carol", HeavyHitterIndex.Period.MONTH, "2025-03", HeavyHitterIndex.Dimension.COUNTERPARTY, 5).isEmpty());
+
+        // Queries never touch the ledgers
+        assertEquals(1, scansOf("alice"));
+        assertEquals(1, scansOf("bob"));
+    }
+
+    @Test
+    void testOnlyChangedLedgersAreReindexed() throws Exception {
+        service.generateAndSaveWeeklyStatistics();
+        writeLedger(tempDir.resolve("bob.csv"), List.of(
+                expense("2025/03/06 20:00", "JD", "Phone", 100),
+                expense("2025/03/07 19:00", "Didi", "Ride", 200)));
+
+        service.generateAndSaveWeeklyStatistics();
+
+        assertEquals(1, scansOf("alice"));
+        assertEquals(2, scansOf("bob"));
+        assertEquals(List.of("Didi", "JD", "Meituan"),
+                items(service.getTopK(null, HeavyHitterIndex.Period.WEEK, "2025-W10", HeavyHitterIndex.Dimension.COUNTERPARTY, 5)));
+        // alice's index came from the previous run
+        assertEquals(List.of("Meituan", "JD"),
+                items(service.getTopK("alice", HeavyHitterIndex.Period.WEEK, "2025-W10", HeavyHitterIndex.Dimension.COUNTERPARTY, 5)));
+    }
+
+    @Test
+    void testMissingIndexesAreRebuilt() throws Exception {
+        service.generateAndSaveWeeklyStatistics();
+        Files.delete(tempDir.resolve("summary_state").resolve("user_heavy_hitters.sketches")); // E.g. state from before the index existed
+
+        service.generateAndSaveWeeklyStatistics();
+
+        assertEquals(2, scansOf("alice"));
+        assertEquals(List.of("Meituan", "JD"),
+                items(service.getTopK("alice", HeavyHitterIndex.Period.WEEK, "2025-W10", HeavyHitterIndex.Dimension.COUNTERPARTY, 5)));
+    }
+}
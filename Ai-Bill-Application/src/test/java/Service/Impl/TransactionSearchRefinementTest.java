@@ -0,0 +1,47 @@
+package Service.Impl;
+
+import model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionSearchRefinementTest {
+
+    private final TransactionServiceImpl service = new TransactionServiceImpl("target/unused-search-ledger.csv");
+
+    private static Transaction criteria(String counterparty, String inOut) {
+        return new Transaction("", "", counterparty, "", inOut, 0, "", "", "", "", "");
+    }
+
+    private static Transaction transaction(String counterparty, String inOut, String orderNumber) {
+        return new Transaction("2025/03/01 12:00", "Dining", counterparty, "Lunch", inOut, 10, "WeChat", "Done", orderNumber, "M", "");
+    }
+
+    @Test
+    void testLongerTextRefinesShorterText() {
+        assertTrue(service.isRefinementOf(criteria("meit", ""), criteria("mei", "")));
+        assertTrue(service.isRefinementOf(criteria("Meituan", "Expense"), criteria(" mei ", "")));
+        assertTrue(service.isRefinementOf(criteria("mei", "Income"), criteria("mei", "income")));
+        assertFalse(service.isRefinementOf(criteria("mei", ""), criteria("meit", ""))); // Broadened
+        assertFalse(service.isRefinementOf(criteria("jd", ""), criteria("mei", "")));
+        assertFalse(service.isRefinementOf(criteria("mei", "Income"), criteria("mei", "Expense")));
+        assertFalse(service.isRefinementOf(criteria("mei", ""), criteria("mei", "Expense"))); // In/Out dropped
+    }
+
+    @Test
+    void testSearchAmongCandidatesKeepsTheirOrder() {
+        Transaction newest = transaction("Meituan", "Expense", "ON3");
+        Transaction middle = transaction("Meijia", "Expense", "ON2");
+        Transaction oldest = transaction("Meituan Waimai", "Income", "ON1");
+        List<Transaction> previous = List.of(newest, middle, oldest); // Results for "mei", newest first
+
+        List<Transaction> narrowed = service.searchTransaction(criteria("meit", ""), previous);
+        assertEquals(2, narrowed.size());
+        assertSame(newest, narrowed.get(0));
+        assertSame(oldest, narrowed.get(1));
+
+        assertEquals(List.of(newest), service.searchTransaction(criteria("meit", "Expense"), previous));
+    }
+}
@@ -0,0 +1,89 @@
+package Service.Impl;
+
+import model.SummaryStatistic;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeeklyAggregateTest {
+
+    private WeeklyAggregate userA() {
+        WeeklyAggregate a = new WeeklyAggregate();
+        a.markUserActive("2025-W10", "alice");
+        a.addIncome("2025-W10", 100.10);
+        a.addExpense("2025-W10", "餐饮", 0.1);
+        a.addExpense("2025-W10", "餐饮", 0.2);
+        return a;
+    }
+
+    private WeeklyAggregate userB() {
+        WeeklyAggregate b = new WeeklyAggregate();
+        b.markUserActive("2025-W10", "bob");
+        b.addCounterparty("2025-W10", "Metro");
+        b.addCounterparty("2025-W10", " Metro "); // Same counterparty
+        b.addCounterparty("2025-W10", "Bike Share");
+        b.addExpense("2025-W10", "交通", 0.3);
+        b.addExpense("2025-W10", null, 5.0); // Counts towards total only
+        b.markUserActive("2025-W11", "bob");
+        b.addIncome("2025-W11", 20.0);
+        return b;
+    }
+
+    @Test
+    void testMergeOrderDoesNotChangeResult() {
+        List<SummaryStatistic> ab = new WeeklyAggregate().merge(userA()).merge(userB()).toStatistics("ts");
+        List<SummaryStatistic> ba = new WeeklyAggregate().merge(userB()).merge(userA()).toStatistics("ts");
+
+        assertEquals(ab.size(), ba.size());
+        for (int i = 0; i < ab.size(); i++) {
+            assertEquals(ab.get(i).toString(), ba.get(i).toString(), "Merged statistics should not depend on merge order");
+        }
+    }
+
+    @Test
+    void testWeekTotalsAndTopCategory() {
+        List<SummaryStatistic> stats = new WeeklyAggregate().merge(userA()).merge(userB()).toStatistics("ts");
+
+        assertEquals(2, stats.size());
+        SummaryStatistic w10 = stats.get(0);
+        assertEquals("2025-W10", w10.getWeekIdentifier());
+        assertEquals(100.10, w10.getTotalIncomeAllUsers(), 0.001);
+        assertEquals(5.60, w10.getTotalExpenseAllUsers(), 0.001);
+        assertEquals(2, w10.getNumberOfUsersWithTransactions());
+        // 餐饮 (0.1 + 0.2) and 交通 (0.3) tie exactly in cents; the alphabetically first category wins
+        String expectedTop = "交通".compareTo("餐饮") < 0 ? "交通" : "餐饮";
+        assertEquals(expectedTop, w10.getTopExpenseCategory());
+        assertEquals(0.30, w10.getTopExpenseCategoryAmount(), 0.001);
+
+        SummaryStatistic w11 = stats.get(1);
+        assertEquals("2025-W11", w11.getWeekIdentifier());
+        assertEquals("无支出", w11.getTopExpenseCategory());
+        assertEquals(1, w11.getNumberOfUsersWithTransactions());
+    }
+
+    @Test
+    void testChangedWeeksOnlyReportsAffectedWeeks() {
+        WeeklyAggregate before = userB();
+        WeeklyAggregate after = userB();
+        after.addExpense("2025-W11", "餐饮", 12.5); // Change week 11 only
+        after.markUserActive("2025-W12", "bob");   // New week 12
+
+        assertEquals(Set.of("2025-W11", "2025-W12"), WeeklyAggregate.changedWeeks(before, after));
+        assertEquals(Set.of("2025-W10", "2025-W11"), WeeklyAggregate.changedWeeks(before, null));
+        assertTrue(WeeklyAggregate.changedWeeks(before, userB()).isEmpty());
+    }
+
+    @Test
+    void testUserWeekPartialsRoundTrip() {
+        WeeklyAggregate original = userB();
+        Map<String, WeeklyAggregate> restored = WeeklyAggregate.fromUserWeekPartials(original.toUserWeekPartials("bob"));
+
+        assertTrue(WeeklyAggregate.changedWeeks(original, restored.get("bob")).isEmpty());
+        assertEquals(Set.of("bob"), restored.get("bob").getBucket("2025-W10").getUsers());
+        assertEquals(2, restored.get("bob").getBucket("2025-W10").getCounterparties().estimate());
+    }
+}
@@ -18,6 +18,9 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
 public class CacheManagerTest {
 
     private TransactionDao transactionDao;
@@ -116,4 +119,22 @@ public class CacheManagerTest {
         }
         System.out.println("CacheManagerTest: testPutAndInvalidateTransactions finished.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetTransactionsIfPresent_DoesNotLoad() throws Exception {
+        System.out.println("CacheManagerTest: Running testGetTransactionsIfPresent_DoesNotLoad...");
+        String filePath = tempFilePath.toString();
+
+        // Nothing cached yet: must not load from disk
+        assertNull(CacheManager.getTransactionsIfPresent(filePath));
+
+        // Once resident, the cached list is returned as-is
+        List<Transaction> loaded = CacheManager.getTransactions(filePath, transactionDao);
+        assertSame(loaded, CacheManager.getTransactionsIfPresent(filePath));
+
+        // After invalidation it is not resident anymore
+        CacheManager.invalidateTransactionCache(filePath);
+        assertNull(CacheManager.getTransactionsIfPresent(filePath));
+        System.out.println("CacheManagerTest: testGetTransactionsIfPresent_DoesNotLoad finished.");
+    }
+}
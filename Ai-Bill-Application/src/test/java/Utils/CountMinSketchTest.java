@@ -0,0 +1,74 @@
+package Utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CountMinSketchTest {
+
+    @Test
+    void testNeverUnderestimates() {
+        CountMinSketch sketch = new CountMinSketch();
+        for (int i = 0; i < 2000; i++) {
+            sketch.add("item_" + (i % 300), 1);
+        }
+        for (int i = 0; i < 300; i++) {
+            long trueCount = 2000 / 300 + (i < 2000 % 300 ? 1 : 0);
+            long estimate = sketch.estimate("item_" + i);
+            assertTrue(estimate >= trueCount, "Count-Min must not undercount item_" + i);
+            assertTrue(estimate <= trueCount + 2000 * Math.E / CountMinSketch.DEFAULT_WIDTH + 5, "Overcount too large for item_" + i);
+        }
+        assertEquals(0, new CountMinSketch().estimate("missing"));
+    }
+
+    @Test
+    void testMergeAddsCounts() {
+        CountMinSketch left = new CountMinSketch(64, 3);
+        CountMinSketch right = new CountMinSketch(64, 3);
+        left.add("美团", 3);
+        right.add("美团", 4);
+        right.add("滴滴", 2);
+
+        left.merge(right);
+        assertTrue(left.estimate("美团") >= 7);
+        assertTrue(left.estimate("滴滴") >= 2);
+        assertEquals(9, left.getTotalCount());
+    }
+
+    @Test
+    void testMergeRejectsDifferentShapes() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(64, 3).merge(new CountMinSketch(32, 3)));
+    }
+
+    @Test
+    void testSerializationRoundTrip() throws IOException {
+        CountMinSketch sketch = new CountMinSketch();
+        sketch.add("美团", 3);
+        sketch.add("滴滴", 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        assertTrue(bytes.size() < 200, "Sparse sketches should be stored compactly");
+
+        CountMinSketch restored = CountMinSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(3, restored.estimate("美团"));
+        assertEquals(1, restored.estimate("滴滴"));
+        assertEquals(4, restored.getTotalCount());
+
+        // Dense sketches survive serialization too
+        CountMinSketch dense = new CountMinSketch(64, 3);
+        for (int i = 0; i < 1000; i++) {
+            dense.add("item_" + i, 1);
+        }
+        bytes.reset();
+        dense.writeTo(new DataOutputStream(bytes));
+        CountMinSketch restoredDense = CountMinSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(dense.estimate("item_7"), restoredDense.estimate("item_7"));
+        assertEquals(1000, restoredDense.getTotalCount());
+    }
+}
@@ -0,0 +1,75 @@
+package Utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    void testSmallCardinalitiesAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 50; i++) {
+            sketch.add("user_" + i);
+            sketch.add("user_" + i); // Duplicates must not be counted twice
+        }
+        assertEquals(50, sketch.estimate(), 1);
+    }
+
+    @Test
+    void testMergeEstimatesUnion() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        for (int i = 0; i < 5000; i++) {
+            left.add("cp_" + i);
+        }
+        for (int i = 2500; i < 8000; i++) {
+            right.add("cp_" + i);
+        }
+        long estimate = left.merge(right).estimate();
+        assertEquals(8000, estimate, 8000 * 0.05, "Union estimate should be within 5%");
+    }
+
+    @Test
+    void testSparseAndDenseSketchesAgree() throws IOException {
+        HyperLogLog small = new HyperLogLog();
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 20; i++) {
+            small.add("cp_" + i);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            large.add("cp_" + i); // Far past the point where the sketch switches to dense registers
+        }
+
+        assertEquals(20, small.estimate(), 1);
+        assertEquals(20_000, large.estimate(), 20_000 * 0.05);
+        assertEquals(small, small.copy());
+        assertNotEquals(small, large);
+
+        // Merging a sparse sketch into a dense one (and the reverse) gives the union
+        HyperLogLog union = small.copy().merge(large);
+        assertEquals(large, union);
+        assertEquals(large, large.copy().merge(small));
+
+        // Dense sketches survive serialization too
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        large.writeTo(new DataOutputStream(bytes));
+        assertEquals(large, HyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    @Test
+    void testSerializationRoundTrip() throws IOException {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 3; i++) {
+            sketch.add("merchant_" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        assertTrue(bytes.size() < 32, "Sparse sketches should be stored compactly");
+
+        HyperLogLog restored = HyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+}
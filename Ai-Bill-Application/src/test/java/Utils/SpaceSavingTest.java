@@ -0,0 +1,106 @@
+package Utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpaceSavingTest {
+
+    @Test
+    void testExactWhileUnderCapacity() {
+        SpaceSaving summary = new SpaceSaving(10);
+        summary.offer("美团", 3000);
+        summary.offer("滴滴", 1200);
+        summary.offer("美团", 500);
+        summary.offer("超市", 800);
+
+        List<SpaceSaving.Counter> top = summary.top(2);
+        assertEquals(2, top.size());
+        assertEquals("美团", top.get(0).getItem());
+        assertEquals(3500, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals("滴滴", top.get(1).getItem());
+        assertEquals(5500, summary.getTotalWeight());
+    }
+
+    @Test
+    void testHeavyHittersSurviveManySmallItems() {
+        SpaceSaving summary = new SpaceSaving(16);
+        for (int i = 0; i < 5000; i++) {
+            summary.offer("small_" + i, 1);
+            if (i % 10 == 0) {
+                summary.offer("heavy_a", 20);
+            }
+            if (i % 25 == 0) {
+                summary.offer("heavy_b", 20);
+            }
+        }
+        assertEquals(16, summary.size(), "Memory must stay bounded by the capacity");
+
+        List<SpaceSaving.Counter> top = summary.top(2);
+        assertEquals("heavy_a", top.get(0).getItem());
+        assertEquals("heavy_b", top.get(1).getItem());
+        // The true weight lies within [count - error, count]
+        long trueWeightA = 500 * 20;
+        assertTrue(top.get(0).getCount() >= trueWeightA);
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= trueWeightA);
+    }
+
+    @Test
+    void testMergeCombinesPartialSummaries() {
+        SpaceSaving left = new SpaceSaving(8);
+        SpaceSaving right = new SpaceSaving(8);
+        left.offer("shared", 100);
+        left.offer("left_only", 40);
+        right.offer("shared", 150);
+        right.offer("right_only", 60);
+
+        left.merge(right);
+        List<SpaceSaving.Counter> top = left.top(3);
+        assertEquals("shared", top.get(0).getItem());
+        assertEquals(250, top.get(0).getCount());
+        assertEquals("right_only", top.get(1).getItem());
+        assertEquals("left_only", top.get(2).getItem());
+        assertEquals(350, left.getTotalWeight());
+    }
+
+    @Test
+    void testIgnoresNullAndNonPositiveWeights() {
+        SpaceSaving summary = new SpaceSaving(4);
+        summary.offer(null, 10);
+        summary.offer("refund", 0);
+        summary.offer("refund", -5);
+        assertEquals(0, summary.size());
+        assertTrue(summary.top(5).isEmpty());
+    }
+
+    @Test
+    void testSerializationRoundTrip() throws IOException {
+        SpaceSaving summary = new SpaceSaving(2);
+        summary.offer("美团", 3000);
+        summary.offer("滴滴", 1200);
+        summary.offer("超市", 800); // Evicts 滴滴, so 超市 carries an error
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary.writeTo(new DataOutputStream(bytes));
+
+        SpaceSaving restored = SpaceSaving.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(2, restored.getCapacity());
+        assertEquals(5000, restored.getTotalWeight());
+        List<SpaceSaving.Counter> top = restored.top(2);
+        assertEquals("美团", top.get(0).getItem());
+        assertEquals("超市", top.get(1).getItem());
+        assertEquals(2000, top.get(1).getCount());
+        assertEquals(1200, top.get(1).getError());
+
+        // The restored summary keeps evicting its smallest counter
+        restored.offer("京东", 100);
+        assertEquals("京东", restored.top(2).get(1).getItem());
+    }
+}
@@ -0,0 +1,50 @@
+package Utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TDigestTest {
+
+    @Test
+    void testQuantilesOfUniformValues() {
+        TDigest digest = new TDigest();
+        for (int i = 1; i <= 10000; i++) {
+            digest.add(i);
+        }
+        assertEquals(5000, digest.quantile(0.5), 100);
+        assertEquals(9000, digest.quantile(0.9), 100);
+        assertEquals(9900, digest.quantile(0.99), 30);
+        assertEquals(10000, digest.size());
+    }
+
+    @Test
+    void testMergedDigestMatchesSingleDigest() {
+        TDigest even = new TDigest();
+        TDigest odd = new TDigest();
+        for (int i = 1; i <= 10000; i++) {
+            (i % 2 == 0 ? even : odd).add(i);
+        }
+        TDigest merged = even.merge(odd);
+        assertEquals(10000, merged.size());
+        assertEquals(9000, merged.quantile(0.9), 100);
+        assertEquals(1, merged.getMin(), 0.0);
+        assertEquals(10000, merged.getMax(), 0.0);
+    }
+
+    @Test
+    void testSerializationRoundTrip() throws IOException {
+        TDigest digest = new TDigest();
+        for (int i = 0; i < 1000; i++) {
+            digest.add(i * 1.5);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        digest.writeTo(new DataOutputStream(bytes));
+
+        TDigest restored = TDigest.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(digest.quantile(0.5), restored.quantile(0.5), 1e-9);
+        assertEquals(digest.size(), restored.size());
+    }
+}
@@ -0,0 +1,32 @@
+package Utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+
+    @Test
+    void testBurstUpToCapacityThenEmpty() {
+        TokenBucket bucket = new TokenBucket(3, 0.001); // Effectively no refill during the test
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void testAcquireWaitsForRefill() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 20); // One token every 50 ms
+        assertTrue(bucket.tryAcquire());
+
+        long waitedNanos = bucket.acquire();
+        assertTrue(waitedNanos >= 30_000_000L, "Second token should only be available after a refill, waited " + waitedNanos);
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
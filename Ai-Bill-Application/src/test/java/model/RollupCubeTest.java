@@ -0,0 +1,37 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RollupCubeTest {
+
+    @Test
+    void testWeekIdentifiersUseTheIsoWeekBasedYear() {
+        assertEquals("2025-W52", RollupCube.Granularity.WEEK.format(LocalDate.of(2025, 12, 28))); // Sunday
+        assertEquals("2026-W01", RollupCube.Granularity.WEEK.format(LocalDate.of(2025, 12, 29))); // Monday
+        assertEquals("2026-W01", RollupCube.Granularity.WEEK.format(LocalDate.of(2025, 12, 31)));
+        assertEquals("2026-W01", RollupCube.Granularity.WEEK.format(LocalDate.of(2026, 1, 4)));
+        assertEquals("2020-W53", RollupCube.Granularity.WEEK.format(LocalDate.of(2021, 1, 3))); // A 53-week year
+    }
+
+    @Test
+    void testWeeklyRollUpSortsChronologicallyAcrossNewYear() {
+        RollupCube cube = new RollupCube();
+        cube.add(LocalDate.of(2025, 12, 22), RollupCube.Direction.EXPENSE, "Dining", 1000, 1);
+        cube.add(LocalDate.of(2025, 12, 30), RollupCube.Direction.EXPENSE, "Dining", 2000, 1);
+        cube.add(LocalDate.of(2026, 1, 2), RollupCube.Direction.EXPENSE, "Dining", 3000, 1);
+        cube.add(LocalDate.of(2026, 1, 6), RollupCube.Direction.INCOME, "Salary", 500000, 1);
+
+        SortedMap<String, PeriodTotals> weeks = cube.rollUp(RollupCube.Granularity.WEEK, null, null);
+
+        // Like the "Last 12 Weeks" chart, which plots the keys in sorted order
+        assertEquals(List.of("2025-W52", "2026-W01", "2026-W02"), List.copyOf(weeks.keySet()));
+        assertEquals(5000, weeks.get("2026-W01").getExpenseCents()); // Dec 30 and Jan 2 are the same week
+        assertEquals(500000, weeks.get("2026-W02").getIncomeCents());
+    }
+}